@@ -6,7 +6,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
@@ -35,6 +37,8 @@ import org.openstreetmap.josm.tools.CheckParameterUtil;
  * addresses with unknown streets ("unresolved addresses").
  *
  * It listens to changes within instances of {@link IOSMEntity} to notify clients on update.
+ * Data set changes are applied incrementally: Only the touched primitives are reclassified,
+ * streets are looked up by their normalized name and the sorted lists are updated in place.
  *
  * {@link AddressEditContainer} is the central class used within actions and UI models to show
  * and alter OSM data.
@@ -50,6 +54,12 @@ implements OsmPrimitiveVisitor, DataSetListener, IAddressEditContainerListener,
     private Collection<? extends OsmPrimitive> workingSet;
     /** The street dictionary collecting all streets to a set of unique street names. */
     private HashMap<String, OSMStreet> streetDict = new HashMap<>(100);
+    /** The streets by normalized name, used to resolve addresses. */
+    private HashMap<String, OSMStreet> streetIndex = new HashMap<>(100);
+    /** The key of each street within the street dictionary. */
+    private HashMap<OSMStreet, String> streetKeys = new HashMap<>(100);
+    /** The streets sorted by name. */
+    private List<OSMStreet> streetList = new ArrayList<>(100);
 
     /** The unresolved (addresses without valid street name) addresses list. */
     private List<OSMAddress> unresolvedAddresses = new ArrayList<>(100);
@@ -57,12 +67,21 @@ implements OsmPrimitiveVisitor, DataSetListener, IAddressEditContainerListener,
     /** The incomplete addresses list. */
     private List<OSMAddress> incompleteAddresses = new ArrayList<>(100);
 
-    /** The shadow copy to assemble the street dict during update. */
-    private HashMap<String, OSMStreet> shadowStreetDict = new HashMap<>(100);
-    /** The shadow copy to assemble the unresolved addresses during update. */
-    private List<OSMAddress> shadowUnresolvedAddresses = new ArrayList<>(100);
-    /** The shadow copy to assemble the incomplete addresses during update. */
-    private List<OSMAddress> shadowIncompleteAddresses = new ArrayList<>(100);
+    /** The addresses by their OSM primitive. */
+    private HashMap<OsmPrimitive, OSMAddress> addresses = new HashMap<>(100);
+    /** The street each resolved address is assigned to. */
+    private HashMap<OSMAddress, OSMStreet> addressStreets = new HashMap<>(100);
+    /** The unresolved addresses, grouped by the normalized street name they are waiting for. */
+    private HashMap<String, List<OSMAddress>> pendingAddresses = new HashMap<>(100);
+    /** The normalized street name each unresolved address is waiting for. */
+    private HashMap<OSMAddress, String> pendingKeys = new HashMap<>(100);
+    /** The street each way contributes a segment to. */
+    private HashMap<Way, OSMStreet> segmentStreets = new HashMap<>(100);
+
+    /** True while the lists are rebuilt from scratch; they are sorted once afterwards. */
+    private boolean rebuilding;
+    /** True while primitives are reclassified, to ignore nested updates. */
+    private boolean updating;
 
     /** The visited nodes cache to increase iteration speed. */
     private HashSet<Node> visitedNodes = new HashSet<>();
@@ -212,14 +231,170 @@ implements OsmPrimitiveVisitor, DataSetListener, IAddressEditContainerListener,
      * @param aNode the address node to add and check
      */
     private void addAndClassifyAddress(OSMAddress aNode) {
+        addresses.put(aNode.getOsmObject(), aNode);
+
         if (!assignAddressToStreet(aNode)) {
             // Assignment failed: Street is not known (yet) -> add to 'unresolved' list
-            shadowUnresolvedAddresses.add(aNode);
+            addUnresolvedAddress(aNode);
         }
 
         if (!aNode.isComplete()) {
-            shadowIncompleteAddresses.add(aNode);
+            addSorted(incompleteAddresses, aNode);
+        }
+    }
+
+    /**
+     * Removes an address node from the street it is assigned to and from the problem lists.
+     *
+     * @param aNode the address node to remove
+     */
+    private void removeAddress(OSMAddress aNode) {
+        removeProblemsOfSource(aNode);
+
+        OSMStreet sNode = addressStreets.remove(aNode);
+        if (sNode != null) {
+            sNode.removeAddress(aNode);
+        } else {
+            removeUnresolvedAddress(aNode);
+        }
+        incompleteAddresses.remove(aNode);
+    }
+
+    /**
+     * Adds an address node to the unresolved list, waiting for a street with the given name.
+     *
+     * @param aNode the address node to add
+     */
+    private void addUnresolvedAddress(OSMAddress aNode) {
+        String key = StringUtils.normalizeStreetName(aNode.getStreetName());
+
+        pendingAddresses.computeIfAbsent(key, k -> new ArrayList<>()).add(aNode);
+        pendingKeys.put(aNode, key);
+        if (!rebuilding) {
+            addSorted(unresolvedAddresses, aNode);
+        }
+    }
+
+    /**
+     * Removes an address node from the unresolved list.
+     *
+     * @param aNode the address node to remove
+     */
+    private void removeUnresolvedAddress(OSMAddress aNode) {
+        String key = pendingKeys.remove(aNode);
+        if (key == null) return;
+
+        List<OSMAddress> pending = pendingAddresses.get(key);
+        pending.remove(aNode);
+        if (pending.isEmpty()) {
+            pendingAddresses.remove(key);
+        }
+        if (!rebuilding) {
+            unresolvedAddresses.remove(aNode);
+        }
+    }
+
+    /**
+     * Assigns the unresolved addresses waiting for the given street name to the street.
+     *
+     * @param key the normalized street name
+     * @param sNode the street
+     */
+    private void resolvePendingAddresses(String key, OSMStreet sNode) {
+        List<OSMAddress> pending = pendingAddresses.remove(key);
+        if (pending == null) return;
+
+        for (OSMAddress aNode : pending) {
+            pendingKeys.remove(aNode);
+            sNode.addAddress(aNode);
+            addressStreets.put(aNode, sNode);
         }
+        if (!rebuilding) {
+            // addresses do not override equals, so the set matches by identity
+            unresolvedAddresses.removeAll(new HashSet<>(pending));
+        }
+    }
+
+    /**
+     * Adds a street (segment) to the street of the same name, creating the street if needed.
+     *
+     * @param name the street name
+     * @param segment the street segment
+     * @param w the corresponding OSM way
+     */
+    private void addStreetSegment(String name, OSMStreetSegment segment, Way w) {
+        OSMStreet sNode = streetDict.get(name);
+        if (sNode == null) { // new street name -> add to dict
+            sNode = new OSMStreet(w);
+            streetDict.put(name, sNode);
+            streetKeys.put(sNode, name);
+            addSorted(streetList, sNode);
+
+            String key = StringUtils.normalizeStreetName(name);
+            if (!streetIndex.containsKey(key)) {
+                streetIndex.put(key, sNode);
+                resolvePendingAddresses(key, sNode);
+            }
+        }
+
+        // TODO: Check if segment really belongs to the street, even if the
+        // names are the same. Then the streets should be split up...
+        sNode.addStreetSegment(segment);
+        segmentStreets.put(w, sNode);
+    }
+
+    /**
+     * Removes the segment of a way from its street. A street without segments is dropped
+     * and its addresses are resolved again.
+     *
+     * @param sNode the street
+     * @param w the way of the segment
+     */
+    private void removeStreetSegment(OSMStreet sNode, Way w) {
+        sNode.removeStreetSegment(w);
+        if (sNode.getNumberOfSegments() > 0) return;
+
+        String name = streetKeys.remove(sNode);
+        streetDict.remove(name);
+        streetList.remove(sNode);
+
+        String key = StringUtils.normalizeStreetName(name);
+        if (streetIndex.get(key) == sNode) {
+            streetIndex.remove(key);
+            // another spelling of the name may still be known
+            for (OSMStreet other : streetList) {
+                if (key.equals(StringUtils.normalizeStreetName(streetKeys.get(other)))) {
+                    streetIndex.put(key, other);
+                    break;
+                }
+            }
+        }
+
+        if (sNode.hasAddresses()) {
+            for (OSMAddress aNode : new ArrayList<>(sNode.getAddresses())) {
+                addressStreets.remove(aNode);
+                if (!assignAddressToStreet(aNode)) {
+                    addUnresolvedAddress(aNode);
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts an entity into a list at the position given by the natural order.
+     *
+     * @param <T> the entity type
+     * @param list the list to insert into
+     * @param entity the entity to insert
+     */
+    private <T extends IOSMEntity> void addSorted(List<T> list, T entity) {
+        if (rebuilding) {
+            list.add(entity);
+            return;
+        }
+
+        int pos = Collections.binarySearch(list, entity);
+        list.add(pos < 0 ? -pos - 1 : pos, entity);
     }
 
     /**
@@ -269,22 +444,8 @@ implements OsmPrimitiveVisitor, DataSetListener, IAddressEditContainerListener,
                     String name = newSegment.getName();
                     if (StringUtils.isNullOrEmpty(name)) return false;
 
-                    OSMStreet sNode = null;
-                    if (shadowStreetDict.containsKey(name)) { // street exists?
-                        sNode = shadowStreetDict.get(name);
-                    } else { // new street name -> add to dict
-                        sNode = new OSMStreet(w);
-                        shadowStreetDict.put(name, sNode);
-                    }
-
-                    if (sNode != null) {
-                        // TODO: Check if segment really belongs to the street, even if the
-                        // names are the same. Then the streets should be split up...
-                        sNode.addStreetSegment(newSegment);
-                        return true;
-                    } else {
-                        throw new RuntimeException("Street node is null!");
-                    }
+                    addStreetSegment(name, newSegment, w);
+                    return true;
                 }
             }
 
@@ -313,38 +474,39 @@ implements OsmPrimitiveVisitor, DataSetListener, IAddressEditContainerListener,
     /**
      * Gets the unresolved (addresses without valid street name) addresses.
      *
-     * @return the unresolved addresses
+     * @return the unresolved addresses, sorted by their natural order. The list is an
+     * unmodifiable view which changes with the container; copy it to sort it differently
      */
     public List<OSMAddress> getUnresolvedAddresses() {
-        return unresolvedAddresses;
+        return Collections.unmodifiableList(unresolvedAddresses);
     }
 
     /**
      * Gets the list with incomplete addresses.
      *
-     * @return the incomplete addresses
+     * @return the incomplete addresses, sorted by their natural order. The list is an
+     * unmodifiable view which changes with the container; copy it to sort it differently
      */
     public List<OSMAddress> getIncompleteAddresses() {
-        return incompleteAddresses;
+        return Collections.unmodifiableList(incompleteAddresses);
     }
 
     /**
      * Gets the street list.
      *
-     * @return the street list
+     * @return the streets, sorted by their natural order. The list is an unmodifiable
+     * view which changes with the container; copy it to sort it differently
      */
     public List<OSMStreet> getStreetList() {
-        ArrayList<OSMStreet> sortedList = new ArrayList<>(streetDict.values());
-        Collections.sort(sortedList);
-        return sortedList;
+        return Collections.unmodifiableList(streetList);
     }
 
     /**
      * Gets all addresses without valid street.
-     * @return all addresses without valid street
+     * @return all addresses without valid street, as unmodifiable view
      */
     public List<OSMAddress> getUnresolvedItems() {
-        return unresolvedAddresses;
+        return Collections.unmodifiableList(unresolvedAddresses);
     }
 
     /**
@@ -453,10 +615,13 @@ implements OsmPrimitiveVisitor, DataSetListener, IAddressEditContainerListener,
             return true;
         }
 
-        if (streetName != null && shadowStreetDict.containsKey(streetName)) {
-            OSMStreet sNode = shadowStreetDict.get(streetName);
-            sNode.addAddress(aNode);
-            return true;
+        if (streetName != null) {
+            OSMStreet sNode = streetIndex.get(StringUtils.normalizeStreetName(streetName));
+            if (sNode != null) {
+                sNode.addAddress(aNode);
+                addressStreets.put(aNode, sNode);
+                return true;
+            }
         }
 
         return false;
@@ -466,17 +631,14 @@ implements OsmPrimitiveVisitor, DataSetListener, IAddressEditContainerListener,
      * Walks through the list of unassigned addresses and tries to assign them to streets.
      */
     public void resolveAddresses() {
-        List<OSMAddress> resolvedAddresses = new ArrayList<>();
-        for (OSMAddress node : shadowUnresolvedAddresses) {
-            if (assignAddressToStreet(node)) {
-                resolvedAddresses.add(node);
+        synchronized (this) {
+            for (String key : new ArrayList<>(pendingAddresses.keySet())) {
+                OSMStreet sNode = streetIndex.get(key);
+                if (sNode != null) {
+                    resolvePendingAddresses(key, sNode);
+                }
             }
         }
-
-        /* Remove all resolves nodes from unresolved list */
-        for (OSMAddress resolved : resolvedAddresses) {
-            shadowUnresolvedAddresses.remove(resolved);
-        }
     }
 
     /**
@@ -507,27 +669,26 @@ implements OsmPrimitiveVisitor, DataSetListener, IAddressEditContainerListener,
         synchronized (this) {
             clearData();
             clearProblems();
-            // visit data set for problems...
-            for (OsmPrimitive osmPrimitive : osmData) {
-                if (osmPrimitive.isUsable()) {
-                    osmPrimitive.accept(this);
+            rebuilding = true;
+            try {
+                // visit data set for problems...
+                for (OsmPrimitive osmPrimitive : osmData) {
+                    if (osmPrimitive.isUsable()) {
+                        osmPrimitive.accept(this);
+                    }
                 }
+            } finally {
+                rebuilding = false;
             }
 
-            // match streets with addresses...
-            resolveAddresses();
+            // streets have been matched with addresses while visiting, collect the rest
+            for (List<OSMAddress> pending : pendingAddresses.values()) {
+                unresolvedAddresses.addAll(pending);
+            }
             // sort problem lists
-            Collections.sort(shadowIncompleteAddresses);
-            Collections.sort(shadowUnresolvedAddresses);
-
-            // put results from shadow copy into real lists
-            incompleteAddresses = new ArrayList<>(shadowIncompleteAddresses);
-            unresolvedAddresses = new ArrayList<>(shadowUnresolvedAddresses);
-            streetDict = new HashMap<>(shadowStreetDict);
-            // remove temp data
-            shadowStreetDict.clear();
-            shadowUnresolvedAddresses.clear();
-            shadowIncompleteAddresses.clear();
+            Collections.sort(incompleteAddresses);
+            Collections.sort(unresolvedAddresses);
+            Collections.sort(streetList);
 
             // update clients
             fireContainerChanged();
@@ -535,12 +696,116 @@ implements OsmPrimitiveVisitor, DataSetListener, IAddressEditContainerListener,
     }
 
     /**
-     * Clears the shadowed lists data and resets the 'visited' flag for every OSM object.
+     * Reclassifies the given primitives after they have been added, changed or removed.
+     * Streets, addresses and problems of other primitives are kept, so this is much cheaper
+     * than {@link #invalidate()}. Primitives outside the data given in
+     * {@link #attachToDataSet(Collection)} are ignored; relations reclassify their members.
+     *
+     * @param primitives the changed primitives
+     */
+    public void update(Collection<? extends OsmPrimitive> primitives) {
+        if (primitives == null || primitives.isEmpty())
+            return;
+
+        synchronized (this) {
+            if (updating || rebuilding) return;
+
+            Set<OsmPrimitive> touched = new LinkedHashSet<>();
+            for (OsmPrimitive osm : primitives) {
+                if (osm instanceof Relation) {
+                    touched.addAll(((Relation) osm).getMemberPrimitivesList());
+                } else if (osm != null) {
+                    touched.add(osm);
+                }
+            }
+
+            updating = true;
+            boolean changed = false;
+            try {
+                // decide before the visited flags are reset
+                Set<OsmPrimitive> inScope = new HashSet<>();
+                for (OsmPrimitive osm : touched) {
+                    if (isInScope(osm)) {
+                        inScope.add(osm);
+                    }
+                }
+
+                for (OsmPrimitive osm : touched) {
+                    changed |= detach(osm);
+                }
+
+                for (OsmPrimitive osm : touched) {
+                    if (osm.isUsable() && inScope.contains(osm)) {
+                        visitedNodes.remove(osm);
+                        visitedWays.remove(osm);
+                        osm.accept(this);
+                        changed |= addresses.containsKey(osm) || segmentStreets.containsKey(osm);
+                    }
+                }
+            } finally {
+                updating = false;
+            }
+
+            if (changed) {
+                fireContainerChanged();
+            }
+        }
+    }
+
+    /**
+     * Checks if a primitive belongs to the data examined by this container.
+     *
+     * @param osm the primitive
+     * @return true, if the primitive is part of the working set or the current data layer
+     */
+    private boolean isInScope(OsmPrimitive osm) {
+        if (workingSet != null) {
+            return visitedNodes.contains(osm) || visitedWays.contains(osm);
+        }
+
+        DataSet ds = MainApplication.getLayerManager().getEditDataSet();
+        return ds != null && osm.getDataSet() == ds;
+    }
+
+    /**
+     * Removes everything created from the given primitive.
+     *
+     * @param osm the primitive
+     * @return true, if the container has been changed
+     */
+    private boolean detach(OsmPrimitive osm) {
+        boolean changed = false;
+
+        OSMAddress aNode = addresses.remove(osm);
+        if (aNode != null) {
+            removeAddress(aNode);
+            changed = true;
+        }
+
+        OSMStreet sNode = segmentStreets.remove(osm);
+        if (sNode != null) {
+            removeStreetSegment(sNode, (Way) osm);
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Clears the lists and resets the 'visited' flag for every OSM object.
      */
     private void clearData() {
-        shadowStreetDict.clear();
-        shadowUnresolvedAddresses.clear();
-        shadowIncompleteAddresses.clear();
+        streetDict = new HashMap<>(100);
+        streetIndex.clear();
+        streetKeys.clear();
+        streetList = new ArrayList<>(100);
+        unresolvedAddresses = new ArrayList<>(100);
+        incompleteAddresses = new ArrayList<>(100);
+        addresses.clear();
+        addressStreets.clear();
+        pendingAddresses.clear();
+        pendingKeys.clear();
+        segmentStreets.clear();
         visitedNodes.clear();
         visitedWays.clear();
     }
@@ -590,6 +855,20 @@ implements OsmPrimitiveVisitor, DataSetListener, IAddressEditContainerListener,
 
     @Override
     public void dataChanged(DataChangedEvent event) {
+        List<AbstractDatasetChangedEvent> events = event.getEvents();
+        if (events == null) {
+            // no details available
+            invalidate();
+            return;
+        }
+
+        Set<OsmPrimitive> touched = new LinkedHashSet<>();
+        for (AbstractDatasetChangedEvent e : events) {
+            if (!(e instanceof NodeMovedEvent)) {
+                touched.addAll(e.getPrimitives());
+            }
+        }
+        update(touched);
     }
 
     @Override
@@ -603,25 +882,27 @@ implements OsmPrimitiveVisitor, DataSetListener, IAddressEditContainerListener,
 
     @Override
     public void primitivesAdded(PrimitivesAddedEvent event) {
-        invalidate();
+        update(event.getPrimitives());
     }
 
     @Override
     public void primitivesRemoved(PrimitivesRemovedEvent event) {
-        invalidate();
+        update(event.getPrimitives());
     }
 
     @Override
     public void relationMembersChanged(RelationMembersChangedEvent event) {
+        update(event.getPrimitives());
     }
 
     @Override
     public void tagsChanged(TagsChangedEvent event) {
-        invalidate();
+        update(event.getPrimitives());
     }
 
     @Override
     public void wayNodesChanged(WayNodesChangedEvent event) {
+        update(event.getPrimitives());
     }
 
     @Override
@@ -700,9 +981,9 @@ implements OsmPrimitiveVisitor, DataSetListener, IAddressEditContainerListener,
 
     @Override
     public boolean isValidStreetName(String name) {
-        if (streetDict == null) return false;
+        if (name == null) return false;
 
-        return streetDict.containsKey(name);
+        return streetIndex.containsKey(StringUtils.normalizeStreetName(name));
     }
 
     /**
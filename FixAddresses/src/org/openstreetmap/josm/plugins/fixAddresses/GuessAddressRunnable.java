@@ -6,14 +6,23 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.PleaseWaitRunnable;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.OsmTransferException;
+import org.openstreetmap.josm.tools.JosmRuntimeException;
+import org.openstreetmap.josm.tools.Utils;
 import org.xml.sax.SAXException;
 
 /**
@@ -22,21 +31,19 @@ import org.xml.sax.SAXException;
  * The guessing procedure itself is implemented by defining "guessers" using the {@link GuessedValueHandler}
  * class. A guessed field does not modify the corresponding property of {@link OSMAddress} itself, but
  * adds the guessed value to a shadowed field by calling {@link OSMAddress#setGuessedValue}.
+ *
+ * The candidates for all guesses are collected once per run into a {@link GuessCandidateIndex}, so each
+ * address is only compared with the streets and nodes near it. Addresses are guessed in batches on a
+ * fork-join pool; the guesses are applied on the thread of this runnable, in the order of the addresses.
  */
 public class GuessAddressRunnable extends PleaseWaitRunnable {
+    /** Number of addresses guessed by one worker task. */
+    private static final int BATCH_SIZE = 64;
+
     private List<OSMAddress> addressesToGuess;
     private List<IProgressMonitorFinishedListener> finishListeners = new ArrayList<>();
-    private boolean isRunning = false;
-    private boolean canceled;
-
-    private GuessedValueHandler[] wayGuessers = new GuessedValueHandler[]{new GuessStreetValueHandler(TagConstants.ADDR_STREET_TAG)};
-    private GuessedValueHandler[] nodeGuessers = new GuessedValueHandler[]{
-            new GuessedValueHandler(TagConstants.ADDR_POSTCODE_TAG, 500.0),
-            new GuessedValueHandler(TagConstants.ADDR_CITY_TAG, 5000.0),
-            new GuessedValueHandler(TagConstants.ADDR_STATE_TAG, 5000.0),
-            new GuessedValueHandler(TagConstants.ADDR_COUNTRY_TAG, 5000.0),
-            new GuessedValueHandler(TagConstants.ADDR_CITY_TAG, 2000.0)
-    };
+    private volatile boolean isRunning = false;
+    private volatile boolean canceled;
 
     /**
      * Instantiates a new guess address runnable.
@@ -49,6 +56,18 @@ public class GuessAddressRunnable extends PleaseWaitRunnable {
         setAddressEditContainer(addresses);
     }
 
+    /**
+     * Instantiates a new guess address runnable reporting to the given progress monitor.
+     *
+     * @param addresses the addresses to guess the values for
+     * @param title the title of progress monitor
+     * @param progressMonitor the progress monitor
+     */
+    public GuessAddressRunnable(List<OSMAddress> addresses, String title, ProgressMonitor progressMonitor) {
+        super(title != null ? title : tr("Searching"), progressMonitor, false);
+        setAddressEditContainer(addresses);
+    }
+
     /**
      * Sets the address edit container.
      *
@@ -129,73 +148,153 @@ public class GuessAddressRunnable extends PleaseWaitRunnable {
         // Start progress monitor to guess address values
         progressMonitor.subTask(tr("Searching") + "...");
 
+        List<Future<List<Guess>>> batches = new ArrayList<>();
         try {
             progressMonitor.setTicksCount(addressesToGuess.size());
 
-            List<OSMAddress> shadowCopy = new ArrayList<>(addressesToGuess);
-            for (OSMAddress aNode : shadowCopy) {
-                if (!aNode.needsGuess()) { // nothing to do
+            List<OSMAddress> pending = new ArrayList<>();
+            for (OSMAddress aNode : new ArrayList<>(addressesToGuess)) {
+                if (aNode.needsGuess()) {
+                    pending.add(aNode);
+                } else { // nothing to do
                     progressMonitor.worked(1);
-                    continue;
                 }
+            }
+            if (pending.isEmpty()) return;
+
+            // Build the candidate index once for all addresses
+            Set<String> nodeTags = new HashSet<>();
+            for (GuessedValueHandler guesser : createNodeGuessers()) {
+                nodeTags.add(guesser.getTag());
+            }
+            GuessCandidateIndex index = new GuessCandidateIndex(ds, nodeTags);
 
+            // Guess in parallel batches, but apply the results here, in order
+            for (int start = 0; start < pending.size(); start += BATCH_SIZE) {
+                List<OSMAddress> batch = pending.subList(start, Math.min(start + BATCH_SIZE, pending.size()));
+                batches.add(PoolHolder.POOL.submit(() -> guessBatch(batch, index)));
+            }
+
+            for (Future<List<Guess>> batch : batches) {
                 // check for cancel
                 if (canceled) {
                     break;
                 }
 
-                // Update progress monitor
-                progressMonitor.subTask(tr("Guess values for ") + aNode);
+                List<Guess> guesses;
+                try {
+                    guesses = batch.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    throw new JosmRuntimeException(e.getCause());
+                }
 
-                // Run way-related guessers
-                for (int i = 0; i < wayGuessers.length; i++) {
-                    GuessedValueHandler guesser = wayGuessers[i];
+                for (Guess guess : guesses) {
+                    if (guess.value != null) {
+                        guess.address.setGuessedValue(guess.tag, guess.value, guess.source);
+                    } else {
+                        // Update progress monitor and report progress
+                        progressMonitor.subTask(tr("Guess values for ") + guess.address);
+                        progressMonitor.worked(1);
+                    }
+                }
+            }
+        } finally {
+            canceled = true;
+            for (Future<List<Guess>> batch : batches) {
+                batch.cancel(false);
+            }
+            isRunning = false;
+            fireFinished();
+        }
+    }
 
-                    guesser.setAddressNode(aNode);
+    /**
+     * Runs the guessers for a batch of addresses on the candidates near each address.
+     * This runs on a worker thread, so the guesses are collected instead of being set directly.
+     *
+     * @param batch the addresses to guess the values for
+     * @param index the candidate index
+     * @return the guesses in the order they have to be applied; each address is terminated by a guess without value
+     */
+    private List<Guess> guessBatch(List<OSMAddress> batch, GuessCandidateIndex index) {
+        GuessedValueHandler[] wayGuessers = createWayGuessers();
+        GuessedValueHandler[] nodeGuessers = createNodeGuessers();
+        List<Guess> guesses = new ArrayList<>();
+
+        for (OSMAddress aNode : batch) {
+            if (canceled) {
+                break;
+            }
 
-                    // visit osm data
-                    for (Way way : ds.getWays()) {
-                        if (canceled) {
-                            break;
-                        }
-                        way.accept(guesser);
-                    }
+            // Run way-related guessers
+            for (GuessedValueHandler guesser : wayGuessers) {
+                guesser.setAddressNode(aNode);
+                for (Way way : index.getStreets(aNode.getCoor(), guesser.getMaxDistance())) {
+                    way.accept(guesser);
+                }
+                addGuess(guesses, aNode, guesser);
+            }
 
-                    String guessedVal = guesser.getCurrentValue();
-                    if (guessedVal != null) {
-                        aNode.setGuessedValue(guesser.getTag(), guessedVal, guesser.getSourceNode());
-                    }
+            // Run node-related guessers
+            for (GuessedValueHandler guesser : nodeGuessers) {
+                guesser.setAddressNode(aNode);
+                for (Node node : index.getNodes(aNode.getCoor(), guesser.getMaxDistance())) {
+                    node.accept(guesser);
                 }
+                addGuess(guesses, aNode, guesser);
+            }
 
-                // Run node-related guessers
-                for (int i = 0; i < nodeGuessers.length; i++) {
-                    GuessedValueHandler guesser = nodeGuessers[i];
+            guesses.add(new Guess(aNode, null, null, null));
+        }
+        return guesses;
+    }
 
-                    guesser.setAddressNode(aNode);
+    private static void addGuess(List<Guess> guesses, OSMAddress aNode, GuessedValueHandler guesser) {
+        String guessedVal = guesser.getCurrentValue();
+        if (guessedVal != null) {
+            guesses.add(new Guess(aNode, guesser.getTag(), guessedVal, guesser.getSourceNode()));
+        }
+    }
 
-                    // visit osm data
-                    for (Node node : ds.getNodes()) {
-                        if (canceled) {
-                            break;
-                        }
-                        node.accept(guesser);
-                    }
+    private static GuessedValueHandler[] createWayGuessers() {
+        return new GuessedValueHandler[]{new GuessStreetValueHandler(TagConstants.ADDR_STREET_TAG)};
+    }
 
-                    String guessedVal = guesser.getCurrentValue();
-                    if (guessedVal != null) {
-                        aNode.setGuessedValue(guesser.getTag(), guessedVal, guesser.getSourceNode());
-                    }
-                }
+    private static GuessedValueHandler[] createNodeGuessers() {
+        return new GuessedValueHandler[]{
+                new GuessedValueHandler(TagConstants.ADDR_POSTCODE_TAG, 500.0),
+                new GuessedValueHandler(TagConstants.ADDR_CITY_TAG, 5000.0),
+                new GuessedValueHandler(TagConstants.ADDR_STATE_TAG, 5000.0),
+                new GuessedValueHandler(TagConstants.ADDR_COUNTRY_TAG, 5000.0),
+                new GuessedValueHandler(TagConstants.ADDR_CITY_TAG, 2000.0)
+        };
+    }
 
-                // report progress
-                progressMonitor.worked(1);
-            }
-        } finally {
-            isRunning = false;
-            fireFinished();
+    /**
+     * A guessed value found by a worker, waiting to be set on its address.
+     */
+    private static class Guess {
+        final OSMAddress address;
+        final String tag;
+        final String value;
+        final OsmPrimitive source;
+
+        Guess(OSMAddress address, String tag, String value, OsmPrimitive source) {
+            this.address = address;
+            this.tag = tag;
+            this.value = value;
+            this.source = source;
         }
     }
 
+    private static final class PoolHolder {
+        static final ForkJoinPool POOL = Utils.newForkJoinPool(
+                "fixAddresses.guess.numberOfThreads", "fixaddresses-guess-%d", Thread.NORM_PRIORITY);
+    }
+
     private static class GuessStreetValueHandler extends GuessedValueHandler {
         GuessStreetValueHandler(String tag) {
             this(tag, null);
@@ -0,0 +1,114 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.fixAddresses;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.QuadBuckets;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.tools.CheckParameterUtil;
+
+/**
+ * Spatial index of the primitives which may serve as source of a guessed address value.
+ *
+ * The index is built once per guessing run from a snapshot of the data set and holds
+ * named streets supporting house numbers and nodes carrying one of the guessed tags.
+ * Queries return the candidates whose bounding box lies within a given distance of a
+ * coordinate, so {@link GuessedValueHandler} only has to visit the nearby primitives.
+ */
+public class GuessCandidateIndex {
+    /** Lower bound of the length of one degree latitude in meters, so search boxes are never too small. */
+    private static final double METERS_PER_DEGREE = 110000.0;
+
+    private final QuadBuckets<Way> streets = new QuadBuckets<>();
+    private final QuadBuckets<Node> nodes = new QuadBuckets<>();
+
+    /**
+     * Instantiates a new candidate index.
+     *
+     * @param ds the data set to index
+     * @param nodeTags the tags a node must have (at least one of them) to become a candidate
+     */
+    public GuessCandidateIndex(DataSet ds, Collection<String> nodeTags) {
+        CheckParameterUtil.ensureParameterNotNull(ds, "ds");
+        CheckParameterUtil.ensureParameterNotNull(nodeTags, "nodeTags");
+
+        ds.getReadLock().lock();
+        try {
+            for (Way w : ds.getWays()) {
+                if (w.isUsable() && TagUtils.isStreetSupportingHousenumbers(w) && TagUtils.getNameValue(w) != null) {
+                    streets.add(w);
+                }
+            }
+
+            for (Node n : ds.getNodes()) {
+                if (!n.isUsable() || !n.isLatLonKnown()) continue;
+
+                for (String tag : nodeTags) {
+                    if (n.hasKey(tag)) {
+                        nodes.add(n);
+                        break;
+                    }
+                }
+            }
+        } finally {
+            ds.getReadLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the streets which may be closer than the given distance to a coordinate.
+     *
+     * @param coor the coordinate
+     * @param maxDist the maximum distance in meters
+     * @return the candidate streets
+     */
+    public List<Way> getStreets(LatLon coor, double maxDist) {
+        if (coor == null) return Collections.emptyList();
+
+        return streets.search(searchBox(coor, maxDist));
+    }
+
+    /**
+     * Gets the nodes which may be closer than the given distance to a coordinate.
+     *
+     * @param coor the coordinate
+     * @param maxDist the maximum distance in meters
+     * @return the candidate nodes
+     */
+    public List<Node> getNodes(LatLon coor, double maxDist) {
+        if (coor == null) return Collections.emptyList();
+
+        return nodes.search(searchBox(coor, maxDist));
+    }
+
+    /**
+     * Gets the number of indexed streets.
+     *
+     * @return the number of streets
+     */
+    public int getNumberOfStreets() {
+        return streets.size();
+    }
+
+    /**
+     * Gets the number of indexed nodes.
+     *
+     * @return the number of nodes
+     */
+    public int getNumberOfNodes() {
+        return nodes.size();
+    }
+
+    private static BBox searchBox(LatLon coor, double maxDist) {
+        double dLat = maxDist / METERS_PER_DEGREE;
+        double dLon = dLat / Math.max(Math.cos(Math.toRadians(coor.lat())), 0.01);
+
+        return new BBox(coor.lon() - dLon, coor.lat() - dLat, coor.lon() + dLon, coor.lat() + dLat);
+    }
+}
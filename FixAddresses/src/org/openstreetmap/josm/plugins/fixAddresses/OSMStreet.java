@@ -7,6 +7,7 @@ import java.util.List;
 
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
 
 /**
  * This class is the container for all street segments with the same name. Every street
@@ -38,6 +39,20 @@ public class OSMStreet extends OSMEntityBase {
         Collections.sort(children);
     }
 
+    /**
+     * Removes the segment of the given way from the street node. If the street node
+     * was created from this way, it switches to the way of the first remaining segment.
+     * @param way the way of the segment to remove
+     */
+    public void removeStreetSegment(Way way) {
+        if (children == null) return;
+
+        children.removeIf(seg -> seg.getOsmObject() == way);
+        if (getOsmObject() == way && !children.isEmpty()) {
+            setOsmObject(children.get(0).getOsmObject());
+        }
+    }
+
     /**
      * Lazy creation of children list.
      */
@@ -54,7 +69,20 @@ public class OSMStreet extends OSMEntityBase {
      */
     public void addAddress(OSMAddress aNode) {
         lazyCreateAddresses();
-        addresses.add(aNode);
+        if (!addresses.contains(aNode)) {
+            addresses.add(aNode);
+        }
+    }
+
+    /**
+     * Removes an associated address from the street.
+     *
+     * @param aNode the address node to remove
+     */
+    public void removeAddress(OSMAddress aNode) {
+        if (addresses != null) {
+            addresses.remove(aNode);
+        }
     }
 
     /**
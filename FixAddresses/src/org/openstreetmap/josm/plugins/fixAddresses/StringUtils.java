@@ -23,6 +23,35 @@ public final class StringUtils {
         return txt == null || txt.isEmpty();
     }
 
+    /**
+     * Normalizes a street name for lookups: Leading and trailing white space is
+     * removed and inner white space sequences are collapsed to a single blank.
+     *
+     * @param name
+     *            The street name
+     * @return The normalized name or an empty string, if name is null
+     */
+    public static String normalizeStreetName(String name) {
+        if (name == null)
+            return "";
+
+        StringBuilder sb = new StringBuilder(name.length());
+        boolean blank = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c)) {
+                blank = sb.length() > 0;
+            } else {
+                if (blank) {
+                    sb.append(' ');
+                    blank = false;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
     /**
      * Gets the length of the longest common substring of a and b
      *
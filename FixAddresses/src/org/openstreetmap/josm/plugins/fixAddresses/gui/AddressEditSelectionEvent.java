@@ -8,6 +8,7 @@ import java.util.List;
 import javax.swing.JTable;
 
 import org.openstreetmap.josm.plugins.fixAddresses.AddressEditContainer;
+import org.openstreetmap.josm.plugins.fixAddresses.IOSMEntity;
 import org.openstreetmap.josm.plugins.fixAddresses.OSMAddress;
 import org.openstreetmap.josm.plugins.fixAddresses.OSMStreet;
 
@@ -79,18 +80,24 @@ public class AddressEditSelectionEvent extends ActionEvent {
      * @return the selected street of the street table
      */
     public OSMStreet getSelectedStreet() {
-        if (streetTable != null && addressContainer != null && addressContainer.getStreetList() != null) {
-            int selRows = streetTable.getSelectedRow();
-
-            if (selRows < 0 || selRows >= addressContainer.getNumberOfStreets()) {
-                return null;
-            }
-
-            return addressContainer.getStreetList().get(selRows);
+        if (streetTable != null && addressContainer != null) {
+            return (OSMStreet) getEntityOfRow(streetTable, streetTable.getSelectedRow());
         }
         return null;
     }
 
+    /**
+     * Gets the entity shown in a table row. The table models sort their own copy of the
+     * container data, so the rows have to be looked up in the model.
+     *
+     * @param table the table
+     * @param row the row of the table model
+     * @return the entity or null, if the row contains no entity
+     */
+    private static IOSMEntity getEntityOfRow(JTable table, int row) {
+        return ((AddressEditTableModel) table.getModel()).getEntityOfRow(row);
+    }
+
     /**
      * Checks for addresses.
      *
@@ -156,8 +163,9 @@ public class AddressEditSelectionEvent extends ActionEvent {
 
             unresolvedCache = new ArrayList<>();
             for (int i = 0; i < selRows.length; i++) {
-                if (selRows[i] >= 0 && selRows[i] < addressContainer.getNumberOfUnresolvedAddresses()) {
-                    unresolvedCache.add(addressContainer.getUnresolvedAddresses().get(selRows[i]));
+                IOSMEntity entity = getEntityOfRow(unresolvedAddressTable, selRows[i]);
+                if (entity != null) {
+                    unresolvedCache.add((OSMAddress) entity);
                 }
             }
             return unresolvedCache;
@@ -180,8 +188,9 @@ public class AddressEditSelectionEvent extends ActionEvent {
 
             incompleteCache = new ArrayList<>();
             for (int i = 0; i < selRows.length; i++) {
-                if (selRows[i] >= 0 && selRows[i] < addressContainer.getNumberOfIncompleteAddresses()) {
-                    incompleteCache.add(addressContainer.getIncompleteAddresses().get(selRows[i]));
+                IOSMEntity entity = getEntityOfRow(incompleteAddressTable, selRows[i]);
+                if (entity != null) {
+                    incompleteCache.add((OSMAddress) entity);
                 }
             }
             return incompleteCache;
@@ -3,7 +3,9 @@ package org.openstreetmap.josm.plugins.fixAddresses.gui;
 
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 
 import javax.swing.JTable;
 import javax.swing.SwingUtilities;
@@ -26,6 +28,8 @@ public abstract class AddressEditTableModel extends DefaultTableModel implements
     protected AddressEditContainer addressContainer;
     protected int sortCol = 0;
     protected boolean isSortAsc = true;
+    /** The rows of the model, created on first use after the container changed. */
+    private List<? extends IOSMEntity> rows;
 
     public AddressEditTableModel(AddressEditContainer addressContainer) {
         super();
@@ -36,9 +40,13 @@ public abstract class AddressEditTableModel extends DefaultTableModel implements
     @Override
     public void containerChanged(AddressEditContainer container) {
         if (SwingUtilities.isEventDispatchThread()) {
+            invalidateRows();
             fireTableDataChanged(); // update model
         } else {
-            SwingUtilities.invokeLater(() -> fireTableDataChanged());
+            SwingUtilities.invokeLater(() -> {
+                invalidateRows();
+                fireTableDataChanged();
+            });
         }
     }
 
@@ -50,6 +58,42 @@ public abstract class AddressEditTableModel extends DefaultTableModel implements
         } // else we don't do anything
     }
 
+    /**
+     * Creates the rows of the model from the container data. The container keeps its lists in
+     * their natural order to update them incrementally, so the rows have to be a copy which
+     * is sorted by the column chosen by the user.
+     *
+     * @return the rows of the model
+     */
+    protected abstract List<? extends IOSMEntity> createRows();
+
+    /**
+     * Gets the rows of the model.
+     *
+     * @return the rows of the model
+     */
+    protected List<? extends IOSMEntity> getRows() {
+        if (addressContainer == null) {
+            return Collections.emptyList();
+        }
+        if (rows == null) {
+            rows = createRows();
+        }
+        return rows;
+    }
+
+    /**
+     * Drops the rows of the model, so that they are created again from the container data.
+     */
+    protected void invalidateRows() {
+        rows = null;
+    }
+
+    @Override
+    public int getRowCount() {
+        return getRows().size();
+    }
+
     /**
      * Gets the node entity for the given row or null; if row contains no entity.
      *
@@ -57,7 +101,13 @@ public abstract class AddressEditTableModel extends DefaultTableModel implements
      *            The row to get the entity object for.
      * @return the node entity for the given row or null; if row contains no entity
      */
-    public abstract IOSMEntity getEntityOfRow(int row);
+    public IOSMEntity getEntityOfRow(int row) {
+        List<? extends IOSMEntity> entities = getRows();
+        if (row < 0 || row >= entities.size()) {
+            return null;
+        }
+        return entities.get(row);
+    }
 
     /**
      * Gets the row for the given node entity or -1; if the model does not contain the entity.
@@ -66,7 +116,9 @@ public abstract class AddressEditTableModel extends DefaultTableModel implements
      *            The entity to get the row for.
      * @return the row for the given node entity or -1; if the model does not contain the entity
      */
-    public abstract int getRowOfEntity(IOSMEntity entity);
+    public int getRowOfEntity(IOSMEntity entity) {
+        return getRows().indexOf(entity);
+    }
 
     /**
      * Sorts the model data by the given column.
@@ -3,6 +3,7 @@ package org.openstreetmap.josm.plugins.fixAddresses.gui;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
+import java.util.Collections;
 import java.util.LinkedList;
 
 import javax.swing.JTable;
@@ -89,7 +90,7 @@ public class IncompleteAddressesDialog extends ToggleDialog implements DataSetLi
 
     @Override
     public void dataChanged(DataChangedEvent event) {
-        container.invalidate();
+        container.dataChanged(event);
     }
 
     @Override
@@ -104,27 +105,27 @@ public class IncompleteAddressesDialog extends ToggleDialog implements DataSetLi
 
     @Override
     public void primitivesAdded(PrimitivesAddedEvent event) {
-        container.invalidate();
+        container.primitivesAdded(event);
     }
 
     @Override
     public void primitivesRemoved(PrimitivesRemovedEvent event) {
-        container.invalidate();
+        container.primitivesRemoved(event);
     }
 
     @Override
     public void relationMembersChanged(RelationMembersChangedEvent event) {
-        container.invalidate();
+        container.relationMembersChanged(event);
     }
 
     @Override
     public void tagsChanged(TagsChangedEvent event) {
-        container.invalidate();
+        container.tagsChanged(event);
     }
 
     @Override
     public void wayNodesChanged(WayNodesChangedEvent event) {
-        container.invalidate();
+        container.wayNodesChanged(event);
     }
 
     @Override
@@ -151,8 +152,8 @@ public class IncompleteAddressesDialog extends ToggleDialog implements DataSetLi
 
     @Override
     public void entityChanged(IOSMEntity node) {
-        if (SwingUtilities.isEventDispatchThread()) {
-            container.invalidate();
+        if (SwingUtilities.isEventDispatchThread() && node != null && node.getOsmObject() != null) {
+            container.update(Collections.singletonList(node.getOsmObject()));
         }
     }
 }
@@ -4,10 +4,10 @@ package org.openstreetmap.josm.plugins.fixAddresses.gui;
 import static org.openstreetmap.josm.tools.I18n.tr;
 import static org.openstreetmap.josm.tools.I18n.trc;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.openstreetmap.josm.plugins.fixAddresses.AddressEditContainer;
-import org.openstreetmap.josm.plugins.fixAddresses.IOSMEntity;
 import org.openstreetmap.josm.plugins.fixAddresses.OSMAddress;
 
 /**
@@ -24,6 +24,8 @@ public class IncompleteAddressesTableModel extends AddressEditTableModel {
     private static final Class<?>[] COLUMN_CLASSES = new Class<?>[] {
         String.class, String.class, String.class, String.class, String.class, String.class};
 
+    private IncompleteAddressModelSorter sorter;
+
 
     /**
      * Instantiates a new incomplete addresses table model.
@@ -44,14 +46,6 @@ public class IncompleteAddressesTableModel extends AddressEditTableModel {
         return COLUMN_NAMES[column];
     }
 
-    @Override
-    public int getRowCount() {
-        if (addressContainer == null || addressContainer.getIncompleteAddresses() == null) {
-            return 0;
-        }
-        return addressContainer.getNumberOfIncompleteAddresses();
-    }
-
     @Override
     public Object getValueAt(int row, int column) {
         OSMAddress aNode = (OSMAddress) getEntityOfRow(row);
@@ -88,31 +82,18 @@ public class IncompleteAddressesTableModel extends AddressEditTableModel {
     }
 
     @Override
-    public IOSMEntity getEntityOfRow(int row) {
-        if (addressContainer == null || addressContainer.getIncompleteAddresses() == null) {
-            return null;
-        }
-        if (row < 0 || row >= addressContainer.getNumberOfIncompleteAddresses()) {
-            return null;
-        }
-        return addressContainer.getIncompleteAddresses().get(row);
-    }
-
-    @Override
-    public int getRowOfEntity(IOSMEntity entity) {
-        if (addressContainer == null || addressContainer.getIncompleteAddresses() == null) {
-            return -1;
+    protected List<OSMAddress> createRows() {
+        List<OSMAddress> addresses = new ArrayList<>(addressContainer.getIncompleteAddresses());
+        if (sorter != null) {
+            addresses.sort(sorter);
         }
-
-        return addressContainer.getIncompleteAddresses().indexOf(entity);
+        return addresses;
     }
 
     @Override
     protected void sortByColumn(int column, boolean ascending) {
-        if (addressContainer.getNumberOfIncompleteAddresses() == 0) return;
-
-        Collections.sort(addressContainer.getIncompleteAddresses(),
-                new IncompleteAddressModelSorter(column, ascending));
+        sorter = new IncompleteAddressModelSorter(column, ascending);
+        invalidateRows();
     }
 
     /**
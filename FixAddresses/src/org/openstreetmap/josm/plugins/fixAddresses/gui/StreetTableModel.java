@@ -3,10 +3,10 @@ package org.openstreetmap.josm.plugins.fixAddresses.gui;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.openstreetmap.josm.plugins.fixAddresses.AddressEditContainer;
-import org.openstreetmap.josm.plugins.fixAddresses.IOSMEntity;
 import org.openstreetmap.josm.plugins.fixAddresses.OSMStreet;
 
 /**
@@ -18,6 +18,8 @@ public class StreetTableModel extends AddressEditTableModel {
     private static final String[] COLUMN_NAMES = new String[]{tr("Type"), tr("Name"), tr("Addresses")};
     private static final Class<?>[] COLUMN_CLASSES = new Class<?>[]{String.class, String.class, Integer.class};
 
+    private StreetModelSorter sorter;
+
     public StreetTableModel(AddressEditContainer addressContainer) {
         super(addressContainer);
     }
@@ -37,14 +39,6 @@ public class StreetTableModel extends AddressEditTableModel {
         return COLUMN_CLASSES[columnIndex];
     }
 
-    @Override
-    public int getRowCount() {
-        if (addressContainer == null || addressContainer.getStreetList() == null) {
-            return 0;
-        }
-        return addressContainer.getNumberOfStreets();
-    }
-
     @Override
     public Object getValueAt(int row, int column) {
         OSMStreet sNode = (OSMStreet) getEntityOfRow(row);
@@ -77,28 +71,18 @@ public class StreetTableModel extends AddressEditTableModel {
     }
 
     @Override
-    public IOSMEntity getEntityOfRow(int row) {
-        if (addressContainer == null || addressContainer.getStreetList() == null) {
-            return null;
-        }
-        if (row < 0 || row >= addressContainer.getNumberOfStreets()) {
-            return null;
-        }
-        return addressContainer.getStreetList().get(row);
-    }
-
-    @Override
-    public int getRowOfEntity(IOSMEntity entity) {
-        if (addressContainer == null || addressContainer.getStreetList() == null) {
-            return -1;
+    protected List<OSMStreet> createRows() {
+        List<OSMStreet> streets = new ArrayList<>(addressContainer.getStreetList());
+        if (sorter != null) {
+            streets.sort(sorter);
         }
-
-        return addressContainer.getStreetList().indexOf(entity);
+        return streets;
     }
 
     @Override
     protected void sortByColumn(int column, boolean ascending) {
-        Collections.sort(addressContainer.getStreetList(), new StreetModelSorter(column, ascending));
+        sorter = new StreetModelSorter(column, ascending);
+        invalidateRows();
     }
 
     /**
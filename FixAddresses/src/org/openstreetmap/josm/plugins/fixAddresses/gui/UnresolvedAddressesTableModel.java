@@ -4,10 +4,10 @@ package org.openstreetmap.josm.plugins.fixAddresses.gui;
 import static org.openstreetmap.josm.tools.I18n.tr;
 import static org.openstreetmap.josm.tools.I18n.trc;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.openstreetmap.josm.plugins.fixAddresses.AddressEditContainer;
-import org.openstreetmap.josm.plugins.fixAddresses.IOSMEntity;
 import org.openstreetmap.josm.plugins.fixAddresses.OSMAddress;
 
 /**
@@ -31,6 +31,8 @@ public class UnresolvedAddressesTableModel extends AddressEditTableModel {
      */
     private static final long serialVersionUID = 424009321818130586L;
 
+    private UnresolvedAddressModelSorter sorter;
+
     public UnresolvedAddressesTableModel(AddressEditContainer addressContainer) {
         super(addressContainer);
     }
@@ -45,15 +47,6 @@ public class UnresolvedAddressesTableModel extends AddressEditTableModel {
         return COLUMN_NAMES[column];
     }
 
-    @Override
-    public int getRowCount() {
-        if (addressContainer == null
-                || addressContainer.getUnresolvedAddresses() == null) {
-            return 0;
-        }
-        return addressContainer.getNumberOfUnresolvedAddresses();
-    }
-
     @Override
     public Object getValueAt(int row, int column) {
         OSMAddress aNode = (OSMAddress) getEntityOfRow(row);
@@ -90,34 +83,18 @@ public class UnresolvedAddressesTableModel extends AddressEditTableModel {
     }
 
     @Override
-    public IOSMEntity getEntityOfRow(int row) {
-        if (addressContainer == null
-                || addressContainer.getUnresolvedAddresses() == null) {
-            return null;
-        }
-        if (row < 0 || row >= addressContainer.getNumberOfUnresolvedAddresses()) {
-            return null;
-        }
-        return addressContainer.getUnresolvedAddresses().get(row);
-    }
-
-    @Override
-    public int getRowOfEntity(IOSMEntity entity) {
-        if (addressContainer == null
-                || addressContainer.getUnresolvedAddresses() == null) {
-            return -1;
+    protected List<OSMAddress> createRows() {
+        List<OSMAddress> addresses = new ArrayList<>(addressContainer.getUnresolvedAddresses());
+        if (sorter != null) {
+            addresses.sort(sorter);
         }
-
-        return addressContainer.getUnresolvedAddresses().indexOf(entity);
+        return addresses;
     }
 
     @Override
     protected void sortByColumn(int column, boolean ascending) {
-        if (addressContainer.getNumberOfUnresolvedAddresses() == 0)
-            return;
-
-        Collections.sort(addressContainer.getUnresolvedAddresses(),
-                new UnresolvedAddressModelSorter(column, ascending));
+        sorter = new UnresolvedAddressModelSorter(column, ascending);
+        invalidateRows();
     }
 
     /**
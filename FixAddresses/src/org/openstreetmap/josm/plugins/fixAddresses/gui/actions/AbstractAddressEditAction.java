@@ -171,10 +171,11 @@ public abstract class AbstractAddressEditAction extends JosmAction implements IA
         }
         // execute the commands
         if (!commands.isEmpty()) {
-            UndoRedoHandler.getInstance().add(new SequenceCommand(txName, commands));
+            Command cmd = new SequenceCommand(txName, commands);
+            UndoRedoHandler.getInstance().add(cmd);
             commands.clear();
             if (container != null) {
-                container.invalidate();
+                container.update(cmd.getParticipatingPrimitives());
             }
         }
     }
@@ -3,6 +3,8 @@ package org.openstreetmap.josm.plugins.fixAddresses.gui.actions;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
+import java.util.ArrayList;
+
 import org.openstreetmap.josm.plugins.fixAddresses.AddressEditContainer;
 import org.openstreetmap.josm.plugins.fixAddresses.OSMStreet;
 import org.openstreetmap.josm.plugins.fixAddresses.gui.AddressEditSelectionEvent;
@@ -26,7 +28,8 @@ public class ConvertAllToRelationAction extends ConvertToRelationAction {
     @Override
     public void addressEditActionPerformed(AddressEditContainer container) {
         if (container != null) {
-            for (OSMStreet street : container.getStreetList()) {
+            // the street list is updated while the relations are created
+            for (OSMStreet street : new ArrayList<>(container.getStreetList())) {
                 createRelationForStreet(street);
             }
         }
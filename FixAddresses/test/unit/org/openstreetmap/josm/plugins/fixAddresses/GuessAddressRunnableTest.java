@@ -0,0 +1,231 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.fixAddresses;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+import org.openstreetmap.josm.testutils.annotations.Main;
+import org.openstreetmap.josm.testutils.annotations.Projection;
+
+/**
+ * Compares {@link GuessAddressRunnable} and its {@link GuessCandidateIndex} with the sequential
+ * scan over the whole data set they replaced.
+ */
+@BasicPreferences
+@Main
+@Projection
+class GuessAddressRunnableTest {
+    private static final List<String> TAGS = Arrays.asList(TagConstants.ADDR_STREET_TAG, TagConstants.ADDR_POSTCODE_TAG,
+            TagConstants.ADDR_CITY_TAG, TagConstants.ADDR_STATE_TAG, TagConstants.ADDR_COUNTRY_TAG);
+
+    private DataSet ds;
+    private final List<Node> addresses = new ArrayList<>();
+
+    /**
+     * The previous street guesser, visiting every way of the data set.
+     */
+    private static class SequentialStreetHandler extends GuessedValueHandler {
+        SequentialStreetHandler() {
+            super(TagConstants.ADDR_STREET_TAG, 200.0);
+        }
+
+        @Override
+        public void visit(Node n) {
+            // do nothing
+        }
+
+        @Override
+        public void visit(Way w) {
+            if (TagUtils.isStreetSupportingHousenumbers(w)) {
+                String newVal = TagUtils.getNameValue(w);
+                if (newVal != null) {
+                    double dist = OsmUtils.getMinimumDistanceToWay(getAddressNode().getCoor(), w);
+                    if (dist < minDist && dist < getMaxDistance()) {
+                        minDist = dist;
+                        currentValue = newVal;
+                        srcNode = w;
+                    }
+                }
+            }
+        }
+    }
+
+    private static GuessedValueHandler[] nodeGuessers() {
+        return new GuessedValueHandler[]{
+                new GuessedValueHandler(TagConstants.ADDR_POSTCODE_TAG, 500.0),
+                new GuessedValueHandler(TagConstants.ADDR_CITY_TAG, 5000.0),
+                new GuessedValueHandler(TagConstants.ADDR_STATE_TAG, 5000.0),
+                new GuessedValueHandler(TagConstants.ADDR_COUNTRY_TAG, 5000.0),
+                new GuessedValueHandler(TagConstants.ADDR_CITY_TAG, 2000.0)
+        };
+    }
+
+    /**
+     * The previous guessing loop, running all guessers over all ways and nodes for each address.
+     */
+    private void guessSequentially(List<OSMAddress> list) {
+        GuessedValueHandler[] wayGuessers = {new SequentialStreetHandler()};
+        GuessedValueHandler[] nodeGuessers = nodeGuessers();
+        for (OSMAddress aNode : list) {
+            if (!aNode.needsGuess()) {
+                continue;
+            }
+            for (GuessedValueHandler guesser : wayGuessers) {
+                guesser.setAddressNode(aNode);
+                for (Way way : ds.getWays()) {
+                    way.accept(guesser);
+                }
+                if (guesser.getCurrentValue() != null) {
+                    aNode.setGuessedValue(guesser.getTag(), guesser.getCurrentValue(), guesser.getSourceNode());
+                }
+            }
+            for (GuessedValueHandler guesser : nodeGuessers) {
+                guesser.setAddressNode(aNode);
+                for (Node node : ds.getNodes()) {
+                    node.accept(guesser);
+                }
+                if (guesser.getCurrentValue() != null) {
+                    aNode.setGuessedValue(guesser.getTag(), guesser.getCurrentValue(), guesser.getSourceNode());
+                }
+            }
+        }
+    }
+
+    private Node node(double lat, double lon) {
+        Node n = new Node(new LatLon(lat, lon));
+        ds.addPrimitive(n);
+        return n;
+    }
+
+    private List<OSMAddress> wrap() {
+        List<OSMAddress> list = new ArrayList<>();
+        for (Node n : addresses) {
+            list.add(new OSMAddress(n));
+        }
+        return list;
+    }
+
+    /**
+     * Sets up about 10x10 km with streets, a few of them unnamed or without highway tag, nodes
+     * carrying the guessed tags and addresses missing some of them.
+     */
+    @BeforeEach
+    void setUp() throws ReflectiveOperationException {
+        TestUtils.setPrivateStaticField(FixAddressesPlugin.class, "preferences",
+                new FixAddressesPreferences.Factory().createPreferenceSetting());
+        Random random = new Random(11);
+        ds = new DataSet();
+        for (int i = 0; i < 60; i++) {
+            Way w = new Way();
+            double lat = 50 + random.nextDouble() * 0.1;
+            double lon = 8 + random.nextDouble() * 0.15;
+            int count = 2 + random.nextInt(3);
+            for (int j = 0; j < count; j++) {
+                w.addNode(node(lat, lon));
+                lat += (random.nextDouble() - 0.5) * 0.01;
+                lon += (random.nextDouble() - 0.5) * 0.015;
+            }
+            if (i % 10 != 0) {
+                w.put("highway", "residential");
+            }
+            if (i % 7 != 0) {
+                w.put("name", "Street " + i);
+            }
+            ds.addPrimitive(w);
+        }
+        for (int i = 0; i < 80; i++) {
+            Node n = node(50 + random.nextDouble() * 0.1, 8 + random.nextDouble() * 0.15);
+            String tag = TAGS.get(1 + i % 4);
+            n.put(tag, tag + " " + i);
+        }
+        for (int i = 0; i < 300; i++) {
+            Node n = node(50 + random.nextDouble() * 0.1, 8 + random.nextDouble() * 0.15);
+            n.put("addr:housenumber", Integer.toString(i));
+            if (i % 3 == 0) {
+                n.put(TagConstants.ADDR_STREET_TAG, "Street " + (i % 60));
+            }
+            if (i % 5 == 0) {
+                n.put(TagConstants.ADDR_POSTCODE_TAG, "12345");
+            }
+            addresses.add(n);
+        }
+        MainApplication.getLayerManager().addLayer(new OsmDataLayer(ds, "GuessAddressRunnableTest", null));
+    }
+
+    /**
+     * The runnable guesses the same values from the same primitives as the sequential scan.
+     */
+    @Test
+    void testSameGuesses() {
+        List<OSMAddress> expected = wrap();
+        guessSequentially(expected);
+
+        List<OSMAddress> actual = wrap();
+        GuessAddressRunnable runnable = new GuessAddressRunnable(actual, "test", NullProgressMonitor.INSTANCE);
+        runnable.run();
+        assertFalse(runnable.isRunning());
+
+        int guesses = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            for (String tag : TAGS) {
+                String message = addresses.get(i) + " " + tag;
+                assertEquals(expected.get(i).getGuessedValue(tag), actual.get(i).getGuessedValue(tag), message);
+                assertEquals(expected.get(i).getGuessedObject(tag), actual.get(i).getGuessedObject(tag), message);
+                if (actual.get(i).getGuessedValue(tag) != null) {
+                    guesses++;
+                }
+            }
+        }
+        // the fixture has both addresses with and without guesses
+        assertTrue(guesses > addresses.size());
+        assertTrue(actual.stream().anyMatch(a -> a.getGuessedValue(TagConstants.ADDR_STREET_TAG) == null));
+    }
+
+    /**
+     * The index returns every candidate within the maximum distance of a coordinate.
+     */
+    @Test
+    void testIndexCandidates() {
+        List<String> nodeTags = TAGS.subList(1, TAGS.size());
+        GuessCandidateIndex index = new GuessCandidateIndex(ds, nodeTags);
+        assertEquals(ds.getWays().stream().filter(w -> w.hasKey("highway") && w.hasKey("name")).count(),
+                index.getNumberOfStreets());
+        // the tagged nodes and the addresses with a postcode
+        assertEquals(ds.getNodes().stream().filter(n -> nodeTags.stream().anyMatch(n::hasKey)).count(),
+                index.getNumberOfNodes());
+
+        for (Node a : addresses) {
+            for (double maxDist : new double[] {200.0, 500.0, 2000.0}) {
+                List<Way> streets = index.getStreets(a.getCoor(), maxDist);
+                for (Way w : ds.getWays()) {
+                    if (w.hasKey("highway") && w.hasKey("name") && OsmUtils.getMinimumDistanceToWay(a.getCoor(), w) < maxDist) {
+                        assertTrue(streets.contains(w), a + " " + w);
+                    }
+                }
+                List<Node> nodes = index.getNodes(a.getCoor(), maxDist);
+                for (Node n : ds.getNodes()) {
+                    if (n.hasKey(TagConstants.ADDR_CITY_TAG) && n.greatCircleDistance(a.getCoor()) < maxDist) {
+                        assertTrue(nodes.contains(n), a + " " + n);
+                    }
+                }
+            }
+        }
+    }
+}
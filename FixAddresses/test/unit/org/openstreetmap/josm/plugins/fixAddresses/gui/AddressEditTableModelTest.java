@@ -0,0 +1,183 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.fixAddresses.gui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.plugins.fixAddresses.AddressEditContainer;
+import org.openstreetmap.josm.plugins.fixAddresses.FixAddressesPlugin;
+import org.openstreetmap.josm.plugins.fixAddresses.FixAddressesPreferences;
+import org.openstreetmap.josm.plugins.fixAddresses.IOSMEntity;
+import org.openstreetmap.josm.plugins.fixAddresses.OSMAddress;
+import org.openstreetmap.josm.plugins.fixAddresses.OSMStreet;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Unit test of the table models sorting the data of an {@link AddressEditContainer}, which
+ * is updated incrementally on data set changes.
+ */
+@BasicPreferences
+class AddressEditTableModelTest {
+
+    private DataSet ds;
+    private AddressEditContainer container;
+    private final List<Way> streets = new ArrayList<>();
+    private final List<Node> addresses = new ArrayList<>();
+
+    private Way street(String name, double lat) {
+        Node a = new Node(new LatLon(lat, 8.0));
+        Node b = new Node(new LatLon(lat, 8.01));
+        ds.addPrimitive(a);
+        ds.addPrimitive(b);
+        Way w = new Way();
+        w.addNode(a);
+        w.addNode(b);
+        w.put("highway", "residential");
+        w.put("name", name);
+        ds.addPrimitive(w);
+        streets.add(w);
+        return w;
+    }
+
+    private Node address(String street, String number, double lat) {
+        Node n = new Node(new LatLon(lat, 8.005));
+        n.put("addr:street", street);
+        n.put("addr:housenumber", number);
+        n.put("addr:city", "Springfield");
+        ds.addPrimitive(n);
+        addresses.add(n);
+        return n;
+    }
+
+    @BeforeEach
+    void setUp() throws ReflectiveOperationException {
+        TestUtils.setPrivateStaticField(FixAddressesPlugin.class, "preferences",
+                new FixAddressesPreferences.Factory().createPreferenceSetting());
+        ds = new DataSet();
+        street("Elm Street", 50.0);
+        street("Ash Lane", 50.001);
+        street("Birch Road", 50.002);
+        address("Elm Street", "1", 50.0001);
+        address("Elm Street", "3", 50.0002);
+        address("Ash Lane", "2", 50.0011);
+        address("Oak Avenue", "7", 50.0031);
+        address("Oak Avenue", "5", 50.0032);
+        address("Maple Way", "9", 50.0041);
+        address("Maple Way", "11", 50.0042);
+
+        container = new AddressEditContainer();
+        container.attachToDataSet(ds.allPrimitives());
+        ds.addDataSetListener(container);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ds.removeDataSetListener(container);
+    }
+
+    private static List<String> names(List<OSMStreet> streets) {
+        return streets.stream().map(OSMStreet::getName).collect(Collectors.toList());
+    }
+
+    private static <T extends IOSMEntity> void assertSorted(List<T> list, Comparator<? super T> comparator) {
+        List<T> sorted = new ArrayList<>(list);
+        sorted.sort(comparator);
+        assertEquals(sorted, list);
+    }
+
+    private static <T extends IOSMEntity> void assertRows(AddressEditTableModel model, List<T> data,
+            Comparator<? super T> sorter) {
+        List<T> expected = new ArrayList<>(data);
+        expected.sort(sorter);
+        assertEquals(expected, model.getRows());
+        assertEquals(expected.size(), model.getRowCount());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(row, model.getRowOfEntity(model.getEntityOfRow(row)));
+        }
+    }
+
+    /**
+     * The container lists keep their natural order and match a container rebuilt from
+     * scratch, and the models show the container data sorted by their column.
+     */
+    private void assertConsistent(StreetTableModel streetModel, UnresolvedAddressesTableModel unresolvedModel,
+            IncompleteAddressesTableModel incompleteModel) {
+        // the models update their rows on the event dispatch thread
+        GuiHelper.runInEDTAndWait(() -> { });
+
+        assertSorted(container.getStreetList(), Comparator.naturalOrder());
+        assertSorted(container.getUnresolvedAddresses(), Comparator.naturalOrder());
+        assertSorted(container.getIncompleteAddresses(), Comparator.naturalOrder());
+
+        AddressEditContainer rebuilt = new AddressEditContainer();
+        rebuilt.attachToDataSet(ds.allPrimitives());
+        assertEquals(names(rebuilt.getStreetList()), names(container.getStreetList()));
+        assertEquals(rebuilt.getUnresolvedAddresses(), container.getUnresolvedAddresses());
+        assertEquals(rebuilt.getIncompleteAddresses(), container.getIncompleteAddresses());
+
+        assertRows(streetModel, container.getStreetList(), new StreetTableModel.StreetModelSorter(2, true));
+        assertRows(unresolvedModel, container.getUnresolvedAddresses(),
+                new UnresolvedAddressesTableModel.UnresolvedAddressModelSorter(1, false));
+        assertRows(incompleteModel, container.getIncompleteAddresses(),
+                new IncompleteAddressesTableModel.IncompleteAddressModelSorter(3, false));
+    }
+
+    /**
+     * Sorting a table by a column must not change the order of the container lists, which are
+     * searched with binary search when the data set changes.
+     */
+    @Test
+    void testSortAndUpdate() {
+        StreetTableModel streetModel = new StreetTableModel(container);
+        UnresolvedAddressesTableModel unresolvedModel = new UnresolvedAddressesTableModel(container);
+        IncompleteAddressesTableModel incompleteModel = new IncompleteAddressesTableModel(container);
+        assertEquals(Arrays.asList("Ash Lane", "Birch Road", "Elm Street"), names(container.getStreetList()));
+        assertEquals(4, container.getNumberOfUnresolvedAddresses());
+        assertFalse(container.getIncompleteAddresses().isEmpty());
+
+        streetModel.sortByColumn(2, true);
+        unresolvedModel.sortByColumn(1, false);
+        incompleteModel.sortByColumn(3, false);
+        assertConsistent(streetModel, unresolvedModel, incompleteModel);
+
+        // an unresolved address gets a known street
+        addresses.get(3).put("addr:street", "Birch Road");
+        assertConsistent(streetModel, unresolvedModel, incompleteModel);
+        assertEquals(3, container.getNumberOfUnresolvedAddresses());
+
+        // a street is renamed, its addresses wait for the old name
+        streets.get(0).put("name", "Zebra Road");
+        assertConsistent(streetModel, unresolvedModel, incompleteModel);
+        assertEquals(Arrays.asList("Ash Lane", "Birch Road", "Zebra Road"), names(container.getStreetList()));
+
+        // several changes in one data changed event
+        ds.update(() -> {
+            addresses.get(5).put("addr:street", "Zebra Road");
+            addresses.get(0).put("addr:housenumber", "13");
+            ds.removePrimitive(addresses.get(2));
+        });
+        assertConsistent(streetModel, unresolvedModel, incompleteModel);
+
+        // sorting again keeps the container lists
+        List<OSMAddress> unresolved = new ArrayList<>(container.getUnresolvedAddresses());
+        unresolvedModel.sortByColumn(1, false);
+        streetModel.sortByColumn(2, true);
+        assertEquals(unresolved, container.getUnresolvedAddresses());
+        assertConsistent(streetModel, unresolvedModel, incompleteModel);
+    }
+}
@@ -7,7 +7,6 @@ import java.awt.Graphics2D;
 import java.awt.GraphicsEnvironment;
 import java.awt.event.ActionEvent;
 import java.awt.image.BufferedImage;
-import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
@@ -20,15 +19,16 @@ import javax.swing.ImageIcon;
 
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.geometry.Envelope2D;
-import org.geotools.image.ImageWorker;
 import org.geotools.referencing.CRS;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.TransformException;
 import org.openstreetmap.josm.actions.RenameLayerAction;
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.ProjectionBounds;
 import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
+import org.openstreetmap.josm.data.projection.Projection;
 import org.openstreetmap.josm.data.projection.ProjectionRegistry;
 import org.openstreetmap.josm.gui.ExtendedDialog;
 import org.openstreetmap.josm.gui.MainApplication;
@@ -36,6 +36,7 @@ import org.openstreetmap.josm.gui.MapView;
 import org.openstreetmap.josm.gui.dialogs.LayerListDialog;
 import org.openstreetmap.josm.gui.dialogs.LayerListPopup;
 import org.openstreetmap.josm.gui.layer.Layer;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Logging;
 
 /**
@@ -50,6 +51,9 @@ public class ImageLayer extends Layer {
 
     private BufferedImage image;
 
+    // renders GeoTIFF files tile by tile, instead of drawing 'image'
+    private TiledCoverageRenderer renderer;
+
     // coordinates of upper left corner
     private EastNorth upperLeft;
     // Angle of rotation of the image
@@ -83,6 +87,10 @@ public class ImageLayer extends Layer {
      */
     private BufferedImage createImage() throws IOException {
 
+        if (createRenderer(null)) {
+            return null;
+        }
+
         // geotools type for images and value coverages
         GridCoverage2D coverage;
         try {
@@ -148,29 +156,50 @@ public class ImageLayer extends Layer {
         angle = 0;
         bbox = coverage.getEnvelope2D();
 
-        RenderedImage img = coverage.getRenderedImage();
+        return PluginOperations.getBufferedImage(coverage.getRenderedImage());
+    }
+
+    /**
+     * create a renderer which reads and reprojects a GeoTIFF image tile by tile,
+     * if enabled by the preference 'plugins.importimage.tiled'.
+     *
+     * @param refSys if delivered, the image will be forced to use this crs
+     * @return {@code true} if the renderer has been created, {@code false} if the whole image has to be read
+     */
+    private boolean createRenderer(CoordinateReferenceSystem refSys) {
+        if (!Config.getPref().getBoolean("plugins.importimage.tiled", true) || !TiledCoverageRenderer.isSupported(imageFile)) {
+            return false;
+        }
+        TiledCoverageRenderer newRenderer;
         try {
-            BufferedImage bi = new ImageWorker(img).getBufferedImage();
-            BufferedImage dst = new BufferedImage(bi.getWidth(), bi.getHeight(), BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2d = dst.createGraphics();
-            try {
-                // Check image can be drawn correctly
-                g2d.drawImage(bi, 0, 0, null);
-            } finally {
-                g2d.dispose();
-            }
-            return bi;
-        } catch (ArrayIndexOutOfBoundsException e) {
-            Logging.debug(e);
-            // See #12108 - rescale to bytes in case of ComponentColorModel index error
-            return new ImageWorker(img).rescaleToBytes().getBufferedImage();
+            CoordinateReferenceSystem targetRefSys = CRS.decode(ProjectionRegistry.getProjection().toCode(), true);
+            newRenderer = new TiledCoverageRenderer(imageFile, refSys, targetRefSys, this::invalidate);
+        } catch (IOException | FactoryException | TransformException e) {
+            // no GeoTIFF, or no reference system: the image is read with its world and projection files
+            Logging.debug("ImportImagePlugin ImageLayer: Not rendering image tile by tile: {0}", e.getMessage());
+            Logging.trace(e);
+            return false;
+        }
+        Logging.debug("ImportImagePlugin ImageLayer: Rendering image tile by tile: {0}", newRenderer.getEnvelope());
+        if (renderer != null) {
+            renderer.dispose();
         }
+        renderer = newRenderer;
+        this.sourceRefSys = renderer.getSourceCrs();
+        this.image = null;
+
+        bbox = renderer.getEnvelope();
+        upperLeft = new EastNorth(bbox.x, bbox.y + bbox.height);
+        angle = 0;
+        return true;
     }
 
     @Override
     public void paint(Graphics2D g2, MapView mv, Bounds bounds) {
 
-        if (image != null && g2 != null) {
+        if (renderer != null && g2 != null) {
+            renderer.paint(g2, mv);
+        } else if (image != null && g2 != null) {
 
             // Position image at the right graphical place
             EastNorth center = mv.getCenter();
@@ -229,6 +258,22 @@ public class ImageLayer extends Layer {
         }
     }
 
+    @Override
+    public void projectionChanged(Projection oldValue, Projection newValue) {
+        super.projectionChanged(oldValue, newValue);
+        if (renderer != null && !createRenderer(sourceRefSys)) {
+            Logging.warn("ImportImagePlugin ImageLayer: Cannot reproject image " + imageFile);
+        }
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (renderer != null) {
+            renderer.dispose();
+        }
+        super.destroy();
+    }
+
     public Envelope2D getBbox() {
         return bbox;
     }
@@ -285,16 +330,44 @@ public class ImageLayer extends Layer {
         return imageFile;
     }
 
+    /**
+     * Returns the reprojected image, if the image is not rendered tile by tile.
+     * @return the reprojected image, or {@code null}
+     */
     public BufferedImage getImage() {
         return image;
     }
 
+    /**
+     * Returns the width of the image.
+     * @return the width of the original image if rendered tile by tile, of the reprojected image otherwise
+     */
+    public int getImageWidth() {
+        return renderer != null ? renderer.getWidth() : image.getWidth();
+    }
+
+    /**
+     * Returns the height of the image.
+     * @return the height of the original image if rendered tile by tile, of the reprojected image otherwise
+     */
+    public int getImageHeight() {
+        return renderer != null ? renderer.getHeight() : image.getHeight();
+    }
+
     /**
      * loads the image and reprojects it using a transformation
      * calculated by the new reference system.
      */
     void resample(CoordinateReferenceSystem refSys) throws IOException, FactoryException {
         Logging.debug("ImportImagePlugin ImageLayer: resample");
+        if (createRenderer(refSys)) {
+            zoomToBbox();
+            return;
+        }
+        if (renderer != null) {
+            renderer.dispose();
+            renderer = null;
+        }
         GridCoverage2D coverage = PluginOperations.createGridFromFile(this.imageFile, refSys, true);
         coverage = PluginOperations.reprojectCoverage(coverage, CRS.decode(ProjectionRegistry.getProjection().toCode()));
         this.bbox = coverage.getEnvelope2D();
@@ -304,7 +377,10 @@ public class ImageLayer extends Layer {
                 .getEnvelope2D().y
                 + coverage.getEnvelope2D().height);
         angle = 0;
+        zoomToBbox();
+    }
 
+    private void zoomToBbox() {
         // repaint and zoom to new bbox
         BoundingXYVisitor boundingXYVisitor = new BoundingXYVisitor();
         visitBoundingBox(boundingXYVisitor);
@@ -216,7 +216,7 @@ public class LayerPropertiesDialog extends JFrame {
             crsLabel.setText("Reference System");
             JLabel sizeValueLabel = new JLabel();
             sizeValueLabel.setBounds(new Rectangle(150, 105, 226, 16));
-            sizeValueLabel.setText(imageLayer.getImage().getHeight() + " x " + imageLayer.getImage().getWidth());
+            sizeValueLabel.setText(imageLayer.getImageHeight() + " x " + imageLayer.getImageWidth());
             JLabel sizeLabel = new JLabel();
             sizeLabel.setBounds(new Rectangle(15, 105, 121, 16));
             sizeLabel.setText("Image size");
@@ -1,8 +1,10 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.ImportImagePlugin;
 
+import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -18,11 +20,13 @@ import javax.imageio.ImageIO;
 
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.coverage.grid.GridGeometry2D;
 import org.geotools.coverage.processing.CoverageProcessor;
 import org.geotools.data.DataSourceException;
 import org.geotools.data.WorldFileReader;
 import org.geotools.gce.geotiff.GeoTiffReader;
 import org.geotools.geometry.Envelope2D;
+import org.geotools.image.ImageWorker;
 import org.geotools.referencing.CRS;
 import org.geotools.util.factory.Hints;
 import org.opengis.parameter.ParameterValueGroup;
@@ -83,6 +87,52 @@ public final class PluginOperations {
         return destination;
     }
 
+    /**
+     * Reprojects a GridCoverage to a given grid geometry in a given CRS.
+     * Only the part of the coverage inside of the grid geometry is resampled.
+     * @param coverage The coverage to reproject
+     * @param targetCrs The reference system to reproject to
+     * @param gridGeometry The grid geometry of the result, in {@code targetCrs}
+     * @return The reprojected coverage
+     */
+    public static GridCoverage2D reprojectCoverage(GridCoverage2D coverage,
+            CoordinateReferenceSystem targetCrs, GridGeometry2D gridGeometry) {
+
+        CoverageProcessor processor = new CoverageProcessor();
+        ParameterValueGroup resampleParams = processor.getOperation("Resample").getParameters();
+
+        // set parameters
+        resampleParams.parameter("Source").setValue(coverage);
+        resampleParams.parameter("CoordinateReferenceSystem").setValue(targetCrs);
+        resampleParams.parameter("GridGeometry").setValue(gridGeometry);
+
+        return (GridCoverage2D) processor.doOperation(resampleParams);
+    }
+
+    /**
+     * Converts the image of a coverage to a {@link BufferedImage} which can be drawn.
+     * @param img The image of the coverage
+     * @return The image which can be drawn
+     */
+    static BufferedImage getBufferedImage(RenderedImage img) {
+        try {
+            BufferedImage bi = new ImageWorker(img).getBufferedImage();
+            BufferedImage dst = new BufferedImage(bi.getWidth(), bi.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2d = dst.createGraphics();
+            try {
+                // Check image can be drawn correctly
+                g2d.drawImage(bi, 0, 0, null);
+            } finally {
+                g2d.dispose();
+            }
+            return bi;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            Logging.debug(e);
+            // See #12108 - rescale to bytes in case of ComponentColorModel index error
+            return new ImageWorker(img).rescaleToBytes().getBufferedImage();
+        }
+    }
+
     /**
      * Creates a {@link GridCoverage2D} from a given file.
      * @param file The file to read from
@@ -303,7 +353,18 @@ public final class PluginOperations {
      * @param refSys if delivered, the coverage will be forced to use this crs
      */
     public static GridCoverage2D readGeoTiff(File file, CoordinateReferenceSystem refSys) throws IOException {
-        GridCoverage2D coverage;
+        GeoTiffReader reader = createGeoTiffReader(file, refSys);
+
+        return reader.read(null);
+    }
+
+    /**
+     * Creates a reader for a GeoTIFF file, which reads the image data only when requested.
+     * The reader must be disposed after use.
+     *
+     * @param refSys if delivered, the coverage will be forced to use this crs
+     */
+    static GeoTiffReader createGeoTiffReader(File file, CoordinateReferenceSystem refSys) throws IOException {
         Hints hints = new Hints(Hints.FORCE_LONGITUDE_FIRST_AXIS_ORDER, true);
         if (refSys != null) {
             hints.put(Hints.DEFAULT_COORDINATE_REFERENCE_SYSTEM, refSys);
@@ -311,11 +372,7 @@ public final class PluginOperations {
         // don't use the EPSG-Factory because of wrong behaviour
         //hints.put(Hints.CRS_AUTHORITY_FACTORY, CRS.getAuthorityFactory(true));
 
-        GeoTiffReader reader = new GeoTiffReader(file, hints);
-
-        coverage = reader.read(null);
-
-        return coverage;
+        return new GeoTiffReader(file, hints);
     }
 
     /**
@@ -0,0 +1,402 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.ImportImagePlugin;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridEnvelope2D;
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.coverage.grid.io.AbstractGridFormat;
+import org.geotools.coverage.grid.io.OverviewPolicy;
+import org.geotools.gce.geotiff.GeoTiffReader;
+import org.geotools.geometry.Envelope2D;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.parameter.GeneralParameterValue;
+import org.opengis.parameter.ParameterValue;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.TransformException;
+import org.openstreetmap.josm.data.ProjectionBounds;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.gui.MapView;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Renders a GeoTIFF file tile by tile.
+ * <p>
+ * Instead of reading and reprojecting the whole image, only the tiles visible in the map view are read, from the
+ * overview which best matches the zoom level. Internally tiled files, like cloud optimized GeoTIFF, are read
+ * without decoding the rest of the image. Tiles are reprojected in the background and cached by zoom level.
+ */
+final class TiledCoverageRenderer {
+
+    /** Size of the rendered tiles, in pixels */
+    static final int TILE_SIZE = 256;
+
+    /** Number of coarser zoom levels searched for a tile to draw while a tile is loading */
+    private static final int MAX_FALLBACK_LEVELS = 4;
+
+    /** Marker of tiles without image data */
+    static final BufferedImage EMPTY = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+
+    private static final class ExecutorHolder {
+        static final ExecutorService EXECUTOR = Utils.newFixedThreadPool(getThreads(), "importimage-tile-%d", Thread.NORM_PRIORITY);
+    }
+
+    /**
+     * Position of a tile. The tile at level {@code l} and position {@code (x, y)} covers the east/north coordinates
+     * from {@code (x * s, y * s)} to {@code ((x + 1) * s, (y + 1) * s)}, with {@code s = TILE_SIZE * 2^l}.
+     */
+    static final class TileKey {
+        final int level;
+        final int x;
+        final int y;
+
+        TileKey(int level, int x, int y) {
+            this.level = level;
+            this.x = x;
+            this.y = y;
+        }
+
+        double getSpan() {
+            return TILE_SIZE * Math.pow(2, level);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof TileKey)) return false;
+            TileKey other = (TileKey) obj;
+            return level == other.level && x == other.x && y == other.y;
+        }
+
+        @Override
+        public int hashCode() {
+            return (level * 31 + x) * 31 + y;
+        }
+
+        @Override
+        public String toString() {
+            return level + "/" + x + "/" + y;
+        }
+    }
+
+    private final File file;
+    private final CoordinateReferenceSystem forcedCrs;
+    private final CoordinateReferenceSystem sourceCrs;
+    private final CoordinateReferenceSystem targetCrs;
+    private final ReferencedEnvelope sourceEnvelope;
+    private final Envelope2D envelope;
+    private final int width;
+    private final int height;
+    private final int minLevel;
+    private final Runnable onTileLoaded;
+
+    private final BlockingQueue<GeoTiffReader> readers = new ArrayBlockingQueue<>(getThreads());
+    private final Map<TileKey, BufferedImage> cache;
+    private final Set<TileKey> pending = ConcurrentHashMap.newKeySet();
+    private volatile Set<TileKey> wanted = Collections.emptySet();
+    private volatile boolean disposed;
+
+    /**
+     * Constructs a new {@code TiledCoverageRenderer}.
+     * @param file the GeoTIFF file
+     * @param refSys if not {@code null}, the reference system of the file, used instead of the one in the file
+     * @param targetCrs the reference system of the map view, with easting first
+     * @param onTileLoaded called when a tile has been loaded, from a background thread
+     * @throws IOException if the file cannot be read, or has no reference system
+     * @throws FactoryException if the image cannot be reprojected
+     * @throws TransformException if the image cannot be reprojected
+     */
+    TiledCoverageRenderer(File file, CoordinateReferenceSystem refSys, CoordinateReferenceSystem targetCrs, Runnable onTileLoaded)
+            throws IOException, FactoryException, TransformException {
+        this.file = file;
+        this.forcedCrs = refSys;
+        this.targetCrs = targetCrs;
+        this.onTileLoaded = onTileLoaded;
+
+        GeoTiffReader reader = PluginOperations.createGeoTiffReader(file, refSys);
+        try {
+            sourceCrs = reader.getCoordinateReferenceSystem();
+            sourceEnvelope = new ReferencedEnvelope(reader.getOriginalEnvelope());
+            width = reader.getOriginalGridRange().getSpan(0);
+            height = reader.getOriginalGridRange().getSpan(1);
+
+            ReferencedEnvelope target = sourceEnvelope.transform(targetCrs, true);
+            envelope = new Envelope2D(targetCrs, target.getMinX(), target.getMinY(), target.getWidth(), target.getHeight());
+        } catch (IOException | FactoryException | TransformException | RuntimeException e) {
+            reader.dispose();
+            throw e;
+        }
+        readers.offer(reader);
+
+        // finest level with tiles at least as detailed as the full resolution image
+        double resolution = Math.min(envelope.getWidth() / width, envelope.getHeight() / height);
+        minLevel = (int) Math.floor(Math.log(resolution) / Math.log(2));
+
+        final int cacheSize = Config.getPref().getInt("plugins.importimage.tiled.cache-size", 256);
+        cache = Collections.synchronizedMap(new LinkedHashMap<TileKey, BufferedImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TileKey, BufferedImage> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Determines if a file can be rendered tile by tile.
+     * @param file the image file
+     * @return {@code true} for GeoTIFF files
+     */
+    static boolean isSupported(File file) {
+        String name = file.getName().toLowerCase(Locale.ENGLISH);
+        return name.endsWith(".tif") || name.endsWith(".tiff");
+    }
+
+    private static int getThreads() {
+        return Math.max(1, Config.getPref().getInt("plugins.importimage.tiled.threads",
+                Math.max(1, Runtime.getRuntime().availableProcessors() - 1)));
+    }
+
+    /**
+     * Returns the reference system of the file.
+     * @return the reference system of the file
+     */
+    CoordinateReferenceSystem getSourceCrs() {
+        return sourceCrs;
+    }
+
+    /**
+     * Returns the bounds of the image, in the reference system of the map view.
+     * @return the bounds of the image
+     */
+    Envelope2D getEnvelope() {
+        return envelope;
+    }
+
+    /**
+     * Returns the width of the full resolution image.
+     * @return the width, in pixels
+     */
+    int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the full resolution image.
+     * @return the height, in pixels
+     */
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Draws the tiles visible in the map view. Missing tiles are loaded in the background,
+     * and are replaced by a coarser tile in the meantime, if one is in the cache.
+     * @param g the graphics to draw on
+     * @param mv the map view
+     */
+    void paint(Graphics2D g, MapView mv) {
+        ProjectionBounds bounds = mv.getProjectionBounds();
+        double minEast = Math.max(bounds.minEast, envelope.getMinX());
+        double maxEast = Math.min(bounds.maxEast, envelope.getMaxX());
+        double minNorth = Math.max(bounds.minNorth, envelope.getMinY());
+        double maxNorth = Math.min(bounds.maxNorth, envelope.getMaxY());
+        if (minEast >= maxEast || minNorth >= maxNorth) {
+            wanted = Collections.emptySet();
+            return;
+        }
+
+        // tiles have between one and two pixels for each pixel of the map view, up to the full resolution
+        int level = Math.max(minLevel, (int) Math.floor(Math.log(mv.getScale()) / Math.log(2)));
+        double span = TILE_SIZE * Math.pow(2, level);
+        List<TileKey> keys = new ArrayList<>();
+        for (int y = (int) Math.floor(maxNorth / span); y >= (int) Math.floor(minNorth / span); y--) {
+            for (int x = (int) Math.floor(minEast / span); x <= (int) Math.floor(maxEast / span); x++) {
+                keys.add(new TileKey(level, x, y));
+            }
+        }
+        wanted = new HashSet<>(keys);
+
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            // reprojected tiles are filled outside of the image, do not draw past its bounds
+            Point2D upperLeft = mv.getPoint2D(new EastNorth(envelope.getMinX(), envelope.getMaxY()));
+            Point2D lowerRight = mv.getPoint2D(new EastNorth(envelope.getMaxX(), envelope.getMinY()));
+            g2.clip(new Rectangle2D.Double(upperLeft.getX(), upperLeft.getY(),
+                    lowerRight.getX() - upperLeft.getX(), lowerRight.getY() - upperLeft.getY()));
+            for (TileKey key : keys) {
+                BufferedImage tile = cache.get(key);
+                if (tile == null) {
+                    load(key);
+                    paintFallback(g2, mv, key);
+                } else if (tile != EMPTY) {
+                    paintTile(g2, mv, tile, key, 0, 0, TILE_SIZE, TILE_SIZE);
+                }
+            }
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    private void paintFallback(Graphics2D g, MapView mv, TileKey key) {
+        for (int d = 1; d <= MAX_FALLBACK_LEVELS; d++) {
+            int f = 1 << d;
+            TileKey parent = new TileKey(key.level + d, Math.floorDiv(key.x, f), Math.floorDiv(key.y, f));
+            BufferedImage tile = cache.get(parent);
+            if (tile != null) {
+                if (tile != EMPTY) {
+                    int size = TILE_SIZE / f;
+                    int sx = (key.x - parent.x * f) * size;
+                    // rows go from north to south
+                    int sy = ((parent.y + 1) * f - key.y - 1) * size;
+                    paintTile(g, mv, tile, key, sx, sy, sx + size, sy + size);
+                }
+                return;
+            }
+        }
+    }
+
+    private static void paintTile(Graphics2D g, MapView mv, BufferedImage tile, TileKey key, int sx1, int sy1, int sx2, int sy2) {
+        double span = key.getSpan();
+        Point2D upperLeft = mv.getPoint2D(new EastNorth(key.x * span, (key.y + 1) * span));
+        Point2D lowerRight = mv.getPoint2D(new EastNorth((key.x + 1) * span, key.y * span));
+        // round the corners rather than the size, so that neighbouring tiles have no gap between them
+        g.drawImage(tile, (int) Math.round(upperLeft.getX()), (int) Math.round(upperLeft.getY()),
+                (int) Math.round(lowerRight.getX()), (int) Math.round(lowerRight.getY()), sx1, sy1, sx2, sy2, null);
+    }
+
+    private void load(TileKey key) {
+        if (!pending.add(key)) {
+            return;
+        }
+        try {
+            ExecutorHolder.EXECUTOR.execute(() -> {
+                try {
+                    // skip tiles which have been scrolled out of view in the meantime
+                    if (!disposed && wanted.contains(key)) {
+                        BufferedImage tile = renderTile(key);
+                        if (!disposed) {
+                            cache.put(key, tile);
+                            onTileLoaded.run();
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    Logging.warn("ImportImagePlugin TiledCoverageRenderer: Error while rendering tile " + key + " of " + file);
+                    Logging.warn(e);
+                    // do not retry on every repaint
+                    cache.put(key, EMPTY);
+                } finally {
+                    pending.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+            Logging.error(e);
+        }
+    }
+
+    /**
+     * Reads the part of the image covered by a tile, from the most suitable overview, and reprojects it.
+     * @param key the tile
+     * @return the tile image, or {@link #EMPTY} if the tile is outside of the image
+     * @throws IOException if the image cannot be read
+     */
+    BufferedImage renderTile(TileKey key) throws IOException {
+        double span = key.getSpan();
+        ReferencedEnvelope tileEnvelope = new ReferencedEnvelope(
+                key.x * span, (key.x + 1) * span, key.y * span, (key.y + 1) * span, targetCrs);
+        ReferencedEnvelope requested;
+        try {
+            requested = tileEnvelope.transform(sourceCrs, true);
+        } catch (TransformException | FactoryException e) {
+            Logging.trace(e);
+            return EMPTY;
+        }
+        if (requested.getMinX() >= sourceEnvelope.getMaxX() || requested.getMaxX() <= sourceEnvelope.getMinX()
+                || requested.getMinY() >= sourceEnvelope.getMaxY() || requested.getMaxY() <= sourceEnvelope.getMinY()) {
+            return EMPTY;
+        }
+
+        // the reader selects the overview and the subsampling from the requested resolution
+        ParameterValue<GridGeometry2D> gridGeometry = AbstractGridFormat.READ_GRIDGEOMETRY2D.createValue();
+        gridGeometry.setValue(new GridGeometry2D(new GridEnvelope2D(0, 0, TILE_SIZE, TILE_SIZE), requested));
+        ParameterValue<OverviewPolicy> overviewPolicy = AbstractGridFormat.OVERVIEW_POLICY.createValue();
+        overviewPolicy.setValue(OverviewPolicy.QUALITY);
+        // read the pixels now, on this thread, instead of when the image is drawn
+        ParameterValue<Boolean> useImageRead = AbstractGridFormat.USE_JAI_IMAGEREAD.createValue();
+        useImageRead.setValue(Boolean.FALSE);
+
+        GridCoverage2D coverage;
+        GeoTiffReader reader = takeReader();
+        try {
+            coverage = reader.read(new GeneralParameterValue[] {gridGeometry, overviewPolicy, useImageRead});
+        } finally {
+            returnReader(reader);
+        }
+        if (coverage == null) {
+            return EMPTY;
+        }
+        try {
+            GridCoverage2D reprojected = PluginOperations.reprojectCoverage(coverage, targetCrs,
+                    new GridGeometry2D(new GridEnvelope2D(0, 0, TILE_SIZE, TILE_SIZE), tileEnvelope));
+            RenderedImage img = reprojected.getRenderedImage();
+            BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = tile.createGraphics();
+            try {
+                g.drawImage(PluginOperations.getBufferedImage(img), img.getMinX(), img.getMinY(), null);
+            } finally {
+                g.dispose();
+            }
+            return tile;
+        } finally {
+            coverage.dispose(true);
+        }
+    }
+
+    private GeoTiffReader takeReader() throws IOException {
+        GeoTiffReader reader = readers.poll();
+        return reader != null ? reader : PluginOperations.createGeoTiffReader(file, forcedCrs);
+    }
+
+    private void returnReader(GeoTiffReader reader) {
+        if (disposed || !readers.offer(reader)) {
+            reader.dispose();
+        } else if (disposed && readers.remove(reader)) {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Stops loading tiles, and releases the cached tiles and the open files.
+     */
+    void dispose() {
+        disposed = true;
+        cache.clear();
+        GeoTiffReader reader;
+        while ((reader = readers.poll()) != null) {
+            reader.dispose();
+        }
+    }
+}
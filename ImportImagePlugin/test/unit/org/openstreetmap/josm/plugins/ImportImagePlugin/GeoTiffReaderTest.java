@@ -1,8 +1,12 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.ImportImagePlugin;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.DirectoryIteratorException;
@@ -14,8 +18,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 
 import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.data.DataSourceException;
+import org.geotools.geometry.Envelope2D;
+import org.geotools.referencing.CRS;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.openstreetmap.josm.TestUtils;
 import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
 import org.openstreetmap.josm.tools.Logging;
@@ -36,6 +44,54 @@ class GeoTiffReaderTest {
             assertNotNull(grid);
         }
     }
+
+    @Test
+    void testRenderTiles() throws Exception {
+        CoordinateReferenceSystem targetCrs = CRS.decode("EPSG:3857", true);
+        for (Path p : listDataFiles("tif")) {
+            File file = p.toFile();
+            Logging.info("Testing rendering file "+file.getPath());
+            TiledCoverageRenderer renderer;
+            try {
+                renderer = new TiledCoverageRenderer(file, null, targetCrs, () -> { });
+            } catch (DataSourceException e) {
+                // files without reference system are not rendered tile by tile
+                Logging.trace(e);
+                continue;
+            }
+            try {
+                // tile which contains the center of the image
+                Envelope2D envelope = renderer.getEnvelope();
+                double size = Math.max(envelope.getWidth(), envelope.getHeight());
+                int level = (int) Math.ceil(Math.log(size / TiledCoverageRenderer.TILE_SIZE) / Math.log(2));
+                double span = TiledCoverageRenderer.TILE_SIZE * Math.pow(2, level);
+                int y = (int) Math.floor(envelope.getCenterY() / span);
+                BufferedImage tile = renderer.renderTile(new TiledCoverageRenderer.TileKey(level,
+                        (int) Math.floor(envelope.getCenterX() / span), y));
+                assertEquals(TiledCoverageRenderer.TILE_SIZE, tile.getWidth());
+                assertEquals(TiledCoverageRenderer.TILE_SIZE, tile.getHeight());
+                assertTrue(hasOpaquePixels(tile), file.getPath());
+
+                // tile east of the image
+                BufferedImage outside = renderer.renderTile(new TiledCoverageRenderer.TileKey(level,
+                        (int) Math.floor(envelope.getMaxX() / span) + 1, y));
+                assertSame(TiledCoverageRenderer.EMPTY, outside, file.getPath());
+            } finally {
+                renderer.dispose();
+            }
+        }
+    }
+
+    private static boolean hasOpaquePixels(BufferedImage image) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                if ((image.getRGB(x, y) >>> 24) == 0xff) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
     
     /**
      * Lists all datasets files matching given extension.
@@ -2,8 +2,7 @@ package nanolog;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.swing.JOptionPane;
@@ -11,14 +10,9 @@ import javax.swing.JOptionPane;
 import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.gpx.GpxData;
-import org.openstreetmap.josm.data.gpx.IGpxTrack;
-import org.openstreetmap.josm.data.gpx.IGpxTrackSegment;
 import org.openstreetmap.josm.data.gpx.WayPoint;
 import org.openstreetmap.josm.data.projection.ProjectionRegistry;
 import org.openstreetmap.josm.gui.MainApplication;
-import org.openstreetmap.josm.tools.Logging;
-import org.openstreetmap.josm.tools.UncheckedParseException;
-import org.openstreetmap.josm.tools.date.DateUtils;
 
 /**
  * A class that establishes correlation between GPS trace and NanoLog. Mostly copied from
@@ -27,6 +21,10 @@ import org.openstreetmap.josm.tools.date.DateUtils;
  * @author zverik
  */
 public final class Correlator {
+    /**
+     * Maximum number of offsets tried by the coarse pass of {@link #findOffset(List, GpxData)}.
+     */
+    private static final int COARSE_OFFSETS = 2000;
 
     private Correlator() {
         // Hide default constructor for utilities classes
@@ -36,38 +34,23 @@ public final class Correlator {
      * Matches entries to GPX so most points are on the trace.
      */
     public static long crudeMatch(List<NanoLogEntry> entries, GpxData data) {
-        List<NanoLogEntry> sortedEntries = new ArrayList<>(entries);
-        Collections.sort(sortedEntries);
-        long firstExifDate = sortedEntries.get(0).getTime().getTime();
-        long firstGPXDate = -1;
-        outer:
-        for (IGpxTrack trk : data.tracks) {
-            for (IGpxTrackSegment segment : trk.getSegments()) {
-                for (WayPoint curWp : segment.getWayPoints()) {
-                    String curDateWpStr = (String) curWp.attr.get("time");
-                    if (curDateWpStr == null) {
-                        continue;
-                    }
-
-                    try {
-                        firstGPXDate = DateUtils.fromString(curDateWpStr).getTime();
-                        break outer;
-                    } catch (Exception e) {
-                        Logging.warn(e);
-                    }
-                }
-            }
+        if (entries.isEmpty())
+            return 0;
+        long firstExifDate = Long.MAX_VALUE;
+        for (NanoLogEntry entry : entries) {
+            firstExifDate = Math.min(firstExifDate, entry.getTime().getTime());
         }
+        GpxTimeline timeline = new GpxTimeline(data);
 
         // No GPX timestamps found, exit
-        if (firstGPXDate < 0) {
+        if (timeline.size() == 0) {
             JOptionPane.showMessageDialog(MainApplication.getMainFrame(),
                     tr("The selected GPX track does not contain timestamps. Please select another one."),
                     tr("GPX Track has no time information"), JOptionPane.WARNING_MESSAGE);
             return 0;
         }
 
-        return firstExifDate - firstGPXDate;
+        return firstExifDate - timeline.getTime(0);
     }
 
     public static void revertPos(List<NanoLogEntry> entries) {
@@ -80,51 +63,109 @@ public final class Correlator {
      * Offset is in 1/1000 of a second.
      */
     public static void correlate(List<NanoLogEntry> entries, GpxData data, long offset) {
-        List<NanoLogEntry> sortedEntries = new ArrayList<>(entries);
-        //int ret = 0;
-        Collections.sort(sortedEntries);
-        for (IGpxTrack track : data.tracks) {
-            for (IGpxTrackSegment segment : track.getSegments()) {
-                long prevWpTime = 0;
-                WayPoint prevWp = null;
-
-                for (WayPoint curWp : segment.getWayPoints()) {
-
-                    String curWpTimeStr = (String) curWp.attr.get("time");
-                    if (curWpTimeStr != null) {
-                        try {
-                            long curWpTime = DateUtils.fromString(curWpTimeStr).getTime() + offset;
-                            /*ret +=*/ matchPoints(sortedEntries, prevWp, prevWpTime, curWp, curWpTime);
-
-                            prevWp = curWp;
-                            prevWpTime = curWpTime;
-
-                        } catch (UncheckedParseException e) {
-                            Logging.error("Error while parsing date \"" + curWpTimeStr + '"');
-                            Logging.error(e);
-                            prevWp = null;
-                            prevWpTime = 0;
-                        }
-                    } else {
-                        prevWp = null;
-                        prevWpTime = 0;
-                    }
-                }
+        NanoLogEntry[] sortedEntries = sortEntries(entries);
+        long[] entryTimes = getTimes(sortedEntries);
+        GpxTimeline timeline = new GpxTimeline(data);
+
+        // Track points and entries are merged like two sorted lists: i follows the track point time,
+        // so for a chronological track every entry is passed a constant number of times.
+        int i = -1;
+        for (int p = 0; p < timeline.size(); p++) {
+            long curWpTime = timeline.getTime(p) + offset;
+            i = seek(entryTimes, i, curWpTime);
+            if (timeline.isContinued(p)) {
+                matchPoints(sortedEntries, entryTimes, i, timeline.getPoint(p - 1), timeline.getTime(p - 1) + offset,
+                        timeline.getPoint(p), curWpTime);
+            } else {
+                matchPoints(sortedEntries, entryTimes, i, null, 0, timeline.getPoint(p), curWpTime);
             }
         }
     }
 
-    private static int matchPoints(List<NanoLogEntry> entries, WayPoint prevWp, long prevWpTime,
+    /**
+     * Matches entries to GPX so that most entries are placed on the timed part of the track.
+     * All offsets at which entries and track overlap are tried, first coarsely, then to the second around the best
+     * one. Of equally good offsets, the one closest to {@link #crudeMatch} is chosen.
+     * Offset is in 1/1000 of a second.
+     */
+    public static long findOffset(List<NanoLogEntry> entries, GpxData data) {
+        long crudeOffset = crudeMatch(entries, data);
+        GpxTimeline timeline = new GpxTimeline(data);
+        if (entries.isEmpty() || timeline.size() == 0)
+            return crudeOffset;
+        long[] entryTimes = getTimes(sortEntries(entries));
+        long[][] ranges = timeline.getCoveredRanges();
+        long from = entryTimes[0] - ranges[ranges.length - 1][1];
+        long to = entryTimes[entryTimes.length - 1] - ranges[0][0];
+        long step = Math.max(1000, (to - from) / COARSE_OFFSETS);
+        long offset = findOffset(entryTimes, ranges, from, to, step, crudeOffset);
+        return step > 1000 ? findOffset(entryTimes, ranges, offset - step, offset + step, 1000, offset) : offset;
+    }
+
+    /**
+     * Searches the offset that places most entries on the timed part of the track.
+     * Offsets from {@code from} to {@code to} are tried in steps of {@code step}, each in time linear in the number
+     * of entries and track points. Of equally good offsets, the one closest to the middle of the range is chosen.
+     * Offsets are in 1/1000 of a second.
+     * @return the best offset, or the middle of the range if no offset places any entry
+     */
+    public static long findOffset(List<NanoLogEntry> entries, GpxData data, long from, long to, long step) {
+        if (step <= 0)
+            throw new IllegalArgumentException("step must be positive: " + step);
+        long[] entryTimes = getTimes(sortEntries(entries));
+        long[][] ranges = new GpxTimeline(data).getCoveredRanges();
+        return findOffset(entryTimes, ranges, from, to, step, from + (to - from) / 2);
+    }
+
+    private static long findOffset(long[] entryTimes, long[][] ranges, long from, long to, long step, long preferred) {
+        long bestOffset = preferred;
+        int bestCount = 0;
+        for (long offset = from; offset <= to; offset += step) {
+            int count = countCovered(entryTimes, ranges, offset);
+            if (count > bestCount || (count == bestCount && count > 0
+                    && Math.abs(offset - preferred) < Math.abs(bestOffset - preferred))) {
+                bestCount = count;
+                bestOffset = offset;
+            }
+        }
+        return bestOffset;
+    }
+
+    private static int countCovered(long[] entryTimes, long[][] ranges, long offset) {
+        int count = 0;
+        int last = -1;
+        for (long[] range : ranges) {
+            int before = seek(entryTimes, last, range[0] + offset - 1);
+            last = seek(entryTimes, before, range[1] + offset);
+            count += last - before;
+        }
+        return count;
+    }
+
+    private static NanoLogEntry[] sortEntries(List<NanoLogEntry> entries) {
+        NanoLogEntry[] sortedEntries = entries.toArray(new NanoLogEntry[0]);
+        // log files are written in order, for which the sort takes linear time
+        Arrays.sort(sortedEntries);
+        return sortedEntries;
+    }
+
+    private static long[] getTimes(NanoLogEntry[] entries) {
+        long[] times = new long[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            times[i] = entries[i].getTime().getTime();
+        }
+        return times;
+    }
+
+    private static int matchPoints(NanoLogEntry[] entries, long[] entryTimes, int i, WayPoint prevWp, long prevWpTime,
             WayPoint curWp, long curWpTime) {
         // Time between the track point and the previous one, 5 sec if first point, i.e. photos take
         // 5 sec before the first track point can be assumed to be take at the starting position
-        long interval = prevWpTime > 0 ? Math.abs(curWpTime - prevWpTime) : 5 * 1000;
+        long interval = prevWpTime > 0 ? Math.abs(curWpTime - prevWpTime) : GpxTimeline.LEAD_TIME;
         int ret = 0;
 
-        // i is the index of the timewise last photo that has the same or earlier EXIF time
-        int i = getLastIndexOfListBefore(entries, curWpTime);
-
-        // no photos match
+        // i is the index of the timewise last photo that has the same or earlier EXIF time,
+        // no photos match if it is negative
         if (i < 0)
             return 0;
 
@@ -140,8 +181,8 @@ public final class Correlator {
                 if (i < 0) {
                     break;
                 }
-                final NanoLogEntry curImg = entries.get(i);
-                long time = curImg.getTime().getTime();
+                final NanoLogEntry curImg = entries[i];
+                long time = entryTimes[i];
                 if (time > curWpTime || time < curWpTime - interval) {
                     break;
                 }
@@ -161,8 +202,8 @@ public final class Correlator {
             if (i < 0) {
                 break;
             }
-            NanoLogEntry curImg = entries.get(i);
-            long imgTime = curImg.getTime().getTime();
+            NanoLogEntry curImg = entries[i];
+            long imgTime = entryTimes[i];
             if (imgTime < prevWpTime) {
                 break;
             }
@@ -180,38 +221,44 @@ public final class Correlator {
         return ret;
     }
 
-    private static int getLastIndexOfListBefore(List<NanoLogEntry> entries, long searchedTime) {
-        int lstSize = entries.size();
-
-        // No photos or the first photo taken is later than the search period
-        if (lstSize == 0 || searchedTime < entries.get(0).getTime().getTime())
-            return -1;
-
-        // The search period is later than the last photo
-        if (searchedTime > entries.get(lstSize - 1).getTime().getTime())
-            return lstSize-1;
-
-        // The searched index is somewhere in the middle, do a binary search from the beginning
-        int curIndex = 0;
-        int startIndex = 0;
-        int endIndex = lstSize-1;
-        while (endIndex - startIndex > 1) {
-            curIndex = (endIndex + startIndex) / 2;
-            if (searchedTime > entries.get(curIndex).getTime().getTime()) {
-                startIndex = curIndex;
-            } else {
-                endIndex = curIndex;
+    /**
+     * Returns the index of the last time that is at or before the searched time. The search starts at a hint
+     * and widens exponentially, so it takes time logarithmic in the distance between hint and result.
+     * @param times sorted times
+     * @param hint an index between -1 and {@code times.length - 1}, e.g. the result of the previous search
+     * @param searchedTime the searched time
+     * @return the index or -1 if all times are later than {@code searchedTime}
+     */
+    static int seek(long[] times, int hint, long searchedTime) {
+        // times[low] <= searchedTime < times[high], with times[-1] = -infinity and times[length] = infinity
+        int low;
+        int high;
+        if (hint >= 0 && times[hint] > searchedTime) {
+            high = hint;
+            low = hint - 1;
+            for (int step = 2; low >= 0 && times[low] > searchedTime; step <<= 1) {
+                high = low;
+                low = high - step;
+            }
+            low = Math.max(low, -1);
+        } else {
+            low = hint;
+            high = hint + 1;
+            for (int step = 2; high < times.length && times[high] <= searchedTime; step <<= 1) {
+                low = high;
+                high = low + step;
             }
+            high = Math.min(high, times.length);
         }
-        if (searchedTime < entries.get(endIndex).getTime().getTime())
-            return startIndex;
-
-        // This final loop is to check if photos with the exact same EXIF time follows
-        while ((endIndex < (lstSize-1)) && (entries.get(endIndex).getTime().getTime()
-                == entries.get(endIndex + 1).getTime().getTime())) {
-            endIndex++;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] <= searchedTime) {
+                low = mid;
+            } else {
+                high = mid;
+            }
         }
-        return endIndex;
+        return low;
     }
 
     /**
@@ -219,46 +266,24 @@ public final class Correlator {
      */
     public static long getGpxDate(GpxData data, LatLon pos) {
         EastNorth en = ProjectionRegistry.getProjection().latlon2eastNorth(pos);
-        for (IGpxTrack track : data.tracks) {
-            for (IGpxTrackSegment segment : track.getSegments()) {
-                long prevWpTime = 0;
-                WayPoint prevWp = null;
-                for (WayPoint curWp : segment.getWayPoints()) {
-                    String curWpTimeStr = (String) curWp.attr.get("time");
-                    if (curWpTimeStr != null) {
-                        try {
-                            long curWpTime = DateUtils.fromString(curWpTimeStr).getTime();
-                            if (prevWp != null) {
-                                EastNorth c1 = ProjectionRegistry.getProjection().latlon2eastNorth(prevWp.getCoor());
-                                EastNorth c2 = ProjectionRegistry.getProjection().latlon2eastNorth(curWp.getCoor());
-                                if (!c1.equals(c2)) {
-                                    EastNorth middle = getSegmentAltitudeIntersection(c1, c2, en);
-                                    if (middle != null && en.distance(middle) < 1) {
-                                        // found our point, no further search is neccessary
-                                        double prop = c1.east() == c2.east()
-                                                ? (middle.north() - c1.north()) / (c2.north() - c1.north())
-                                                : (middle.east() - c1.east()) / (c2.east() - c1.east());
-                                        if (prop >= 0 && prop <= 1) {
-                                            return Math.round(prevWpTime + prop * (curWpTime - prevWpTime));
-                                        }
-                                    }
-                                }
-                            }
-
-                            prevWp = curWp;
-                            prevWpTime = curWpTime;
-                        } catch (UncheckedParseException e) {
-                            Logging.error("Error while parsing date \"" + curWpTimeStr + '"');
-                            Logging.error(e);
-                            prevWp = null;
-                            prevWpTime = 0;
-                        }
-                    } else {
-                        prevWp = null;
-                        prevWpTime = 0;
+        GpxTimeline timeline = new GpxTimeline(data);
+        EastNorth c1 = null;
+        for (int p = 0; p < timeline.size(); p++) {
+            EastNorth c2 = ProjectionRegistry.getProjection().latlon2eastNorth(timeline.getPoint(p).getCoor());
+            if (timeline.isContinued(p) && !c1.equals(c2)) {
+                EastNorth middle = getSegmentAltitudeIntersection(c1, c2, en);
+                if (middle != null && en.distance(middle) < 1) {
+                    // found our point, no further search is neccessary
+                    double prop = c1.east() == c2.east()
+                            ? (middle.north() - c1.north()) / (c2.north() - c1.north())
+                            : (middle.east() - c1.east()) / (c2.east() - c1.east());
+                    if (prop >= 0 && prop <= 1) {
+                        long prevWpTime = timeline.getTime(p - 1);
+                        return Math.round(prevWpTime + prop * (timeline.getTime(p) - prevWpTime));
                     }
                 }
             }
+            c1 = c2;
         }
         return 0;
     }
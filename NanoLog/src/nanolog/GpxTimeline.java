@@ -0,0 +1,109 @@
+package nanolog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.openstreetmap.josm.data.gpx.GpxData;
+import org.openstreetmap.josm.data.gpx.IGpxTrack;
+import org.openstreetmap.josm.data.gpx.IGpxTrackSegment;
+import org.openstreetmap.josm.data.gpx.WayPoint;
+
+/**
+ * The timed track points of a GPX trace, in track order, with their times extracted into an array.
+ */
+final class GpxTimeline {
+    /**
+     * Entries up to this many milliseconds before the first point of a track are placed on that point.
+     */
+    static final long LEAD_TIME = 5 * 1000;
+
+    private final WayPoint[] points;
+    private final long[] times;
+    /** whether a point follows another timed point of the same segment */
+    private final boolean[] continued;
+    private final int size;
+
+    GpxTimeline(GpxData data) {
+        int count = 0;
+        for (IGpxTrack track : data.tracks) {
+            for (IGpxTrackSegment segment : track.getSegments()) {
+                count += segment.getWayPoints().size();
+            }
+        }
+        points = new WayPoint[count];
+        times = new long[count];
+        continued = new boolean[count];
+
+        int n = 0;
+        for (IGpxTrack track : data.tracks) {
+            for (IGpxTrackSegment segment : track.getSegments()) {
+                boolean hasPrevious = false;
+                for (WayPoint wp : segment.getWayPoints()) {
+                    if (wp.hasDate()) {
+                        points[n] = wp;
+                        times[n] = wp.getTimeInMillis();
+                        continued[n] = hasPrevious;
+                        hasPrevious = true;
+                        n++;
+                    } else {
+                        hasPrevious = false;
+                    }
+                }
+            }
+        }
+        size = n;
+    }
+
+    int size() {
+        return size;
+    }
+
+    WayPoint getPoint(int index) {
+        return points[index];
+    }
+
+    long getTime(int index) {
+        return times[index];
+    }
+
+    /**
+     * Returns whether the point is connected to the previous one, i.e. whether the track between them is timed.
+     */
+    boolean isContinued(int index) {
+        return continued[index];
+    }
+
+    /**
+     * Returns the time ranges in which entries are placed on the track, sorted and without overlaps.
+     * These are the ranges between connected points plus the lead time before each first point.
+     * @return pairs of start and end time
+     */
+    long[][] getCoveredRanges() {
+        List<long[]> ranges = new ArrayList<>();
+        long[] range = null;
+        for (int i = 0; i < size; i++) {
+            long time = times[i];
+            if (range != null && continued[i] && time > times[i - 1]) {
+                range[1] = time;
+            } else {
+                long lead = continued[i] ? times[i - 1] - time : LEAD_TIME;
+                range = new long[] {time - lead, time};
+                ranges.add(range);
+            }
+        }
+        ranges.sort(Comparator.comparingLong(r -> r[0]));
+
+        List<long[]> merged = new ArrayList<>();
+        for (long[] r : ranges) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && r[0] <= last[1]) {
+                last[1] = Math.max(last[1], r[1]);
+            } else {
+                merged.add(Arrays.copyOf(r, 2));
+            }
+        }
+        return merged.toArray(new long[0][]);
+    }
+}
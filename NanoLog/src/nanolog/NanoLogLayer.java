@@ -347,7 +347,7 @@ public class NanoLogLayer extends Layer implements JumpToMarkerActions.JumpToMar
             // 2. Correlate by default, sticking by date
             // (if does not match, shift so hours-minutes stay)
             if (layer != null) {
-                long offset = toZero ? 0 : Correlator.crudeMatch(log, layer.data);
+                long offset = toZero ? 0 : Correlator.findOffset(log, layer.data);
                 Correlator.revertPos(log);
                 Correlator.correlate(log, layer.data, offset);
                 fireMarkersChanged();
@@ -0,0 +1,238 @@
+// License: GPL. For details, see LICENSE file.
+package nanolog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.gpx.GpxData;
+import org.openstreetmap.josm.data.gpx.GpxTrack;
+import org.openstreetmap.josm.data.gpx.IGpxTrack;
+import org.openstreetmap.josm.data.gpx.IGpxTrackSegment;
+import org.openstreetmap.josm.data.gpx.WayPoint;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Unit test of {@link Correlator}
+ */
+@BasicPreferences
+class CorrelatorTest {
+
+    private static final long START = 1_500_000_000_000L;
+
+    private static WayPoint point(double lat, double lon, long time) {
+        WayPoint wp = new WayPoint(new LatLon(lat, lon));
+        if (time >= 0) {
+            wp.setTimeInMillis(time);
+        }
+        return wp;
+    }
+
+    private static List<NanoLogEntry> entries(long... times) {
+        List<NanoLogEntry> entries = new ArrayList<>();
+        for (long time : times) {
+            entries.add(new NanoLogEntry(new Date(time), Long.toString(time)));
+        }
+        return entries;
+    }
+
+    /**
+     * Tracks of segments with points every few seconds. Some points have no time, and some segments go back in time
+     * or overlap other tracks.
+     */
+    private static GpxData randomTrace(Random random) {
+        GpxData data = new GpxData();
+        for (int t = 1 + random.nextInt(3); t > 0; t--) {
+            Collection<Collection<WayPoint>> segments = new ArrayList<>();
+            long time = START + random.nextInt(600_000);
+            for (int s = 1 + random.nextInt(3); s > 0; s--) {
+                List<WayPoint> segment = new ArrayList<>();
+                for (int p = random.nextInt(30); p > 0; p--) {
+                    time += random.nextInt(10) == 0 ? -random.nextInt(20_000) : random.nextInt(10_000);
+                    segment.add(point(55 + random.nextDouble() / 100, 37 + random.nextDouble() / 100,
+                            random.nextInt(15) == 0 ? -1 : time));
+                }
+                segments.add(segment);
+                time += random.nextInt(60_000);
+            }
+            data.addTrack(new GpxTrack(segments, Collections.emptyMap()));
+        }
+        return data;
+    }
+
+    /**
+     * {@link Correlator#seek} finds the same index as a linear scan, from any hint.
+     */
+    @Test
+    void testSeek() {
+        Random random = new Random(42);
+        for (int round = 0; round < 1000; round++) {
+            long[] times = new long[random.nextInt(50)];
+            for (int i = 0; i < times.length; i++) {
+                times[i] = random.nextInt(100);
+            }
+            Arrays.sort(times);
+            for (int query = 0; query < 20; query++) {
+                long searched = random.nextInt(110) - 5;
+                int expected = -1;
+                while (expected + 1 < times.length && times[expected + 1] <= searched) {
+                    expected++;
+                }
+                int hint = random.nextInt(times.length + 1) - 1;
+                assertEquals(expected, Correlator.seek(times, hint, searched));
+            }
+        }
+    }
+
+    /**
+     * {@link Correlator#correlate} places entries exactly like the former placement, which searched the entries
+     * for every track point.
+     */
+    @Test
+    void testCorrelate() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            GpxData data = randomTrace(random);
+            long[] times = new long[random.nextInt(200)];
+            for (int i = 0; i < times.length; i++) {
+                times[i] = START + random.nextInt(1_000_000);
+            }
+            long offset = random.nextInt(200_000) - 100_000;
+            List<NanoLogEntry> entries = entries(times);
+            List<NanoLogEntry> expected = entries(times);
+            expected.sort(null);
+            Collections.shuffle(entries, random);
+
+            Correlator.correlate(entries, data, offset);
+            PerPointCorrelator.correlate(expected, data, offset);
+
+            entries.sort(null);
+            for (int i = 0; i < times.length; i++) {
+                assertEquals(expected.get(i).getTime(), entries.get(i).getTime());
+                assertEquals(expected.get(i).getPos(), entries.get(i).getPos());
+                assertEquals(expected.get(i).getDirection(), entries.get(i).getDirection());
+            }
+        }
+    }
+
+    /**
+     * {@link Correlator#findOffset} finds the shift between a log and a track with pauses.
+     * The log starts long before the track, so aligning the first entry with the first point is wrong.
+     */
+    @Test
+    void testFindOffset() {
+        long shift = 3 * 3600_000 + 17_000;
+        Collection<Collection<WayPoint>> segments = new ArrayList<>();
+        List<Long> times = new ArrayList<>();
+        for (long time = START - 600_000; time < START; time += 20_000) {
+            times.add(time + shift);
+        }
+        for (int s = 0; s < 5; s++) {
+            List<WayPoint> segment = new ArrayList<>();
+            for (int p = 0; p < 30; p++) {
+                long time = START + s * 900_000 + p * 10_000;
+                segment.add(point(55 + s / 100.0, 37 + p / 1000.0, time));
+                times.add(time + shift);
+            }
+            segments.add(segment);
+        }
+        GpxData data = new GpxData();
+        data.addTrack(new GpxTrack(segments, Collections.emptyMap()));
+        List<NanoLogEntry> entries = entries(times.stream().mapToLong(Long::longValue).toArray());
+
+        assertNotEquals(shift, Correlator.crudeMatch(entries, data));
+        // entries up to the lead time before a segment are placed on its first point
+        long offset = Correlator.findOffset(entries, data);
+        assertTrue(offset >= shift && offset <= shift + GpxTimeline.LEAD_TIME, Long.toString(offset));
+        assertEquals(shift, Correlator.findOffset(entries, data, shift - 60_000, shift + 55_000, 1000));
+
+        Correlator.correlate(entries, data, offset);
+        for (NanoLogEntry entry : entries) {
+            if (entry.getTime().getTime() >= START + shift) {
+                assertNotNull(entry.getPos(), entry.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The placement before the entries were merged with the track points: a binary search for every point.
+     */
+    private static final class PerPointCorrelator {
+        static void correlate(List<NanoLogEntry> sortedEntries, GpxData data, long offset) {
+            for (IGpxTrack track : data.tracks) {
+                for (IGpxTrackSegment segment : track.getSegments()) {
+                    long prevWpTime = 0;
+                    WayPoint prevWp = null;
+                    for (WayPoint curWp : segment.getWayPoints()) {
+                        if (curWp.hasDate()) {
+                            long curWpTime = curWp.getTimeInMillis() + offset;
+                            matchPoints(sortedEntries, prevWp, prevWpTime, curWp, curWpTime);
+                            prevWp = curWp;
+                            prevWpTime = curWpTime;
+                        } else {
+                            prevWp = null;
+                            prevWpTime = 0;
+                        }
+                    }
+                }
+            }
+        }
+
+        private static void matchPoints(List<NanoLogEntry> entries, WayPoint prevWp, long prevWpTime,
+                WayPoint curWp, long curWpTime) {
+            long interval = prevWpTime > 0 ? Math.abs(curWpTime - prevWpTime) : 5 * 1000;
+            int i = getLastIndexOfListBefore(entries, curWpTime);
+            if (i < 0)
+                return;
+            Integer direction = null;
+            if (prevWp != null) {
+                direction = Long.valueOf(Math.round(180.0 / Math.PI * -prevWp.bearing(curWp))).intValue();
+            }
+            if (prevWpTime == 0 || curWpTime <= prevWpTime) {
+                for (; i >= 0; i--) {
+                    NanoLogEntry curImg = entries.get(i);
+                    long time = curImg.getTime().getTime();
+                    if (time > curWpTime || time < curWpTime - interval)
+                        break;
+                    if (curImg.getPos() == null) {
+                        curImg.setPos(curWp.getCoor());
+                        curImg.setDirection(direction);
+                    }
+                }
+                return;
+            }
+            for (; i >= 0; i--) {
+                NanoLogEntry curImg = entries.get(i);
+                long imgTime = curImg.getTime().getTime();
+                if (imgTime < prevWpTime)
+                    break;
+                if (curImg.getPos() == null && prevWp != null) {
+                    double timeDiff = (double) (imgTime - prevWpTime) / interval;
+                    curImg.setPos(prevWp.getCoor().interpolate(curWp.getCoor(), timeDiff));
+                    curImg.setDirection(direction);
+                }
+            }
+        }
+
+        private static int getLastIndexOfListBefore(List<NanoLogEntry> entries, long searchedTime) {
+            int index = Collections.binarySearch(entries, new NanoLogEntry(new Date(searchedTime), null));
+            if (index < 0)
+                return -index - 2;
+            while (index + 1 < entries.size() && entries.get(index + 1).getTime().getTime() == searchedTime) {
+                index++;
+            }
+            return index;
+        }
+    }
+}
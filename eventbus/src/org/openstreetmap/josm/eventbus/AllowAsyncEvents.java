@@ -0,0 +1,23 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.eventbus;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an event subscriber method as safe to be invoked on a background thread.
+ *
+ * <p>If the event bus has asynchronous dispatch enabled, each subscriber method marked with this
+ * annotation gets its own executor: events are delivered to it in the order they were posted, but
+ * on a pooled thread, so a slow subscriber neither blocks the posting thread (usually the EDT) nor
+ * delays the other subscribers. Without asynchronous dispatch, the annotation has no effect.
+ *
+ * <p>This does not mark the method, and so should be used in combination with {@link Subscribe}.
+ *
+ * @see JosmEventBus
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface AllowAsyncEvents {}
@@ -95,6 +95,9 @@ public class EventBus {
   private final String identifier;
   private final Executor executor;
   private final SubscriberExceptionHandler exceptionHandler;
+  /** Executor shared by the subscribers allowing asynchronous events, or {@code null}. */
+  private final Executor asyncExecutor;
+  private final EventBusStatistics statistics = new EventBusStatistics();
 
   private final SubscriberRegistry subscribers = new SubscriberRegistry(this);
   private final Dispatcher dispatcher;
@@ -157,10 +160,30 @@ public class EventBus {
       Executor executor,
       Dispatcher dispatcher,
       SubscriberExceptionHandler exceptionHandler) {
+    this(identifier, executor, dispatcher, exceptionHandler, null);
+  }
+
+  /**
+   * Constructs a new {@code EventBus} with asynchronous dispatch.
+   * @param identifier the identifier for this event bus. Must not be null
+   * @param executor the default executor to use for dispatching events to subscribers. Must not be null
+   * @param dispatcher the event dispatcher. Must not be null
+   * @param exceptionHandler handles the exceptions thrown by a subscriber. Must not be null
+   * @param asyncExecutor the executor running the subscribers annotated with {@link AllowAsyncEvents}.
+   *     Each of these subscribers uses it through its own {@link SerialExecutor}.
+   *     If null, asynchronous dispatch is disabled
+   */
+  EventBus(
+      String identifier,
+      Executor executor,
+      Dispatcher dispatcher,
+      SubscriberExceptionHandler exceptionHandler,
+      Executor asyncExecutor) {
     this.identifier = Objects.requireNonNull(identifier);
     this.executor = Objects.requireNonNull(executor);
     this.dispatcher = Objects.requireNonNull(dispatcher);
     this.exceptionHandler = Objects.requireNonNull(exceptionHandler);
+    this.asyncExecutor = asyncExecutor;
   }
 
   /**
@@ -181,6 +204,27 @@ public class EventBus {
     return executor;
   }
 
+  /**
+   * Returns the executor to use for dispatching events to the given subscriber method.
+   * @param method subscriber method
+   * @return a new serial executor if the method allows asynchronous events and asynchronous
+   *     dispatch is enabled, the default executor otherwise
+   */
+  final Executor executor(Method method) {
+    if (asyncExecutor != null && method.getAnnotation(AllowAsyncEvents.class) != null) {
+      return new SerialExecutor(asyncExecutor);
+    }
+    return executor;
+  }
+
+  /**
+   * Returns the dispatch statistics of this event bus.
+   * @return the dispatch statistics of this event bus
+   */
+  public final EventBusStatistics statistics() {
+    return statistics;
+  }
+
   /**
    * Handles the given exception thrown by a subscriber with the given context.
    * @param e exception thrown by a subscriber
@@ -230,6 +274,7 @@ public class EventBus {
    * @param event event to post.
    */
   public void post(Object event) {
+    statistics.posted(event);
     Iterator<Subscriber> eventSubscribers = subscribers.getSubscribers(event);
     if (eventSubscribers.hasNext()) {
       dispatcher.dispatch(event, eventSubscribers);
@@ -0,0 +1,227 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.eventbus;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dispatch statistics of an event bus: for each event type, the number of posted events and,
+ * for each subscriber, the number of deliveries with histograms of the time the event waited
+ * before delivery and of the time the subscriber took to handle it.
+ *
+ * <p>Recording is lock-free and cheap enough to stay always enabled. Use {@link #toString()} to get
+ * a report, with the slowest subscribers first.
+ */
+public final class EventBusStatistics {
+
+  private final Map<Class<?>, EventTypeStatistics> types = new ConcurrentHashMap<>();
+
+  EventTypeStatistics of(Class<?> eventType) {
+    return types.computeIfAbsent(eventType, EventTypeStatistics::new);
+  }
+
+  void posted(Object event) {
+    of(event.getClass()).posted.increment();
+  }
+
+  void delivered(Object event, String subscriber, long waitNanos, long handleNanos) {
+    EventTypeStatistics stats = of(event.getClass());
+    stats.subscribers.computeIfAbsent(subscriber, SubscriberStatistics::new).record(waitNanos, handleNanos);
+  }
+
+  /**
+   * Returns the statistics of all event types posted so far.
+   * @return the statistics of all event types posted so far
+   */
+  public List<EventTypeStatistics> getEventTypes() {
+    return new ArrayList<>(types.values());
+  }
+
+  /**
+   * Returns the statistics of an event type.
+   * @param eventType event type
+   * @return the statistics of the event type, or {@code null} if no such event has been posted
+   */
+  public EventTypeStatistics getEventType(Class<?> eventType) {
+    return types.get(eventType);
+  }
+
+  /**
+   * Resets all statistics.
+   */
+  public void reset() {
+    types.clear();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    List<EventTypeStatistics> list = getEventTypes();
+    list.sort(Comparator.comparing(t -> t.getEventType().getName()));
+    for (EventTypeStatistics t : list) {
+      sb.append(t.getEventType().getName()).append(": ").append(t.getPostCount()).append(" posted\n");
+      List<SubscriberStatistics> subscribers = t.getSubscribers();
+      subscribers.sort(Comparator.comparingLong(SubscriberStatistics::getTotalHandleNanos).reversed());
+      for (SubscriberStatistics s : subscribers) {
+        sb.append("    ").append(s).append('\n');
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Statistics of one event type.
+   */
+  public static final class EventTypeStatistics {
+    private final Class<?> eventType;
+    private final LongAdder posted = new LongAdder();
+    private final Map<String, SubscriberStatistics> subscribers = new ConcurrentHashMap<>();
+
+    EventTypeStatistics(Class<?> eventType) {
+      this.eventType = eventType;
+    }
+
+    /**
+     * Returns the event type.
+     * @return the event type
+     */
+    public Class<?> getEventType() {
+      return eventType;
+    }
+
+    /**
+     * Returns the number of events of this type posted to the bus. Coalesced events are not counted.
+     * @return the number of posted events
+     */
+    public long getPostCount() {
+      return posted.sum();
+    }
+
+    /**
+     * Returns the statistics of the subscribers having received events of this type.
+     * @return the statistics of the subscribers
+     */
+    public List<SubscriberStatistics> getSubscribers() {
+      return new ArrayList<>(subscribers.values());
+    }
+  }
+
+  /**
+   * Statistics of one subscriber method for one event type.
+   * Times are recorded in histograms with power-of-two microsecond buckets.
+   */
+  public static final class SubscriberStatistics {
+    /** Number of buckets, the last bucket holds all times above about 30 seconds. */
+    public static final int BUCKETS = 26;
+
+    private final String subscriber;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalHandleNanos = new LongAdder();
+    private final AtomicLongArray waitHistogram = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray handleHistogram = new AtomicLongArray(BUCKETS);
+
+    SubscriberStatistics(String subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    static int bucket(long nanos) {
+      long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+      int bucket = micros <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+      return Math.min(bucket, BUCKETS - 1);
+    }
+
+    void record(long waitNanos, long handleNanos) {
+      count.increment();
+      totalHandleNanos.add(handleNanos);
+      waitHistogram.incrementAndGet(bucket(waitNanos));
+      handleHistogram.incrementAndGet(bucket(handleNanos));
+    }
+
+    /**
+     * Returns the subscriber method, as {@code class#method}.
+     * @return the subscriber method
+     */
+    public String getSubscriber() {
+      return subscriber;
+    }
+
+    /**
+     * Returns the number of events delivered to the subscriber.
+     * @return the number of delivered events
+     */
+    public long getCount() {
+      return count.sum();
+    }
+
+    /**
+     * Returns the total time spent in the subscriber method.
+     * @return the total time in nanoseconds
+     */
+    public long getTotalHandleNanos() {
+      return totalHandleNanos.sum();
+    }
+
+    /**
+     * Returns the histogram of the time between posting an event and its delivery to the subscriber.
+     * Bucket {@code i > 0} counts the times in {@code [2^(i-1), 2^i)} microseconds, bucket 0 the times below 1 microsecond.
+     * @return the histogram
+     */
+    public long[] getWaitHistogram() {
+      return toArray(waitHistogram);
+    }
+
+    /**
+     * Returns the histogram of the time spent in the subscriber method, with the same buckets as {@link #getWaitHistogram()}.
+     * @return the histogram
+     */
+    public long[] getHandleHistogram() {
+      return toArray(handleHistogram);
+    }
+
+    private static long[] toArray(AtomicLongArray histogram) {
+      long[] ret = new long[histogram.length()];
+      for (int i = 0; i < ret.length; i++) {
+        ret[i] = histogram.get(i);
+      }
+      return ret;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile of a histogram.
+     * @param histogram histogram, see {@link #getHandleHistogram()}
+     * @param percentile percentile, between 0 and 100
+     * @return upper bound of the percentile, in microseconds
+     */
+    public static long percentile(long[] histogram, double percentile) {
+      long total = 0;
+      for (long n : histogram) {
+        total += n;
+      }
+      long threshold = (long) Math.ceil(total * percentile / 100);
+      long sum = 0;
+      for (int i = 0; i < histogram.length; i++) {
+        sum += histogram[i];
+        if (sum >= threshold && sum > 0) {
+          return 1L << i;
+        }
+      }
+      return 0;
+    }
+
+    @Override
+    public String toString() {
+      long[] handle = getHandleHistogram();
+      long[] wait = getWaitHistogram();
+      return String.format(Locale.ROOT, "%s: %d delivered, %.1f ms total, handle p50 < %d µs, p99 < %d µs, wait p99 < %d µs",
+          subscriber, getCount(), getTotalHandleNanos() / 1e6,
+          percentile(handle, 50), percentile(handle, 99), percentile(wait, 99));
+    }
+  }
+}
@@ -4,15 +4,24 @@ package org.openstreetmap.josm.eventbus;
 import java.util.logging.Level;
 
 import org.openstreetmap.josm.eventbus.EventBus.DirectExecutor;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
 
 /**
  * The unique JOSM event bus.
+ * <p>
+ * Events are delivered on the posting thread. If the preference {@code eventbus.async-dispatch} is set
+ * when the bus is created, subscribers annotated with {@link AllowAsyncEvents} receive their events on
+ * their own serial executor instead, backed by a pool of {@code eventbus.async-dispatch.threads} threads.
  */
 public class JosmEventBus {
 
     private static final EventBus BUS = new EventBus("JOSM", DirectExecutor.INSTANCE, Dispatcher.perThreadDispatchQueue(),
-            (exception, context) -> Logging.logWithStackTrace(Level.SEVERE, exception, "Event bus error in {0}:", context));
+            (exception, context) -> Logging.logWithStackTrace(Level.SEVERE, exception, "Event bus error in {0}:", context),
+            isAsyncDispatchEnabled()
+                ? Utils.newForkJoinPool("eventbus.async-dispatch.threads", "eventbus-dispatch-%d", Thread.NORM_PRIORITY)
+                : null);
 
     private JosmEventBus() {
         // Hide default constructor
@@ -25,7 +34,20 @@ public class JosmEventBus {
     public static EventBus getBus() {
         return BUS;
     }
-    
+
+    private static boolean isAsyncDispatchEnabled() {
+        return Config.getPref() != null && Config.getPref().getBoolean("eventbus.async-dispatch", false);
+    }
+
+    /**
+     * Returns the dispatch statistics of the JOSM event bus, to find slow subscribers.
+     * @return the dispatch statistics of the JOSM event bus
+     * @see EventBus#statistics
+     */
+    public static EventBusStatistics getStatistics() {
+        return BUS.statistics();
+    }
+
     /**
      * Registers all subscriber methods on {@code object} to receive events.
      *
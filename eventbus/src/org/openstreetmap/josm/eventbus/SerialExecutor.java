@@ -0,0 +1,48 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.eventbus;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * Executor running its tasks one at a time, in submission order, on a shared delegate executor.
+ * Several serial executors can share one thread pool without any of them using more than one
+ * thread at a time.
+ */
+final class SerialExecutor implements Executor {
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private final Executor delegate;
+  private Runnable active;
+
+  /**
+   * Constructs a new {@code SerialExecutor}.
+   * @param delegate the executor actually running the tasks
+   */
+  SerialExecutor(Executor delegate) {
+    this.delegate = Objects.requireNonNull(delegate);
+  }
+
+  @Override
+  public synchronized void execute(Runnable command) {
+    Objects.requireNonNull(command);
+    tasks.add(() -> {
+      try {
+        command.run();
+      } finally {
+        scheduleNext();
+      }
+    });
+    if (active == null) {
+      scheduleNext();
+    }
+  }
+
+  private synchronized void scheduleNext() {
+    active = tasks.poll();
+    if (active != null) {
+      delegate.execute(active);
+    }
+  }
+}
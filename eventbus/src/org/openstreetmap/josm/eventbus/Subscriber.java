@@ -55,13 +55,17 @@ class Subscriber {
   /** Executor to use for dispatching events to this subscriber. */
   private final Executor executor;
 
+  /** Name of this subscriber in the statistics. */
+  private final String name;
+
   private Subscriber(EventBus bus, Object target, Method method) {
     this.bus = bus;
     this.target = Objects.requireNonNull(target);
     this.method = method;
     method.setAccessible(true);
 
-    this.executor = bus.executor();
+    this.executor = bus.executor(method);
+    this.name = target.getClass().getName() + '#' + method.getName();
   }
 
   /**
@@ -69,12 +73,16 @@ class Subscriber {
    * @param event event to dispatch
    */
   final void dispatchEvent(final Object event) {
+    final long posted = System.nanoTime();
     executor.execute(
         () -> {
+            final long start = System.nanoTime();
             try {
               invokeSubscriberMethod(event);
             } catch (InvocationTargetException e) {
               bus.handleSubscriberException(e.getCause(), context(event));
+            } finally {
+              bus.statistics().delivered(event, name, start - posted, System.nanoTime() - start);
             }
           });
   }
@@ -37,6 +37,7 @@ import org.openstreetmap.josm.data.osm.history.HistoryDataSet;
 import org.openstreetmap.josm.data.osm.history.HistoryDataSetListener;
 import org.openstreetmap.josm.data.projection.ProjectionChangeListener;
 import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.eventbus.JosmEventBus;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.MapFrame;
 import org.openstreetmap.josm.gui.MapFrame.MapModeChangeListener;
@@ -124,9 +125,9 @@ public class EventBusPlugin extends Plugin {
     private final ExpertModeChangeListener expertModeChangeListener = x -> post(new ExpertModeChangedEvent(this, x));
     private final GpxDataChangeListener gpxChangeListener = e -> post(e);
     private final GpxTrackChangeListener gpxTrackChangeListener = e -> post(e);
-    private final HighlightUpdateListener highlightUpdateListener = e -> post(e);
+    private final HighlightUpdateListener highlightUpdateListener = e -> postCoalesced(e.getDataSet(), e);
     private final PreferenceChangedListener preferenceChangedListener = e -> post(e);
-    private final PaintableInvalidationListener paintableInvalidationListener = e -> post(e);
+    private final PaintableInvalidationListener paintableInvalidationListener = e -> postCoalesced(e.getLayer(), e);
     private final NoteDataUpdateListener noteDataUpdateListener = new NoteDataUpdateListener() {
         @Override
         public void selectedNoteChanged(NoteData noteData) {
@@ -345,7 +346,7 @@ public class EventBusPlugin extends Plugin {
 
     private final OsmApiInitializationListener osmApiInitializationListener = api -> post(new OsmApiInitializedEvent(this, api));
     //private final AudioListener audioListener = url -> post(new AudioPlayingEvent(url)); // TODO: not public
-    private final ZoomChangeListener zoomChangeListener = () -> post(new ZoomChangedEvent(this));
+    private final ZoomChangeListener zoomChangeListener = () -> postCoalesced(null, new ZoomChangedEvent(this));
     private final MapModeChangeListener mapModeChangeListener = (oldMode, newMode) -> post(new MapModeChangeEvent(this, oldMode, newMode));
     private final ModifierExListener modifierExListener = modifiers -> post(new ModifierExChangedEvent(this, modifiers));
     private final KeyPressReleaseListener keyPressReleaseListener = new KeyPressReleaseListener() {
@@ -360,12 +361,20 @@ public class EventBusPlugin extends Plugin {
         }
     };
 
+    /**
+     * Coalesces the high-frequency events, or {@code null} if they are posted one by one.
+     * The window is set by the preference {@code eventbus.coalesce.window}, in milliseconds.
+     */
+    private final EventCoalescer coalescer;
+
     /**
      * Constructs a new {@code EventBusPlugin}.
      * @param info plugin information
      */
     public EventBusPlugin(PluginInformation info) {
         super(info);
+        int window = Config.getPref().getInt("eventbus.coalesce.window", 0);
+        coalescer = window > 0 ? new EventCoalescer(window, JosmEventBus::post) : null;
         registerAllJosmListeners();
         // TODO: cannot add a listener for NavigationListener. It would require first new events for MultiValueCellEditor being created
         Logging.debug("TODO: add" + navigationListener);
@@ -377,6 +386,20 @@ public class EventBusPlugin extends Plugin {
         Logging.debug("TODO: add" + cancelListener);
     }
 
+    /**
+     * Posts a high-frequency event, coalescing it with the other events of the same type and source
+     * if a coalescing window is configured.
+     * @param source source of the event
+     * @param event event
+     */
+    private void postCoalesced(Object source, Object event) {
+        if (coalescer != null) {
+            coalescer.post(source, event);
+        } else {
+            post(event);
+        }
+    }
+
     /**
      * Registers all JOSM listeners.
      */
@@ -419,6 +442,9 @@ public class EventBusPlugin extends Plugin {
         TaggingPresets.removeListener(taggingPresetListener);
         OsmApi.removeOsmApiInitializationListener(osmApiInitializationListener);
         Config.getPref().removePreferenceChangeListener(preferenceChangedListener);
+        if (coalescer != null) {
+            coalescer.stop();
+        }
     }
 
     @Override
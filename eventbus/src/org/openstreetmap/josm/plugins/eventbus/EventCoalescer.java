@@ -0,0 +1,69 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.eventbus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.swing.Timer;
+
+/**
+ * Coalesces bursts of events. The first event of a burst starts a window; until the window ends,
+ * only the latest event of each type and source is kept. All kept events are then posted in the
+ * EDT, in the order their type and source first occurred in the window.
+ * <p>
+ * Only events which merely tell that something has to be refreshed should be coalesced,
+ * as all events except the latest of each type and source are dropped.
+ */
+final class EventCoalescer {
+    private final Map<List<Object>, Object> pending = new LinkedHashMap<>();
+    private final Consumer<Object> sink;
+    private final Timer timer;
+
+    /**
+     * Constructs a new {@code EventCoalescer}.
+     * @param window length of the coalescing window, in milliseconds
+     * @param sink consumer of the coalesced events
+     */
+    EventCoalescer(int window, Consumer<Object> sink) {
+        this.sink = sink;
+        this.timer = new Timer(window, e -> flush());
+        this.timer.setRepeats(false);
+    }
+
+    /**
+     * Adds an event to the current window, replacing any previous event of the same type and source.
+     * @param source source of the event
+     * @param event event
+     */
+    void post(Object source, Object event) {
+        synchronized (pending) {
+            pending.put(Arrays.asList(event.getClass(), source), event);
+            if (pending.size() == 1) {
+                timer.restart();
+            }
+        }
+    }
+
+    private void flush() {
+        List<Object> events;
+        synchronized (pending) {
+            events = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        events.forEach(sink);
+    }
+
+    /**
+     * Stops the coalescer, dropping the pending events.
+     */
+    void stop() {
+        timer.stop();
+        synchronized (pending) {
+            pending.clear();
+        }
+    }
+}
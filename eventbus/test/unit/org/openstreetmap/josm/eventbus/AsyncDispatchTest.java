@@ -0,0 +1,113 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.eventbus;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.eventbus.EventBus.DirectExecutor;
+import org.openstreetmap.josm.eventbus.EventBusStatistics.EventTypeStatistics;
+import org.openstreetmap.josm.eventbus.EventBusStatistics.SubscriberStatistics;
+
+/**
+ * Test case for the asynchronous dispatch of {@link EventBus} and for {@link EventBusStatistics}.
+ */
+class AsyncDispatchTest {
+
+  /** Executor running its tasks only when instructed */
+  private static class FakeExecutor implements Executor {
+    final List<Runnable> tasks = new ArrayList<>();
+
+    @Override
+    public void execute(Runnable command) {
+      tasks.add(command);
+    }
+
+    void runAll() {
+      while (!tasks.isEmpty()) {
+        tasks.remove(0).run();
+      }
+    }
+  }
+
+  private static class AsyncCatcher {
+    final List<String> events = new ArrayList<>();
+
+    @Subscribe
+    @AllowAsyncEvents
+    public void hereHaveAString(String string) {
+      events.add(string);
+    }
+  }
+
+  private FakeExecutor pool;
+  private EventBus bus;
+
+  @BeforeEach
+  void setUp() {
+    pool = new FakeExecutor();
+    bus = new EventBus("async", DirectExecutor.INSTANCE, Dispatcher.perThreadDispatchQueue(),
+        EventBus.LoggingHandler.INSTANCE, pool);
+  }
+
+  @Test
+  void testAsyncSubscriberDoesNotBlockPosting() {
+    AsyncCatcher async = new AsyncCatcher();
+    StringCatcher direct = new StringCatcher();
+    bus.register(async);
+    bus.register(direct);
+
+    bus.post("a");
+    bus.post("b");
+    assertEquals(Arrays.asList("a", "b"), direct.getEvents());
+    assertTrue(async.events.isEmpty());
+    // the serial executor hands over one task at a time
+    assertEquals(1, pool.tasks.size());
+
+    pool.runAll();
+    assertEquals(Arrays.asList("a", "b"), async.events);
+  }
+
+  @Test
+  void testAnnotationIgnoredWithoutAsyncDispatch() {
+    EventBus syncBus = new EventBus("sync");
+    AsyncCatcher async = new AsyncCatcher();
+    syncBus.register(async);
+    syncBus.post("a");
+    assertEquals(Arrays.asList("a"), async.events);
+  }
+
+  @Test
+  void testStatistics() {
+    bus.register(new StringCatcher());
+    bus.post("a");
+    bus.post("b");
+
+    EventTypeStatistics stats = bus.statistics().getEventType(String.class);
+    assertNotNull(stats);
+    assertEquals(2, stats.getPostCount());
+    assertEquals(1, stats.getSubscribers().size());
+    SubscriberStatistics subscriber = stats.getSubscribers().get(0);
+    assertEquals(StringCatcher.class.getName() + "#hereHaveAString", subscriber.getSubscriber());
+    assertEquals(2, subscriber.getCount());
+    assertEquals(2, Arrays.stream(subscriber.getHandleHistogram()).sum());
+    assertTrue(bus.statistics().toString().contains(StringCatcher.class.getName()));
+  }
+
+  @Test
+  void testHistogramBuckets() {
+    assertEquals(0, SubscriberStatistics.bucket(999));
+    assertEquals(1, SubscriberStatistics.bucket(1_000));
+    assertEquals(2, SubscriberStatistics.bucket(3_999));
+    assertEquals(SubscriberStatistics.BUCKETS - 1, SubscriberStatistics.bucket(Long.MAX_VALUE));
+    assertEquals(2, SubscriberStatistics.percentile(new long[] {0, 1, 0, 3}, 25));
+    assertEquals(8, SubscriberStatistics.percentile(new long[] {0, 1, 0, 3}, 99));
+  }
+}
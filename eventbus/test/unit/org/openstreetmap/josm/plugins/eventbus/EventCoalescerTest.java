@@ -0,0 +1,88 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.eventbus;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test case for {@link EventCoalescer}.
+ */
+class EventCoalescerTest {
+
+    private final List<Object> received = Collections.synchronizedList(new ArrayList<>());
+    private CountDownLatch latch;
+
+    private EventCoalescer coalescer() {
+        return new EventCoalescer(20, e -> {
+            assertTrue(SwingUtilities.isEventDispatchThread());
+            received.add(e);
+            latch.countDown();
+        });
+    }
+
+    /**
+     * Posts the events from the EDT, so the window cannot end before all of them are posted.
+     */
+    private static void postInWindow(Runnable posts) throws Exception {
+        SwingUtilities.invokeAndWait(posts);
+    }
+
+    private static void flushEdt() throws Exception {
+        // the window has ended, the timer event has been handled once the EDT is idle again
+        Thread.sleep(100);
+        SwingUtilities.invokeAndWait(() -> { });
+    }
+
+    @Test
+    void testSameTypeAndSourceCollapse() throws Exception {
+        EventCoalescer coalescer = coalescer();
+        Object source1 = new Object();
+        Object source2 = new Object();
+        latch = new CountDownLatch(3);
+        postInWindow(() -> {
+            coalescer.post(source1, "a");
+            coalescer.post(source1, 1);
+            coalescer.post(source2, "b");
+            coalescer.post(source1, "c");
+            coalescer.post(source1, 2);
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        flushEdt();
+        // the latest event of each type and source, in the order of the first occurrence
+        assertEquals(Arrays.asList("c", 2, "b"), received);
+
+        // a new window starts with the next event
+        received.clear();
+        latch = new CountDownLatch(1);
+        postInWindow(() -> {
+            coalescer.post(source1, "d");
+            coalescer.post(source1, "e");
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        flushEdt();
+        assertEquals(Arrays.asList("e"), received);
+    }
+
+    @Test
+    void testStopDropsPending() throws Exception {
+        EventCoalescer coalescer = coalescer();
+        latch = new CountDownLatch(1);
+        postInWindow(() -> {
+            coalescer.post(this, "a");
+            coalescer.stop();
+        });
+        flushEdt();
+        assertTrue(received.isEmpty());
+    }
+}
@@ -3,8 +3,10 @@ package org.openstreetmap.josm.plugins.graphview.core.access;
 
 import static org.openstreetmap.josm.plugins.graphview.core.access.AccessType.UNDEFINED;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.openstreetmap.josm.plugins.graphview.core.data.DataSource;
@@ -14,14 +16,25 @@ import org.openstreetmap.josm.plugins.graphview.core.data.TagGroup;
 import org.openstreetmap.josm.plugins.graphview.core.property.RoadPropertyType;
 
 /**
- * AccessEvaluator based on a single AccessRuleset
+ * AccessEvaluator based on a single AccessRuleset.
+ *
+ * Results only depend on the tags and property values of an object, as ruleset and parameters are fixed.
+ * They are therefore cached, so identically tagged ways or nodes are only evaluated once.
+ * Tags are copied into the cache, but property value maps must not be modified after being passed to the evaluator.
+ * Instances are not thread-safe.
  */
 public class RulesetAccessEvaluator<N, W, R, M> implements AccessEvaluator<N, W> {
 
+    /** maximum number of cached results, the cache is cleared when it grows beyond this size */
+    private static final int MAX_CACHE_SIZE = 100_000;
+
     private final DataSource<N, W, R, M> dataSource;
     private final AccessRuleset ruleset;
     private final AccessParameters parameters;
 
+    private final Map<List<Object>, Boolean> wayUsableCache = new HashMap<>();
+    private final Map<List<Object>, Boolean> nodeUsableCache = new HashMap<>();
+
     /**
      * @param dataSource  object that allows access to data objects and tags/members; != null
      * @param ruleset     ruleset that is used for evaluation; != null
@@ -43,6 +56,18 @@ public class RulesetAccessEvaluator<N, W, R, M> implements AccessEvaluator<N, W>
 
         TagGroup wayTags = dataSource.getTagsW(way);
 
+        List<Object> key = Arrays.asList(wayTags, forward, segmentPropertyValues);
+        Boolean result = wayUsableCache.get(key);
+        if (result == null) {
+            result = wayUsable(wayTags, forward, segmentPropertyValues);
+            putInCache(wayUsableCache, Arrays.asList(new MapBasedTagGroup(wayTags), forward, segmentPropertyValues), result);
+        }
+        return result;
+    }
+
+    private boolean wayUsable(TagGroup wayTags, boolean forward,
+            Map<RoadPropertyType<?>, Object> segmentPropertyValues) {
+
         TagGroup wayTagsWithImplications = new MapBasedTagGroup(wayTags);
         for (Implication implication : ruleset.getImplications()) {
             wayTagsWithImplications = implication.apply(wayTagsWithImplications);
@@ -87,7 +112,20 @@ public class RulesetAccessEvaluator<N, W, R, M> implements AccessEvaluator<N, W>
 
         TagGroup nodeTags = dataSource.getTagsN(node);
 
-        return objectUsable(roadPropertyValues, nodeTags);
+        List<Object> key = Arrays.asList(nodeTags, roadPropertyValues);
+        Boolean result = nodeUsableCache.get(key);
+        if (result == null) {
+            result = objectUsable(roadPropertyValues, nodeTags);
+            putInCache(nodeUsableCache, Arrays.asList(new MapBasedTagGroup(nodeTags), roadPropertyValues), result);
+        }
+        return result;
+    }
+
+    private static void putInCache(Map<List<Object>, Boolean> cache, List<Object> key, Boolean result) {
+        if (cache.size() >= MAX_CACHE_SIZE) {
+            cache.clear();
+        }
+        cache.put(key, result);
     }
 
     private boolean objectUsable(Map<RoadPropertyType<?>, Object> roadPropertyValues,
@@ -104,6 +104,21 @@ public class MapBasedTagGroup implements TagGroup {
 
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof MapBasedTagGroup)) {
+            return false;
+        }
+        return tagMap.equals(((MapBasedTagGroup) obj).tagMap);
+    }
+
+    @Override
+    public int hashCode() {
+        return tagMap.hashCode();
+    }
+
     @Override
     public String toString() {
         return tagMap.toString();
@@ -2,6 +2,7 @@
 package org.openstreetmap.josm.plugins.graphview.core.graph;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -126,6 +127,14 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
     private Collection<GraphNode> nodes;
     private List<GraphEdge> edges;
 
+    /**
+     * evaluated groups of the previous update.
+     * Keys consist of everything the evaluation of a group depends on:
+     * its nodes or segments, the segments connected to them and the relevant restrictions.
+     * Groups with an unchanged key can be reused without evaluating them again.
+     */
+    private Map<List<Object>, EvaluationGroup> evaluationGroupCache = new HashMap<>();
+
     /**
      * create a WayGraph based on a {@link TransitionStructure}
      * @param transitionStructure  transition structure this graph is to be based on; != null
@@ -154,18 +163,28 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
         Collection<EvaluationGroup> evaluationGroups =
             createEvaluationGroups(transitionStructure);
 
-        for (EvaluationGroup evaluationGroup : evaluationGroups) {
-            evaluationGroup.evaluate(transitionStructure.getRestrictions());
-        }
-
         createNodesAndEdgesFromEvaluationGroups(evaluationGroups);
 
         evaluationGroups = null;
     }
 
-    private static Collection<EvaluationGroup> createEvaluationGroups(
+    /**
+     * creates evaluated groups for the transition structure.
+     * Groups that are unchanged since the previous call are taken from the {@link #evaluationGroupCache},
+     * so only groups affected by a change need to be evaluated.
+     */
+    private Collection<EvaluationGroup> createEvaluationGroups(
             TransitionStructure transitionStructure) {
 
+        /* index restrictions by their from segment: only restrictions starting with
+         * a segment that can be used within a group are relevant for that group */
+
+        Map<Segment, Collection<Restriction>> restrictionsByFromSegment = new HashMap<>();
+
+        for (Restriction restriction : transitionStructure.getRestrictions()) {
+            addToCollectionMap(restrictionsByFromSegment, restriction.getFrom(), restriction);
+        }
+
         Map<SegmentNode, Set<SegmentNode>> nodeSetMap =
             new HashMap<>();
 
@@ -235,14 +254,38 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
 
         }
 
-        /* create EvaluationGroup objects */
+        /* create EvaluationGroup objects or reuse unchanged ones */
 
         Collection<EvaluationGroup> evaluationGroups =
             new ArrayList<>(nodeSetMap.size() + segmentSetMap.size());
 
+        Map<List<Object>, EvaluationGroup> newEvaluationGroupCache = new HashMap<>();
+
         Set<Set<SegmentNode>> nodeSets = new HashSet<>(nodeSetMap.values());
         for (Set<SegmentNode> nodeSet : nodeSets) {
-            evaluationGroups.add(new JunctionEvaluationGroup(nodeSet));
+
+            /* junction groups can be entered with an inbound segment
+             * and use segments between their nodes */
+
+            Set<Segment> connectedSegments = new HashSet<>();
+            Set<Restriction> relevantRestrictions = new HashSet<>();
+            for (SegmentNode node : nodeSet) {
+                connectedSegments.addAll(node.getOutboundSegments());
+                for (Segment segment : node.getInboundSegments()) {
+                    connectedSegments.add(segment);
+                    addRestrictions(relevantRestrictions, restrictionsByFromSegment, segment);
+                }
+            }
+
+            List<Object> key = Arrays.asList(nodeSet, connectedSegments, relevantRestrictions);
+
+            EvaluationGroup evaluationGroup = evaluationGroupCache.get(key);
+            if (evaluationGroup == null) {
+                evaluationGroup = new JunctionEvaluationGroup(nodeSet);
+                evaluationGroup.evaluate(relevantRestrictions);
+            }
+            newEvaluationGroupCache.put(key, evaluationGroup);
+            evaluationGroups.add(evaluationGroup);
         }
 
         HashSet<Set<Segment>> hashSets = new HashSet<>(segmentSetMap.values());
@@ -256,12 +299,38 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
                     borderNodes.add(segment.getNode2());
                 }
             }
-            evaluationGroups.add(new ConnectorEvaluationGroup(segmentSet, borderNodes));
+
+            /* connector groups only use their own segments */
+
+            Set<Restriction> relevantRestrictions = new HashSet<>();
+            for (Segment segment : segmentSet) {
+                addRestrictions(relevantRestrictions, restrictionsByFromSegment, segment);
+            }
+
+            List<Object> key = Arrays.asList(segmentSet, borderNodes, relevantRestrictions);
+
+            EvaluationGroup evaluationGroup = evaluationGroupCache.get(key);
+            if (evaluationGroup == null) {
+                evaluationGroup = new ConnectorEvaluationGroup(segmentSet, borderNodes);
+                evaluationGroup.evaluate(relevantRestrictions);
+            }
+            newEvaluationGroupCache.put(key, evaluationGroup);
+            evaluationGroups.add(evaluationGroup);
         }
 
+        evaluationGroupCache = newEvaluationGroupCache;
+
         return evaluationGroups;
     }
 
+    private static void addRestrictions(Collection<Restriction> restrictions,
+            Map<Segment, Collection<Restriction>> restrictionsByFromSegment, Segment fromSegment) {
+        Collection<Restriction> restrictionsFromSegment = restrictionsByFromSegment.get(fromSegment);
+        if (restrictionsFromSegment != null) {
+            restrictions.addAll(restrictionsFromSegment);
+        }
+    }
+
     private void createNodesAndEdgesFromEvaluationGroups(
             Collection<EvaluationGroup> evaluationGroups) {
 
@@ -7,6 +7,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -35,12 +38,15 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
     private static final Collection<Restriction> EMPTY_RESTRICTION_COLLECTION =
         new ArrayList<>(0);
 
+    /** number of access evaluators (with their cached results) kept for recently used parameters and rulesets */
+    private static final int MAX_CACHED_EVALUATORS = 4;
+
     private static class SegmentNodeImpl implements SegmentNode {
-        private final double lat;
-        private final double lon;
+        private double lat;
+        private double lon;
         private final List<Segment> inboundSegments = new LinkedList<>();
         private final List<Segment> outboundSegments = new LinkedList<>();
-        private final Map<RoadPropertyType<?>, Object> properties;
+        private Map<RoadPropertyType<?>, Object> properties;
 
         SegmentNodeImpl(double lat, double lon, Map<RoadPropertyType<?>, Object> properties) {
             assert properties != null;
@@ -67,6 +73,25 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
             outboundSegments.add(segment);
         }
 
+        public void removeSegment(Segment segment) {
+            inboundSegments.remove(segment);
+            outboundSegments.remove(segment);
+        }
+
+        public boolean hasSegments() {
+            return !inboundSegments.isEmpty() || !outboundSegments.isEmpty();
+        }
+
+        public void setPosition(double lat, double lon) {
+            this.lat = lat;
+            this.lon = lon;
+        }
+
+        public void setProperties(Map<RoadPropertyType<?>, Object> properties) {
+            assert properties != null;
+            this.properties = properties;
+        }
+
         @Override
         public Collection<Segment> getOutboundSegments() {
             return outboundSegments;
@@ -172,12 +197,87 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
             return tos;
         }
 
+        /**
+         * restrictions are equal if they consist of the same segments,
+         * which allows to recognize unchanged restrictions after an update
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (!(obj instanceof RestrictionImpl)) {
+                return false;
+            }
+            RestrictionImpl other = (RestrictionImpl) obj;
+            return from == other.from && sameSegments(vias, other.vias) && sameSegments(tos, other.tos);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = from.hashCode();
+            for (Segment segment : vias) {
+                hash = 31 * hash + segment.hashCode();
+            }
+            for (Segment segment : tos) {
+                hash = 31 * hash + segment.hashCode();
+            }
+            return hash;
+        }
+
+        private static boolean sameSegments(Collection<Segment> segments1, Collection<Segment> segments2) {
+            if (segments1.size() != segments2.size()) {
+                return false;
+            }
+            Iterator<Segment> iterator2 = segments2.iterator();
+            for (Segment segment : segments1) {
+                if (segment != iterator2.next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         @Override
         public String toString() {
             return from + " -> " + vias + " -> " + tos;
         }
     }
 
+    /**
+     * the input used to create the segments of a way and the segments created from it.
+     * If the input doesn't change, the segments can be kept during an update.
+     */
+    private static class WayState<N> {
+        private final List<N> nodes;
+        private final boolean forwardAccess;
+        private final boolean backwardAccess;
+        private final Map<RoadPropertyType<?>, Object> forwardPropertyValues;
+        private final Map<RoadPropertyType<?>, Object> backwardPropertyValues;
+        private final List<Segment> segments = new ArrayList<>();
+
+        WayState(List<N> nodes, boolean forwardAccess, boolean backwardAccess,
+                Map<RoadPropertyType<?>, Object> forwardPropertyValues,
+                Map<RoadPropertyType<?>, Object> backwardPropertyValues) {
+            this.nodes = nodes;
+            this.forwardAccess = forwardAccess;
+            this.backwardAccess = backwardAccess;
+            this.forwardPropertyValues = forwardPropertyValues;
+            this.backwardPropertyValues = backwardPropertyValues;
+        }
+
+        boolean isUsable() {
+            return forwardAccess || backwardAccess;
+        }
+
+        boolean hasSameInput(WayState<N> other) {
+            return forwardAccess == other.forwardAccess
+                    && backwardAccess == other.backwardAccess
+                    && nodes.equals(other.nodes)
+                    && (!forwardAccess || forwardPropertyValues.equals(other.forwardPropertyValues))
+                    && (!backwardAccess || backwardPropertyValues.equals(other.backwardPropertyValues));
+        }
+    }
+
     private final Set<TransitionStructureObserver> observers = new HashSet<>();
 
     private final Collection<RoadPropertyType<?>> properties;
@@ -189,10 +289,28 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
 
     private AccessEvaluator<N, W> accessEvaluator;
 
+    /**
+     * evaluators for recently used combinations of ruleset and access parameters.
+     * Each evaluator caches its results, so switching back to a previous vehicle profile
+     * doesn't require evaluating the tags again.
+     */
+    private final Map<List<Object>, AccessEvaluator<N, W>> accessEvaluators =
+        new LinkedHashMap<List<Object>, AccessEvaluator<N, W>>(MAX_CACHED_EVALUATORS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, AccessEvaluator<N, W>> eldest) {
+                return size() > MAX_CACHED_EVALUATORS;
+            }
+        };
+
     private Collection<SegmentNode> nodes = null;
-    private Collection<Segment> segments = new LinkedList<>();
+    private Collection<Segment> segments = new LinkedHashSet<>();
     private Collection<Restriction> restrictions = new LinkedList<>();
 
+    /* state of the previous update, allows to only replace the segments of changed ways */
+    private final Map<N, SegmentNodeImpl> nodeCreationMap = new HashMap<>();
+    private final Map<W, WayState<N>> wayStates = new HashMap<>();
+    private final Map<W, List<Segment>> waySegmentMap = new HashMap<>();
+
     public GenericTransitionStructure(
             AccessParameters accessParameters, AccessRuleset ruleset,
             DataSource<N, W, R, M> dataSource,
@@ -231,13 +349,14 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
 
             assert dataSource != null;
 
-            accessEvaluator = new RulesetAccessEvaluator<>(
-                    dataSource,
-                    this.ruleset,
-                    this.accessParameters);
+            final AccessRuleset currentRuleset = this.ruleset;
+            final AccessParameters currentParameters = this.accessParameters;
+
+            accessEvaluator = accessEvaluators.computeIfAbsent(
+                    Arrays.<Object>asList(currentRuleset, currentParameters),
+                    k -> new RulesetAccessEvaluator<>(dataSource, currentRuleset, currentParameters));
 
             updateData();
-            notifyObservers();
 
         }
 
@@ -259,24 +378,60 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
     }
 
     /**
-     * creates nodes, segments and restrictions based on the data source
+     * creates nodes, segments and restrictions based on the data source.
+     * Segments are only replaced for ways whose nodes, access or properties have changed
+     * since the previous update, all other segments and their nodes are kept.
      */
     protected void updateData() {
 
-        ArrayList<SegmentNode> nodes = new ArrayList<>();
-        ArrayList<Segment> segments = new ArrayList<>();
+        if (nodes == null) {
+            nodes = new LinkedHashSet<>();
+        }
 
-        Map<N, SegmentNodeImpl> nodeCreationMap = new HashMap<>();
-        Map<W, List<Segment>> waySegmentMap = new HashMap<>();
+        Set<W> removedWays = new HashSet<>(wayStates.keySet());
+        Set<N> possiblyUnusedNodes = new HashSet<>();
 
-        /* create segments (nodes are created only when included in a segment) */
+        /* replace segments of changed ways (nodes are created only when included in a segment) */
 
         for (W way : dataSource.getWays()) {
-            createSegmentsAndSegmentNodes(way, accessEvaluator, nodes, segments, nodeCreationMap, waySegmentMap);
+
+            removedWays.remove(way);
+
+            WayState<N> newState = createWayState(way, accessEvaluator);
+            WayState<N> oldState = wayStates.get(way);
+
+            if (oldState == null || !oldState.hasSameInput(newState)) {
+                if (oldState != null) {
+                    removeSegments(way, oldState, possiblyUnusedNodes);
+                }
+                createSegmentsAndSegmentNodes(way, newState);
+                wayStates.put(way, newState);
+            }
         }
 
-        nodes.trimToSize();
-        segments.trimToSize();
+        for (W way : removedWays) {
+            removeSegments(way, wayStates.remove(way), possiblyUnusedNodes);
+        }
+
+        for (N node : possiblyUnusedNodes) {
+            SegmentNodeImpl segmentNode = nodeCreationMap.get(node);
+            if (segmentNode != null && !segmentNode.hasSegments()) {
+                nodeCreationMap.remove(node);
+                nodes.remove(segmentNode);
+            }
+        }
+
+        /* update position and properties of kept nodes */
+
+        for (Map.Entry<N, SegmentNodeImpl> entry : nodeCreationMap.entrySet()) {
+            N node = entry.getKey();
+            SegmentNodeImpl segmentNode = entry.getValue();
+            segmentNode.setPosition(dataSource.getLat(node), dataSource.getLon(node));
+            Map<RoadPropertyType<?>, Object> nodePropertyValues = getNodePropertyMap(node);
+            if (!nodePropertyValues.equals(segmentNode.getProperties())) {
+                segmentNode.setProperties(nodePropertyValues);
+            }
+        }
 
         /* create restrictions */
 
@@ -287,8 +442,6 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
 
         /* keep data and inform observers */
 
-        this.nodes = nodes;
-        this.segments = segments;
         this.restrictions = restrictions;
 
         notifyObservers();
@@ -296,62 +449,67 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
     }
 
     /**
-     * creates all Segments and SegmentNodes for a way
+     * determines nodes, access and property values of a way
      *
-     * @param way                 way to create Segments and SegmentNodes from; != null
+     * @param way                 way to evaluate; != null
      * @param wayAccessEvaluator  evaluator object that decides whether way is usable; != null
-     * @param nodes               collection of SegmentNodes, new SegmentNodes will be added here; != null
-     * @param segments            collection of Segments, new Segments will be added here; != null
-     * @param nodeCreationMap     map providing the SegmentNode that has been created from a Node,
-     *                            if new SegmentNodes are created, they will be added appropriately; != null
-     * @param waySegmentMap       map providing the Segments that have been created from a Way,
-     *                            if new Segments are created, they will be added appropriately; != null
      */
-    private void createSegmentsAndSegmentNodes(W way, AccessEvaluator<N, W> wayAccessEvaluator,
-            Collection<SegmentNode> nodes, Collection<Segment> segments,
-            Map<N, SegmentNodeImpl> nodeCreationMap, Map<W, List<Segment>> waySegmentMap) {
+    private WayState<N> createWayState(W way, AccessEvaluator<N, W> wayAccessEvaluator) {
+
+        assert way != null && wayAccessEvaluator != null;
 
-        assert way != null && wayAccessEvaluator != null && nodes != null
-                && segments != null && nodeCreationMap != null && waySegmentMap != null;
+        List<N> wayNodes = new ArrayList<>();
+        for (N node : dataSource.getNodes(way)) {
+            wayNodes.add(node);
+        }
 
         /* calculate property values */
 
         Map<RoadPropertyType<?>, Object> forwardPropertyValues = getWayPropertyMap(way, true);
         Map<RoadPropertyType<?>, Object> backwardPropertyValues = getWayPropertyMap(way, false);
 
-        /* create segments from the way if it can be accessed and isn't incomplete or deleted */
+        /* segments are created from the way if it can be accessed and isn't incomplete or deleted */
 
         boolean forwardAccess = wayAccessEvaluator.wayUsable(way, true, forwardPropertyValues);
         boolean backwardAccess = wayAccessEvaluator.wayUsable(way, false, backwardPropertyValues);
 
-        if (forwardAccess || backwardAccess) {
+        return new WayState<>(wayNodes, forwardAccess, backwardAccess,
+                forwardPropertyValues, backwardPropertyValues);
+    }
 
-            if (!waySegmentMap.containsKey(way)) {
-                waySegmentMap.put(way, new LinkedList<Segment>());
-            }
+    /**
+     * creates all Segments and SegmentNodes for a way
+     * and adds them to {@link #segments}, {@link #nodes}, {@link #nodeCreationMap}
+     * and {@link #waySegmentMap}
+     *
+     * @param way       way to create Segments and SegmentNodes from; != null
+     * @param wayState  nodes, access and property values of the way,
+     *                  created segments will be added here; != null
+     */
+    private void createSegmentsAndSegmentNodes(W way, WayState<N> wayState) {
+
+        assert way != null && wayState != null;
+
+        if (wayState.isUsable()) {
 
             /* create segments from all pairs of subsequent nodes */
 
             N previousNode = null;
-            for (N node : dataSource.getNodes(way)) {
+            for (N node : wayState.nodes) {
                 if (previousNode != null) {
 
-                    SegmentNodeImpl node1 =
-                        getOrCreateSegmentNodeForNode(previousNode, nodes, nodeCreationMap);
-                    SegmentNodeImpl node2 =
-                        getOrCreateSegmentNodeForNode(node, nodes, nodeCreationMap);
+                    SegmentNodeImpl node1 = getOrCreateSegmentNodeForNode(previousNode);
+                    SegmentNodeImpl node2 = getOrCreateSegmentNodeForNode(node);
 
-                    if (forwardAccess) {
-                        SegmentImpl segment = new SegmentImpl(node1, node2, forwardPropertyValues);
-                        segments.add(segment);
-                        waySegmentMap.get(way).add(segment);
+                    if (wayState.forwardAccess) {
+                        SegmentImpl segment = new SegmentImpl(node1, node2, wayState.forwardPropertyValues);
+                        wayState.segments.add(segment);
                         node1.addOutboundSegment(segment);
                         node2.addInboundSegment(segment);
                     }
-                    if (backwardAccess) { //no "else if" because both can be valid
-                        SegmentImpl segment = new SegmentImpl(node2, node1, backwardPropertyValues);
-                        segments.add(segment);
-                        waySegmentMap.get(way).add(segment);
+                    if (wayState.backwardAccess) { //no "else if" because both can be valid
+                        SegmentImpl segment = new SegmentImpl(node2, node1, wayState.backwardPropertyValues);
+                        wayState.segments.add(segment);
                         node1.addInboundSegment(segment);
                         node2.addOutboundSegment(segment);
                     }
@@ -360,16 +518,40 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
                 previousNode = node;
             }
 
+            segments.addAll(wayState.segments);
+            waySegmentMap.put(way, wayState.segments);
+
         }
     }
 
     /**
-     * if no segment node for a node exists in the nodeCreationMap,
+     * removes all Segments that have been created for a way.
+     * SegmentNodes aren't removed immediately, as they might be used again by new segments.
+     *
+     * @param way                  way whose segments are removed; != null
+     * @param wayState             state with the segments created for the way; != null
+     * @param possiblyUnusedNodes  collection the way's nodes are added to; != null
+     */
+    private void removeSegments(W way, WayState<N> wayState, Collection<N> possiblyUnusedNodes) {
+
+        assert way != null && wayState != null && possiblyUnusedNodes != null;
+
+        for (Segment segment : wayState.segments) {
+            ((SegmentNodeImpl) segment.getNode1()).removeSegment(segment);
+            ((SegmentNodeImpl) segment.getNode2()).removeSegment(segment);
+            segments.remove(segment);
+        }
+
+        waySegmentMap.remove(way);
+        possiblyUnusedNodes.addAll(wayState.nodes);
+    }
+
+    /**
+     * if no segment node for a node exists in the {@link #nodeCreationMap},
      * creates a segment node for it and adds it to the nodeCreationMap and the nodes collection
      * and returns it; otherwise returns the existing segment node.
      */
-    private SegmentNodeImpl getOrCreateSegmentNodeForNode(N node,
-            Collection<SegmentNode> nodes, Map<N, SegmentNodeImpl> nodeCreationMap) {
+    private SegmentNodeImpl getOrCreateSegmentNodeForNode(N node) {
 
         SegmentNodeImpl segmentNode = nodeCreationMap.get(node);
 
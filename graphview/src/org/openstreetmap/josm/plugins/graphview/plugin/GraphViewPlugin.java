@@ -98,7 +98,6 @@ public class GraphViewPlugin extends Plugin implements LayerChangeListener, Obse
                     JOptionPane.showMessageDialog(MainApplication.getMainFrame(), tr("No ruleset has been selected!"), tr("No ruleset"), JOptionPane.ERROR_MESSAGE);
                 } else {
                     transitionStructure.setAccessParametersAndRuleset(preferences.getCurrentParameterBookmark(), accessRuleset);
-                    transitionStructure.forceUpdate();
                 }
 
             } else {
@@ -151,7 +150,6 @@ public class GraphViewPlugin extends Plugin implements LayerChangeListener, Obse
                 } else {
                     transitionStructure.setAccessParametersAndRuleset(
                             preferences.getCurrentParameterBookmark(), accessRuleset);
-                    transitionStructure.forceUpdate();
                 }
             }
         } catch (AccessRulesetSyntaxException e) {
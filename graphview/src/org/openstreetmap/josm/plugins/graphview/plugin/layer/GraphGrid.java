@@ -0,0 +1,194 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.graphview.plugin.layer;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.plugins.graphview.core.graph.GraphEdge;
+import org.openstreetmap.josm.plugins.graphview.core.graph.GraphNode;
+import org.openstreetmap.josm.plugins.graphview.core.graph.WayGraph;
+import org.openstreetmap.josm.plugins.graphview.core.property.GraphEdgeSegments;
+import org.openstreetmap.josm.plugins.graphview.core.transition.Segment;
+import org.openstreetmap.josm.plugins.graphview.core.visualisation.LatLonCoords;
+import org.openstreetmap.josm.plugins.graphview.core.visualisation.NodePositioner;
+
+/**
+ * spatial index of the nodes and edges of a {@link WayGraph}.
+ * The projected bounds of the graph are divided into a grid of cells, each element is
+ * assigned to the cell containing its center. As elements can extend beyond their cell,
+ * each cell keeps the bounds of its content. The index doesn't depend on the zoom level.
+ */
+final class GraphGrid {
+
+    private static final int MAX_CELLS_PER_AXIS = 64;
+
+    private final Projection projection;
+
+    private final double minEast;
+    private final double maxNorth;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+
+    private final List<List<GraphNode>> nodes;
+    private final List<List<GraphEdge>> edges;
+    private final Rectangle2D[] contentBounds;
+
+    private GraphGrid(Projection projection, Rectangle2D graphBounds) {
+        this.projection = projection;
+        this.minEast = graphBounds.getMinX();
+        this.maxNorth = graphBounds.getMaxY();
+        double size = Math.max(graphBounds.getWidth(), graphBounds.getHeight()) / MAX_CELLS_PER_AXIS;
+        this.cellSize = size > 0 ? size : 1;
+        this.columns = Math.min(MAX_CELLS_PER_AXIS, (int) (graphBounds.getWidth() / cellSize) + 1);
+        this.rows = Math.min(MAX_CELLS_PER_AXIS, (int) (graphBounds.getHeight() / cellSize) + 1);
+        int cellCount = columns * rows;
+        this.nodes = new ArrayList<>(cellCount);
+        this.edges = new ArrayList<>(cellCount);
+        for (int i = 0; i < cellCount; i++) {
+            nodes.add(null);
+            edges.add(null);
+        }
+        this.contentBounds = new Rectangle2D[cellCount];
+    }
+
+    /**
+     * creates an index for a graph
+     *
+     * @param wayGraph        graph to index; != null
+     * @param nodePositioner  positioner providing the positions of graph nodes; != null
+     * @param projection      projection used for painting; != null
+     */
+    static GraphGrid create(WayGraph wayGraph, NodePositioner nodePositioner, Projection projection) {
+
+        Map<GraphNode, EastNorth> nodePositions = new HashMap<>();
+        Rectangle2D graphBounds = null;
+
+        for (GraphNode node : wayGraph.getNodes()) {
+            EastNorth en = project(nodePositioner.getPosition(node), projection);
+            nodePositions.put(node, en);
+            graphBounds = add(graphBounds, en);
+        }
+
+        Map<GraphEdge, Rectangle2D> edgeBounds = new HashMap<>();
+
+        for (GraphEdge edge : wayGraph.getEdges()) {
+            Rectangle2D bounds = add(null, nodePositions.get(edge.getStartNode()));
+            bounds = add(bounds, nodePositions.get(edge.getTargetNode()));
+            for (Segment segment : edge.getPropertyValue(GraphEdgeSegments.PROPERTY)) {
+                bounds = add(bounds, project(segment.getNode1().getLat(), segment.getNode1().getLon(), projection));
+                bounds = add(bounds, project(segment.getNode2().getLat(), segment.getNode2().getLon(), projection));
+            }
+            edgeBounds.put(edge, bounds);
+            if (graphBounds == null) {
+                graphBounds = (Rectangle2D) bounds.clone();
+            } else {
+                graphBounds.add(bounds);
+            }
+        }
+
+        GraphGrid grid = new GraphGrid(projection,
+                graphBounds != null ? graphBounds : new Rectangle2D.Double());
+
+        for (Map.Entry<GraphNode, EastNorth> entry : nodePositions.entrySet()) {
+            EastNorth en = entry.getValue();
+            int cell = grid.getCell(en.east(), en.north());
+            grid.nodes.set(cell, addTo(grid.nodes.get(cell), entry.getKey()));
+            grid.contentBounds[cell] = add(grid.contentBounds[cell], en);
+        }
+
+        for (Map.Entry<GraphEdge, Rectangle2D> entry : edgeBounds.entrySet()) {
+            Rectangle2D bounds = entry.getValue();
+            int cell = grid.getCell(bounds.getCenterX(), bounds.getCenterY());
+            grid.edges.set(cell, addTo(grid.edges.get(cell), entry.getKey()));
+            if (grid.contentBounds[cell] == null) {
+                grid.contentBounds[cell] = (Rectangle2D) bounds.clone();
+            } else {
+                grid.contentBounds[cell].add(bounds);
+            }
+        }
+
+        return grid;
+    }
+
+    private static <T> List<T> addTo(List<T> list, T element) {
+        List<T> result = list != null ? list : new ArrayList<T>();
+        result.add(element);
+        return result;
+    }
+
+    private static Rectangle2D add(Rectangle2D bounds, EastNorth en) {
+        if (bounds == null) {
+            return new Rectangle2D.Double(en.east(), en.north(), 0, 0);
+        }
+        bounds.add(en.east(), en.north());
+        return bounds;
+    }
+
+    static EastNorth project(LatLonCoords coords, Projection projection) {
+        return project(coords.getLat(), coords.getLon(), projection);
+    }
+
+    static EastNorth project(double lat, double lon, Projection projection) {
+        return projection.latlon2eastNorth(new LatLon(lat, lon));
+    }
+
+    private int getCell(double east, double north) {
+        int column = Math.max(0, Math.min(columns - 1, (int) ((east - minEast) / cellSize)));
+        int row = Math.max(0, Math.min(rows - 1, (int) ((maxNorth - north) / cellSize)));
+        return row * columns + column;
+    }
+
+    /** returns the projection the index has been created for */
+    Projection getProjection() {
+        return projection;
+    }
+
+    /** returns the east coordinate of the west border of the index, used as origin for painting */
+    double getMinEast() {
+        return minEast;
+    }
+
+    /** returns the north coordinate of the north border of the index, used as origin for painting */
+    double getMaxNorth() {
+        return maxNorth;
+    }
+
+    int getCellCount() {
+        return contentBounds.length;
+    }
+
+    /**
+     * returns the indices of all cells with content intersecting an area
+     * @param area  area in projected coordinates; != null
+     */
+    List<Integer> getCells(Rectangle2D area) {
+        List<Integer> result = new ArrayList<>();
+        for (int cell = 0; cell < contentBounds.length; cell++) {
+            Rectangle2D bounds = contentBounds[cell];
+            if (bounds != null && area.intersects(bounds.getX(), bounds.getY(),
+                    Math.max(bounds.getWidth(), Double.MIN_VALUE), Math.max(bounds.getHeight(), Double.MIN_VALUE))) {
+                result.add(cell);
+            }
+        }
+        return result;
+    }
+
+    /** returns the nodes assigned to a cell; != null */
+    List<GraphNode> getNodes(int cell) {
+        List<GraphNode> result = nodes.get(cell);
+        return result != null ? result : new ArrayList<GraphNode>(0);
+    }
+
+    /** returns the edges assigned to a cell; != null */
+    List<GraphEdge> getEdges(int cell) {
+        List<GraphEdge> result = edges.get(cell);
+        return result != null ? result : new ArrayList<GraphEdge>(0);
+    }
+}
@@ -9,10 +9,20 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Polygon;
+import java.awt.Rectangle;
 import java.awt.Shape;
+import java.awt.Stroke;
 import java.awt.geom.AffineTransform;
-import java.awt.geom.Line2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.Action;
 import javax.swing.Icon;
@@ -20,8 +30,8 @@ import javax.swing.Icon;
 import org.openstreetmap.josm.actions.RenameLayerAction;
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.coor.EastNorth;
-import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
+import org.openstreetmap.josm.data.projection.Projection;
 import org.openstreetmap.josm.data.projection.ProjectionRegistry;
 import org.openstreetmap.josm.gui.MapView;
 import org.openstreetmap.josm.gui.dialogs.LayerListDialog;
@@ -36,7 +46,6 @@ import org.openstreetmap.josm.plugins.graphview.core.transition.Segment;
 import org.openstreetmap.josm.plugins.graphview.core.transition.SegmentNode;
 import org.openstreetmap.josm.plugins.graphview.core.util.GraphUtil;
 import org.openstreetmap.josm.plugins.graphview.core.visualisation.ColorScheme;
-import org.openstreetmap.josm.plugins.graphview.core.visualisation.LatLonCoords;
 import org.openstreetmap.josm.plugins.graphview.core.visualisation.NodePositioner;
 import org.openstreetmap.josm.plugins.graphview.core.visualisation.NonMovingNodePositioner;
 import org.openstreetmap.josm.plugins.graphview.plugin.preferences.GraphViewPreferences;
@@ -62,6 +71,41 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
 
     private static final boolean CONNECT_ALL_NODE_PAIRS = false;
 
+    private static final int MAX_CACHED_ZOOM_LEVELS = 3;
+
+    /** pixels that shapes can extend beyond the positions of their nodes */
+    private static final double PAINT_MARGIN = DIRECTIONAL_OFFSET + 25;
+
+    private static final Stroke EDGE_STROKE = new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+
+    /**
+     * shapes for the nodes and edges of a grid cell at one zoom level, grouped by color.
+     * Each group is painted with a single draw or fill call.
+     */
+    private static final class CellBatch {
+        final Map<Color, Path2D> nodes = new HashMap<>();
+        final Map<Color, Path2D> lines = new HashMap<>();
+        final Map<Color, Path2D> arrowheads = new HashMap<>();
+        final Map<Color, Path2D> arrowheadCores = new HashMap<>();
+
+        Path2D getPath(Map<Color, Path2D> paths, Color color) {
+            return paths.computeIfAbsent(color, c -> new Path2D.Double());
+        }
+    }
+
+    /** values that are needed while creating shapes */
+    private static final class PaintContext {
+        final GraphGrid grid;
+        final double scale;
+        final boolean separateDirections;
+
+        PaintContext(GraphGrid grid, double scale, boolean separateDirections) {
+            this.grid = grid;
+            this.scale = scale;
+            this.separateDirections = separateDirections;
+        }
+    }
+
     /** an arrow head that points along the x-axis to (0,0) */
     private static final Shape ARROW_HEAD;
 
@@ -91,6 +135,21 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
 
     private WayGraph wayGraph = null;
 
+    /** spatial index of the graph for the current projection, null if it needs to be created */
+    private GraphGrid grid = null;
+
+    /**
+     * shapes of the grid cells that have been painted, for the most recently used zoom levels.
+     * Keys consist of scale and all preferences affecting the shapes.
+     */
+    private final Map<List<Object>, CellBatch[]> batchCache =
+        new LinkedHashMap<List<Object>, CellBatch[]>(MAX_CACHED_ZOOM_LEVELS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, CellBatch[]> eldest) {
+                return size() > MAX_CACHED_ZOOM_LEVELS;
+            }
+        };
+
     private ColorScheme colorScheme = null;
     private Double arrowheadPlacement = null;
     private NodePositioner nodePositioner = new NonMovingNodePositioner();
@@ -108,6 +167,8 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
         if (wayGraph != null) {
             wayGraph.addObserver(this);
         }
+        grid = null;
+        invalidate();
     }
 
     /** sets the ColorScheme that is to be used for choosing colors, may be null */
@@ -132,6 +193,7 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
         if (nodePositioner == null) {
             this.nodePositioner = new NonMovingNodePositioner();
         }
+        grid = null;
         invalidate();
     }
 
@@ -140,24 +202,22 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
         return ImageProvider.get("layer", "graphview");
     }
 
-    private void paintGraphNode(final GraphNode node, final Graphics g, final MapView mv) {
-
-        Color color = colorScheme != null ? colorScheme.getNodeColor(node) : Color.LIGHT_GRAY;
-        Point p = getNodePoint(node, mv);
-
-        paintNode(g, p, color);
-
-    }
-
     public static void paintNode(final Graphics g, Point p, Color color) {
         g.setColor(color);
         g.fillOval(p.x - NODE_RADIUS, p.y - NODE_RADIUS, 2 * NODE_RADIUS, 2 * NODE_RADIUS);
     }
 
-    private void paintGraphEdge(final GraphEdge e, final Graphics2D g2D, final MapView mv,
-            boolean drawLine, boolean drawDirectionIndicator) {
+    /**
+     * adds the lines and arrowhead of an edge to a batch
+     *
+     * @param e          edge to add; != null
+     * @param batch      batch to add shapes to; != null
+     * @param pc         scale and settings to use; != null
+     * @param fillColor  color of arrowhead cores; != null
+     */
+    private void addGraphEdge(final GraphEdge e, final CellBatch batch, final PaintContext pc, Color fillColor) {
 
-        if (!CONNECT_ALL_NODE_PAIRS && GraphViewPreferences.getInstance().getSeparateDirections()) {
+        if (!CONNECT_ALL_NODE_PAIRS && pc.separateDirections) {
 
             //don't paint edges between nodes from the same SegmentNode and simply inverted Segment
             if (e.getStartNode().getSegmentNode() == e.getTargetNode().getSegmentNode()
@@ -168,74 +228,65 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
 
         }
 
-        /* draw line(s) */
-
-        g2D.setStroke(new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        /* add line(s) */
 
         List<Segment> edgeSegments = e.getPropertyValue(GraphEdgeSegments.PROPERTY);
 
+        Point2D startPoint = getNodePoint(e.getStartNode(), pc);
+        Point2D targetPoint = getNodePoint(e.getTargetNode(), pc);
+
+        Color color;
+
         if (edgeSegments.size() > 0) {
 
             Segment firstSegment = edgeSegments.get(0);
             Segment lastSegment = edgeSegments.get(edgeSegments.size() - 1);
 
-            //draw segments
+            color = Color.WHITE;
 
             for (Segment segment : edgeSegments) {
 
-                Color color = Color.WHITE;
                 if (colorScheme != null) {
                     color = colorScheme.getSegmentColor(segment);
                 }
-                g2D.setColor(color);
 
-                Point p1 = getNodePoint(segment.getNode1(), mv);
-                Point p2 = getNodePoint(segment.getNode2(), mv);
+                Point2D p1 = segment == firstSegment ? startPoint : getNodePoint(segment.getNode1(), pc);
+                Point2D p2 = segment == lastSegment ? targetPoint : getNodePoint(segment.getNode2(), pc);
 
-                if (segment == firstSegment) {
-                    p1 = getNodePoint(e.getStartNode(), mv);
-                }
-                if (segment == lastSegment) {
-                    p2 = getNodePoint(e.getTargetNode(), mv);
-                }
-
-                if (drawLine) {
-                    g2D.draw(new Line2D.Float(p1.x, p1.y, p2.x, p2.y));
-                }
+                Path2D path = batch.getPath(batch.lines, color);
+                path.moveTo(p1.getX(), p1.getY());
+                path.lineTo(p2.getX(), p2.getY());
 
             }
 
         } else {
 
-            Color color = GraphViewPreferences.getInstance().getSegmentColor();
-            g2D.setColor(color);
+            color = GraphViewPreferences.getInstance().getSegmentColor();
 
-            Point p1 = getNodePoint(e.getStartNode(), mv);
-            Point p2 = getNodePoint(e.getTargetNode(), mv);
-
-            if (drawLine) {
-                g2D.draw(new Line2D.Float(p1.x, p1.y, p2.x, p2.y));
-            }
+            Path2D path = batch.getPath(batch.lines, color);
+            path.moveTo(startPoint.getX(), startPoint.getY());
+            path.lineTo(targetPoint.getX(), targetPoint.getY());
 
         }
 
-        /* draw arrow head (note: color of last segment is still set) */
+        /* add arrow head (using the color of the last segment) */
 
-        {
-            Point p1 = getNodePoint(e.getStartNode(), mv);
-            Point p2 = getNodePoint(e.getTargetNode(), mv);
+        Point2D p1 = startPoint;
+        if (edgeSegments.size() > 1) {
+            Segment lastSegment = edgeSegments.get(edgeSegments.size() - 1);
+            p1 = getNodePoint(lastSegment.getNode1(), pc);
+        }
 
-            if (edgeSegments.size() > 1) {
-                Segment lastSegment = edgeSegments.get(edgeSegments.size() - 1);
-                p1 = getNodePoint(lastSegment.getNode1(), mv);
-            }
+        if (!p1.equals(targetPoint)) {
 
-            if (drawDirectionIndicator) {
+            double x = p1.getX() + arrowheadPlacement * (targetPoint.getX() - p1.getX());
+            double y = p1.getY() + arrowheadPlacement * (targetPoint.getY() - p1.getY());
 
-                paintArrowhead(g2D, p1, p2, arrowheadPlacement, null,
-                        GraphViewPreferences.getInstance().getArrowheadFillColor());
+            AffineTransform transform = AffineTransform.getTranslateInstance(x, y);
+            transform.rotate(targetPoint.getX() - p1.getX(), targetPoint.getY() - p1.getY());
 
-            }
+            batch.getPath(batch.arrowheads, color).append(ARROW_HEAD.getPathIterator(transform), false);
+            batch.getPath(batch.arrowheadCores, fillColor).append(ARROW_HEAD_CORE.getPathIterator(transform), false);
 
         }
     }
@@ -275,18 +326,21 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
         }
     }
 
-    private Point getNodePoint(GraphNode node, MapView mv) {
+    /**
+     * returns the position of a graph node in pixel coordinates relative to the grid origin.
+     * These only differ from screen coordinates by a translation that depends on the visible area.
+     */
+    private Point2D getNodePoint(GraphNode node, PaintContext pc) {
 
-        Point nodePoint = getNodePoint(nodePositioner.getPosition(node), mv);
+        Point2D nodePoint = toPixels(GraphGrid.project(nodePositioner.getPosition(node), pc.grid.getProjection()), pc);
 
-        if (GraphViewPreferences.getInstance().getSeparateDirections()
-                && !GraphUtil.isEndNode(node)) {
+        if (pc.separateDirections && !GraphUtil.isEndNode(node)) {
 
             SegmentNode node1 = node.getSegment().getNode1();
             SegmentNode node2 = node.getSegment().getNode2();
 
-            Point node1Point = getNodePoint(node1, mv);
-            Point node2Point = getNodePoint(node2, mv);
+            Point2D node1Point = getNodePoint(node1, pc);
+            Point2D node2Point = getNodePoint(node2, pc);
 
             double segmentX = node2Point.getX() - node1Point.getX();
             double segmentY = node2Point.getY() - node1Point.getY();
@@ -301,8 +355,9 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
                 double normalizedX = rotatedX / segmentLength;
                 double normalizedY = rotatedY / segmentLength;
 
-                nodePoint.x += DIRECTIONAL_OFFSET * normalizedX;
-                nodePoint.y += DIRECTIONAL_OFFSET * normalizedY;
+                nodePoint.setLocation(
+                        nodePoint.getX() + DIRECTIONAL_OFFSET * normalizedX,
+                        nodePoint.getY() + DIRECTIONAL_OFFSET * normalizedY);
 
             }
 
@@ -311,15 +366,14 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
         return nodePoint;
     }
 
-    private static Point getNodePoint(SegmentNode node, MapView mv) {
-        LatLonCoords coords = new LatLonCoords(node.getLat(), node.getLon());
-        return getNodePoint(coords, mv);
+    private static Point2D getNodePoint(SegmentNode node, PaintContext pc) {
+        return toPixels(GraphGrid.project(node.getLat(), node.getLon(), pc.grid.getProjection()), pc);
     }
 
-    private static Point getNodePoint(LatLonCoords coords, MapView mv) {
-        LatLon latLon = new LatLon(coords.getLat(), coords.getLon());
-        EastNorth eastNorth = ProjectionRegistry.getProjection().latlon2eastNorth(latLon);
-        return mv.getPoint(eastNorth);
+    private static Point2D toPixels(EastNorth eastNorth, PaintContext pc) {
+        return new Point2D.Double(
+                (eastNorth.east() - pc.grid.getMinEast()) / pc.scale,
+                (pc.grid.getMaxNorth() - eastNorth.north()) / pc.scale);
     }
 
     /**
@@ -353,23 +407,116 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
     public void paint(final Graphics2D g, final MapView mv, Bounds bounds) {
         if (wayGraph != null) {
 
-            for (GraphNode n : wayGraph.getNodes()) {
-                paintGraphNode(n, g, mv);
+            Projection projection = ProjectionRegistry.getProjection();
+            if (grid == null || grid.getProjection() != projection) {
+                grid = GraphGrid.create(wayGraph, nodePositioner, projection);
+                batchCache.clear();
+            }
+
+            GraphViewPreferences preferences = GraphViewPreferences.getInstance();
+            PaintContext pc = new PaintContext(grid, mv.getScale(), preferences.getSeparateDirections());
+
+            List<Object> key = Arrays.<Object>asList(pc.scale, pc.separateDirections,
+                    preferences.getSegmentColor(), preferences.getArrowheadFillColor());
+            CellBatch[] batches = batchCache.get(key);
+            if (batches == null) {
+                batches = new CellBatch[grid.getCellCount()];
+                batchCache.put(key, batches);
             }
 
-            for (GraphEdge e : wayGraph.getEdges()) {
-                paintGraphEdge(e, g, mv, true, false);
+            /* find the cells visible in the map view, with a margin for offsets and arrowheads */
+
+            Point2D origin = mv.getPoint2D(new EastNorth(grid.getMinEast(), grid.getMaxNorth()));
+
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(0, 0, mv.getWidth(), mv.getHeight());
             }
 
-            for (GraphEdge e : wayGraph.getEdges()) {
-                //draw arrowheads last to make sure they end up on top
-                paintGraphEdge(e, g, mv, false, true);
+            double margin = PAINT_MARGIN * pc.scale;
+            Rectangle2D visibleArea = new Rectangle2D.Double(
+                    grid.getMinEast() + (clip.getMinX() - origin.getX()) * pc.scale - margin,
+                    grid.getMaxNorth() - (clip.getMaxY() - origin.getY()) * pc.scale - margin,
+                    clip.getWidth() * pc.scale + 2 * margin,
+                    clip.getHeight() * pc.scale + 2 * margin);
+
+            List<CellBatch> visibleBatches = new ArrayList<>();
+            for (int cell : grid.getCells(visibleArea)) {
+                if (batches[cell] == null) {
+                    batches[cell] = createBatch(cell, pc, preferences.getArrowheadFillColor());
+                }
+                visibleBatches.add(batches[cell]);
             }
 
+            /* paint nodes, then edges, then arrowheads to make sure they end up on top */
+
+            AffineTransform originalTransform = g.getTransform();
+            Stroke originalStroke = g.getStroke();
+            g.translate(origin.getX(), origin.getY());
+
+            for (CellBatch batch : visibleBatches) {
+                fill(g, batch.nodes);
+            }
+
+            g.setStroke(EDGE_STROKE);
+            for (CellBatch batch : visibleBatches) {
+                for (Map.Entry<Color, Path2D> entry : batch.lines.entrySet()) {
+                    g.setColor(entry.getKey());
+                    g.draw(entry.getValue());
+                }
+            }
+
+            for (CellBatch batch : visibleBatches) {
+                fill(g, batch.arrowheads);
+            }
+            for (CellBatch batch : visibleBatches) {
+                fill(g, batch.arrowheadCores);
+            }
+
+            g.setStroke(originalStroke);
+            g.setTransform(originalTransform);
+
         }
 
     }
 
+    private static void fill(Graphics2D g, Map<Color, Path2D> paths) {
+        for (Map.Entry<Color, Path2D> entry : paths.entrySet()) {
+            g.setColor(entry.getKey());
+            g.fill(entry.getValue());
+        }
+    }
+
+    /**
+     * creates the shapes for the nodes and edges assigned to a cell of the {@link #grid}
+     */
+    private CellBatch createBatch(int cell, PaintContext pc, Color arrowheadFillColor) {
+
+        CellBatch batch = new CellBatch();
+
+        for (GraphNode node : pc.grid.getNodes(cell)) {
+            Color color = colorScheme != null ? colorScheme.getNodeColor(node) : Color.LIGHT_GRAY;
+            Point2D p = getNodePoint(node, pc);
+            batch.getPath(batch.nodes, color).append(new Ellipse2D.Double(
+                    p.getX() - NODE_RADIUS, p.getY() - NODE_RADIUS, 2 * NODE_RADIUS, 2 * NODE_RADIUS), false);
+        }
+
+        for (GraphEdge edge : pc.grid.getEdges(cell)) {
+            addGraphEdge(edge, batch, pc, arrowheadFillColor);
+        }
+
+        return batch;
+    }
+
+    /**
+     * discards cached shapes, they will be recreated when painting the layer the next time
+     */
+    @Override
+    public void invalidate() {
+        batchCache.clear();
+        super.invalidate();
+    }
+
     @Override
     public String getToolTipText() {
         return tr("Routing graph calculated by the GraphView plugin");
@@ -408,6 +555,7 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
     @Override
     public void update(WayGraph wayGraph) {
         assert wayGraph == this.wayGraph;
+        grid = null;
         invalidate();
     }
 }
@@ -2,7 +2,9 @@
 package org.openstreetmap.josm.plugins.graphview.core;
 
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Arrays;
 import java.util.Collection;
@@ -30,6 +32,7 @@ import org.openstreetmap.josm.plugins.graphview.core.property.RoadWidth;
 import org.openstreetmap.josm.plugins.graphview.core.property.VehiclePropertyType;
 import org.openstreetmap.josm.plugins.graphview.core.property.VehiclePropertyTypes;
 import org.openstreetmap.josm.plugins.graphview.core.transition.GenericTransitionStructure;
+import org.openstreetmap.josm.plugins.graphview.core.transition.Segment;
 import org.openstreetmap.josm.plugins.graphview.core.transition.TransitionStructure;
 import org.openstreetmap.josm.plugins.graphview.plugin.preferences.PreferenceAccessParameters;
 import org.openstreetmap.josm.plugins.graphview.plugin.preferences.VehiclePropertyStringParser.PropertyValueSyntaxException;
@@ -158,6 +161,70 @@ class FullGraphCreationTest {
 
     }
 
+    @Test
+    void testIncrementalUpdate() {
+
+        TestDataSource ds = new TestDataSource();
+
+        TestNode nodeN = new TestNode(2, 1);
+        TestNode nodeW = new TestNode(1, 0);
+        TestNode nodeS = new TestNode(0, 1);
+        TestNode nodeC = new TestNode(1, 1);
+
+        ds.nodes.addAll(Arrays.asList(nodeN, nodeW, nodeS, nodeC));
+
+        TestWay wayNC = new TestWay();
+        wayNC.tags.put("highway", "test");
+        wayNC.nodes.addAll(Arrays.asList(nodeN, nodeC));
+        TestWay wayCS = new TestWay();
+        wayCS.tags.put("highway", "test");
+        wayCS.nodes.addAll(Arrays.asList(nodeC, nodeS));
+        TestWay wayCW = new TestWay();
+        wayCW.tags.put("highway", "test");
+        wayCW.nodes.addAll(Arrays.asList(nodeC, nodeW));
+
+        ds.ways.addAll(Arrays.asList(wayNC, wayCS, wayCW));
+
+        GenericTransitionStructure<TestNode, TestWay, TestRelation, TestRelationMember> ts = createTestTransitionStructure(ds);
+        WayGraph graph = new TSBasedWayGraph(ts);
+        Collection<Segment> initialSegments = new LinkedList<>(ts.getSegments());
+
+        assertSame(24, graph.getEdges().size());
+
+        /* adding a restriction keeps all segments */
+
+        ds.relations.add(createTurnRestrictionRelation(wayCS, nodeC, wayCW, "no_left_turn"));
+        ts.update(ds);
+
+        assertSame(6, size(ts.getSegments()));
+        assertTrue(ts.getSegments().containsAll(initialSegments));
+        assertSame(1, size(ts.getRestrictions()));
+        assertSame(12, graph.getNodes().size());
+        assertSame(23, graph.getEdges().size());
+
+        /* making a way unusable only removes its segments and the restriction using it */
+
+        wayCW.tags.remove("highway");
+        ts.update(ds);
+
+        assertSame(3, size(ts.getNodes()));
+        assertSame(4, size(ts.getSegments()));
+        assertTrue(initialSegments.containsAll(ts.getSegments()));
+        assertSame(0, size(ts.getRestrictions()));
+
+        /* restoring the way recreates its segments and gives the same graph as before */
+
+        wayCW.tags.put("highway", "test");
+        ts.update(ds);
+
+        assertSame(4, size(ts.getNodes()));
+        assertSame(6, size(ts.getSegments()));
+        assertFalse(ts.getSegments().containsAll(initialSegments));
+        assertSame(1, size(ts.getRestrictions()));
+        assertSame(12, graph.getNodes().size());
+        assertSame(23, graph.getEdges().size());
+    }
+
     private TestRelation createTurnRestrictionRelation(
             TestWay from, TestNode via, TestWay to, String restriction) {
         TestRelation resultRelation = new TestRelation();
@@ -169,7 +236,7 @@ class FullGraphCreationTest {
         return resultRelation;
     }
 
-    private TransitionStructure createTestTransitionStructure(TestDataSource dataSource) {
+    private GenericTransitionStructure<TestNode, TestWay, TestRelation, TestRelationMember> createTestTransitionStructure(TestDataSource dataSource) {
 
         LinkedList<RoadPropertyType<?>> properties = new LinkedList<>();
         properties.add(new RoadWidth());
@@ -0,0 +1,344 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.http2;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openstreetmap.josm.data.Version;
+import org.openstreetmap.josm.spi.preferences.Config;
+
+/**
+ * Sends many requests at once, for plugins which download lots of small resources like tiles or metadata.
+ * <p>
+ * Requests are sent asynchronously with the HTTP clients shared with {@link Http2Client}, so HTTP/2 requests to the same host
+ * are multiplexed over one connection. At most {@link #getMaxConcurrentRequests()} requests are in progress at the same time,
+ * the others wait in a queue. A request is in progress until its body has been read completely, so a body handler which streams
+ * the body (e.g. {@link java.net.http.HttpResponse.BodyHandlers#ofInputStream()}) slows down the downloads to the pace of its reader.
+ * <p>
+ * Like for {@link Http2Client}, redirects are not followed.
+ */
+public final class Http2BatchClient {
+
+    private static final String USER_AGENT_STRING = "User-Agent";
+
+    /**
+     * Statistics of the requests sent to a host.
+     */
+    public static final class HostMetrics {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder http2Responses = new LongAdder();
+        private final LongAdder latencyNanos = new LongAdder();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+        private final AtomicInteger inProgress = new AtomicInteger();
+        private final AtomicInteger maxInProgress = new AtomicInteger();
+
+        private void started() {
+            maxInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+        }
+
+        private void responded(HttpResponse<?> response, long nanos) {
+            requests.increment();
+            if (response.version() == HttpClient.Version.HTTP_2) {
+                http2Responses.increment();
+            }
+            latencyNanos.add(nanos);
+            maxLatencyNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private void failed() {
+            requests.increment();
+            failures.increment();
+        }
+
+        private void finished() {
+            inProgress.decrementAndGet();
+        }
+
+        /**
+         * Returns the number of requests which received a response or failed.
+         * @return the number of requests
+         */
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        /**
+         * Returns the number of requests which failed without response.
+         * @return the number of failed requests
+         */
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        /**
+         * Returns the number of responses received over HTTP/2, i.e. multiplexed over the connection shared with the other requests.
+         * Responses received over HTTP/1.1 use a connection of their own, which is kept alive for later requests.
+         * @return the number of HTTP/2 responses
+         */
+        public long getHttp2Responses() {
+            return http2Responses.sum();
+        }
+
+        /**
+         * Returns the average time from sending a request until the response headers have been received.
+         * @return the average latency
+         */
+        public Duration getAverageLatency() {
+            long responses = getRequests() - getFailures();
+            return Duration.ofNanos(responses > 0 ? latencyNanos.sum() / responses : 0);
+        }
+
+        /**
+         * Returns the longest time from sending a request until the response headers have been received.
+         * @return the maximum latency
+         */
+        public Duration getMaxLatency() {
+            return Duration.ofNanos(maxLatencyNanos.get());
+        }
+
+        /**
+         * Returns the number of requests which are currently in progress.
+         * @return the number of requests in progress
+         */
+        public int getInProgress() {
+            return inProgress.get();
+        }
+
+        /**
+         * Returns the maximum number of requests which have been in progress at the same time.
+         * @return the maximum number of requests in progress
+         */
+        public int getMaxInProgress() {
+            return maxInProgress.get();
+        }
+
+        @Override
+        public String toString() {
+            return "requests=" + getRequests() + ", failures=" + getFailures() + ", http2=" + getHttp2Responses()
+                + ", latency=" + getAverageLatency().toMillis() + "ms (max " + getMaxLatency().toMillis() + "ms)"
+                + ", maxInProgress=" + getMaxInProgress();
+        }
+    }
+
+    private final HttpClient client;
+    private final int maxConcurrentRequests;
+    private final AtomicInteger running = new AtomicInteger();
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final Map<String, HostMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@code Http2BatchClient} with the concurrency limit of the {@code http2.batch.max-concurrent-requests}
+     * preference, and the connect timeout of {@link org.openstreetmap.josm.tools.HttpClient}.
+     */
+    public Http2BatchClient() {
+        this(Config.getPref().getInt("http2.batch.max-concurrent-requests", 16));
+    }
+
+    /**
+     * Constructs a new {@code Http2BatchClient} with the connect timeout of {@link org.openstreetmap.josm.tools.HttpClient}.
+     * @param maxConcurrentRequests maximum number of requests in progress at the same time
+     */
+    public Http2BatchClient(int maxConcurrentRequests) {
+        this(maxConcurrentRequests, Duration.ofSeconds(Config.getPref().getInt("socket.timeout.connect", 15)));
+    }
+
+    /**
+     * Constructs a new {@code Http2BatchClient}.
+     * @param maxConcurrentRequests maximum number of requests in progress at the same time
+     * @param connectTimeout connect timeout
+     */
+    public Http2BatchClient(int maxConcurrentRequests, Duration connectTimeout) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be positive: " + maxConcurrentRequests);
+        }
+        this.client = Http2Client.getClient(connectTimeout);
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Returns a request builder with the JOSM user agent and the read timeout of {@link org.openstreetmap.josm.tools.HttpClient}.
+     * @param uri request URI
+     * @return a new request builder
+     */
+    public static HttpRequest.Builder newRequestBuilder(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .header(USER_AGENT_STRING, Version.getInstance().getFullAgentString())
+                .timeout(Duration.ofSeconds(Config.getPref().getInt("socket.timeout.read", 30)));
+    }
+
+    /**
+     * Returns the maximum number of requests in progress at the same time.
+     * @return the maximum number of requests in progress
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * Returns the number of requests waiting to be sent.
+     * @return the number of queued requests
+     */
+    public int getQueuedRequests() {
+        return pending.size();
+    }
+
+    /**
+     * Returns the statistics of the requests sent by this client.
+     * @return the statistics, by host
+     */
+    public Map<String, HostMetrics> getMetrics() {
+        return Collections.unmodifiableMap(new TreeMap<>(metrics));
+    }
+
+    /**
+     * Sends a request asynchronously, as soon as the number of requests in progress is below the limit.
+     * @param <T> the response body type
+     * @param request the request
+     * @param bodyHandler the response body handler
+     * @return the future response, completed when the response headers have been received
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyHandler<T> bodyHandler) {
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        pending.add(() -> send(request, bodyHandler, result));
+        startPending();
+        return result;
+    }
+
+    /**
+     * Sends requests asynchronously, with the same body handler.
+     * @param <T> the response body type
+     * @param requests the requests
+     * @param bodyHandler the response body handler
+     * @return the future responses, in the order of the requests
+     * @see #sendAsync
+     */
+    public <T> List<CompletableFuture<HttpResponse<T>>> sendAllAsync(Collection<HttpRequest> requests, BodyHandler<T> bodyHandler) {
+        List<CompletableFuture<HttpResponse<T>>> responses = new ArrayList<>(requests.size());
+        for (HttpRequest request : requests) {
+            responses.add(sendAsync(request, bodyHandler));
+        }
+        return responses;
+    }
+
+    private void startPending() {
+        while (!pending.isEmpty()) {
+            int n = running.get();
+            if (n >= maxConcurrentRequests) {
+                return;
+            }
+            if (running.compareAndSet(n, n + 1)) {
+                Runnable task = pending.poll();
+                if (task != null) {
+                    task.run();
+                } else {
+                    running.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private <T> void send(HttpRequest request, BodyHandler<T> bodyHandler, CompletableFuture<HttpResponse<T>> result) {
+        if (result.isDone()) {
+            // cancelled while queued
+            running.decrementAndGet();
+            startPending();
+            return;
+        }
+        HostMetrics hostMetrics = metrics.computeIfAbsent(String.valueOf(request.uri().getHost()), host -> new HostMetrics());
+        AtomicBoolean done = new AtomicBoolean();
+        Runnable finish = () -> {
+            if (done.compareAndSet(false, true)) {
+                hostMetrics.finished();
+                running.decrementAndGet();
+                startPending();
+            }
+        };
+        hostMetrics.started();
+        long start = System.nanoTime();
+        client.sendAsync(request, info -> new FinishingSubscriber<>(bodyHandler.apply(info), finish))
+            .whenComplete((response, error) -> {
+                if (response != null) {
+                    hostMetrics.responded(response, System.nanoTime() - start);
+                    result.complete(response);
+                } else {
+                    hostMetrics.failed();
+                    finish.run();
+                    result.completeExceptionally(error);
+                }
+            });
+    }
+
+    /**
+     * Body subscriber which calls an action once the body has been read, failed or has been cancelled.
+     */
+    private static final class FinishingSubscriber<T> implements BodySubscriber<T> {
+        private final BodySubscriber<T> subscriber;
+        private final Runnable finish;
+
+        FinishingSubscriber(BodySubscriber<T> subscriber, Runnable finish) {
+            this.subscriber = subscriber;
+            this.finish = finish;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return subscriber.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    subscription.cancel();
+                    finish.run();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            finish.run();
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            finish.run();
+            subscriber.onComplete();
+        }
+    }
+}
@@ -0,0 +1,606 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.http2;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.net.ssl.SSLSession;
+
+import org.openstreetmap.josm.plugins.http2.Http2Client.Http2Response;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.JosmRuntimeException;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * On-disk cache of HTTP responses to {@code GET} requests, used by {@link Http2Client} if {@code http2.cache.enabled} is set.
+ * <p>
+ * Responses with an {@code ETag} or {@code Last-Modified} validator, or with an explicit lifetime, are stored as received.
+ * Fresh entries are answered without request. Stale entries are revalidated with {@code If-None-Match} and
+ * {@code If-Modified-Since}, and answered from the cache if the server replies {@code 304 Not Modified}.
+ * The least recently used entries are removed when the cache grows beyond {@code http2.cache.max-size-mb}.
+ */
+final class Http2Cache {
+
+    private static final String BODY = ".body";
+    private static final String META = ".meta";
+    private static final String HEADER = "header.";
+
+    /** Headers which are not stored, because they only apply to the original response. */
+    private static final List<String> EXCLUDED_HEADERS = Arrays.asList("connection", "keep-alive", "set-cookie", "transfer-encoding");
+
+    private static Http2Cache instance;
+    private static boolean unavailable;
+
+    /**
+     * A stored response.
+     */
+    static final class Entry {
+        private final String key;
+        private final URI uri;
+        private final HttpClient.Version version;
+        private final Map<String, List<String>> headers;
+        private final long freshUntil;
+
+        Entry(String key, URI uri, HttpClient.Version version, Map<String, List<String>> headers, long freshUntil) {
+            this.key = key;
+            this.uri = uri;
+            this.version = version;
+            this.headers = headers;
+            this.freshUntil = freshUntil;
+        }
+
+        /**
+         * Determines if the entry can be used without revalidation.
+         * @return {@code true} if the entry is fresh
+         */
+        boolean isFresh() {
+            return System.currentTimeMillis() < freshUntil;
+        }
+
+        /**
+         * Returns the entity tag of the response.
+         * @return the entity tag, or {@code null}
+         */
+        String getETag() {
+            return getHeader(headers, "ETag");
+        }
+
+        /**
+         * Returns the last modification date of the response.
+         * @return the last modification date, or {@code null}
+         */
+        String getLastModified() {
+            return getHeader(headers, "Last-Modified");
+        }
+    }
+
+    private final Path directory;
+    private final long maxSize;
+    /** Size of the entries, in access order. */
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    /**
+     * Constructs a new {@code Http2Cache}, with the entries already in the directory.
+     * @param directory cache directory
+     * @param maxSize maximum size in bytes
+     * @throws IOException if the directory cannot be read
+     */
+    Http2Cache(Path directory, long maxSize) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxSize = maxSize;
+        List<Path> metas = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + META)) {
+            stream.forEach(metas::add);
+        }
+        // the last access is recorded as modification time of the metadata
+        Map<Path, Long> accessed = new LinkedHashMap<>();
+        for (Path meta : metas) {
+            accessed.put(meta, Files.getLastModifiedTime(meta).toMillis());
+        }
+        metas.sort((a, b) -> Long.compare(accessed.get(a), accessed.get(b)));
+        for (Path meta : metas) {
+            String name = meta.getFileName().toString();
+            String key = name.substring(0, name.length() - META.length());
+            Path body = directory.resolve(key + BODY);
+            if (Files.exists(body)) {
+                long entrySize = Files.size(meta) + Files.size(body);
+                index.put(key, entrySize);
+                size += entrySize;
+            } else {
+                Files.delete(meta);
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Returns the shared cache, if enabled.
+     * @return the cache, or {@code null} if the cache is disabled or cannot be used
+     */
+    static synchronized Http2Cache getInstance() {
+        if (!Config.getPref().getBoolean("http2.cache.enabled", false)) {
+            return null;
+        }
+        if (instance == null && !unavailable) {
+            try {
+                instance = new Http2Cache(Config.getDirs().getCacheDirectory(true).toPath().resolve("http2"),
+                        Config.getPref().getLong("http2.cache.max-size-mb", 50) << 20);
+            } catch (IOException | RuntimeException e) {
+                Logging.warn("Unable to use HTTP cache");
+                Logging.warn(e);
+                unavailable = true;
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the total size of the cache.
+     * @return the size in bytes
+     */
+    synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Looks up the stored response for an URI.
+     * @param uri request URI
+     * @return the stored response, or {@code null}
+     */
+    Entry get(URI uri) {
+        String key = getKey(uri);
+        synchronized (this) {
+            if (index.get(key) == null) {
+                return null;
+            }
+        }
+        Path meta = directory.resolve(key + META);
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(meta)) {
+            properties.load(in);
+            Files.setLastModifiedTime(meta, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            Logging.debug(e);
+            remove(key);
+            return null;
+        }
+        if (!uri.toString().equals(properties.getProperty("uri"))) {
+            return null;
+        }
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(HEADER)) {
+                headers.put(name.substring(HEADER.length()), Arrays.asList(properties.getProperty(name).split("\n")));
+            }
+        }
+        try {
+            return new Entry(key, uri, HttpClient.Version.valueOf(properties.getProperty("version")), headers,
+                    Long.parseLong(properties.getProperty("fresh-until")));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            Logging.debug(e);
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Returns a stored response as response to a request.
+     * @param entry stored response
+     * @param request request
+     * @return the response, or {@code null} if the stored body is no longer available
+     */
+    HttpResponse<InputStream> getResponse(Entry entry, HttpRequest request) {
+        try {
+            InputStream body = Files.newInputStream(directory.resolve(entry.key + BODY));
+            Logging.debug("HTTP cache: using stored response for {0}", entry.uri);
+            return new StoredResponse(request, entry.uri, entry.version, 200,
+                    HttpHeaders.of(entry.headers, (name, value) -> true), body, Optional.empty());
+        } catch (IOException e) {
+            Logging.debug(e);
+            remove(entry.key);
+            return null;
+        }
+    }
+
+    /**
+     * Handles a response received from the network.
+     * Responses to requests with an {@code Authorization} header are not stored, since entries are shared by all users.
+     * @param request request
+     * @param response response
+     * @param entry stale entry which has been revalidated by the request, or {@code null}
+     * @return the response to use. A stored response if the entry is still valid, the response with a body
+     *         which stores itself in the cache when read completely, or the response itself
+     */
+    HttpResponse<InputStream> update(HttpRequest request, HttpResponse<InputStream> response, Entry entry) {
+        long now = System.currentTimeMillis();
+        if (response.statusCode() == 304 && entry != null) {
+            Utils.close(response.body());
+            // the 304 response carries the current validators and lifetime
+            Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            headers.putAll(entry.headers);
+            headers.putAll(getStoredHeaders(response.headers()));
+            headers.put("Content-Length", entry.headers.getOrDefault("Content-Length", Collections.emptyList()));
+            headers.values().removeIf(List::isEmpty);
+            Entry revalidated = new Entry(entry.key, entry.uri, entry.version, headers,
+                    getFreshUntil(HttpHeaders.of(headers, (name, value) -> true), now));
+            try {
+                writeMeta(revalidated);
+            } catch (IOException e) {
+                Logging.debug(e);
+            }
+            HttpResponse<InputStream> stored = getResponse(revalidated, request);
+            if (stored != null) {
+                return stored;
+            }
+        } else if (!request.headers().firstValue("Authorization").isPresent() && isStorable(response, now)) {
+            try {
+                URI uri = request.uri();
+                Entry newEntry = new Entry(getKey(uri), uri, response.version(),
+                        getStoredHeaders(response.headers()), getFreshUntil(response.headers(), now));
+                InputStream body = new StoringInputStream(response.body(), newEntry,
+                        response.headers().firstValueAsLong("Content-Length").orElse(-1L));
+                return new StoredResponse(request, response.uri(), response.version(), response.statusCode(),
+                        response.headers(), body, response.sslSession());
+            } catch (IOException e) {
+                Logging.debug(e);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Determines the time until which a response may be used without revalidation.
+     * @param headers response headers
+     * @param now current time
+     * @return the time in milliseconds since the epoch, not after {@code now} if the response has to be revalidated
+     */
+    static long getFreshUntil(HttpHeaders headers, long now) {
+        for (String directive : getCacheControl(headers)) {
+            if ("no-cache".equals(directive)) {
+                return now;
+            } else if (directive.startsWith("max-age=")) {
+                try {
+                    return now + Long.parseLong(directive.substring("max-age=".length()).replace("\"", "")) * 1000;
+                } catch (NumberFormatException e) {
+                    return now;
+                }
+            }
+        }
+        long expires = Http2Response.parseDate(headers.firstValue("Expires").orElse(null));
+        return expires > 0 ? Math.max(now, now + expires - getDate(headers, now)) : now;
+    }
+
+    private static long getDate(HttpHeaders headers, long now) {
+        long date = Http2Response.parseDate(headers.firstValue("Date").orElse(null));
+        return date > 0 ? date : now;
+    }
+
+    /**
+     * Determines if a response may be stored.
+     * @param response response
+     * @param now current time
+     * @return {@code true} if the response may be stored
+     */
+    static boolean isStorable(HttpResponse<?> response, long now) {
+        HttpHeaders headers = response.headers();
+        if (response.statusCode() != 200 || getCacheControl(headers).contains("no-store")) {
+            return false;
+        }
+        // entries are only looked up by URI
+        for (String vary : headers.allValues("Vary")) {
+            for (String name : vary.split(",")) {
+                if (!name.trim().isEmpty() && !"Accept-Encoding".equalsIgnoreCase(name.trim())) {
+                    return false;
+                }
+            }
+        }
+        return headers.firstValue("ETag").isPresent() || headers.firstValue("Last-Modified").isPresent()
+                || getFreshUntil(headers, now) > now;
+    }
+
+    private static List<String> getCacheControl(HttpHeaders headers) {
+        List<String> directives = new ArrayList<>();
+        for (String value : headers.allValues("Cache-Control")) {
+            for (String directive : value.split(",")) {
+                directives.add(directive.trim().toLowerCase(Locale.ENGLISH));
+            }
+        }
+        return directives;
+    }
+
+    private static Map<String, List<String>> getStoredHeaders(HttpHeaders headers) {
+        Map<String, List<String>> stored = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, List<String>> header : headers.map().entrySet()) {
+            String name = header.getKey();
+            if (!name.startsWith(":") && !EXCLUDED_HEADERS.contains(name.toLowerCase(Locale.ENGLISH))) {
+                stored.put(name, header.getValue());
+            }
+        }
+        return stored;
+    }
+
+    private static String getHeader(Map<String, List<String>> headers, String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static String getKey(URI uri) {
+        try {
+            return Utils.toHexString(MessageDigest.getInstance("SHA-256").digest(uri.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new JosmRuntimeException(e);
+        }
+    }
+
+    private void writeMeta(Entry entry) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("uri", entry.uri.toString());
+        properties.setProperty("version", entry.version.name());
+        properties.setProperty("fresh-until", Long.toString(entry.freshUntil));
+        for (Map.Entry<String, List<String>> header : entry.headers.entrySet()) {
+            properties.setProperty(HEADER + header.getKey(), String.join("\n", header.getValue()));
+        }
+        Path tmp = Files.createTempFile(directory, entry.key, ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                properties.store(out, null);
+            }
+            move(tmp, directory.resolve(entry.key + META));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void store(Entry entry, Path body) throws IOException {
+        synchronized (this) {
+            move(body, directory.resolve(entry.key + BODY));
+            writeMeta(entry);
+            Long previous = index.put(entry.key, Files.size(directory.resolve(entry.key + META))
+                    + Files.size(directory.resolve(entry.key + BODY)));
+            size += index.get(entry.key) - (previous != null ? previous : 0);
+            evict();
+        }
+        Logging.debug("HTTP cache: stored response for {0}", entry.uri);
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Logging.trace(e);
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Long removed = index.remove(key);
+        if (removed != null) {
+            size -= removed;
+        }
+        try {
+            Files.deleteIfExists(directory.resolve(key + META));
+            Files.deleteIfExists(directory.resolve(key + BODY));
+        } catch (IOException e) {
+            Logging.debug(e);
+        }
+    }
+
+    private synchronized void evict() {
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            size -= eldest.getValue();
+            try {
+                Files.deleteIfExists(directory.resolve(eldest.getKey() + META));
+                Files.deleteIfExists(directory.resolve(eldest.getKey() + BODY));
+            } catch (IOException e) {
+                Logging.debug(e);
+            }
+        }
+    }
+
+    /**
+     * Body which is copied to a temporary file while it is read, and stored in the cache once it has been read completely.
+     * Bodies which are closed before, or are too large for the cache, are not stored.
+     */
+    private final class StoringInputStream extends FilterInputStream {
+        private final Entry entry;
+        private final long contentLength;
+        private final Path tmp;
+        private OutputStream out;
+        private long length;
+
+        StoringInputStream(InputStream in, Entry entry, long contentLength) throws IOException {
+            super(in);
+            this.entry = entry;
+            this.contentLength = contentLength;
+            this.tmp = Files.createTempFile(directory, entry.key, ".tmp");
+            this.out = Files.newOutputStream(tmp);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) {
+                finish();
+            } else {
+                copy(new byte[] {(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n < 0) {
+                finish();
+            } else {
+                copy(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped bytes must be copied too
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = n > 0 ? read(buffer, 0, buffer.length) : 0;
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // decoders like GZIPInputStream may stop reading at the end of the data, without reaching the end of stream
+            if (length == contentLength) {
+                finish();
+            }
+            try {
+                super.close();
+            } finally {
+                discard();
+            }
+        }
+
+        private void copy(byte[] b, int off, int len) {
+            if (out == null) {
+                return;
+            }
+            length += len;
+            try {
+                if (length > maxSize / 4) {
+                    discard();
+                } else {
+                    out.write(b, off, len);
+                }
+            } catch (IOException e) {
+                Logging.debug(e);
+                discard();
+            }
+        }
+
+        private void finish() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.close();
+                out = null;
+                store(entry, tmp);
+            } catch (IOException e) {
+                Logging.debug(e);
+            }
+            discard();
+        }
+
+        private void discard() {
+            if (out != null) {
+                Utils.close(out);
+                out = null;
+            }
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                Logging.debug(e);
+            }
+        }
+    }
+
+    /**
+     * Response with a body which does not come directly from the network.
+     */
+    private static final class StoredResponse implements HttpResponse<InputStream> {
+        private final HttpRequest request;
+        private final URI uri;
+        private final HttpClient.Version version;
+        private final int statusCode;
+        private final HttpHeaders headers;
+        private final InputStream body;
+        private final Optional<SSLSession> sslSession;
+
+        StoredResponse(HttpRequest request, URI uri, HttpClient.Version version, int statusCode, HttpHeaders headers,
+                InputStream body, Optional<SSLSession> sslSession) {
+            this.request = request;
+            this.uri = uri;
+            this.version = version;
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = body;
+            this.sslSession = sslSession;
+        }
+
+        @Override
+        public int statusCode() {
+            return statusCode;
+        }
+
+        @Override
+        public HttpRequest request() {
+            return request;
+        }
+
+        @Override
+        public Optional<HttpResponse<InputStream>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return headers;
+        }
+
+        @Override
+        public InputStream body() {
+            return body;
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return sslSession;
+        }
+
+        @Override
+        public URI uri() {
+            return uri;
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return version;
+        }
+    }
+}
@@ -37,8 +37,11 @@ public final class Http2Client extends org.openstreetmap.josm.tools.HttpClient {
 
     private static final Map<Duration, HttpClient> clientForConnectTimeout = new ConcurrentHashMap<>();
     private static final String USER_AGENT_STRING = "User-Agent";
+    private static final String AUTHORIZATION = "Authorization";
     private HttpRequest request;
     private HttpResponse<InputStream> response;
+    private Http2Cache cache;
+    private Http2Cache.Entry cacheEntry;
 
     Http2Client(URL url, String requestMethod) {
         super(url, requestMethod);
@@ -46,6 +49,19 @@ public final class Http2Client extends org.openstreetmap.josm.tools.HttpClient {
 
     @Override
     protected void setupConnection(ProgressMonitor progressMonitor) throws IOException {
+        response = null;
+        cacheEntry = null;
+        // only plain GET requests use the cache, requests of callers doing their own revalidation don't.
+        // Entries are looked up by URI only, so authenticated responses must not be shared between users
+        cache = isUseCache() && getIfModifiedSince() <= 0 && "GET".equals(getRequestMethod()) && !hasRequestBody()
+                && !hasAuthorization() ? Http2Cache.getInstance() : null;
+        if (cache != null) {
+            try {
+                cacheEntry = cache.get(getURL().toURI());
+            } catch (URISyntaxException e) {
+                Logging.trace(e);
+            }
+        }
         request = createRequest();
 
         notifyConnect(progressMonitor);
@@ -55,6 +71,15 @@ public final class Http2Client extends org.openstreetmap.josm.tools.HttpClient {
         }
     }
 
+    private boolean hasAuthorization() {
+        for (Map.Entry<String, String> header : getHeaders().entrySet()) {
+            if (header.getValue() != null && AUTHORIZATION.equalsIgnoreCase(header.getKey())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     HttpRequest createRequest() throws IOException {
         HttpRequest.Builder requestBuilder;
         Map<String, String> headers = getHeaders();
@@ -75,6 +100,14 @@ public final class Http2Client extends org.openstreetmap.josm.tools.HttpClient {
         if (getIfModifiedSince() > 0) {
             requestBuilder.header("If-Modified-Since", DateTimeFormatter.RFC_1123_DATE_TIME.format(
                     ZonedDateTime.ofInstant(Instant.ofEpochMilli(getIfModifiedSince()), ZoneId.systemDefault())));
+        } else if (cacheEntry != null && !cacheEntry.isFresh()) {
+            // revalidate the stored response
+            if (cacheEntry.getETag() != null) {
+                requestBuilder.header("If-None-Match", cacheEntry.getETag());
+            }
+            if (cacheEntry.getLastModified() != null) {
+                requestBuilder.header("If-Modified-Since", cacheEntry.getLastModified());
+            }
         }
         if (!isUseCache()) {
             requestBuilder.header("Cache-Control", "no-cache");
@@ -91,16 +124,35 @@ public final class Http2Client extends org.openstreetmap.josm.tools.HttpClient {
         return requestBuilder.build();
     }
 
-    @Override
-    protected ConnectionResponse performConnection() throws IOException {
-        // reuse HttpClient
-        HttpClient client = clientForConnectTimeout.computeIfAbsent(Duration.ofMillis(getConnectTimeout()), timeout ->
+    /**
+     * Returns the shared HTTP client for the given connect timeout.
+     * Requests sent with the same client reuse its connections, HTTP/2 requests to the same host are multiplexed over one connection.
+     * Redirects are not followed.
+     * @param connectTimeout connect timeout
+     * @return the shared HTTP client
+     */
+    static HttpClient getClient(Duration connectTimeout) {
+        return clientForConnectTimeout.computeIfAbsent(connectTimeout, timeout ->
                 HttpClient.newBuilder()
                         .followRedirects(Redirect.NEVER) // we do that ourselves
                         .connectTimeout(timeout)
                         .build());
+    }
+
+    @Override
+    protected ConnectionResponse performConnection() throws IOException {
+        // reuse HttpClient
+        HttpClient client = getClient(Duration.ofMillis(getConnectTimeout()));
         try {
-            response = client.send(request, BodyHandlers.ofInputStream());
+            if (cacheEntry != null && cacheEntry.isFresh()) {
+                response = cache.getResponse(cacheEntry, request);
+            }
+            if (response == null) {
+                response = client.send(request, BodyHandlers.ofInputStream());
+                if (cache != null) {
+                    response = cache.update(request, response, cacheEntry);
+                }
+            }
             return new ConnectionResponse() {
                 @Override
                 public String getResponseVersion() {
@@ -0,0 +1,144 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.http2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.plugins.http2.Http2BatchClient.HostMetrics;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit test of {@link Http2BatchClient}
+ */
+@BasicPreferences
+class Http2BatchClientTest {
+
+    private static final int LARGE_BODY = 16 << 20;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final AtomicInteger maxInProgress = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            maxInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+                String path = exchange.getRequestURI().getPath();
+                byte[] body = "/large".equals(path) ? new byte[LARGE_BODY] : path.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inProgress.decrementAndGet();
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        server.stop(0);
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    /**
+     * Requests are all answered, with at most the given number of requests in progress.
+     */
+    @Test
+    void testConcurrencyLimit() throws Exception {
+        Http2BatchClient client = new Http2BatchClient(4);
+        List<HttpRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            requests.add(Http2BatchClient.newRequestBuilder(uri("/tile/" + i)).build());
+        }
+        List<CompletableFuture<HttpResponse<String>>> responses = client.sendAllAsync(requests, BodyHandlers.ofString());
+        for (int i = 0; i < responses.size(); i++) {
+            HttpResponse<String> response = responses.get(i).get(30, TimeUnit.SECONDS);
+            assertEquals(200, response.statusCode());
+            assertEquals("/tile/" + i, response.body());
+        }
+        assertTrue(maxInProgress.get() <= 4, Integer.toString(maxInProgress.get()));
+
+        HostMetrics metrics = client.getMetrics().get("localhost");
+        assertEquals(40, metrics.getRequests());
+        assertEquals(0, metrics.getFailures());
+        assertEquals(0, metrics.getInProgress());
+        assertTrue(metrics.getMaxInProgress() <= 4, metrics.toString());
+        assertTrue(metrics.getAverageLatency().compareTo(Duration.ofMillis(20)) >= 0, metrics.toString());
+        assertEquals(0, client.getQueuedRequests());
+    }
+
+    /**
+     * A streamed body keeps its request in progress until it has been read.
+     */
+    @Test
+    void testStreamedBody() throws Exception {
+        Http2BatchClient client = new Http2BatchClient(1);
+        CompletableFuture<HttpResponse<InputStream>> first = client.sendAsync(
+                Http2BatchClient.newRequestBuilder(uri("/large")).build(), BodyHandlers.ofInputStream());
+        CompletableFuture<HttpResponse<String>> second = client.sendAsync(
+                Http2BatchClient.newRequestBuilder(uri("/second")).build(), BodyHandlers.ofString());
+
+        HttpResponse<InputStream> response = first.get(30, TimeUnit.SECONDS);
+        Thread.sleep(100);
+        assertFalse(second.isDone());
+        assertEquals(1, client.getQueuedRequests());
+        try (InputStream in = response.body()) {
+            assertEquals(LARGE_BODY, in.readAllBytes().length);
+        }
+        assertEquals("/second", second.get(30, TimeUnit.SECONDS).body());
+    }
+
+    /**
+     * Failed requests are counted and release their slot.
+     */
+    @Test
+    void testFailure() throws Exception {
+        Http2BatchClient client = new Http2BatchClient(1);
+        server.stop(0);
+        CompletableFuture<HttpResponse<String>> failed = client.sendAsync(
+                Http2BatchClient.newRequestBuilder(uri("/")).build(), BodyHandlers.ofString());
+        assertThrows(Exception.class, () -> failed.get(30, TimeUnit.SECONDS));
+        assertEquals(1, client.getMetrics().get("localhost").getFailures());
+        assertEquals(0, client.getMetrics().get("localhost").getInProgress());
+    }
+}
@@ -0,0 +1,172 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.http2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit test of {@link Http2Cache}
+ */
+@BasicPreferences
+class Http2CacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            String etag = "\"" + path.hashCode() + "\"";
+            exchange.getResponseHeaders().add("ETag", etag);
+            exchange.getResponseHeaders().add("Cache-Control", "max-age=0");
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = (path + path + path).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    private String fetch(Http2Cache cache, String path, String... headers) throws Exception {
+        URI uri = uri(path);
+        Http2Cache.Entry entry = cache.get(uri);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri);
+        if (entry != null) {
+            builder.header("If-None-Match", entry.getETag());
+        }
+        if (headers.length > 0) {
+            builder.headers(headers);
+        }
+        HttpRequest request = builder.build();
+        HttpResponse<InputStream> response = cache.update(request, client.send(request, BodyHandlers.ofInputStream()), entry);
+        assertEquals(200, response.statusCode());
+        try (InputStream in = response.body()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static HttpHeaders headers(String... nameValues) {
+        Map<String, List<String>> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < nameValues.length; i += 2) {
+            map.put(nameValues[i], Collections.singletonList(nameValues[i + 1]));
+        }
+        return HttpHeaders.of(map, (name, value) -> true);
+    }
+
+    /**
+     * Unit test of {@link Http2Cache#getFreshUntil}
+     */
+    @Test
+    void testGetFreshUntil() {
+        long now = 786297600000L;
+        assertEquals(now + 60_000, Http2Cache.getFreshUntil(headers("Cache-Control", "public, max-age=60"), now));
+        assertEquals(now, Http2Cache.getFreshUntil(headers("Cache-Control", "no-cache, max-age=60"), now));
+        assertEquals(now + 3_600_000, Http2Cache.getFreshUntil(headers(
+                "Date", "Thu, 01 Dec 1994 16:00:00 GMT", "Expires", "Thu, 01 Dec 1994 17:00:00 GMT"), now));
+        assertEquals(now, Http2Cache.getFreshUntil(headers("Expires", "0"), now));
+        assertEquals(now, Http2Cache.getFreshUntil(headers(), now));
+    }
+
+    /**
+     * Responses are stored once read, and revalidated when stale.
+     */
+    @Test
+    void testRevalidation() throws Exception {
+        Http2Cache cache = new Http2Cache(tempDir, 1 << 20);
+        assertNull(cache.get(uri("/a")));
+        assertEquals("/a/a/a", fetch(cache, "/a"));
+
+        Http2Cache.Entry entry = cache.get(uri("/a"));
+        assertNotNull(entry);
+        assertFalse(entry.isFresh());
+        assertEquals("\"" + "/a".hashCode() + "\"", entry.getETag());
+
+        assertEquals("/a/a/a", fetch(cache, "/a"));
+        assertEquals(1, notModified.get());
+
+        // entries are found again after restart
+        assertNotNull(new Http2Cache(tempDir, 1 << 20).get(uri("/a")));
+    }
+
+    /**
+     * Least recently used entries are removed when the cache is full.
+     */
+    @Test
+    void testEviction() throws Exception {
+        Http2Cache cache = new Http2Cache(tempDir, 1024);
+        for (String path : Arrays.asList("/1", "/2", "/3", "/4", "/5", "/6", "/7", "/8")) {
+            fetch(cache, path);
+            assertNotNull(cache.get(uri("/1")));
+        }
+        assertTrue(cache.getSize() <= 1024, Long.toString(cache.getSize()));
+        assertNotNull(cache.get(uri("/1")));
+        assertNull(cache.get(uri("/2")));
+        assertNotNull(cache.get(uri("/8")));
+    }
+
+    /**
+     * Responses to authenticated requests are not stored, they would be served to other users.
+     */
+    @Test
+    void testAuthorization() throws Exception {
+        Http2Cache cache = new Http2Cache(tempDir, 1 << 20);
+        assertEquals("/user/user/user", fetch(cache, "/user", "Authorization", "Bearer 0123456789"));
+        assertNull(cache.get(uri("/user")));
+        assertEquals(0, cache.getSize());
+
+        assertEquals("/user/user/user", fetch(cache, "/user"));
+        assertNotNull(cache.get(uri("/user")));
+    }
+}
@@ -13,6 +13,11 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.imageio.ImageIO;
 import javax.swing.AbstractAction;
@@ -29,7 +34,10 @@ import org.openstreetmap.josm.gui.layer.AbstractCachedTileSourceLayer;
 import org.openstreetmap.josm.gui.layer.Layer;
 import org.openstreetmap.josm.gui.layer.Layer.LayerAction;
 import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.ImageProvider;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
 
 /**
  * Imagery tile export action.  This is a menu entry in a imagery layer
@@ -38,6 +46,7 @@ import org.openstreetmap.josm.tools.ImageProvider;
  */
 public abstract class AbstractImageryCacheExportAction
     extends AbstractAction implements LayerAction {
+    private final static String THREADS_PNAME = "imagery_cachexport.threads";
 
     /** Define menu entry (text and image). */
     public AbstractImageryCacheExportAction() {
@@ -72,6 +81,31 @@ public abstract class AbstractImageryCacheExportAction
      */
     protected abstract String getFilename(String key);
 
+    /**
+     * Get the tile coordinates for a cache key.  Tiles without coordinates
+     * cannot be exported into an archive.
+     *
+     * @param key Tile cache key.  That is the full cache key with the key
+     * 		  prefix removed.
+     *
+     * @return Zoom level, column and row of the tile, or {@code null} if
+     * 	       the key does not contain them.
+     */
+    protected int[] getTileZXY(String key) {
+        return null;
+    }
+
+    /**
+     * Check if the tiles can be exported into an archive, that is if
+     * {@link #getTileZXY} is implemented for the cache keys of the layer.
+     * The archive option is not offered otherwise.
+     *
+     * @return {@code true} if the tiles can be exported into an archive.
+     */
+    protected boolean supportsArchive() {
+        return false;
+    }
+
     /**
      * Get the cache key prefix of the imagery layer.
      *
@@ -95,28 +129,35 @@ public abstract class AbstractImageryCacheExportAction
         final CacheAccess<String, BufferedImageCacheEntry> cache = getCache();
         final String cacheKeyPrefix = getCacheKeyPrefix(layer);
         ImageryTileExportDialog dialog =
-            new ImageryTileExportDialog(cache, cacheName, cacheKeyPrefix);
+            new ImageryTileExportDialog(cache, cacheName, cacheKeyPrefix, supportsArchive());
         if (dialog.getValue() == 1) {
             // OK button was pushed.
-            final String exportPath = dialog.getExportPath();
+            final String exportPath = dialog.isArchive() ? dialog.getArchivePath() : dialog.getExportPath();
             dialog.storePrefs();
-            exportImagery(exportPath, layer, cache);
+            exportImagery(exportPath, dialog.isArchive(), dialog.isKeepFormat(), layer, cache);
         }
     }
 
     /**
-     * Class that does the tile export in a task.
+     * Class that does the tile export in a task.  The tiles are read from
+     * the cache and written by a pool of worker threads.
      */
     private class ExportImageryTask extends PleaseWaitRunnable {
         private String exportPath;
+        private final PMTilesWriter archive;
+        private final boolean keepFormat;
         private final CacheAccess<String, BufferedImageCacheEntry> cache;
         private String cacheName;
         private String cacheKeyPrefix;
         private final Set<String> keySet;
         private int numberOfObjects;
-        private boolean cancel = false;
+        private volatile boolean cancel = false;
+        private final AtomicReference<String> error = new AtomicReference<>();
+        private final AtomicInteger skipped = new AtomicInteger();
 
         public ExportImageryTask(String exportPath,
+                                 final PMTilesWriter archive,
+                                 boolean keepFormat,
                                  final CacheAccess<String, BufferedImageCacheEntry> cache,
                                  String cacheName,
                                  String cacheKeyPrefix,
@@ -124,6 +165,8 @@ public abstract class AbstractImageryCacheExportAction
                                  int numberOfObjects) {
             super(tr("Exporting cached tiles"));
             this.exportPath = exportPath;
+            this.archive = archive;
+            this.keepFormat = keepFormat;
             this.cache = cache;
             this.cacheName = cacheName;
             this.cacheKeyPrefix = cacheKeyPrefix;
@@ -145,72 +188,185 @@ public abstract class AbstractImageryCacheExportAction
         protected void realRun() {
             progressMonitor.setTicksCount(numberOfObjects);
 
-            int objectNum = 0;
-            for (String key: keySet) {
-                String[] keyParts = key.split(":", 2);
-                if (keyParts.length == 2) {
-                    if (cacheKeyPrefix.equals(keyParts[0])) {
-                        final String filename = getFilename(keyParts[1]);
-                        if (filename != null) {
-                            File file = new File(exportPath, filename);
-                            BufferedImageCacheEntry entry = cache.get(key);
+            final int threads = Math.max(1, Config.getPref().getInt(THREADS_PNAME,
+                                                                    Runtime.getRuntime().availableProcessors()));
+            final ExecutorService pool = Utils.newFixedThreadPool(threads, "imagery-cachexport-%d", Thread.NORM_PRIORITY);
+            // Limit the number of tiles held in memory.
+            final Semaphore pending = new Semaphore(threads * 4);
+            final AtomicInteger objectNum = new AtomicInteger();
+            final AtomicInteger done = new AtomicInteger();
+            try {
+                for (String key: keySet) {
+                    if (cancel || error.get() != null) {
+                        break;
+                    }
+                    String[] keyParts = key.split(":", 2);
+                    if (keyParts.length == 2 && cacheKeyPrefix.equals(keyParts[0])) {
+                        pending.acquire();
+                        pool.execute(() -> {
                             try {
-                                BufferedImage image = entry.getImage();
-                                if (image != null) {
-                                    writeImage(image, file);
-                                    objectNum++;
+                                if (!cancel && error.get() == null && exportTile(key, keyParts[1])) {
+                                    objectNum.incrementAndGet();
                                 }
-                            } catch (IOException exn) {
-                                final String ioMessage = exn.getLocalizedMessage();
-                                final String message = (ioMessage != null ?
-                                                        // {0} is the file name, {1} is the error message.
-                                                        tr("Failed to write image file {0}: {1}", file.getAbsolutePath(), ioMessage) :
-                                                        // {0} is the file name.
-                                                        tr("Failed to write image file {0}.", file.getAbsolutePath()));
-                                GuiHelper.runInEDT(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        JOptionPane.showMessageDialog(MainApplication.getMainFrame(), message,
-                                                                      tr("Error"), JOptionPane.ERROR_MESSAGE);
-                                    }
-                                });
-                                break;
+                            } finally {
+                                done.incrementAndGet();
+                                pending.release();
                             }
-                        }
+                        });
                     }
+                    progressMonitor.worked(done.getAndSet(0));
                 }
-                progressMonitor.worked(1);
-                if (cancel) {
-                    break;
+                pool.shutdown();
+                while (!pool.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+                    progressMonitor.worked(done.getAndSet(0));
+                }
+                progressMonitor.worked(done.getAndSet(0));
+                if (archive != null && !cancel && error.get() == null) {
+                    try {
+                        archive.finish();
+                    } catch (IOException exn) {
+                        setError(exportPath, exn);
+                    }
+                }
+            } catch (InterruptedException exn) {
+                Logging.trace(exn);
+                Thread.currentThread().interrupt();
+                cancel = true;
+            } finally {
+                pool.shutdownNow();
+                if (archive != null) {
+                    try {
+                        archive.close();
+                    } catch (IOException exn) {
+                        Logging.warn(exn);
+                    }
                 }
             }
-            if (objectNum > 0) {
+
+            final String message = error.get();
+            if (message != null) {
+                GuiHelper.runInEDT(new Runnable() {
+                    @Override
+                    public void run() {
+                        JOptionPane.showMessageDialog(MainApplication.getMainFrame(), message,
+                                                      tr("Error"), JOptionPane.ERROR_MESSAGE);
+                    }
+                });
+            } else if ((objectNum.get() > 0 || skipped.get() > 0) && !cancel) {
+                final int count = objectNum.get();
                 // {0} is a number, {1} is the layer name.
-                final String message = trn("Exported {0} tile from layer {1}.",
-                                           "Exported {0} tiles from layer {1}.",
-                                          objectNum, objectNum, cacheName);
+                String text = trn("Exported {0} tile from layer {1}.",
+                                  "Exported {0} tiles from layer {1}.",
+                                  count, count, cacheName);
+                if (skipped.get() > 0) {
+                    // {0} is a number.
+                    text += "\n" + trn("Skipped {0} tile without tile coordinates.",
+                                       "Skipped {0} tiles without tile coordinates.",
+                                       skipped.get(), skipped.get());
+                }
+                final String notification = text;
                 GuiHelper.runInEDT(new Runnable() {
                     @Override
                     public void run() {
-                        new Notification(message).show();
+                        new Notification(notification).show();
                     }
                 });
             }
         }
+
+        /**
+         * Export one tile.  The encoded image from the cache is written
+         * unchanged if its format fits, otherwise the image is converted.
+         *
+         * @param key     Full cache key.
+         * @param tileKey Cache key with the key prefix removed.
+         *
+         * @return {@code true} if the tile was exported.
+         */
+        private boolean exportTile(String key, String tileKey) {
+            if (archive != null) {
+                final int[] zxy = getTileZXY(tileKey);
+                if (zxy == null) {
+                    skipped.incrementAndGet();
+                    return false;
+                }
+                final BufferedImageCacheEntry entry = cache.get(key);
+                final byte[] content = entry != null ? entry.getContent() : null;
+                if (content == null || content.length == 0) {
+                    return false;
+                }
+                try {
+                    archive.addTile(zxy[0], zxy[1], zxy[2], content);
+                } catch (IOException exn) {
+                    setError(exportPath, exn);
+                    return false;
+                }
+                return true;
+            }
+
+            final String filename = getFilename(tileKey);
+            if (filename == null) {
+                return false;
+            }
+            final BufferedImageCacheEntry entry = cache.get(key);
+            if (entry == null) {
+                return false;
+            }
+            final byte[] content = entry.getContent();
+            final String format = content != null ? getImageFormat(content) : null;
+            File file = new File(exportPath, filename);
+            try {
+                if (format != null && (keepFormat || filename.endsWith("." + format))) {
+                    if (!filename.endsWith("." + format)) {
+                        file = new File(exportPath, filename.substring(0, filename.lastIndexOf('.') + 1) + format);
+                    }
+                    Files.write(file.toPath(), content);
+                    return true;
+                }
+                final BufferedImage image = entry.getImage();
+                if (image == null) {
+                    return false;
+                }
+                writeImage(image, file);
+                return true;
+            } catch (IOException exn) {
+                setError(file.getAbsolutePath(), exn);
+                return false;
+            }
+        }
+
+        /**
+         * Remember the first error, it stops the export.
+         *
+         * @param path File that could not be written.
+         * @param exn  The error.
+         */
+        private void setError(String path, IOException exn) {
+            final String ioMessage = exn.getLocalizedMessage();
+            error.compareAndSet(null, ioMessage != null ?
+                                // {0} is the file name, {1} is the error message.
+                                tr("Failed to write image file {0}: {1}", path, ioMessage) :
+                                // {0} is the file name.
+                                tr("Failed to write image file {0}.", path));
+        }
     }
 
     /**
      * Export tiles.
      *
-     * @param exportPath Export directory name.
+     * @param exportPath Export directory name, or archive file name.
+     * @param archive    Export into a PMTiles archive.
+     * @param keepFormat Keep the image format of the cached tiles.
      * @param layer 	 Imagery layer whose tiles are to be exported.
      * @param cache	 Cache object.
      */
     private void exportImagery(final String exportPath,
+                               final boolean archive,
+                               final boolean keepFormat,
                                final AbstractCachedTileSourceLayer<?> layer,
                                final CacheAccess<String, BufferedImageCacheEntry> cache) {
         try {
-            Files.createDirectories(Paths.get(exportPath));
+            Files.createDirectories(archive ? Paths.get(exportPath).toAbsolutePath().getParent() : Paths.get(exportPath));
         } catch (FileAlreadyExistsException exn) {
             JOptionPane.showMessageDialog(MainApplication.getMainFrame(),
                                           tr("Export file system path already exists but is not a directory."),
@@ -250,8 +406,21 @@ public abstract class AbstractImageryCacheExportAction
             return;
         }
 
+        PMTilesWriter writer = null;
+        if (archive) {
+            try {
+                writer = new PMTilesWriter(new File(exportPath));
+            } catch (IOException exn) {
+                JOptionPane.showMessageDialog(MainApplication.getMainFrame(),
+                                              tr("Failed to write image file {0}.", exportPath),
+                                              tr("Error"),
+                                              JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+        }
+
         final ExportImageryTask task =
-            new ExportImageryTask(exportPath, cache, cacheName,
+            new ExportImageryTask(exportPath, writer, keepFormat, cache, cacheName,
                                   cacheKeyPrefix, keySet, objects);
         if (task != null) {
             MainApplication.worker.submit(task);
@@ -287,6 +456,31 @@ public abstract class AbstractImageryCacheExportAction
         }
     }
 
+    /**
+     * Get the format of an encoded image from its first bytes.
+     *
+     * @param content Encoded image.
+     *
+     * @return File name extension of the format ({@code jpg}, {@code png},
+     * 	       {@code gif} or {@code webp}), or {@code null} if unknown.
+     */
+    static String getImageFormat(byte[] content) {
+        if (content.length >= 3 && (content[0] & 0xFF) == 0xFF && (content[1] & 0xFF) == 0xD8
+            && (content[2] & 0xFF) == 0xFF) {
+            return "jpg";
+        } else if (content.length >= 8 && (content[0] & 0xFF) == 0x89 && content[1] == 'P'
+                   && content[2] == 'N' && content[3] == 'G') {
+            return "png";
+        } else if (content.length >= 6 && content[0] == 'G' && content[1] == 'I' && content[2] == 'F') {
+            return "gif";
+        } else if (content.length >= 12 && content[0] == 'R' && content[1] == 'I' && content[2] == 'F'
+                   && content[3] == 'F' && content[8] == 'W' && content[9] == 'E' && content[10] == 'B'
+                   && content[11] == 'P') {
+            return "webp";
+        }
+        return null;
+    }
+
     /**
      * Create actual menu entry.
      *
@@ -30,16 +30,23 @@ import org.openstreetmap.josm.tools.GBC;
 public class ImageryTileExportDialog extends ExtendedDialog {
     private final static String EXPORT_DIR_PNAME = "imagery_cachexport.export_directory";
     private final static String APPEND_NAME_PNAME = "imagery_cachexport.append_name";
+    private final static String KEEP_FORMAT_PNAME = "imagery_cachexport.keep_format";
+    private final static String ARCHIVE_PNAME = "imagery_cachexport.pmtiles";
     private final JosmTextField exportDir = new JosmTextField(32);
     private final JCheckBox appendName = new JCheckBox(tr("Append cache name"));
+    private final JCheckBox keepFormat = new JCheckBox(tr("Keep image format"));
+    private final JCheckBox archive = new JCheckBox(tr("Export into a PMTiles archive"));
     private final JLabel summary = new JLabel();
     private final String cacheName;
+    private final boolean archiveSupported;
 
     public ImageryTileExportDialog(final CacheAccess<String, BufferedImageCacheEntry> cache,
                                    final String cacheName,
-                                   final String cacheKeyPrefix) {
+                                   final String cacheKeyPrefix,
+                                   final boolean archiveSupported) {
         super(MainApplication.getMainFrame(), tr("Export Tiles"), new String[] {tr("Ok"), tr("Cancel")});
         this.cacheName = cacheName;
+        this.archiveSupported = archiveSupported;
 
         setButtonIcons(new String[] {"ok", "cancel"});
         final JPanel content = new JPanel(new GridBagLayout());
@@ -85,6 +92,18 @@ public class ImageryTileExportDialog extends ExtendedDialog {
         appendName.addChangeListener(appendNameChangeListener);
         content.add(appendName, GBC.eol().insets(0, 0, 5, 0));
 
+        keepFormat.setToolTipText(tr("Write the cached images unchanged instead of converting them to JPEG."));
+        keepFormat.setSelected(Config.getPref().getBoolean(KEEP_FORMAT_PNAME));
+        content.add(keepFormat, GBC.eol().insets(0, 0, 5, 0));
+
+        // Only offered if the tile coordinates can be read from the cache keys.
+        if (archiveSupported) {
+            archive.setToolTipText(tr("Write all tiles into a single PMTiles file in the export directory."));
+            archive.setSelected(Config.getPref().getBoolean(ARCHIVE_PNAME));
+            archive.addChangeListener(appendNameChangeListener);
+            content.add(archive, GBC.eol().insets(0, 0, 5, 0));
+        }
+
         updateSummary();
         content.add(summary, GBC.eol().insets(0, 0, 5, 0));
 
@@ -152,12 +171,53 @@ public class ImageryTileExportDialog extends ExtendedDialog {
         }
     }
 
+    /**
+     * Check if the tiles are exported into a PMTiles archive.
+     *
+     * @return {@code true} if an archive is written.
+     */
+    public boolean isArchive() {
+        return archive.isSelected();
+    }
+
+    /**
+     * Check if the cached images are written in their own format.
+     *
+     * @return {@code true} if the image format is kept.
+     */
+    public boolean isKeepFormat() {
+        return keepFormat.isSelected();
+    }
+
+    /**
+     * Construct path of the PMTiles archive.  The archive is named after
+     * the cache and placed in the export directory.
+     *
+     * @return Archive path.  Returns {@code null} if no path was
+     * 	       specified in the dialog.
+     */
+    public String getArchivePath() {
+        String exportDirText = exportDir.getText();
+        if (exportDirText.isEmpty()) {
+            return null;
+        }
+        File path = new File(exportDirText, cacheName.replaceAll("[\\\\/:*?\"<>|]", "_") + ".pmtiles");
+        return path.getAbsolutePath();
+    }
+
     /**
      * Construct string for dialog summary.
      *
      * @return Dialog summary string.
      */
     private String getSummary() {
+        if (isArchive()) {
+            final String archivePath = getArchivePath();
+            if (archivePath != null) {
+                return tr(// {0} is the file path, it should be at the end of the message
+                          "Tiles will be exported to file {0}", archivePath);
+            }
+        }
         final String exportPath = getExportPath();
         if (exportPath != null) {
             return tr(// {0} is the directory path, it should be at the end of the message
@@ -215,5 +275,9 @@ public class ImageryTileExportDialog extends ExtendedDialog {
     public void storePrefs() {
         Config.getPref().put(EXPORT_DIR_PNAME, exportDir.getText());
         Config.getPref().putBoolean(APPEND_NAME_PNAME, appendName.isSelected());
+        Config.getPref().putBoolean(KEEP_FORMAT_PNAME, keepFormat.isSelected());
+        if (archiveSupported) {
+            Config.getPref().putBoolean(ARCHIVE_PNAME, archive.isSelected());
+        }
     }
 }
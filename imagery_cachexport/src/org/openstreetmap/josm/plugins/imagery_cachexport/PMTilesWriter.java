@@ -0,0 +1,295 @@
+package org.openstreetmap.josm.plugins.imagery_cachexport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writer for a PMTiles archive (version 3).  All tiles are stored in a
+ * single file, with a directory that maps tile coordinates to the tile
+ * data.
+ *
+ * Tiles may be added from several threads and in any order.  They are
+ * appended to a temporary file next to the archive.  {@link #finish()}
+ * sorts the directory and writes the archive.
+ */
+public class PMTilesWriter implements Closeable {
+    private static final int HEADER_LENGTH = 127;
+    /** Header and root directory must fit into the first 16 KiB. */
+    private static final int MAX_ROOT_LENGTH = 16384 - HEADER_LENGTH;
+    private static final byte[] METADATA = "{}".getBytes(StandardCharsets.UTF_8);
+
+    /** Tile type: unknown, used for mixed formats. */
+    private static final int TYPE_UNKNOWN = 0;
+
+    /**
+     * Directory entry.  Either a run of tiles or, with a run length of 0,
+     * a leaf directory.
+     */
+    private static final class Entry {
+        final long tileId;
+        final long offset;
+        final long length;
+        final long runLength;
+
+        Entry(long tileId, long offset, long length, long runLength) {
+            this.tileId = tileId;
+            this.offset = offset;
+            this.length = length;
+            this.runLength = runLength;
+        }
+    }
+
+    private final File file;
+    private final File dataFile;
+    private final FileChannel data;
+    private final List<Entry> entries = new ArrayList<>();
+    private long dataLength;
+    private int tileType = -1;
+    private int minZoom = Integer.MAX_VALUE;
+    private int maxZoom = Integer.MIN_VALUE;
+    private double minLon = 180;
+    private double minLat = 90;
+    private double maxLon = -180;
+    private double maxLat = -90;
+
+    /**
+     * Create a writer.
+     *
+     * @param file Archive file.  It is only created by {@link #finish()}.
+     *
+     * @throws IOException if the temporary file cannot be created
+     */
+    public PMTilesWriter(File file) throws IOException {
+        this.file = file.getAbsoluteFile();
+        this.dataFile = File.createTempFile(file.getName(), ".tmp", this.file.getParentFile());
+        this.data = FileChannel.open(dataFile.toPath(), StandardOpenOption.WRITE,
+                                     StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Add a tile.
+     *
+     * @param z       Zoom level.
+     * @param x       Tile column.
+     * @param y       Tile row, counted from the north.
+     * @param content Encoded tile image.
+     *
+     * @throws IOException in case of I/O error
+     */
+    public synchronized void addTile(int z, int x, int y, byte[] content) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(content);
+        while (buffer.hasRemaining()) {
+            data.write(buffer);
+        }
+        entries.add(new Entry(getTileId(z, x, y), dataLength, content.length, 1));
+        dataLength += content.length;
+
+        final int type = getTileType(AbstractImageryCacheExportAction.getImageFormat(content));
+        tileType = tileType == -1 || tileType == type ? type : TYPE_UNKNOWN;
+        minZoom = Math.min(minZoom, z);
+        maxZoom = Math.max(maxZoom, z);
+        final double n = 1L << z;
+        minLon = Math.min(minLon, x / n * 360 - 180);
+        maxLon = Math.max(maxLon, (x + 1) / n * 360 - 180);
+        maxLat = Math.max(maxLat, Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y / n)))));
+        minLat = Math.min(minLat, Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * (y + 1) / n)))));
+    }
+
+    /**
+     * Get the number of tiles added so far.
+     *
+     * @return Number of tiles.
+     */
+    public synchronized int getTileCount() {
+        return entries.size();
+    }
+
+    /**
+     * Write the archive.
+     *
+     * @throws IOException in case of I/O error
+     */
+    public synchronized void finish() throws IOException {
+        entries.sort(Comparator.comparingLong(e -> e.tileId));
+        // A tile may be cached under several keys, keep the first one.
+        final List<Entry> tiles = new ArrayList<>(entries.size());
+        for (Entry entry: entries) {
+            if (tiles.isEmpty() || tiles.get(tiles.size() - 1).tileId != entry.tileId) {
+                tiles.add(entry);
+            }
+        }
+
+        byte[] root = serialize(tiles, 0, tiles.size());
+        ByteArrayOutputStream leaves = new ByteArrayOutputStream();
+        for (int leafSize = 4096; root.length > MAX_ROOT_LENGTH; leafSize *= 2) {
+            leaves.reset();
+            final List<Entry> rootEntries = new ArrayList<>();
+            for (int i = 0; i < tiles.size(); i += leafSize) {
+                final byte[] leaf = serialize(tiles, i, Math.min(tiles.size(), i + leafSize));
+                rootEntries.add(new Entry(tiles.get(i).tileId, leaves.size(), leaf.length, 0));
+                leaves.write(leaf, 0, leaf.length);
+            }
+            root = serialize(rootEntries, 0, rootEntries.size());
+        }
+
+        final long metadataOffset = HEADER_LENGTH + root.length;
+        final long leavesOffset = metadataOffset + METADATA.length;
+        final long dataOffset = leavesOffset + leaves.size();
+        final boolean empty = tiles.isEmpty();
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("PMTiles".getBytes(StandardCharsets.US_ASCII));
+        header.put((byte) 3);
+        header.putLong(HEADER_LENGTH);
+        header.putLong(root.length);
+        header.putLong(metadataOffset);
+        header.putLong(METADATA.length);
+        header.putLong(leavesOffset);
+        header.putLong(leaves.size());
+        header.putLong(dataOffset);
+        header.putLong(dataLength);
+        header.putLong(tiles.size());
+        header.putLong(tiles.size());
+        header.putLong(tiles.size());
+        header.put((byte) 0);   // not clustered, tile data is in the order it arrived
+        header.put((byte) 1);   // no internal compression
+        header.put((byte) 1);   // no tile compression
+        header.put((byte) Math.max(tileType, TYPE_UNKNOWN));
+        header.put((byte) (empty ? 0 : minZoom));
+        header.put((byte) (empty ? 0 : maxZoom));
+        header.putInt(toE7(empty ? 0 : minLon));
+        header.putInt(toE7(empty ? 0 : minLat));
+        header.putInt(toE7(empty ? 0 : maxLon));
+        header.putInt(toE7(empty ? 0 : maxLat));
+        header.put((byte) (empty ? 0 : minZoom));
+        header.putInt(toE7(empty ? 0 : (minLon + maxLon) / 2));
+        header.putInt(toE7(empty ? 0 : (minLat + maxLat) / 2));
+        header.flip();
+
+        data.force(false);
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             FileChannel in = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+            write(out, header);
+            write(out, ByteBuffer.wrap(root));
+            write(out, ByteBuffer.wrap(METADATA));
+            write(out, ByteBuffer.wrap(leaves.toByteArray()));
+            long position = 0;
+            while (position < dataLength) {
+                position += in.transferTo(position, dataLength - position, out);
+            }
+        }
+    }
+
+    /**
+     * Delete the temporary file.  The archive is kept if {@link #finish()}
+     * was called.
+     *
+     * @throws IOException in case of I/O error
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            data.close();
+        } finally {
+            Files.deleteIfExists(dataFile.toPath());
+        }
+    }
+
+    /**
+     * Get the tile id of a tile.  Tiles are numbered by zoom level, and
+     * along a Hilbert curve within a zoom level.
+     *
+     * @param z Zoom level.
+     * @param x Tile column.
+     * @param y Tile row.
+     *
+     * @return Tile id.
+     */
+    static long getTileId(int z, int x, int y) {
+        long id = ((1L << (2 * z)) - 1) / 3;
+        final long n = 1L << z;
+        long tx = x;
+        long ty = y;
+        for (long s = n >> 1; s > 0; s >>= 1) {
+            final long rx = (tx & s) > 0 ? 1 : 0;
+            final long ry = (ty & s) > 0 ? 1 : 0;
+            id += s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    tx = n - 1 - tx;
+                    ty = n - 1 - ty;
+                }
+                final long t = tx;
+                tx = ty;
+                ty = t;
+            }
+        }
+        return id;
+    }
+
+    private static int getTileType(String format) {
+        if ("png".equals(format)) {
+            return 2;
+        } else if ("jpg".equals(format)) {
+            return 3;
+        } else if ("webp".equals(format)) {
+            return 4;
+        }
+        return TYPE_UNKNOWN;
+    }
+
+    private static int toE7(double degrees) {
+        return (int) Math.round(degrees * 10_000_000);
+    }
+
+    private static byte[] serialize(List<Entry> list, int from, int to) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, to - from);
+        long lastId = 0;
+        for (int i = from; i < to; i++) {
+            writeVarint(out, list.get(i).tileId - lastId);
+            lastId = list.get(i).tileId;
+        }
+        for (int i = from; i < to; i++) {
+            writeVarint(out, list.get(i).runLength);
+        }
+        for (int i = from; i < to; i++) {
+            writeVarint(out, list.get(i).length);
+        }
+        for (int i = from; i < to; i++) {
+            final Entry entry = list.get(i);
+            if (i > from && entry.offset == list.get(i - 1).offset + list.get(i - 1).length) {
+                writeVarint(out, 0);
+            } else {
+                writeVarint(out, entry.offset + 1);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -40,4 +40,37 @@ public class TMSImageryCacheExportAction extends AbstractImageryCacheExportActio
         }
         return null;
     }
+
+    /**
+     * TMS cache keys end with the zoom level, column and row of the tile.
+     *
+     * @return {@code true}
+     */
+    @Override
+    protected boolean supportsArchive() {
+        return true;
+    }
+
+    /**
+     * Get the tile coordinates for a cache key.
+     *
+     * @param key Tile cache key.  That is the full cache key with the key
+     * 		  prefix removed.
+     *
+     * @return Zoom level, column and row of the tile.
+     */
+    @Override
+    protected int[] getTileZXY(String key) {
+        final String[] segs = key.split("/");
+        if (segs.length >= 3) {
+            try {
+                return new int[] {Integer.parseInt(segs[segs.length - 3]),
+                                  Integer.parseInt(segs[segs.length - 2]),
+                                  Integer.parseInt(segs[segs.length - 1])};
+            } catch (NumberFormatException exn) {
+                return null;
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,278 @@
+package org.openstreetmap.josm.plugins.imagery_cachexport;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit test of {@link PMTilesWriter}.  The archives are read back
+ * following the PMTiles version 3 specification.
+ */
+class PMTilesWriterTest {
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    @TempDir
+    File tempFolder;
+
+    /**
+     * Directory entry as read from the archive, with the offset resolved.
+     */
+    private static final class Entry {
+        final long tileId;
+        final long runLength;
+        final long length;
+        final long offset;
+
+        Entry(long tileId, long runLength, long length, long offset) {
+            this.tileId = tileId;
+            this.runLength = runLength;
+            this.length = length;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Get a tile that looks like a PNG image.
+     *
+     * @param id     Number written into the content, to tell the tiles apart.
+     * @param length Number of bytes after the signature.
+     *
+     * @return Tile content.
+     */
+    private static byte[] png(int id, int length) {
+        final byte[] content = Arrays.copyOf(PNG_SIGNATURE, PNG_SIGNATURE.length + length);
+        for (int i = 0; i < length; i++) {
+            content[PNG_SIGNATURE.length + i] = (byte) (id >> (8 * (i % 4)));
+        }
+        return content;
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            final int b = buffer.get() & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static List<Entry> readDirectory(byte[] archive, long offset, long length) {
+        final ByteBuffer buffer = ByteBuffer.wrap(archive, (int) offset, (int) length);
+        final int count = (int) readVarint(buffer);
+        final long[] tileIds = new long[count];
+        final long[] runLengths = new long[count];
+        final long[] lengths = new long[count];
+        long lastId = 0;
+        for (int i = 0; i < count; i++) {
+            lastId += readVarint(buffer);
+            tileIds[i] = lastId;
+        }
+        for (int i = 0; i < count; i++) {
+            runLengths[i] = readVarint(buffer);
+        }
+        for (int i = 0; i < count; i++) {
+            lengths[i] = readVarint(buffer);
+        }
+        final List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final long value = readVarint(buffer);
+            final long entryOffset;
+            if (value == 0) {
+                assertTrue(i > 0, "offset 0 in first entry");
+                entryOffset = entries.get(i - 1).offset + entries.get(i - 1).length;
+            } else {
+                entryOffset = value - 1;
+            }
+            entries.add(new Entry(tileIds[i], runLengths[i], lengths[i], entryOffset));
+        }
+        assertEquals(offset + length, buffer.position(), "directory length");
+        return entries;
+    }
+
+    private static byte[] getTile(byte[] archive, long dataOffset, Entry entry) {
+        return Arrays.copyOfRange(archive, (int) (dataOffset + entry.offset),
+                                  (int) (dataOffset + entry.offset + entry.length));
+    }
+
+    private static int toE7(double degrees) {
+        return (int) Math.round(degrees * 10_000_000);
+    }
+
+    /**
+     * Test the tile ids.  The expected values are from the PMTiles
+     * specification and the pmtiles plugin.
+     */
+    @Test
+    void testTileId() {
+        assertEquals(0, PMTilesWriter.getTileId(0, 0, 0));
+        assertEquals(1, PMTilesWriter.getTileId(1, 0, 0));
+        assertEquals(2, PMTilesWriter.getTileId(1, 0, 1));
+        assertEquals(3, PMTilesWriter.getTileId(1, 1, 1));
+        assertEquals(4, PMTilesWriter.getTileId(1, 1, 0));
+        assertEquals(5, PMTilesWriter.getTileId(2, 0, 0));
+        assertEquals(36052, PMTilesWriter.getTileId(8, 40, 87));
+
+        // Each zoom level uses its own range of ids, and neighbours on the
+        // Hilbert curve are neighbours on the map.
+        long first = 0;
+        for (int z = 0; z <= 6; z++) {
+            final int n = 1 << z;
+            final int[][] tiles = new int[n * n][];
+            for (int x = 0; x < n; x++) {
+                for (int y = 0; y < n; y++) {
+                    final long id = PMTilesWriter.getTileId(z, x, y);
+                    assertTrue(id >= first && id < first + n * n, z + "/" + x + "/" + y);
+                    tiles[(int) (id - first)] = new int[] {x, y};
+                }
+            }
+            for (int i = 1; i < tiles.length; i++) {
+                assertEquals(1, Math.abs(tiles[i][0] - tiles[i - 1][0]) + Math.abs(tiles[i][1] - tiles[i - 1][1]));
+            }
+            first += (long) n * n;
+        }
+    }
+
+    /**
+     * Write a few tiles in random order and read the archive back.
+     *
+     * @throws IOException in case of I/O error
+     */
+    @Test
+    void testArchive() throws IOException {
+        final File file = new File(tempFolder, "tiles.pmtiles");
+        final int[][] tiles = {{2, 3, 1}, {1, 1, 0}, {2, 2, 1}, {1, 0, 0}, {2, 3, 2}};
+        final byte[][] contents = new byte[tiles.length][];
+        try (PMTilesWriter writer = new PMTilesWriter(file)) {
+            for (int i = 0; i < tiles.length; i++) {
+                contents[i] = png(i, 10 + 7 * i);
+                writer.addTile(tiles[i][0], tiles[i][1], tiles[i][2], contents[i]);
+            }
+            // The same tile under another key, the first one is kept.
+            writer.addTile(1, 1, 0, png(99, 3));
+            assertEquals(tiles.length + 1, writer.getTileCount());
+            writer.finish();
+        }
+        assertEquals(Arrays.asList(file), Arrays.asList(tempFolder.listFiles()));
+
+        final byte[] archive = Files.readAllBytes(file.toPath());
+        final ByteBuffer header = ByteBuffer.wrap(archive, 0, 127).order(ByteOrder.LITTLE_ENDIAN);
+        final byte[] magic = new byte[7];
+        header.get(magic);
+        assertEquals("PMTiles", new String(magic, StandardCharsets.US_ASCII));
+        assertEquals(3, header.get());
+        final long rootOffset = header.getLong();
+        final long rootLength = header.getLong();
+        final long metadataOffset = header.getLong();
+        final long metadataLength = header.getLong();
+        final long leavesOffset = header.getLong();
+        final long leavesLength = header.getLong();
+        final long dataOffset = header.getLong();
+        final long dataLength = header.getLong();
+        assertEquals(127, rootOffset);
+        assertEquals(rootOffset + rootLength, metadataOffset);
+        assertEquals("{}", new String(archive, (int) metadataOffset, (int) metadataLength, StandardCharsets.UTF_8));
+        assertEquals(metadataOffset + metadataLength, leavesOffset);
+        assertEquals(0, leavesLength);
+        assertEquals(leavesOffset + leavesLength, dataOffset);
+        assertEquals(archive.length, dataOffset + dataLength);
+        assertEquals(tiles.length, header.getLong());   // addressed tiles
+        assertEquals(tiles.length, header.getLong());   // tile entries
+        assertEquals(tiles.length, header.getLong());   // tile contents
+        assertEquals(0, header.get());                  // not clustered
+        assertEquals(1, header.get());                  // no internal compression
+        assertEquals(1, header.get());                  // no tile compression
+        assertEquals(2, header.get());                  // PNG
+        assertEquals(1, header.get());                  // min zoom
+        assertEquals(2, header.get());                  // max zoom
+        assertEquals(toE7(-180), header.getInt());
+        assertEquals(toE7(-66.51326044311186), header.getInt());
+        assertEquals(toE7(180), header.getInt());
+        assertEquals(toE7(85.0511287798066), header.getInt());
+        assertEquals(1, header.get());                  // center zoom
+        assertEquals(0, header.getInt());
+        assertEquals(toE7((85.0511287798066 - 66.51326044311186) / 2), header.getInt());
+        assertEquals(127, header.position());
+
+        final Map<Long, byte[]> expected = new HashMap<>();
+        for (int i = 0; i < tiles.length; i++) {
+            expected.put(PMTilesWriter.getTileId(tiles[i][0], tiles[i][1], tiles[i][2]), contents[i]);
+        }
+        final List<Entry> entries = readDirectory(archive, rootOffset, rootLength);
+        assertArrayEquals(new long[] {1, 4, 16, 17, 18}, entries.stream().mapToLong(e -> e.tileId).toArray());
+        // The tile data is in the order the tiles were added.
+        assertArrayEquals(new long[] {75, 18, 114, 0, 43}, entries.stream().mapToLong(e -> e.offset).toArray());
+        for (Entry entry: entries) {
+            assertEquals(1, entry.runLength);
+            assertArrayEquals(expected.get(entry.tileId), getTile(archive, dataOffset, entry));
+        }
+    }
+
+    /**
+     * Write more tiles than fit into the root directory, so that leaf
+     * directories are needed.
+     *
+     * @throws IOException in case of I/O error
+     */
+    @Test
+    void testLeafDirectories() throws IOException {
+        final File file = new File(tempFolder, "leaves.pmtiles");
+        final int z = 7;
+        final int count = 10000;
+        final Map<Long, byte[]> expected = new HashMap<>();
+        try (PMTilesWriter writer = new PMTilesWriter(file)) {
+            for (int i = count - 1; i >= 0; i--) {
+                final byte[] content = png(i, 1 + i % 5);
+                writer.addTile(z, i % 128, i / 128, content);
+                expected.put(PMTilesWriter.getTileId(z, i % 128, i / 128), content);
+            }
+            writer.finish();
+        }
+
+        final byte[] archive = Files.readAllBytes(file.toPath());
+        final ByteBuffer header = ByteBuffer.wrap(archive).order(ByteOrder.LITTLE_ENDIAN);
+        final long rootOffset = header.getLong(8);
+        final long rootLength = header.getLong(16);
+        final long leavesOffset = header.getLong(40);
+        final long leavesLength = header.getLong(48);
+        final long dataOffset = header.getLong(56);
+        assertTrue(rootOffset + rootLength <= 16384, "root directory within the first 16 KiB");
+        assertTrue(leavesLength > 0, "leaf directories");
+        assertEquals(count, header.getLong(80));
+
+        long lastId = -1;
+        long leavesEnd = 0;
+        for (Entry leaf: readDirectory(archive, rootOffset, rootLength)) {
+            assertEquals(0, leaf.runLength);
+            assertEquals(leavesEnd, leaf.offset);
+            leavesEnd = leaf.offset + leaf.length;
+            final List<Entry> entries = readDirectory(archive, leavesOffset + leaf.offset, leaf.length);
+            assertEquals(leaf.tileId, entries.get(0).tileId);
+            for (Entry entry: entries) {
+                assertTrue(entry.tileId > lastId);
+                lastId = entry.tileId;
+                assertTrue(expected.containsKey(entry.tileId));
+                assertEquals(1, entry.runLength);
+                assertArrayEquals(expected.get(entry.tileId), getTile(archive, dataOffset, entry));
+            }
+        }
+        assertEquals(leavesLength, leavesEnd);
+        assertEquals(count, expected.size());
+    }
+}
@@ -38,6 +38,8 @@ public class JunctionSearchTask extends PleaseWaitRunnable {
         this.subset = subset;
         this.produceRelation = produceRelation;
         jc = new JunctionChecker(plugin.getChannelDigraph(), n);
+        // ohne berechnete Zusammenhangskomponenten gelten alle Channels als stark zusammenhängend
+        jc.setPruneNotStronglyConnected(true);
     }
 
     @Override
@@ -4,12 +4,19 @@ package org.openstreetmap.josm.plugins.JunctionChecker.commandlineinterface;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.xml.stream.XMLStreamException;
 
 import org.openstreetmap.josm.plugins.JunctionChecker.connectedness.StrongConnectednessCalculator;
 import org.openstreetmap.josm.plugins.JunctionChecker.converting.ChannelDigraphBuilder;
 import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.Channel;
+import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.ChannelDiGraph;
 import org.openstreetmap.josm.plugins.JunctionChecker.filter.ExecuteFilter;
 import org.openstreetmap.josm.plugins.JunctionChecker.junctionchecking.JunctionChecker;
 import org.openstreetmap.josm.plugins.JunctionChecker.reader.OSMXMLReader;
@@ -31,10 +38,15 @@ public final class CLI {
         int n = 0;
         int runs = 0;
 
-        final String WAYFILTERFILE = "/resources/xml/waysfilter.xml";
+        if (args.length >= 4 && "--search".equals(args[0])) {
+            int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+            searchRegion(args[1], Integer.parseInt(args[2]), Double.parseDouble(args[3]), threads);
+            return;
+        }
 
         if (args.length != 6) {
             System.out.println("Parameter:\n inputosm (osmxml) \n outputchannelosm (outputosmxml) \n maxchannelsearch (wieviele channel sollen max. überprüft werdne) \n ticks (schrittweite) \n n (n-wege-kreuzung) \n durchläufe (wieviele durchläufe pro suchdurchgang)");
+            System.out.println("oder: --search inputosm (osmxml) \n n (n-wege-kreuzung) \n kachelgröße (in grad) \n [threads]");
             return;
         } else {
             inputosm = args[0];
@@ -45,32 +57,7 @@ public final class CLI {
             runs = Integer.parseInt(args[5]);
         }
 
-        // XML datei einlesen
-        File file = new File(inputosm);
-        OSMXMLReader xmlreader = new OSMXMLReader(file);
-        xmlreader.parseXML();
-
-        // Filter mit gewünschten Ways laden
-        XMLFilterReader reader = new XMLFilterReader(
-                WAYFILTERFILE);
-        reader.parseXML();
-
-        // gewünschte Ways filtern
-        ExecuteFilter ef = new ExecuteFilter(reader.getFilters(), xmlreader
-                .getOSMGraph());
-        ef.filter();
-
-        // ChannelDiGraphen erzeugen
-        ChannelDigraphBuilder cdgb = new ChannelDigraphBuilder(ef.getOutgoinggraph());
-        cdgb.buildChannelDigraph();
-
-        // DiGraph "versiegeln"
-        //DiGraphSealer sealer = new DiGraphSealer(cdgb.getDigraph(), cdgb
-        //        .getNewid());
-        //sealer.sealingGraph();
-
-        StrongConnectednessCalculator scc = new StrongConnectednessCalculator(cdgb.getDigraph());
-        scc.calculateSCC();
+        ChannelDigraphBuilder cdgb = buildChannelDigraph(inputosm);
 
         if (maxchannelsearch == 0) {
             OSMXMLWriter oxw = new OSMXMLWriter(outputosm, cdgb.getDigraph());
@@ -168,6 +155,101 @@ public final class CLI {
         }
     }
 
+    private static ChannelDigraphBuilder buildChannelDigraph(String inputosm) {
+        final String WAYFILTERFILE = "/resources/xml/waysfilter.xml";
+
+        // XML datei einlesen
+        File file = new File(inputosm);
+        OSMXMLReader xmlreader = new OSMXMLReader(file);
+        xmlreader.parseXML();
+
+        // Filter mit gewünschten Ways laden
+        XMLFilterReader reader = new XMLFilterReader(
+                WAYFILTERFILE);
+        reader.parseXML();
+
+        // gewünschte Ways filtern
+        ExecuteFilter ef = new ExecuteFilter(reader.getFilters(), xmlreader
+                .getOSMGraph());
+        ef.filter();
+
+        // ChannelDiGraphen erzeugen
+        ChannelDigraphBuilder cdgb = new ChannelDigraphBuilder(ef.getOutgoinggraph());
+        cdgb.buildChannelDigraph();
+
+        // DiGraph "versiegeln"
+        //DiGraphSealer sealer = new DiGraphSealer(cdgb.getDigraph(), cdgb
+        //        .getNewid());
+        //sealer.sealingGraph();
+
+        StrongConnectednessCalculator scc = new StrongConnectednessCalculator(cdgb.getDigraph());
+        scc.calculateSCC();
+        return cdgb;
+    }
+
+    /**
+     * Sucht ohne JOSM-Oberfläche nach Kreuzungen in einer ganzen Region. Die Region wird in sich zur Hälfte
+     * überlappende Kacheln zerlegt, damit auch Kreuzungen an Kachelgrenzen gefunden werden, und jede Kachel wird
+     * für sich durchsucht. Kreuzungen, die in mehreren Kacheln gefunden werden, werden nur einmal ausgegeben.
+     */
+    private static void searchRegion(String inputosm, int n, double tilesize, int threads) {
+        ChannelDigraphBuilder cdgb = buildChannelDigraph(inputosm);
+        ChannelDiGraph digraph = cdgb.getDigraph();
+
+        // Channels nach halben Kacheln einteilen
+        double cellsize = tilesize / 2;
+        TreeMap<Long, ArrayList<Channel>> cells = new TreeMap<>();
+        for (Channel channel : digraph.getChannels()) {
+            int x = (int) Math.floor(channel.getFromNode().getLongitude() / cellsize);
+            int y = (int) Math.floor(channel.getFromNode().getLatitude() / cellsize);
+            cells.computeIfAbsent(cellKey(x, y), k -> new ArrayList<>()).add(channel);
+        }
+
+        JunctionChecker jc = new JunctionChecker(digraph, n);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        jc.setPool(pool);
+        jc.setPruneNotStronglyConnected(true);
+        Set<List<Integer>> found = new HashSet<>();
+        ArrayList<Channel> subset = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        int tiles = 0;
+        try {
+            for (long key : cells.keySet()) {
+                int x = (int) (key >> 32);
+                int y = (int) key;
+                subset.clear();
+                for (int dx = 0; dx <= 1; dx++) {
+                    for (int dy = 0; dy <= 1; dy++) {
+                        ArrayList<Channel> cell = cells.get(cellKey(x + dx, y + dy));
+                        if (cell != null) {
+                            subset.addAll(cell);
+                        }
+                    }
+                }
+                tiles++;
+                jc.junctionSearch(subset);
+                for (HashSet<Channel> junction : jc.getJunctions()) {
+                    List<Integer> ids = new ArrayList<>();
+                    for (Channel channel : junction) {
+                        ids.add(channel.getNewid());
+                    }
+                    Collections.sort(ids);
+                    if (found.add(ids)) {
+                        System.out.println("junction: " + ids);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        System.out.println("Tiles: " + tiles + " Channels: " + digraph.getChannels().size() +
+                " Time(overall): " + (System.currentTimeMillis() - start) + " junctionsfound: " + found.size());
+    }
+
+    private static long cellKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
     private static Channel getNeighbourChannel(Channel seedChannel) {
         if (Math.random() < 0.5) {
             if (seedChannel.getPredChannels().size() >= 1) {
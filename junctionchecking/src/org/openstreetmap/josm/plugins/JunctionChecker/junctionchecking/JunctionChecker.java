@@ -3,6 +3,7 @@ package org.openstreetmap.josm.plugins.JunctionChecker.junctionchecking;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
 
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.Channel;
@@ -38,6 +39,8 @@ public class JunctionChecker {
     private long startIterate = 0;
     private long stopIterate = 0;
     private long startGenerate = 0;
+    private ForkJoinPool pool;
+    private boolean pruneNotStronglyConnected;
 
     public JunctionChecker(ChannelDiGraph channeldigraph, int n) {
         this.jPrepare = new JPrepare(channeldigraph);
@@ -78,10 +81,9 @@ public class JunctionChecker {
     /**
      * Diese Methode wird aufgerufen, wenn nach Kreuzungen in einer Teilmenge
      * gesucht werden soll
-     *
-     * @param firstjunction soll nur die erste mögliche Kreuzung ausgegeben werden oder alle
      */
     public void junctionSearch(ArrayList<Channel> subgraph, ProgressMonitor pm) {
+        startGenerate = System.currentTimeMillis();
         jPrepare.jPrepare(subgraph);
         entries = jPrepare.getEntries();
         exits = jPrepare.getExits();
@@ -90,45 +92,29 @@ public class JunctionChecker {
         this.collectECandidates(subgraph);
         this.ConstructGrid();
         jPrepare.resetSubgraph();
-        m = new JMinimality(Grid, n, E, new ArrayList<Channel>(), new ArrayList<Channel>(), channeldigraph, pm, false);
-        m.GenerateSubcolumns();
-        Check = m.IterateThroughKn();
-        junctions = checkJunctionCandidates(m.getJunctionCandidates());
+        JunctionSearch search = new JunctionSearch(subgraph, E, Grid, n, pruneNotStronglyConnected, pool, pm);
+        startIterate = System.currentTimeMillis();
+        junctions = search.search();
+        stopIterate = System.currentTimeMillis();
     }
 
     public void junctionSearch(ArrayList<Channel> subgraph) {
-        jPrepare.jPrepare(subgraph);
-        entries = jPrepare.getEntries();
-        exits = jPrepare.getExits();
-        jProcess = new JProcess(subgraph, channeldigraph);
-        jProcess.jProcess(jPrepare.getEntries());
-        this.collectECandidates(subgraph);
-        this.ConstructGrid();
-        jPrepare.resetSubgraph();
-        m = new JMinimality(Grid, n, E, new ArrayList<Channel>(), new ArrayList<Channel>(), channeldigraph, false);
-        startGenerate = System.currentTimeMillis();
-        m.GenerateSubcolumns();
-        startIterate = System.currentTimeMillis();
-        Check = m.IterateThroughKn();
-        stopIterate = System.currentTimeMillis();
-        junctions = checkJunctionCandidates(m.getJunctionCandidates());
+        junctionSearch(subgraph, null);
     }
 
     /**
-     * Überprüft die Kreuzunskandidaten, die JMinimality gefunden hat, welche davon eine Kreuzung darstellen (eine Kreuzung
-     * darf keine weiteren Kreuzungen enthalten)
+     * setzt den Pool für die Kreuzungssuche, {@code null} für den gemeinsamen Pool des Plugins
      */
-    private ArrayList<HashSet<Channel>> checkJunctionCandidates(ArrayList<HashSet<Channel>> junctioncandidates) {
-        @SuppressWarnings("unchecked")
-        ArrayList<HashSet<Channel>> junctions = (ArrayList<HashSet<Channel>>) junctioncandidates.clone();
-        for (int i = 0; i < junctioncandidates.size(); i++) {
-            for (int j = 0; j < junctioncandidates.size(); j++) {
-                if (junctioncandidates.get(i).containsAll(junctioncandidates.get(j))) {
-                    junctions.remove(junctioncandidates.get(i));
-                }
-            }
-        }
-        return junctions;
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * sollen Channels außerhalb der größten starken Zusammenhangskomponente bei der Kreuzungssuche
+     * übergangen werden? Setzt voraus, daß die Zusammenhangskomponenten berechnet wurden.
+     */
+    public void setPruneNotStronglyConnected(boolean pruneNotStronglyConnected) {
+        this.pruneNotStronglyConnected = pruneNotStronglyConnected;
     }
 
     private void collectECandidates(ArrayList<Channel> subgraph) {
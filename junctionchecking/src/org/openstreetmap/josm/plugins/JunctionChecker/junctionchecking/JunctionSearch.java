@@ -0,0 +1,429 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.JunctionChecker.junctionchecking;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.Channel;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Sucht alle Kreuzungen in einer Teilmenge von Channels, parallel und ohne den Zustand der Channels zu verändern.
+ *
+ * Wie {@link JMinimality} werden n*n Teilgitter des Erreichbarkeitsgitters gesucht, in denen jede Zeile und jede
+ * Spalte höchstens einen fehlenden Eintrag hat. Zeilen und Spalten werden aber schrittweise ausgewählt, so dass
+ * Teilmengen, die diese Bedingung schon nicht mehr erfüllen können, gar nicht erst aufgezählt werden. Die Zeilen
+ * werden über einen Fork-Join-Pool verteilt. Channelmengen sind BitSets über die Indizes der Teilmenge, JPrepare und
+ * JCheck werden für die Kandidaten direkt auf diesen BitSets nachgebildet.
+ * @author  Jörg Possin, Simon Scheider
+ */
+public class JunctionSearch {
+
+    /** bis zu dieser Tiefe werden Zeilen als eigene Tasks abgegeben, danach wird direkt weitergesucht */
+    private static final int FORK_DEPTH = 2;
+
+    private static final class DefaultPool {
+        private static final ForkJoinPool INSTANCE = Utils.newForkJoinPool(
+                "junctionchecking.search.threads", "junction-search-%d", Thread.NORM_PRIORITY);
+    }
+
+    private final List<Channel> channels;
+    private final Map<Channel, Integer> index = new HashMap<>();
+    private final List<Channel> E;
+    private final int n;
+    private final ForkJoinPool pool;
+    private final ProgressMonitor pm;
+
+    // Vorgänger und Nachfolger jedes Channels als Index in der Teilmenge, -1 außerhalb der Teilmenge
+    private final int[][] pred;
+    private final int[][] succ;
+    private final BitSet[] reachable;
+    // Spalten, die von einer Zeile aus erreichbar sind
+    private final BitSet[] rows;
+    private final int[] rowCandidates;
+    private final BitSet columnCandidates;
+    // Pfade von E[y] nach E[x] samt E[y], werden bei Bedarf berechnet
+    private final AtomicReferenceArray<BitSet> paths;
+
+    private final Set<BitSet> checked = ConcurrentHashMap.newKeySet();
+    private final Set<BitSet> junctions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param subgraph die durchsuchte Teilmenge, für deren Eingänge JProcess bereits gelaufen ist
+     * @param E die Eingangs- und Ausgangskandidaten
+     * @param Grid das Erreichbarkeitsgitter über E
+     * @param n n-Wege-Kreuzung
+     * @param pruneNotStronglyConnected Channels außerhalb der größten starken Zusammenhangskomponente
+     * ({@link org.openstreetmap.josm.plugins.JunctionChecker.connectedness.StrongConnectednessCalculator})
+     * nicht als Eingang oder Ausgang betrachten
+     * @param pool Pool für die Suche, {@code null} für den gemeinsamen Pool des Plugins
+     * @param pm Fortschrittsanzeige, darf {@code null} sein
+     */
+    public JunctionSearch(List<Channel> subgraph, List<Channel> E, int[][] Grid, int n,
+            boolean pruneNotStronglyConnected, ForkJoinPool pool, ProgressMonitor pm) {
+        this.channels = subgraph;
+        this.E = E;
+        this.n = n;
+        this.pool = pool != null ? pool : DefaultPool.INSTANCE;
+        this.pm = pm;
+
+        for (int i = 0; i < subgraph.size(); i++) {
+            index.put(subgraph.get(i), i);
+        }
+        pred = new int[subgraph.size()][];
+        succ = new int[subgraph.size()][];
+        reachable = new BitSet[subgraph.size()];
+        for (int i = 0; i < subgraph.size(); i++) {
+            Channel c = subgraph.get(i);
+            pred[i] = new int[c.getPredChannels().size()];
+            for (int j = 0; j < pred[i].length; j++) {
+                pred[i][j] = indexOf(c.getPredChannels().get(j));
+            }
+            succ[i] = new int[c.getLeadsTo().size()];
+            for (int j = 0; j < succ[i].length; j++) {
+                succ[i][j] = indexOf(c.getLeadsTo().get(j).getToChannel());
+            }
+            reachable[i] = toBitSet(c.getReachableNodes());
+        }
+
+        // Eine Zeile (ein Eingang) muß mindestens n-1 Spalten erreichen und umgekehrt, sonst kann sie in keinem
+        // Teilgitter vorkommen
+        boolean[] active = new boolean[E.size()];
+        for (int i = 0; i < E.size(); i++) {
+            active[i] = !pruneNotStronglyConnected || E.get(i).isStrongConnected();
+        }
+        int[] columnCount = new int[E.size()];
+        for (int y = 0; y < E.size(); y++) {
+            for (int x = 0; x < E.size(); x++) {
+                if (Grid[y][x] == 1 && active[y] && active[x]) {
+                    columnCount[x]++;
+                }
+            }
+        }
+        columnCandidates = new BitSet(E.size());
+        for (int x = 0; x < E.size(); x++) {
+            if (columnCount[x] >= n - 1) {
+                columnCandidates.set(x);
+            }
+        }
+        rows = new BitSet[E.size()];
+        List<Integer> r = new ArrayList<>();
+        for (int y = 0; y < E.size(); y++) {
+            rows[y] = new BitSet(E.size());
+            if (active[y]) {
+                for (int x = 0; x < E.size(); x++) {
+                    if (Grid[y][x] == 1 && columnCandidates.get(x)) {
+                        rows[y].set(x);
+                    }
+                }
+            }
+            if (active[y] && rows[y].cardinality() >= n - 1) {
+                r.add(y);
+            }
+        }
+        rowCandidates = new int[r.size()];
+        for (int i = 0; i < rowCandidates.length; i++) {
+            rowCandidates[i] = r.get(i);
+        }
+        paths = new AtomicReferenceArray<>(E.size() * E.size());
+    }
+
+    private int indexOf(Channel channel) {
+        Integer i = index.get(channel);
+        return i != null ? i : -1;
+    }
+
+    private BitSet toBitSet(List<Channel> list) {
+        BitSet result = new BitSet(index.size());
+        if (list != null) {
+            for (Channel c : list) {
+                int i = indexOf(c);
+                if (i >= 0) {
+                    result.set(i);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * durchsucht die Teilmenge und gibt die gefundenen Kreuzungen zurück, die keine weitere gefundene Kreuzung enthalten
+     */
+    public ArrayList<HashSet<Channel>> search() {
+        if (pm != null) {
+            pm.setCustomText(tr("search junction candidates"));
+            pm.setTicksCount(rowCandidates.length);
+        }
+        if (n > 0 && rowCandidates.length >= n && columnCandidates.cardinality() >= n) {
+            BitSet allColumns = (BitSet) columnCandidates.clone();
+            pool.invoke(new RowTask(new int[0], 0, allColumns, new BitSet(E.size())));
+        }
+        return getMinimalJunctions();
+    }
+
+    private boolean isCanceled() {
+        return pm != null && pm.isCanceled();
+    }
+
+    /**
+     * wählt die Zeilen eines Teilgitters aus. col0 enthält die Spalten ohne, col1 die Spalten mit genau einem fehlenden
+     * Eintrag in den bisher gewählten Zeilen.
+     */
+    private final class RowTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] chosen;
+        private final int next;
+        private final BitSet col0;
+        private final BitSet col1;
+
+        RowTask(int[] chosen, int next, BitSet col0, BitSet col1) {
+            this.chosen = chosen;
+            this.next = next;
+            this.col0 = col0;
+            this.col1 = col1;
+        }
+
+        @Override
+        protected void compute() {
+            if (chosen.length == n) {
+                searchColumns(chosen, col0, col1);
+                return;
+            }
+            List<RowTask> tasks = new ArrayList<>();
+            for (int i = next; i <= rowCandidates.length - (n - chosen.length) && !isCanceled(); i++) {
+                int y = rowCandidates[i];
+                BitSet next0 = (BitSet) col0.clone();
+                next0.and(rows[y]);
+                BitSet next1 = (BitSet) col1.clone();
+                next1.and(rows[y]);
+                BitSet missing = (BitSet) col0.clone();
+                missing.andNot(rows[y]);
+                next1.or(missing);
+                if (next0.cardinality() + next1.cardinality() < n) {
+                    if (chosen.length == 0) {
+                        worked();
+                    }
+                    continue;
+                }
+                int[] rowsChosen = new int[chosen.length + 1];
+                System.arraycopy(chosen, 0, rowsChosen, 0, chosen.length);
+                rowsChosen[chosen.length] = y;
+                RowTask task = new RowTask(rowsChosen, i + 1, next0, next1);
+                if (chosen.length < FORK_DEPTH) {
+                    tasks.add(task);
+                } else {
+                    task.compute();
+                }
+            }
+            invokeAll(tasks);
+            if (chosen.length == 0) {
+                // die ersten Zeilen, die nicht abgebrochen wurden, sind jetzt fertig
+                for (int i = 0; i < tasks.size(); i++) {
+                    worked();
+                }
+            }
+        }
+    }
+
+    private void worked() {
+        if (pm != null) {
+            synchronized (pm) {
+                pm.worked(1);
+            }
+        }
+    }
+
+    /**
+     * wählt n Spalten für die Zeilen aus, so dass in jeder Zeile höchstens ein Eintrag fehlt
+     */
+    private void searchColumns(int[] rowsChosen, BitSet col0, BitSet col1) {
+        BitSet candidates = (BitSet) col0.clone();
+        candidates.or(col1);
+        int[] columns = new int[candidates.cardinality()];
+        int c = 0;
+        for (int x = candidates.nextSetBit(0); x >= 0; x = candidates.nextSetBit(x + 1)) {
+            columns[c++] = x;
+        }
+        searchColumns(rowsChosen, columns, 0, new int[n], 0, new int[n]);
+    }
+
+    private void searchColumns(int[] rowsChosen, int[] columns, int next, int[] chosen, int count, int[] missing) {
+        if (count == n) {
+            checkCandidate(rowsChosen, chosen);
+            return;
+        }
+        for (int i = next; i <= columns.length - (n - count) && !isCanceled(); i++) {
+            int x = columns[i];
+            boolean valid = true;
+            for (int y = 0; y < n; y++) {
+                if (!rows[rowsChosen[y]].get(x) && missing[y] > 0) {
+                    valid = false;
+                    break;
+                }
+            }
+            if (!valid) {
+                continue;
+            }
+            for (int y = 0; y < n; y++) {
+                if (!rows[rowsChosen[y]].get(x)) {
+                    missing[y]++;
+                }
+            }
+            chosen[count] = x;
+            searchColumns(rowsChosen, columns, i + 1, chosen, count + 1, missing);
+            for (int y = 0; y < n; y++) {
+                if (!rows[rowsChosen[y]].get(x)) {
+                    missing[y]--;
+                }
+            }
+        }
+    }
+
+    /**
+     * baut den Kreuzungskandidaten aus den Pfaden des Teilgitters zusammen und prüft ihn
+     */
+    private void checkCandidate(int[] rowsChosen, int[] columnsChosen) {
+        BitSet subgraph = new BitSet(channels.size());
+        for (int y : rowsChosen) {
+            for (int x : columnsChosen) {
+                if (rows[y].get(x)) {
+                    subgraph.or(getPaths(y, x));
+                }
+            }
+        }
+        if (checked.add(subgraph) && isJunction(subgraph)) {
+            junctions.add(subgraph);
+        }
+    }
+
+    private BitSet getPaths(int y, int x) {
+        int i = y * E.size() + x;
+        BitSet result = paths.get(i);
+        if (result == null) {
+            Channel from = E.get(y);
+            result = toBitSet(from.getPathsAt(E.get(x)));
+            result.set(index.get(from));
+            paths.set(i, result);
+        }
+        return result;
+    }
+
+    /**
+     * entspricht JPrepare und JCheck, ohne die Channels zu verändern
+     */
+    private boolean isJunction(BitSet subgraph) {
+        int[] entries = new int[n];
+        int[] exits = new int[n];
+        int[] entryDegree = new int[n];
+        int[] exitDegree = new int[n];
+        int entryCount = 0;
+        int exitCount = 0;
+        for (int v = subgraph.nextSetBit(0); v >= 0; v = subgraph.nextSetBit(v + 1)) {
+            boolean entry = false;
+            boolean exit = false;
+            int degree = 0;
+            for (int p : pred[v]) {
+                if (p < 0 || !subgraph.get(p)) {
+                    entry = true;
+                } else {
+                    degree++;
+                }
+            }
+            for (int s : succ[v]) {
+                if (s < 0 || !subgraph.get(s)) {
+                    exit = true;
+                } else {
+                    degree++;
+                }
+            }
+            if (entry) {
+                if (entryCount == n) {
+                    return false;
+                }
+                entries[entryCount] = v;
+                entryDegree[entryCount++] = degree;
+            }
+            if (exit) {
+                if (exitCount == n) {
+                    return false;
+                }
+                exits[exitCount] = v;
+                exitDegree[exitCount++] = degree;
+            }
+        }
+        if (entryCount != n || exitCount != n) {
+            return false;
+        }
+        int[] ennr = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (entryDegree[i] < 2) {
+                return false;
+            }
+            int exnr = 0;
+            for (int j = 0; j < n; j++) {
+                if (exitDegree[j] < 2) {
+                    return false;
+                }
+                if (reachable[entries[i]].get(exits[j])) {
+                    exnr++;
+                    ennr[j]++;
+                }
+                if (exits[j] == entries[i]) {
+                    return false;
+                }
+            }
+            // anders als in JCheck wird das für jeden Eingang geprüft, nicht nur für den letzten
+            if (exnr < n - 1) {
+                return false;
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            if (ennr[j] < n - 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * eine Kreuzung darf keine weitere gefundene Kreuzung enthalten
+     */
+    private ArrayList<HashSet<Channel>> getMinimalJunctions() {
+        List<BitSet> found = new ArrayList<>(junctions);
+        ArrayList<HashSet<Channel>> result = new ArrayList<>();
+        for (BitSet junction : found) {
+            boolean minimal = true;
+            for (BitSet other : found) {
+                if (other != junction) {
+                    BitSet rest = (BitSet) other.clone();
+                    rest.andNot(junction);
+                    if (rest.isEmpty()) {
+                        minimal = false;
+                        break;
+                    }
+                }
+            }
+            if (minimal) {
+                HashSet<Channel> set = new HashSet<>();
+                for (int i = junction.nextSetBit(0); i >= 0; i = junction.nextSetBit(i + 1)) {
+                    set.add(channels.get(i));
+                }
+                result.add(set);
+            }
+        }
+        return result;
+    }
+}
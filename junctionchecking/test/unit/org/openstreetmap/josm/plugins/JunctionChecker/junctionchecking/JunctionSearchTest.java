@@ -0,0 +1,225 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.JunctionChecker.junctionchecking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.plugins.JunctionChecker.connectedness.StrongConnectednessCalculator;
+import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.Channel;
+import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.ChannelDiGraph;
+import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.LeadsTo;
+
+/**
+ * Unit test of {@link JunctionSearch}, which has to find the same junctions as the sequential enumeration of
+ * {@link JMinimality}.
+ */
+class JunctionSearchTest {
+
+    /** number of nodes in each direction of the street grid */
+    private static final int SIZE = 5;
+
+    private ForkJoinPool pool;
+    private ChannelDiGraph digraph;
+    /** the searched channels: all channels touching the searched intersections */
+    private ArrayList<Channel> subgraph;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * The searched intersections: the centre of the street grid and the node east of it.
+     */
+    private static boolean isSearched(int node) {
+        return node == SIZE * SIZE / 2 || node == SIZE * SIZE / 2 + 1;
+    }
+
+    /**
+     * Creates a street grid with random one-way streets. Channels may be followed by the channels leaving their
+     * end node, except by the channel back and except for a few random turn restrictions.
+     */
+    private void createGrid(Random random) {
+        digraph = new ChannelDiGraph();
+        subgraph = new ArrayList<>();
+        List<int[]> ends = new ArrayList<>();
+        for (int node = 0; node < SIZE * SIZE; node++) {
+            for (int neighbour : new int[] {node + 1, node + SIZE}) {
+                if ((neighbour == node + 1 && neighbour % SIZE == 0) || neighbour >= SIZE * SIZE) {
+                    continue;
+                }
+                int direction = random.nextInt(8);
+                if (direction != 1) {
+                    addChannel(node, neighbour, ends);
+                }
+                if (direction != 2) {
+                    addChannel(neighbour, node, ends);
+                }
+            }
+        }
+        for (int i = 0; i < ends.size(); i++) {
+            for (int j = 0; j < ends.size(); j++) {
+                if (ends.get(i)[1] == ends.get(j)[0] && ends.get(i)[0] != ends.get(j)[1] && random.nextInt(16) > 0) {
+                    Channel from = digraph.getChannelAtPosition(i);
+                    Channel to = digraph.getChannelAtPosition(j);
+                    digraph.addLeadsTo(new LeadsTo(from, to));
+                    to.addPredChannel(from);
+                }
+            }
+        }
+    }
+
+    private void addChannel(int from, int to, List<int[]> ends) {
+        Channel channel = new Channel();
+        channel.setNewid(ends.size());
+        digraph.addChannel(channel);
+        ends.add(new int[] {from, to});
+        if (isSearched(from) || isSearched(to)) {
+            subgraph.add(channel);
+        }
+    }
+
+    private ArrayList<HashSet<Channel>> search(int n, boolean prune) {
+        JunctionChecker checker = new JunctionChecker(digraph, n);
+        checker.setPool(pool);
+        checker.setPruneNotStronglyConnected(prune);
+        checker.junctionSearch(subgraph);
+        return checker.getJunctions();
+    }
+
+    /**
+     * The junction search as it was done before {@link JunctionSearch}: {@link JMinimality} enumerates all subgrids
+     * and collects the candidates that pass {@link JCheck}. The remaining rules are checked afterwards: every entry
+     * reaches n-1 exits, and a junction contains no other junction.
+     */
+    private ArrayList<HashSet<Channel>> searchSequentially(int n, boolean prune) {
+        JPrepare jPrepare = new JPrepare(digraph);
+        jPrepare.jPrepare(subgraph);
+        ArrayList<Channel> entries = new ArrayList<>(jPrepare.getEntries());
+        ArrayList<Channel> exits = new ArrayList<>(jPrepare.getExits());
+        new JProcess(subgraph, digraph).jProcess(entries);
+        ArrayList<Channel> E = new ArrayList<>();
+        for (Channel c : subgraph) {
+            if (c.getIndegree() + c.getOutdegree() >= 3 || entries.contains(c) || exits.contains(c)) {
+                E.add(c);
+            }
+        }
+        jPrepare.resetSubgraph();
+        int[][] Grid = new int[E.size()][E.size()];
+        for (int y = 0; y < E.size(); y++) {
+            for (int x = 0; x < E.size(); x++) {
+                if (x != y && !entries.contains(E.get(x)) && !exits.contains(E.get(y))
+                        && E.get(y).getReachableNodes().contains(E.get(x))
+                        && (!prune || (E.get(y).isStrongConnected() && E.get(x).isStrongConnected()))) {
+                    Grid[y][x] = 1;
+                }
+            }
+        }
+
+        JMinimality m = new JMinimality(Grid, n, E, new ArrayList<>(), new ArrayList<>(), digraph, false);
+        m.GenerateSubcolumns();
+        m.IterateThroughKn();
+        List<HashSet<Channel>> candidates = new ArrayList<>();
+        for (HashSet<Channel> candidate : m.getJunctionCandidates()) {
+            if (allEntriesReachExits(candidate, n)) {
+                candidates.add(candidate);
+            }
+        }
+        ArrayList<HashSet<Channel>> junctions = new ArrayList<>();
+        for (HashSet<Channel> candidate : candidates) {
+            boolean minimal = true;
+            for (HashSet<Channel> other : candidates) {
+                if (other != candidate && candidate.containsAll(other)) {
+                    minimal = false;
+                }
+            }
+            if (minimal) {
+                junctions.add(candidate);
+            }
+        }
+        return junctions;
+    }
+
+    private boolean allEntriesReachExits(Set<Channel> candidate, int n) {
+        JPrepare jPrepare = new JPrepare(digraph);
+        jPrepare.jPrepare(new ArrayList<>(candidate));
+        try {
+            for (Channel entry : jPrepare.getEntries()) {
+                int reached = 0;
+                for (Channel exit : jPrepare.getExits()) {
+                    if (entry.getReachableNodes().contains(exit)) {
+                        reached++;
+                    }
+                }
+                if (reached < n - 1) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            jPrepare.resetSubgraph();
+        }
+    }
+
+    private void assertSameJunctions(int n, boolean prune) {
+        Set<HashSet<Channel>> expected = new HashSet<>(searchSequentially(n, prune));
+        List<HashSet<Channel>> actual = search(n, prune);
+        assertEquals(expected.size(), actual.size(), "n=" + n + " prune=" + prune);
+        assertEquals(expected, new HashSet<>(actual), "n=" + n + " prune=" + prune);
+    }
+
+    /**
+     * Random street grids, searched for 2, 3 and 4-way junctions.
+     */
+    @Test
+    void testSameAsSequentialSearch() {
+        Random random = new Random(37);
+        int found = 0;
+        for (int round = 0; round < 30; round++) {
+            createGrid(random);
+            for (int n = 2; n <= 4; n++) {
+                assertSameJunctions(n, false);
+                found += search(n, false).size();
+            }
+        }
+        assertTrue(found > 0);
+    }
+
+    /**
+     * Random street grids after {@link StrongConnectednessCalculator} marked the channels outside the largest strongly
+     * connected component, and one more random channel of the searched ones: the pruned search finds the junctions of
+     * the sequential search on the grid without these channels.
+     */
+    @Test
+    void testPruneNotStronglyConnected() {
+        Random random = new Random(3737);
+        int changed = 0;
+        for (int round = 0; round < 30; round++) {
+            createGrid(random);
+            new StrongConnectednessCalculator(digraph).calculateSCC();
+            subgraph.get(random.nextInt(subgraph.size())).setStrongConnected(false);
+            for (int n = 2; n <= 4; n++) {
+                assertSameJunctions(n, true);
+                if (!new HashSet<>(search(n, false)).equals(new HashSet<>(search(n, true)))) {
+                    changed++;
+                }
+            }
+        }
+        assertTrue(changed > 0);
+    }
+}
@@ -54,6 +54,15 @@ public class AppendableGpxTrackSegment extends WithAttributes implements IGpxTra
         size++;
     }
 
+    /**
+     * Returns the way point at the given position.
+     * @param index position of the way point, less than {@link #getUpdateCount()}
+     * @return the way point
+     */
+    public WayPoint getWayPoint(int index) {
+        return wayPoints[index];
+    }
+
     @Override
     public double length() {
         return length;
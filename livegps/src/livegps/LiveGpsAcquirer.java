@@ -5,12 +5,15 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.StringReader;
 import java.net.InetAddress;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
@@ -34,18 +37,28 @@ public class LiveGpsAcquirer implements Runnable {
     public static final String C_PORT = "livegps.gpsd.port";
     /* option to use specify gpsd disabling */
     public static final String C_DISABLED = "livegps.gpsd.disabled";
+    /* time to wait for data before checking for shutdown, in msec */
+    private static final int SELECT_TIMEOUT = 500;
+    /* time to wait for the connection and the greeting of gpsd, in msec */
+    private static final int CONNECT_TIMEOUT = 5000;
+    /* longer lines are not valid gpsd reports */
+    private static final int MAX_LINE_LENGTH = 65536;
     private String gpsdHost;
     private int gpsdPort;
 
-    private Socket gpsdSocket;
-    private BufferedReader gpsdReader;
+    private SocketChannel gpsdChannel;
+    private Selector gpsdSelector;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream(512);
     private boolean connected = false;
-    private boolean shutdownFlag = false;
+    private volatile boolean shutdownFlag = false;
     private boolean JSONProtocol = true;
     private long skipTime = 0L;
     private int skipNum = 0;
+    private LiveGpsData oldGpsData;
 
     private final List<PropertyChangeListener> propertyChangeListener = new ArrayList<>();
+    private final LiveGpsDispatcher dispatcher = new LiveGpsDispatcher(this::deliverPropertyChangeEvent);
     private PropertyChangeEvent lastStatusEvent;
     private PropertyChangeEvent lastDataEvent;
 
@@ -59,6 +72,7 @@ public class LiveGpsAcquirer implements Runnable {
         // put the settings back in to the preferences, makes keys appear.
         Config.getPref().put(C_HOST, gpsdHost);
         Config.getPref().putInt(C_PORT, gpsdPort);
+        readBuffer.limit(0);
     }
 
     /**
@@ -103,6 +117,7 @@ public class LiveGpsAcquirer implements Runnable {
      * {@link LiveGpsData} object as values.
      * This event is only sent, when the suppressor permits it. This
      * event will cause the UI to re-draw itself, which has some performance penalty,
+     * so the events are delivered in batches by a {@link LiveGpsDispatcher}.
      * @param oldData the old gps data.
      * @param newData the new gps data.
      */
@@ -116,20 +131,62 @@ public class LiveGpsAcquirer implements Runnable {
     }
 
     /**
-     * Fires the given event to all listeners.
+     * Fires the given event to all listeners. The listeners are called later, in the event dispatch thread.
      * @param event the event to fire.
      */
     protected void firePropertyChangeEvent(PropertyChangeEvent event) {
+        dispatcher.offer(event);
+    }
+
+    private void deliverPropertyChangeEvent(PropertyChangeEvent event) {
         for (PropertyChangeListener listener : propertyChangeListener) {
             listener.propertyChange(event);
         }
     }
 
+    /**
+     * Starts the delivery of events to the listeners.
+     */
+    protected void startDispatch() {
+        dispatcher.start();
+    }
+
+    /**
+     * Stops the delivery of events to the listeners, after the events fired so far are delivered.
+     */
+    protected void stopDispatch() {
+        dispatcher.stop();
+    }
+
+    /**
+     * Replies if {@link #shutdown()} was called.
+     * @return <code>true</code> if the acquirer shall stop
+     */
+    protected boolean isShutdown() {
+        return shutdownFlag;
+    }
+
+    /**
+     * Parses a line received from gpsd and fires a data change event if it contains a position.
+     * @param line the line, without line terminator
+     */
+    protected void processLine(String line) {
+        LiveGpsData gpsData;
+        if (JSONProtocol == true)
+            gpsData = ParseJSON(line);
+        else
+            gpsData = ParseOld(line);
+
+        if (gpsData == null)
+            return;
+
+        fireGpsDataChangeEvent(oldGpsData, gpsData);
+        oldGpsData = gpsData;
+    }
+
     @Override
     public void run() {
-        LiveGpsData oldGpsData = null;
-        LiveGpsData gpsData = null;
-
+        startDispatch();
         shutdownFlag = false;
         while (!shutdownFlag) {
 
@@ -151,26 +208,11 @@ public class LiveGpsAcquirer implements Runnable {
             assert connected;
 
             try {
-                String line;
-
-                // <FIXXME date="23.06.2007" author="cdaller">
-                // TODO this read is blocking if gps is connected but has no
-                // fix, so gpsd does not send positions
-                line = gpsdReader.readLine();
-                // </FIXXME>
-                if (line == null)
-                    throw new IOException();
-
-                if (JSONProtocol == true)
-                    gpsData = ParseJSON(line);
-                else
-                    gpsData = ParseOld(line);
-
-                if (gpsData == null)
-                    continue;
-
-                fireGpsDataChangeEvent(oldGpsData, gpsData);
-                oldGpsData = gpsData;
+                // does not block longer than SELECT_TIMEOUT, so a shutdown is noticed
+                // even if gpsd sends nothing because there is no fix
+                String line = readLine();
+                if (line != null)
+                    processLine(line);
             } catch (IOException iox) {
                 Logging.log(Logging.LEVEL_WARN, "LiveGps: lost connection to gpsd", iox);
                 fireGpsStatusChangeEvent(
@@ -190,6 +232,7 @@ public class LiveGpsAcquirer implements Runnable {
         fireGpsStatusChangeEvent(LiveGpsStatus.GpsStatus.DISCONNECTED,
                 tr("Not connected"));
         disconnect();
+        stopDispatch();
     }
 
     public void shutdown() {
@@ -213,19 +256,21 @@ public class LiveGpsAcquirer implements Runnable {
         fireGpsStatusChangeEvent(LiveGpsStatus.GpsStatus.CONNECTING, tr("Connecting"));
 
         InetAddress[] addrs = InetAddress.getAllByName(gpsdHost);
-        for (int i = 0; i < addrs.length && gpsdSocket == null; i++) {
+        for (int i = 0; i < addrs.length && gpsdChannel == null; i++) {
             try {
-                gpsdSocket = new Socket(addrs[i], gpsdPort);
+                gpsdChannel = SocketChannel.open();
+                gpsdChannel.socket().connect(new InetSocketAddress(addrs[i], gpsdPort), CONNECT_TIMEOUT);
                 break;
             } catch (IOException e) {
                 if (skipTime == 0) {
                     Logging.warn("LiveGps: Could not open connection to gpsd ("+addrs[i]+"): " + e);
                 }
-                gpsdSocket = null;
+                closeChannel();
             }
         }
 
-        if (gpsdSocket == null || gpsdSocket.isConnected() == false) {
+        if (gpsdChannel == null || gpsdChannel.isConnected() == false) {
+            closeChannel();
             if (skipTime == 0)
                 skipTime = System.currentTimeMillis()+60000;
             throw new IOException();
@@ -233,15 +278,26 @@ public class LiveGpsAcquirer implements Runnable {
         skipTime = 0;
         skipNum = 0;
 
+        gpsdChannel.configureBlocking(false);
+        gpsdSelector = Selector.open();
+        gpsdChannel.register(gpsdSelector, SelectionKey.OP_READ);
+        readBuffer.limit(0);
+        lineBuffer.reset();
+
         /*
          * First emit the "w" symbol. The older version will activate, the newer one will ignore it.
          */
-        gpsdSocket.getOutputStream().write(new byte[] {'w', 13, 10});
+        write(new byte[] {'w', 13, 10});
 
-        gpsdReader = new BufferedReader(new InputStreamReader(gpsdSocket.getInputStream(), StandardCharsets.UTF_8));
-        line = gpsdReader.readLine();
-        if (line == null)
-            return;
+        line = null;
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+        while (line == null && !shutdownFlag && System.currentTimeMillis() < deadline) {
+            line = readLine();
+        }
+        if (line == null) {
+            closeChannel();
+            throw new IOException("No greeting from gpsd");
+        }
 
         try {
             greeting = Json.createReader(new StringReader(line)).readObject();
@@ -267,24 +323,88 @@ public class LiveGpsAcquirer implements Runnable {
                     .build();
 
             String request = "?WATCH=" + watch.toString() + ";\n";
-            gpsdSocket.getOutputStream().write(request.getBytes(StandardCharsets.UTF_8));
+            write(request.getBytes(StandardCharsets.UTF_8));
 
             connected = true;
             fireGpsStatusChangeEvent(LiveGpsStatus.GpsStatus.CONNECTED, tr("Connected"));
         }
     }
 
-    private void disconnect() {
-        assert gpsdSocket != null;
+    /**
+     * Reads the next line from gpsd.
+     * @return the line without line terminator, or <code>null</code> if no complete line arrived within {@link #SELECT_TIMEOUT}
+     * @throws IOException if the connection is lost
+     */
+    private String readLine() throws IOException {
+        for (;;) {
+            while (readBuffer.hasRemaining()) {
+                byte b = readBuffer.get();
+                if (b == '\n') {
+                    String line = new String(lineBuffer.toByteArray(), StandardCharsets.UTF_8);
+                    lineBuffer.reset();
+                    return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+                } else if (lineBuffer.size() < MAX_LINE_LENGTH) {
+                    lineBuffer.write(b);
+                }
+            }
+            readBuffer.clear();
+            int n = 0;
+            if (gpsdSelector.select(SELECT_TIMEOUT) > 0) {
+                gpsdSelector.selectedKeys().clear();
+                n = gpsdChannel.read(readBuffer);
+            }
+            readBuffer.flip();
+            if (n < 0)
+                throw new IOException("gpsd closed the connection");
+            if (n == 0)
+                return null;
+        }
+    }
 
-        connected = false;
+    /**
+     * Writes a request to gpsd. If the socket buffer is full, waits until the channel is writable again.
+     * @param data the request
+     * @throws IOException if the connection is lost or gpsd does not accept the data within {@link #CONNECT_TIMEOUT}
+     */
+    private void write(byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        gpsdChannel.write(buffer);
+        if (!buffer.hasRemaining())
+            return;
+        SelectionKey key = gpsdChannel.keyFor(gpsdSelector);
+        // wait for writability only, a pending read would wake the selector up at once
+        key.interestOps(SelectionKey.OP_WRITE);
+        try {
+            long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+            while (buffer.hasRemaining()) {
+                if (System.currentTimeMillis() >= deadline)
+                    throw new IOException("gpsd does not accept data");
+                if (gpsdSelector.select(SELECT_TIMEOUT) > 0) {
+                    gpsdSelector.selectedKeys().clear();
+                    gpsdChannel.write(buffer);
+                }
+            }
+        } finally {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
 
+    private void closeChannel() {
         try {
-            gpsdSocket.close();
-            gpsdSocket = null;
-        } catch (Exception e) {
+            if (gpsdSelector != null)
+                gpsdSelector.close();
+            if (gpsdChannel != null)
+                gpsdChannel.close();
+        } catch (IOException e) {
             Logging.warn("LiveGps: Unable to close socket; reconnection may not be possible");
         }
+        gpsdSelector = null;
+        gpsdChannel = null;
+    }
+
+    private void disconnect() {
+        connected = false;
+        closeChannel();
     }
 
     private LiveGpsData ParseJSON(String line) {
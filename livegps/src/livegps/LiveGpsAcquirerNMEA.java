@@ -31,9 +31,10 @@ public class LiveGpsAcquirerNMEA implements Runnable {
     private InputStreamReader serReader;
     private NmeaParser parser;
     private boolean connected = false;
-    private boolean shutdownFlag = false;
+    private volatile boolean shutdownFlag = false;
 
     private final List<PropertyChangeListener> propertyChangeListener = new ArrayList<>();
+    private final LiveGpsDispatcher dispatcher = new LiveGpsDispatcher(this::deliverPropertyChangeEvent);
     private PropertyChangeEvent lastStatusEvent;
     private PropertyChangeEvent lastDataEvent;
 
@@ -86,6 +87,7 @@ public class LiveGpsAcquirerNMEA implements Runnable {
      * {@link LiveGpsData} object as values.
      * This event is only sent, when the suppressor permits it. This
      * event will cause the UI to re-draw itself, which has some performance penalty,
+     * so the events are delivered in batches by a {@link LiveGpsDispatcher}.
      * @param oldData the old gps data.
      * @param newData the new gps data.
      */
@@ -99,10 +101,14 @@ public class LiveGpsAcquirerNMEA implements Runnable {
     }
 
     /**
-     * Fires the given event to all listeners.
+     * Fires the given event to all listeners. The listeners are called later, in the event dispatch thread.
      * @param event the event to fire.
      */
     protected void firePropertyChangeEvent(PropertyChangeEvent event) {
+        dispatcher.offer(event);
+    }
+
+    private void deliverPropertyChangeEvent(PropertyChangeEvent event) {
         for (PropertyChangeListener listener : propertyChangeListener) {
             listener.propertyChange(event);
         }
@@ -112,6 +118,8 @@ public class LiveGpsAcquirerNMEA implements Runnable {
     public void run() {
         LiveGpsData oldGpsData = null;
 
+        dispatcher.start();
+
         shutdownFlag = false;
         while (!shutdownFlag) {
             while (!connected && !shutdownFlag) {
@@ -207,6 +215,7 @@ public class LiveGpsAcquirerNMEA implements Runnable {
         fireGpsStatusChangeEvent(LiveGpsStatus.GpsStatus.DISCONNECTED,
                 tr("NMEA Not connected"));
         disconnect();
+        dispatcher.stop();
     }
 
     public void shutdown() {
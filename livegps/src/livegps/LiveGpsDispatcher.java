@@ -0,0 +1,84 @@
+// License: Public Domain. For details, see LICENSE file.
+package livegps;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.swing.Timer;
+
+import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Delivers the events of an acquirer to its listeners in the event dispatch thread.
+ *
+ * The acquirer thread only queues the events. They are delivered in batches, at most
+ * {@code livegps.max_fps} times per second, so a receiver sending many fixes per second
+ * can't flood the user interface. When the queue is full, the oldest events are dropped.
+ */
+class LiveGpsDispatcher {
+    /* option to specify the maximum number of deliveries per second */
+    public static final String C_MAX_FPS = "livegps.max_fps";
+    /* option to specify the number of events which may wait for delivery */
+    public static final String C_QUEUE_SIZE = "livegps.queue_size";
+
+    private final BlockingQueue<PropertyChangeEvent> queue;
+    private final Consumer<PropertyChangeEvent> delivery;
+    private final Timer timer;
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    /**
+     * Constructs a new dispatcher.
+     * @param delivery called in the event dispatch thread for every queued event
+     */
+    LiveGpsDispatcher(Consumer<PropertyChangeEvent> delivery) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, Config.getPref().getInt(C_QUEUE_SIZE, 1000)));
+        this.delivery = delivery;
+        this.timer = new Timer(1000 / Math.max(1, Math.min(1000, Config.getPref().getInt(C_MAX_FPS, 10))), e -> drain());
+    }
+
+    /**
+     * Starts the delivery of the queued events.
+     */
+    void start() {
+        timer.start();
+    }
+
+    /**
+     * Stops the delivery, after the events queued so far are delivered.
+     */
+    void stop() {
+        timer.stop();
+        GuiHelper.runInEDT(this::drain);
+    }
+
+    /**
+     * Queues an event for delivery. May be called from any thread.
+     * @param event the event
+     */
+    void offer(PropertyChangeEvent event) {
+        while (!queue.offer(event)) {
+            if (queue.poll() != null) {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    private void drain() {
+        List<PropertyChangeEvent> batch = new ArrayList<>(queue.size());
+        queue.drainTo(batch);
+        int n = dropped.getAndSet(0);
+        if (n > 0) {
+            Logging.warn("LiveGps: dropped " + n + " events, the user interface could not keep up");
+        }
+        for (PropertyChangeEvent event : batch) {
+            delivery.accept(event);
+        }
+    }
+}
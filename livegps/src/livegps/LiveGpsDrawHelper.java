@@ -1,10 +1,18 @@
 // License: Public Domain. For details, see LICENSE file.
 package livegps;
 
+import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
-
+import java.awt.RenderingHints;
+import java.awt.Stroke;
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.Objects;
+
+import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.gpx.WayPoint;
 import org.openstreetmap.josm.data.preferences.CachingProperty;
 import org.openstreetmap.josm.data.preferences.NamedColorProperty;
@@ -27,6 +35,19 @@ public class LiveGpsDrawHelper extends GpxDrawHelper {
     private static final String C_CURSOR_H = "livegps.cursor_height"; /* in pixels */
     private static final String C_CURSOR_W = "livegps.cursor_width"; /* in pixels */
     private static final String C_CURSOR_T = "livegps.cursor_thickness"; /* in pixels */
+    /* plain line in the layer color, without the GPX drawing settings (direction arrows, colouring, ...) */
+    private static final String C_INCREMENTAL = "livegps.incremental_rendering";
+    private static final String C_TRACK_WIDTH = "livegps.track_width"; /* in pixels */
+    private static final String C_MIN_DISTANCE = "livegps.track_min_distance"; /* in pixels */
+
+    /* track drawn so far, valid as long as the view and the track style don't change */
+    private BufferedImage trackBuffer;
+    private double bufferScale;
+    private EastNorth bufferCenter;
+    private Color bufferColor;
+    private int bufferTrackWidth;
+    private int renderedPoints;
+    private Point2D lastRendered;
 
     public LiveGpsDrawHelper(LiveGpsLayer livegpslayer) {
         super(livegpslayer);
@@ -35,10 +56,13 @@ public class LiveGpsDrawHelper extends GpxDrawHelper {
 
     @Override
     public void paint(MapViewGraphics mvg) {
-        super.paint(mvg);
-
         MapView mv = mvg.getMapView();
         Graphics2D g = mvg.getDefaultGraphics();
+
+        if (Config.getPref().getBoolean(C_INCREMENTAL, false))
+            paintTrack(mv, g);
+        else
+            super.paint(mvg);
         WayPoint lastPoint = layer.lastPoint;
         LiveGpsData lastData = layer.lastData;
 
@@ -99,4 +123,67 @@ public class LiveGpsDrawHelper extends GpxDrawHelper {
         }
 
     }
+
+    /**
+     * Draws the track. Only the points added since the last call are drawn into the buffer,
+     * unless the view changed. Points closer than {@code livegps.track_min_distance} pixels
+     * to the last drawn point are skipped.
+     * The track is a plain line, the GPX drawing settings of the layer are not applied.
+     * @param mv the map view
+     * @param g the graphics to draw to
+     */
+    private void paintTrack(MapView mv, Graphics2D g) {
+        AppendableGpxTrackSegment segment = layer.getTrackSegment();
+        int count = segment.getUpdateCount();
+        int width = Math.max(1, mv.getWidth());
+        int height = Math.max(1, mv.getHeight());
+        Color color = layer.getColor();
+        int trackWidth = Config.getPref().getInt(C_TRACK_WIDTH, 2);
+
+        if (trackBuffer == null || trackBuffer.getWidth() != width || trackBuffer.getHeight() != height
+                || bufferScale != mv.getScale() || !mv.getCenter().equals(bufferCenter) || count < renderedPoints
+                || !Objects.equals(color, bufferColor) || trackWidth != bufferTrackWidth) {
+            trackBuffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            bufferScale = mv.getScale();
+            bufferCenter = mv.getCenter();
+            bufferColor = color;
+            bufferTrackWidth = trackWidth;
+            renderedPoints = 0;
+            lastRendered = null;
+        }
+
+        Stroke stroke = new BasicStroke(trackWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+        if (renderedPoints < count) {
+            double minDistance = Config.getPref().getDouble(C_MIN_DISTANCE, 2.0);
+            Graphics2D bg = trackBuffer.createGraphics();
+            try {
+                bg.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                bg.setColor(color);
+                bg.setStroke(stroke);
+                for (int i = renderedPoints; i < count; i++) {
+                    Point2D p = mv.getPoint2D(segment.getWayPoint(i).getCoor());
+                    if (lastRendered == null) {
+                        lastRendered = p;
+                    } else if (p.distance(lastRendered) >= minDistance) {
+                        bg.draw(new Line2D.Double(lastRendered, p));
+                        lastRendered = p;
+                    }
+                }
+            } finally {
+                bg.dispose();
+            }
+            renderedPoints = count;
+        }
+        g.drawImage(trackBuffer, 0, 0, null);
+
+        if (lastRendered != null) {
+            // the points skipped at the end still have to reach the current position
+            Point2D p = mv.getPoint2D(segment.getWayPoint(count - 1).getCoor());
+            Stroke oldStroke = g.getStroke();
+            g.setColor(color);
+            g.setStroke(stroke);
+            g.draw(new Line2D.Double(lastRendered, p));
+            g.setStroke(oldStroke);
+        }
+    }
 }
@@ -79,12 +79,15 @@ public class LiveGpsLayer extends GpxLayer implements PropertyChangeListener {
           lastPoint.attr.put("time", dateFormat.format(new Date()));
         }
         trackSegment.addWaypoint(lastPoint);
-        gpxData.invalidate();
 
         if (autocenter)
             conditionalCenter(thisPos);
     }
 
+    AppendableGpxTrackSegment getTrackSegment() {
+        return trackSegment;
+    }
+
     public void center() {
         if (lastPoint != null)
             MainApplication.getMap().mapView.zoomTo(lastPoint.getCoor());
@@ -117,8 +120,10 @@ public class LiveGpsLayer extends GpxLayer implements PropertyChangeListener {
             lastData = (LiveGpsData) evt.getNewValue();
             if (lastData.isFix()) {
                 setCurrentPosition(lastData.getLatitude(), lastData.getLongitude(), lastData.getWaypoint());
-                if (allowRedraw())
+                if (allowRedraw()) {
+                    gpxData.invalidate();
                     this.setFilterStateChanged();
+                }
             }
         }
     }
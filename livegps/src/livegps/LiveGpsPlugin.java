@@ -6,6 +6,7 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.beans.PropertyChangeListener;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -180,7 +181,11 @@ public class LiveGpsPlugin extends Plugin implements LayerChangeListener {
 
             if (!Config.getPref().getBoolean(LiveGpsAcquirer.C_DISABLED)) {
 
-                acquirer = new LiveGpsAcquirer();
+                String replayFile = Config.getPref().get(LiveGpsReplay.C_REPLAY_FILE);
+                if (replayFile.isEmpty())
+                    acquirer = new LiveGpsAcquirer();
+                else
+                    acquirer = new LiveGpsReplay(Paths.get(replayFile));
                 acquirerThread = new Thread(acquirer);
 
                 acquirer.addPropertyChangeListener(lgpslayer);
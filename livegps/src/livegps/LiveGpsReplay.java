@@ -0,0 +1,61 @@
+// License: Public Domain. For details, see LICENSE file.
+package livegps;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Replays a file recorded from gpsd instead of connecting to gpsd.
+ *
+ * The file contains the JSON reports of gpsd, one per line, as written by {@code gpspipe -w}.
+ * The lines are handled like lines received from gpsd, so a recorded session can stand in for a receiver.
+ */
+public class LiveGpsReplay extends LiveGpsAcquirer {
+    /* option to specify a file to replay instead of connecting to gpsd */
+    public static final String C_REPLAY_FILE = "livegps.replay.file";
+    /* option to specify the time between two replayed lines, in msec */
+    public static final String C_REPLAY_INTERVAL = "livegps.replay.interval_msec";
+
+    private final Path file;
+    private final int interval;
+
+    /**
+     * Constructs a new replay.
+     * @param file the recorded file
+     */
+    public LiveGpsReplay(Path file) {
+        this.file = file;
+        this.interval = Config.getPref().getInt(C_REPLAY_INTERVAL, 100);
+    }
+
+    @Override
+    public void run() {
+        startDispatch();
+        Logging.info("LiveGps: replaying " + file);
+        fireGpsStatusChangeEvent(LiveGpsStatus.GpsStatus.CONNECTED, tr("Replaying {0}", file.getFileName()));
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while (!isShutdown() && (line = reader.readLine()) != null) {
+                processLine(line);
+                if (interval > 0)
+                    Thread.sleep(interval);
+            }
+        } catch (IOException iox) {
+            Logging.log(Logging.LEVEL_WARN, "LiveGps: unable to replay " + file, iox);
+            fireGpsStatusChangeEvent(LiveGpsStatus.GpsStatus.CONNECTION_FAILED, tr("Connection Failed"));
+        } catch (InterruptedException ignore) {
+            Logging.trace(ignore);
+            Thread.currentThread().interrupt();
+        }
+        fireGpsStatusChangeEvent(LiveGpsStatus.GpsStatus.DISCONNECTED, tr("Not connected"));
+        stopDispatch();
+    }
+}
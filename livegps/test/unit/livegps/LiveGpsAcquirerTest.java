@@ -0,0 +1,242 @@
+// License: Public Domain. For details, see LICENSE file.
+package livegps;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Unit test of {@link LiveGpsAcquirer}, with a local server replaying a recorded gpsd session.
+ */
+@BasicPreferences
+class LiveGpsAcquirerTest {
+
+    private static final String GREETING = "{\"class\":\"VERSION\",\"release\":\"3.25\",\"proto_major\":3,\"proto_minor\":15}\n";
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private List<String> session;
+    private ServerSocket server;
+    private Thread serverThread;
+
+    /**
+     * An acquirer recording the lines it handles.
+     */
+    private static class RecordingAcquirer extends LiveGpsAcquirer {
+        final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+
+        @Override
+        protected void processLine(String line) {
+            lines.add(line);
+            super.processLine(line);
+        }
+    }
+
+    /**
+     * A replay recording the lines it handles.
+     */
+    private static class RecordingReplay extends LiveGpsReplay {
+        final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+
+        RecordingReplay(Path file) {
+            super(file);
+        }
+
+        @Override
+        protected void processLine(String line) {
+            lines.add(line);
+            super.processLine(line);
+        }
+    }
+
+    /**
+     * Sends data in the given pieces, so that they arrive in separate reads.
+     */
+    @FunctionalInterface
+    private interface Sender {
+        void send(OutputStream out) throws IOException, InterruptedException;
+    }
+
+    private static Path sessionFile() {
+        return Paths.get(TestUtils.getTestDataRoot(), "gpsd-session.json");
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        session = Files.readAllLines(sessionFile(), StandardCharsets.UTF_8);
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Config.getPref().put(LiveGpsAcquirer.C_HOST, InetAddress.getLoopbackAddress().getHostAddress());
+        Config.getPref().putInt(LiveGpsAcquirer.C_PORT, server.getLocalPort());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+        if (serverThread != null) {
+            serverThread.join(5000);
+        }
+    }
+
+    /**
+     * Serves one connection per sender: sends the greeting, waits for the watch request, then runs the sender
+     * and closes the connection.
+     */
+    private void serve(Sender... senders) {
+        serverThread = new Thread(() -> {
+            for (Sender sender : senders) {
+                try (Socket socket = server.accept()) {
+                    socket.setTcpNoDelay(true);
+                    OutputStream out = socket.getOutputStream();
+                    out.write(GREETING.getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                    String request;
+                    while ((request = in.readLine()) != null && !request.startsWith("?WATCH=")) {
+                        // skip the "w" of the old protocol
+                    }
+                    requests.add(request);
+                    sender.send(out);
+                } catch (IOException | InterruptedException e) {
+                    return;
+                }
+            }
+        }, "gpsd");
+        serverThread.start();
+    }
+
+    private static void sendInPieces(OutputStream out, byte[] data, int from, int to, Random random)
+            throws IOException, InterruptedException {
+        for (int pos = from; pos < to;) {
+            int end = Math.min(to, pos + 1 + random.nextInt(64));
+            out.write(data, pos, end - pos);
+            out.flush();
+            Thread.sleep(2);
+            pos = end;
+        }
+    }
+
+    private static byte[] linesToBytes(List<String> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append("\r\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> take(BlockingQueue<String> lines, int count) throws InterruptedException {
+        List<String> taken = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String line = lines.poll(10, TimeUnit.SECONDS);
+            assertNotNull(line, "only " + i + " of " + count + " lines received");
+            taken.add(line);
+        }
+        return taken;
+    }
+
+    private static Thread start(LiveGpsAcquirer acquirer) {
+        Thread thread = new Thread(acquirer, "LiveGPS");
+        thread.start();
+        return thread;
+    }
+
+    private static void stop(LiveGpsAcquirer acquirer, Thread thread) throws InterruptedException {
+        acquirer.shutdown();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+    }
+
+    /**
+     * Lines split into small pieces, also within multi-byte characters, are put together again.
+     */
+    @Test
+    void testPartialLines() throws Exception {
+        byte[] data = linesToBytes(session);
+        serve(out -> {
+            // the first line arrives in two reads at least
+            out.write(data, 0, 10);
+            out.flush();
+            Thread.sleep(100);
+            sendInPieces(out, data, 10, data.length, new Random(40));
+            Thread.sleep(1000);
+        });
+
+        RecordingAcquirer acquirer = new RecordingAcquirer();
+        Thread thread = start(acquirer);
+        try {
+            assertEquals(session, take(acquirer.lines, session.size()));
+        } finally {
+            stop(acquirer, thread);
+        }
+        assertEquals(1, requests.size());
+        assertTrue(requests.get(0).contains("\"enable\":true"), requests.get(0));
+    }
+
+    /**
+     * After the connection is lost, the acquirer connects again and continues with the lines of the new connection.
+     */
+    @Test
+    void testReconnect() throws Exception {
+        int half = session.size() / 2;
+        byte[] first = linesToBytes(session.subList(0, half));
+        byte[] second = linesToBytes(session.subList(half, session.size()));
+        serve(out -> {
+            // the connection is lost in the middle of a line, which is discarded
+            out.write(first);
+            out.write("{\"class\":\"TPV\",".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }, out -> {
+            sendInPieces(out, second, 0, second.length, new Random(41));
+            Thread.sleep(1000);
+        });
+
+        RecordingAcquirer acquirer = new RecordingAcquirer();
+        Thread thread = start(acquirer);
+        try {
+            assertEquals(session, take(acquirer.lines, session.size()));
+        } finally {
+            stop(acquirer, thread);
+        }
+        assertEquals(2, requests.size());
+    }
+
+    /**
+     * {@link LiveGpsReplay} handles the lines of a recorded session like the acquirer handles the lines sent by gpsd.
+     */
+    @Test
+    void testReplay() throws Exception {
+        Config.getPref().putInt(LiveGpsReplay.C_REPLAY_INTERVAL, 0);
+        RecordingReplay replay = new RecordingReplay(sessionFile());
+        Thread thread = start(replay);
+        try {
+            assertEquals(session, take(replay.lines, session.size()));
+        } finally {
+            stop(replay, thread);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+// License: Public Domain. For details, see LICENSE file.
+package livegps;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Unit test of {@link LiveGpsDispatcher}
+ */
+@BasicPreferences
+class LiveGpsDispatcherTest {
+
+    private static List<PropertyChangeEvent> events(int count) {
+        List<PropertyChangeEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(new PropertyChangeEvent(LiveGpsDispatcherTest.class, "gpsdata", null, i));
+        }
+        return events;
+    }
+
+    /**
+     * Queued events are delivered in order when the dispatcher stops.
+     */
+    @Test
+    void testDelivery() {
+        List<PropertyChangeEvent> delivered = new CopyOnWriteArrayList<>();
+        LiveGpsDispatcher dispatcher = new LiveGpsDispatcher(delivered::add);
+        List<PropertyChangeEvent> events = events(5);
+        events.forEach(dispatcher::offer);
+        dispatcher.stop();
+        GuiHelper.runInEDTAndWait(() -> { });
+        assertEquals(events, delivered);
+    }
+
+    /**
+     * When the queue is full, the oldest events are dropped and the latest ones are delivered.
+     */
+    @Test
+    void testDropOldest() {
+        Config.getPref().putInt(LiveGpsDispatcher.C_QUEUE_SIZE, 3);
+        List<PropertyChangeEvent> delivered = new CopyOnWriteArrayList<>();
+        LiveGpsDispatcher dispatcher = new LiveGpsDispatcher(delivered::add);
+        List<PropertyChangeEvent> events = events(10);
+        events.forEach(dispatcher::offer);
+        dispatcher.stop();
+        GuiHelper.runInEDTAndWait(() -> { });
+        assertEquals(events.subList(7, 10), delivered);
+
+        // the queue accepts events again after it has been drained
+        delivered.clear();
+        events.subList(0, 2).forEach(dispatcher::offer);
+        dispatcher.stop();
+        GuiHelper.runInEDTAndWait(() -> { });
+        assertEquals(events.subList(0, 2), delivered);
+    }
+}
@@ -1,15 +1,7 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.pdfimport;
 
-import java.awt.geom.Point2D;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Arrays;
 
 public final class DuplicateNodesFinder {
 
@@ -19,68 +11,121 @@ public final class DuplicateNodesFinder {
 
     /***
      * This method finds very close nodes and constructs a mapping from node to suggested representative node.
-     * Works by performing a sweep and noting down similar nodes.
-     * @param nodes the nodes to process
-     * @return map from nodes that need replacement to a representative node.
+     * Works by bucketing the nodes into a grid with cells the size of the tolerance, so each node is only
+     * tested against the representatives of its own and the eight neighbouring cells.
+     * A cell never holds more than one representative, as two nodes in one cell are always close.
+     * @param store the point store
+     * @param nodes indices of the nodes to process; earlier nodes become representatives of later ones
+     * @param tolerance maximum distance along each axis for nodes to be merged
+     * @return array indexed like the store, holding the representative index for nodes that need replacement and -1 otherwise
      */
-    public static Map<Point2D, Point2D> findDuplicateNodes(Collection<Point2D> nodes, final double tolerance) {
-        List<Point2D> points = new ArrayList<>(nodes);
-        Collections.sort(points, new Comparator<Point2D>() {
-            @Override
-            public int compare(Point2D o1, Point2D o2) {
-                double diff = o1.getY() - o2.getY();
-                return diff > 0 ? 1 : (diff < 0 ? -1 : 0);
-            }
-        });
+    public static int[] findDuplicateNodes(PointStore store, int[] nodes, final double tolerance) {
+        int[] result = new int[store.size()];
+        Arrays.fill(result, -1);
+
+        if (!(tolerance > 0)) {
+            //points in the store are already unique
+            return result;
+        }
+
+        CellTable cells = new CellTable(nodes.length);
 
-        Map<Point2D, Point2D> result = new HashMap<>();
-        TreeMap<Point2D, Point2D> sweepLine = new TreeMap<>(new Comparator<Point2D>() {
-            @Override
-            public int compare(Point2D o1, Point2D o2) {
-                double diff = o1.getX() - o2.getX();
+        for (int node: nodes) {
+            double x = store.getX(node);
+            double y = store.getY(node);
+            long cx = (long) Math.floor(x / tolerance);
+            long cy = (long) Math.floor(y / tolerance);
+
+            int best = -1;
+            double bestDistance = Double.POSITIVE_INFINITY;
+
+            for (long dx = -1; dx <= 1; dx++) {
+                for (long dy = -1; dy <= 1; dy++) {
+                    int rep = cells.get(cx + dx, cy + dy);
+                    if (rep < 0 || rep == node) {
+                        continue;
+                    }
 
-                if (Math.abs(diff) <= tolerance) {
-                    return 0;
+                    double ex = Math.abs(store.getX(rep) - x);
+                    double ey = Math.abs(store.getY(rep) - y);
+                    if (ex <= tolerance && ey <= tolerance && ex + ey < bestDistance) {
+                        best = rep;
+                        bestDistance = ex + ey;
+                    }
                 }
+            }
 
-                return diff > 0 ? 1 : (diff < 0 ? -1 : 0);
+            if (best >= 0) {
+                result[node] = best;
+            } else {
+                cells.put(cx, cy, node);
             }
-        });
+        }
 
-        //sweep from top to bottom.
-        double prevY = Double.NEGATIVE_INFINITY;
+        return result;
+    }
 
-        for (Point2D point: points) {
-            boolean mappedToOtherPoint = false;
+    /**
+     * Open addressed map from grid cell to the index of its representative node.
+     */
+    private static final class CellTable {
+        private long[] xs;
+        private long[] ys;
+        private int[] values;
+        private int size;
 
-            if (point.getY() - prevY > tolerance) {
-                sweepLine.clear();
-                //big offset, clear old points
-            } else {
-                //small offset, test against existing points (there may be more than one)
-
-                while (!mappedToOtherPoint && sweepLine.containsKey(point)) {
-                    //a close point found
-                    Point2D closePoint = sweepLine.get(point);
-                    double dy = point.getY() - closePoint.getY();
-                    if (dy <= tolerance) {
-                        //mark them as close
-                        result.put(point, closePoint);
-                        mappedToOtherPoint = true;
-                    } else {
-                        sweepLine.remove(point);
+        CellTable(int expected) {
+            int capacity = 16;
+            while (capacity < expected * 2) {
+                capacity <<= 1;
+            }
+            allocate(capacity);
+        }
 
+        private void allocate(int capacity) {
+            xs = new long[capacity];
+            ys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(values, -1);
+        }
+
+        private int slot(long x, long y) {
+            long h = (x * 0x9E3779B97F4A7C15L) ^ (y * 0xC2B2AE3D27D4EB4FL);
+            int mask = values.length - 1;
+            int slot = (int) (h ^ (h >>> 32)) & mask;
+            while (values[slot] >= 0 && (xs[slot] != x || ys[slot] != y)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        int get(long x, long y) {
+            return values[slot(x, y)];
+        }
+
+        void put(long x, long y, int value) {
+            if ((size + 1) * 2 > values.length) {
+                long[] oxs = xs;
+                long[] oys = ys;
+                int[] ovalues = values;
+                allocate(values.length * 2);
+                for (int i = 0; i < ovalues.length; i++) {
+                    if (ovalues[i] >= 0) {
+                        int s = slot(oxs[i], oys[i]);
+                        xs[s] = oxs[i];
+                        ys[s] = oys[i];
+                        values[s] = ovalues[i];
                     }
                 }
             }
 
-            if (!mappedToOtherPoint) {
-                sweepLine.put(point, point);
+            int s = slot(x, y);
+            if (values[s] < 0) {
+                size++;
             }
-
-            prevY = point.getY();
+            xs[s] = x;
+            ys[s] = y;
+            values[s] = value;
         }
-
-        return result;
     }
 }
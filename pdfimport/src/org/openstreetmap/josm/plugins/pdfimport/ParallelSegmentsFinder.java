@@ -1,16 +1,10 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.pdfimport;
 
-import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 public class ParallelSegmentsFinder {
     public double angle;
@@ -18,6 +12,10 @@ public class ParallelSegmentsFinder {
     public int refCount;
     public List<PdfPath> paths = new ArrayList<>();
 
+    //indices of the paths of this cluster while splitting
+    private int[] members;
+    private int memberCount;
+
     public void addPath(PdfPath path, double angle2) {
         angleSum += angle2;
         paths.add(path);
@@ -25,101 +23,107 @@ public class ParallelSegmentsFinder {
     }
 
     public List<ParallelSegmentsFinder> splitByDistance(double maxDistance) {
+        int count = paths.size();
+        double sin = Math.sin(-angle);
+        double cos = Math.cos(-angle);
+
         //sort perpendicular to angle
-        AffineTransform tr = new AffineTransform();
-        tr.rotate(-angle);
-
-        final Map<PdfPath, Point2D> positions = new HashMap<>();
-        Point2D src = new Point2D.Double();
-
-        for (PdfPath path: paths) {
-            src.setLocation((path.firstPoint().getX() + path.lastPoint().getX()) / 2, (path.firstPoint().getY() + path.lastPoint().getY()) / 2);
-            Point2D dest = new Point2D.Double();
-            Point2D destA = new Point2D.Double();
-            Point2D destB = new Point2D.Double();
-            tr.transform(src, dest);
-            tr.transform(path.firstPoint(), destA);
-            tr.transform(path.lastPoint(), destB);
-            positions.put(path, dest);
+        double[] keys = new double[count];
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            PdfPath path = paths.get(i);
+            double x = (path.firstPoint().getX() + path.lastPoint().getX()) / 2;
+            double y = (path.firstPoint().getY() + path.lastPoint().getY()) / 2;
+            keys[i] = sin * x + cos * y;
+            order[i] = i;
         }
-        //point.y = Perpendicular lines, point.x = parallel lines
-
-        Collections.sort(paths, new Comparator<PdfPath>() {
-            @Override
-            public int compare(PdfPath o1, PdfPath o2) {
-                double y1 = positions.get(o1).getY();
-                double y2 = positions.get(o2).getY();
-                return y1 > y2 ? 1 : y1 < y2 ? -1 : 0;
-            }
-        });
+        sort(order, keys, 0, count - 1);
+
+        //pack sorted segments: positions = perpendicular offset, coords = end points
+        List<PdfPath> sortedPaths = new ArrayList<>(count);
+        double[] positions = new double[count];
+        double[] coords = new double[count * 4];
+        for (int i = 0; i < count; i++) {
+            PdfPath path = paths.get(order[i]);
+            sortedPaths.add(path);
+            positions[i] = keys[order[i]];
+            coords[i * 4] = path.firstPoint().getX();
+            coords[i * 4 + 1] = path.firstPoint().getY();
+            coords[i * 4 + 2] = path.lastPoint().getX();
+            coords[i * 4 + 3] = path.lastPoint().getY();
+        }
+        paths = sortedPaths;
 
         //process sweep
         List<ParallelSegmentsFinder> result = new ArrayList<>();
 
-        Map<PdfPath, ParallelSegmentsFinder> sweepLine = new HashMap<>();
-
-        Set<ParallelSegmentsFinder> adjacentClustersSet = new HashSet<>();
+        int[] sweepLine = new int[count];
+        int sweepSize = 0;
+        boolean[] inSweep = new boolean[count];
+        ParallelSegmentsFinder[] owner = new ParallelSegmentsFinder[count];
         List<ParallelSegmentsFinder> adjacentClusters = new ArrayList<>();
-        List<PdfPath> pathsToRemove = new ArrayList<>();
 
-        for (PdfPath path: paths) {
+        for (int path = 0; path < count; path++) {
             adjacentClusters.clear();
-            adjacentClustersSet.clear();
-            pathsToRemove.clear();
-
-            for (PdfPath p: sweepLine.keySet()) {
-                Point2D pathPos = positions.get(path);
-                Point2D pPos = positions.get(p);
 
-                if (pathPos.getY() - pPos.getY() > maxDistance) {
-                    //path too far from sweep line
-                    pathsToRemove.add(p);
+            int kept = 0;
+            for (int pos = 0; pos < sweepSize; pos++) {
+                int p = sweepLine[pos];
+
+                if (positions[path] - positions[p] > maxDistance) {
+                    //path too far from sweep line, remove it
+                    inSweep[p] = false;
+                    ParallelSegmentsFinder finder = owner[p];
+                    finder.refCount--;
+                    if (finder.refCount == 0) {
+                        result.add(finder);
+                    }
                 } else {
+                    sweepLine[kept++] = p;
 
-                    double distance = distanceLineLine(path, p);
-
-                    if (distance <= maxDistance) {
-                        if (adjacentClustersSet.add(sweepLine.get(p))) {
-                            adjacentClusters.add(sweepLine.get(p));
-                        }
+                    if (distanceLineLine(coords, path, p) <= maxDistance && !adjacentClusters.contains(owner[p])) {
+                        adjacentClusters.add(owner[p]);
                     }
                 }
             }
-
-            //remove segments too far apart
-            for (PdfPath p: pathsToRemove) {
-                ParallelSegmentsFinder finder = sweepLine.remove(p);
-                finder.refCount--;
-                if (finder.refCount == 0) {
-                    result.add(finder);
-                }
-            }
+            sweepSize = kept;
 
             //join together joinable parts
+            ParallelSegmentsFinder finder;
             if (adjacentClusters.size() > 0) {
-                ParallelSegmentsFinder finder = adjacentClusters.remove(0);
-                finder.paths.add(path);
-                sweepLine.put(path, finder);
-                finder.refCount++;
-
-                for (ParallelSegmentsFinder finder1: adjacentClusters) {
-                    for (PdfPath path1: finder1.paths) {
-                        finder.paths.add(path1);
-                        sweepLine.put(path1, finder);
+                finder = adjacentClusters.get(0);
+                finder.paths.add(paths.get(path));
+                finder.addMember(path);
+
+                for (int i = 1; i < adjacentClusters.size(); i++) {
+                    ParallelSegmentsFinder finder1 = adjacentClusters.get(i);
+                    for (int m = 0; m < finder1.memberCount; m++) {
+                        int path1 = finder1.members[m];
+                        finder.paths.add(paths.get(path1));
+                        finder.addMember(path1);
+                        owner[path1] = finder;
                         finder.refCount++;
+                        if (!inSweep[path1]) {
+                            inSweep[path1] = true;
+                            sweepLine[sweepSize++] = path1;
+                        }
                     }
                 }
             } else {
-                ParallelSegmentsFinder finder = new ParallelSegmentsFinder();
-                finder.addPath(path, angle);
-                sweepLine.put(path, finder);
-                finder.refCount = 1;
+                finder = new ParallelSegmentsFinder();
+                finder.addPath(paths.get(path), angle);
+                finder.addMember(path);
             }
+
+            owner[path] = finder;
+            finder.refCount++;
+            inSweep[path] = true;
+            sweepLine[sweepSize++] = path;
         }
 
         //process remaining paths in sweep line
-        for (PdfPath p: sweepLine.keySet()) {
-            ParallelSegmentsFinder finder = sweepLine.get(p);
+        for (int pos = 0; pos < sweepSize; pos++) {
+            ParallelSegmentsFinder finder = owner[sweepLine[pos]];
             finder.refCount--;
             if (finder.refCount == 0) {
                 result.add(finder);
@@ -129,18 +133,90 @@ public class ParallelSegmentsFinder {
         return result;
     }
 
-    private double distanceLineLine(PdfPath p1, PdfPath p2) {
-        return distanceLineLine(p1.firstPoint(), p1.lastPoint(), p2.firstPoint(), p2.lastPoint());
+    private void addMember(int index) {
+        if (members == null) {
+            members = new int[4];
+        } else if (memberCount == members.length) {
+            members = Arrays.copyOf(members, memberCount * 2);
+        }
+        members[memberCount++] = index;
+    }
+
+    /**
+     * Sorts indices by their keys, without boxing them.
+     */
+    private static void sort(int[] order, double[] keys, int lo, int hi) {
+        while (hi - lo > 16) {
+            double pivot = keys[order[(lo + hi) >>> 1]];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[order[i]] < pivot) i++;
+                while (keys[order[j]] > pivot) j--;
+                if (i <= j) {
+                    int t = order[i];
+                    order[i++] = order[j];
+                    order[j--] = t;
+                }
+            }
+            //recurse into the smaller part
+            if (j - lo < hi - i) {
+                sort(order, keys, lo, j);
+                lo = i;
+            } else {
+                sort(order, keys, i, hi);
+                hi = j;
+            }
+        }
+
+        for (int i = lo + 1; i <= hi; i++) {
+            int t = order[i];
+            int j = i - 1;
+            while (j >= lo && keys[order[j]] > keys[t]) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = t;
+        }
     }
 
-    private double distanceLineLine(Point2D p1, Point2D p2, Point2D p3, Point2D p4) {
-        double dist1 = closestPointToSegment(p1, p2, p3).distance(p3);
-        double dist2 = closestPointToSegment(p1, p2, p4).distance(p4);
-        double dist3 = closestPointToSegment(p3, p4, p1).distance(p1);
-        double dist4 = closestPointToSegment(p3, p4, p2).distance(p2);
+    private static double distanceLineLine(double[] coords, int a, int b) {
+        double ax1 = coords[a * 4];
+        double ay1 = coords[a * 4 + 1];
+        double ax2 = coords[a * 4 + 2];
+        double ay2 = coords[a * 4 + 3];
+        double bx1 = coords[b * 4];
+        double by1 = coords[b * 4 + 1];
+        double bx2 = coords[b * 4 + 2];
+        double by2 = coords[b * 4 + 3];
+        double dist1 = distancePointSegment(ax1, ay1, ax2, ay2, bx1, by1);
+        double dist2 = distancePointSegment(ax1, ay1, ax2, ay2, bx2, by2);
+        double dist3 = distancePointSegment(bx1, by1, bx2, by2, ax1, ay1);
+        double dist4 = distancePointSegment(bx1, by1, bx2, by2, ax2, ay2);
         return Math.min(Math.min(dist1, dist2), Math.min(dist3, dist4));
     }
 
+    private static double distancePointSegment(double x1, double y1, double x2, double y2, double px, double py) {
+        double ldx = x2 - x1;
+        double ldy = y2 - y1;
+        double cx = x1;
+        double cy = y1;
+
+        if (ldx != 0 || ldy != 0) {
+            double offset = ((px - x1) * ldx + (py - y1) * ldy) / (ldx * ldx + ldy * ldy);
+
+            if (offset >= 1) {
+                cx = x2;
+                cy = y2;
+            } else if (offset > 0) {
+                cx = x1 + ldx * offset;
+                cy = y1 + ldy * offset;
+            }
+        }
+
+        return Math.hypot(px - cx, py - cy);
+    }
+
     /**
      * Calculates closest point to a line segment.
      * @return segmentP1 if it is the closest point, segmentP2 if it is the closest point,
@@ -5,17 +5,29 @@ import java.awt.Color;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Collects the paths of a document into layers and cleans them up.
+ * Layers do not share paths, so the per layer steps run in parallel on a fork-join pool.
+ */
 public class PathOptimizer {
 
+    public final PointStore pointStore;
     public List<Point2D> uniquePoints;
-    public Map<Point2D, Point2D> uniquePointMap;
     private final Map<LayerInfo, LayerContents> layerMap;
     private List<LayerContents> layers;
     public Rectangle2D bounds;
@@ -25,9 +37,14 @@ public class PathOptimizer {
 
     LayerContents prevLayer = null;
 
+    private static final class PoolHolder {
+        static final ForkJoinPool POOL = Utils.newForkJoinPool(
+                "pdfimport.optimizer.numberOfThreads", "pdfimport-optimizer-%d", Thread.NORM_PRIORITY);
+    }
+
     public PathOptimizer(double _pointsTolerance, Color _color, boolean _splitOnColorChange) {
-        uniquePointMap = new HashMap<>();
-        uniquePoints = new ArrayList<>();
+        pointStore = new PointStore();
+        uniquePoints = pointStore.asList();
         layerMap = new HashMap<>();
         layers = new ArrayList<>();
         pointsTolerance = _pointsTolerance;
@@ -36,14 +53,23 @@ public class PathOptimizer {
     }
 
     public Point2D getUniquePoint(Point2D point) {
+        return pointStore.intern(point.getX(), point.getY());
+    }
 
-        if (uniquePointMap.containsKey(point)) {
-            return uniquePointMap.get(point);
-        } else {
-            uniquePointMap.put(point, point);
-            uniquePoints.add(point);
-            return point;
+    private void forEachLayer(Consumer<LayerContents> action) {
+        List<LayerContents> work = this.layers;
+        PoolHolder.POOL.submit(() -> work.parallelStream().forEach(action)).join();
+    }
+
+    private List<LayerContents> flatMapLayers(Function<LayerContents, List<LayerContents>> action) {
+        List<LayerContents> work = this.layers;
+        List<List<LayerContents>> parts = PoolHolder.POOL.submit(
+                () -> work.parallelStream().map(action).collect(Collectors.toList())).join();
+        List<LayerContents> newLayers = new ArrayList<>();
+        for (List<LayerContents> part: parts) {
+            newLayers.addAll(part);
         }
+        return newLayers;
     }
 
     public void addPath(LayerInfo info, PdfPath path) {
@@ -64,13 +90,24 @@ public class PathOptimizer {
         LayerContents layer = this.getLayer(info);
 
         //optimize the paths
-        Set<Point2D> points = new HashSet<>();
+        BitSet seen = new BitSet(pointStore.size());
+        int[] points = new int[16];
+        int pointCount = 0;
         for (PdfPath path: paths) {
-            points.addAll(path.points);
+            for (Point2D point: path.points) {
+                int index = pointStore.indexOf(point);
+                if (index >= 0 && !seen.get(index)) {
+                    seen.set(index);
+                    if (pointCount == points.length) {
+                        points = Arrays.copyOf(points, pointCount * 2);
+                    }
+                    points[pointCount++] = index;
+                }
+            }
         }
         LayerContents multipathLayer = new LayerContents();
         multipathLayer.paths = paths;
-        Map<Point2D, Point2D> pointMap = DuplicateNodesFinder.findDuplicateNodes(points, pointsTolerance);
+        int[] pointMap = DuplicateNodesFinder.findDuplicateNodes(pointStore, Arrays.copyOf(points, pointCount), pointsTolerance);
         this.fixPoints(multipathLayer, pointMap);
         this.concatenatePaths(multipathLayer);
 
@@ -110,60 +147,37 @@ public class PathOptimizer {
     }
 
     public void removeParallelLines(double maxDistance) {
-        for (LayerContents layer: this.layers) {
-            this.removeParallelLines(layer, maxDistance);
-        }
+        forEachLayer(layer -> this.removeParallelLines(layer, maxDistance));
     }
 
     public void mergeNodes() {
-        Map<Point2D, Point2D> pointMap = DuplicateNodesFinder.findDuplicateNodes(uniquePoints, pointsTolerance);
-
-        for (LayerContents layer: this.layers) {
-            this.fixPoints(layer, pointMap);
+        int[] points = new int[pointStore.size()];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = i;
         }
+        int[] pointMap = DuplicateNodesFinder.findDuplicateNodes(pointStore, points, pointsTolerance);
+
+        forEachLayer(layer -> this.fixPoints(layer, pointMap));
     }
 
     public void mergeSegments() {
-        for (LayerContents layer: this.layers) {
-            this.concatenatePaths(layer);
-        }
+        forEachLayer(this::concatenatePaths);
     }
 
     public void removeSmallObjects(double tolerance) {
-        for (LayerContents layer: this.layers) {
-            this.removeSmallObjects(layer, tolerance, Double.POSITIVE_INFINITY);
-        }
+        forEachLayer(layer -> this.removeSmallObjects(layer, tolerance, Double.POSITIVE_INFINITY));
     }
 
     public void removeLargeObjects(double tolerance) {
-        for (LayerContents layer: this.layers) {
-            this.removeSmallObjects(layer, 0.0, tolerance);
-        }
+        forEachLayer(layer -> this.removeSmallObjects(layer, 0.0, tolerance));
     }
 
     public void splitLayersBySimilarShapes(double tolerance) {
-        List<LayerContents> newLayers = new ArrayList<>();
-        for (LayerContents l: this.layers) {
-            List<LayerContents> splitResult = splitBySimilarGroups(l);
-
-            for (LayerContents ll: splitResult) {
-                newLayers.add(ll);
-            }
-        }
-        this.layers = newLayers;
+        this.layers = flatMapLayers(this::splitBySimilarGroups);
     }
 
     public void splitLayersByPathKind(boolean closed, boolean single, boolean orthogonal) {
-        List<LayerContents> newLayers = new ArrayList<>();
-        for (LayerContents l: this.layers) {
-            List<LayerContents> splitResult = splitBySegmentKind(l, closed, single, orthogonal);
-
-            for (LayerContents ll: splitResult) {
-                newLayers.add(ll);
-            }
-        }
-
-        this.layers = newLayers;
+        this.layers = flatMapLayers(l -> splitBySegmentKind(l, closed, single, orthogonal));
     }
 
     public void finish() {
@@ -171,8 +185,8 @@ public class PathOptimizer {
         for (LayerContents layer: this.layers) {
             layer.info.nr = nr;
             nr++;
-            finalizeLayer(layer);
         }
+        forEachLayer(this::finalizeLayer);
     }
 
     private LayerContents getLayer(LayerInfo info) {
@@ -229,7 +243,7 @@ public class PathOptimizer {
         }
     }
 
-    private void fixPoints(LayerContents layer, Map<Point2D, Point2D> pointMap) {
+    private void fixPoints(LayerContents layer, int[] pointMap) {
 
         List<PdfPath> newPaths = new ArrayList<>(layer.paths.size());
 
@@ -251,16 +265,17 @@ public class PathOptimizer {
         }
     }
 
-    private List<Point2D> fixPoints(List<Point2D> points, Map<Point2D, Point2D> pointMap) {
+    private List<Point2D> fixPoints(List<Point2D> points, int[] pointMap) {
 
         List<Point2D> newPoints = new ArrayList<>(points.size());
         Point2D prevPoint = null;
 
         for (Point2D p: points) {
             Point2D pp = p;
+            int index = pointStore.indexOf(p);
 
-            if (pointMap.containsKey(p)) {
-                pp = pointMap.get(p);
+            if (index >= 0 && index < pointMap.length && pointMap[index] >= 0) {
+                pp = pointStore.get(pointMap[index]);
             }
 
             if (prevPoint != pp) {
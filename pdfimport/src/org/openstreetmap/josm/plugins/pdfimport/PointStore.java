@@ -0,0 +1,151 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pdfimport;
+
+import java.awt.geom.Point2D;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Store of the unique points of a document.
+ * Coordinates are packed into double arrays addressed by an int index, and each point is handed out
+ * once as a {@link PdfPoint}, so paths can keep comparing points by identity.
+ */
+public class PointStore {
+
+    /**
+     * A unique point, knowing its index in the store.
+     */
+    public static final class PdfPoint extends Point2D.Double {
+        private static final long serialVersionUID = 1L;
+
+        public final int index;
+
+        PdfPoint(double x, double y, int index) {
+            super(x, y);
+            this.index = index;
+        }
+    }
+
+    private double[] xs = new double[1024];
+    private double[] ys = new double[1024];
+    private PdfPoint[] points = new PdfPoint[1024];
+    private int size;
+    private int[] table = newTable(2048);
+
+    private static int[] newTable(int capacity) {
+        int[] t = new int[capacity];
+        Arrays.fill(t, -1);
+        return t;
+    }
+
+    private static int hash(double x, double y) {
+        long h = Double.doubleToLongBits(x) * 31 + Double.doubleToLongBits(y);
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Returns the unique point at the given coordinates, adding it if needed.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the unique point
+     */
+    public PdfPoint intern(double x, double y) {
+        // -0.0 and 0.0 are the same point
+        double px = x == 0 ? 0.0 : x;
+        double py = y == 0 ? 0.0 : y;
+        int mask = table.length - 1;
+        int slot = hash(px, py) & mask;
+        while (table[slot] >= 0) {
+            int i = table[slot];
+            if (xs[i] == px && ys[i] == py) {
+                return points[i];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+            points = Arrays.copyOf(points, size * 2);
+        }
+
+        PdfPoint point = new PdfPoint(px, py, size);
+        xs[size] = px;
+        ys[size] = py;
+        points[size] = point;
+        table[slot] = size;
+        size++;
+
+        if (size * 2 > table.length) {
+            rehash();
+        }
+
+        return point;
+    }
+
+    private void rehash() {
+        table = newTable(table.length * 2);
+        int mask = table.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(xs[i], ys[i]) & mask;
+            while (table[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getX(int index) {
+        return xs[index];
+    }
+
+    public double getY(int index) {
+        return ys[index];
+    }
+
+    public PdfPoint get(int index) {
+        return points[index];
+    }
+
+    /**
+     * Returns the index of a point of this store.
+     * @param point the point
+     * @return its index, or -1 if the point is not one handed out by this store
+     */
+    public int indexOf(Point2D point) {
+        if (point instanceof PdfPoint) {
+            int index = ((PdfPoint) point).index;
+            if (index < size && points[index] == point) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a read only list view of the points, in index order.
+     * @return the points
+     */
+    public List<Point2D> asList() {
+        return new AbstractList<Point2D>() {
+            @Override
+            public Point2D get(int index) {
+                if (index >= size) {
+                    throw new IndexOutOfBoundsException(Integer.toString(index));
+                }
+                return points[index];
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,157 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pdfimport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.plugins.pdfimport.pdfbox.PdfBoxParser;
+
+/**
+ * Compares {@link DuplicateNodesFinder} with the sweep line implementation it replaced.
+ */
+class DuplicateNodesFinderTest {
+
+    /**
+     * The previous implementation, sweeping the nodes sorted by y with a tree of representatives ordered by x.
+     */
+    private static Map<Point2D, Point2D> sweep(List<Point2D> nodes, final double tolerance) {
+        List<Point2D> points = new ArrayList<>(nodes);
+        points.sort(Comparator.comparingDouble(Point2D::getY));
+
+        Map<Point2D, Point2D> result = new HashMap<>();
+        TreeMap<Point2D, Point2D> sweepLine = new TreeMap<>((o1, o2) -> {
+            double diff = o1.getX() - o2.getX();
+            if (Math.abs(diff) <= tolerance) {
+                return 0;
+            }
+            return diff > 0 ? 1 : -1;
+        });
+
+        double prevY = Double.NEGATIVE_INFINITY;
+        for (Point2D point: points) {
+            boolean mappedToOtherPoint = false;
+            if (point.getY() - prevY > tolerance) {
+                sweepLine.clear();
+            } else {
+                while (!mappedToOtherPoint && sweepLine.containsKey(point)) {
+                    Point2D closePoint = sweepLine.get(point);
+                    if (point.getY() - closePoint.getY() <= tolerance) {
+                        result.put(point, closePoint);
+                        mappedToOtherPoint = true;
+                    } else {
+                        sweepLine.remove(point);
+                    }
+                }
+            }
+            if (!mappedToOtherPoint) {
+                sweepLine.put(point, point);
+            }
+            prevY = point.getY();
+        }
+        return result;
+    }
+
+    /**
+     * Runs both implementations on all points of the store. The nodes are passed to the grid in the order
+     * of the sweep, so both choose the same nodes as representatives; only the representative a node is
+     * mapped to may differ when several are within the tolerance, the grid takes the nearest one.
+     */
+    private static void compare(PointStore store, double tolerance) {
+        List<Point2D> points = new ArrayList<>(store.asList());
+        points.sort(Comparator.comparingDouble(Point2D::getY));
+        int[] nodes = new int[points.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = ((PointStore.PdfPoint) points.get(i)).index;
+        }
+
+        Map<Point2D, Point2D> expected = sweep(points, tolerance);
+        int[] actual = DuplicateNodesFinder.findDuplicateNodes(store, nodes, tolerance);
+
+        int mapped = 0;
+        for (int i = 0; i < actual.length; i++) {
+            Point2D point = store.get(i);
+            assertEquals(expected.containsKey(point), actual[i] >= 0, point.toString());
+            if (actual[i] >= 0) {
+                mapped++;
+                Point2D rep = store.get(actual[i]);
+                assertTrue(actual[actual[i]] < 0, "representative is not mapped itself");
+                assertTrue(Math.abs(rep.getX() - point.getX()) <= tolerance && Math.abs(rep.getY() - point.getY()) <= tolerance);
+                Point2D old = expected.get(point);
+                double oldDistance = Math.abs(old.getX() - point.getX()) + Math.abs(old.getY() - point.getY());
+                double newDistance = Math.abs(rep.getX() - point.getX()) + Math.abs(rep.getY() - point.getY());
+                assertTrue(newDistance <= oldDistance, "grid representative is not the nearest");
+            }
+        }
+        assertEquals(expected.size(), mapped);
+    }
+
+    @Test
+    void testRandomPoints() {
+        Random random = new Random(42);
+        // a power of two, so the grid cells are computed without rounding errors
+        double tolerance = 0.25;
+        for (int trial = 0; trial < 20; trial++) {
+            PointStore store = new PointStore();
+            for (int i = 0; i < 2000; i++) {
+                double x = random.nextDouble() * 20;
+                double y = random.nextDouble() * 20;
+                store.intern(x, y);
+                // clusters of close points
+                if (random.nextInt(4) == 0) {
+                    store.intern(x + (random.nextDouble() - 0.5) * tolerance, y + (random.nextDouble() - 0.5) * tolerance);
+                }
+            }
+            compare(store, tolerance);
+        }
+    }
+
+    @Test
+    void testClusters() {
+        Random random = new Random(7);
+        double tolerance = 0.5;
+        PointStore store = new PointStore();
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 100; j++) {
+                for (int k = 0; k < 5; k++) {
+                    store.intern(i * 2 + random.nextDouble() * tolerance, j * 2 + random.nextDouble() * tolerance);
+                }
+            }
+        }
+        compare(store, tolerance);
+        // one representative per cluster
+        int[] nodes = new int[store.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = i;
+        }
+        int representatives = 0;
+        for (int rep : DuplicateNodesFinder.findDuplicateNodes(store, nodes, tolerance)) {
+            if (rep < 0) {
+                representatives++;
+            }
+        }
+        assertEquals(100 * 100, representatives);
+    }
+
+    @Test
+    void testPdf() throws Exception {
+        PathOptimizer data = new PathOptimizer(0.0, null, false);
+        new PdfBoxParser(data).parse(new File(TestUtils.getRegressionDataFile(12176, "LYD_Etage_0.pdf")),
+                Integer.MAX_VALUE, NullProgressMonitor.INSTANCE);
+        for (double tolerance : new double[] {0.0625, 0.5, 2}) {
+            compare(data.pointStore, tolerance);
+        }
+    }
+}
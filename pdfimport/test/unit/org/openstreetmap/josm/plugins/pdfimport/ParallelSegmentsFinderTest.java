@@ -0,0 +1,236 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pdfimport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.plugins.pdfimport.pdfbox.PdfBoxParser;
+
+/**
+ * Compares {@link ParallelSegmentsFinder} with the sweep line implementation it replaced.
+ */
+class ParallelSegmentsFinderTest {
+
+    /**
+     * The previous implementation, testing each path against all paths of the sweep line.
+     */
+    private static final class SweepFinder {
+        double angle;
+        double angleSum;
+        int refCount;
+        final List<PdfPath> paths = new ArrayList<>();
+
+        void addPath(PdfPath path, double angle2) {
+            angleSum += angle2;
+            paths.add(path);
+            angle = angleSum / paths.size();
+        }
+
+        List<SweepFinder> splitByDistance(double maxDistance) {
+            AffineTransform tr = new AffineTransform();
+            tr.rotate(-angle);
+
+            final Map<PdfPath, Point2D> positions = new HashMap<>();
+            Point2D src = new Point2D.Double();
+            for (PdfPath path: paths) {
+                src.setLocation((path.firstPoint().getX() + path.lastPoint().getX()) / 2,
+                        (path.firstPoint().getY() + path.lastPoint().getY()) / 2);
+                Point2D dest = new Point2D.Double();
+                tr.transform(src, dest);
+                positions.put(path, dest);
+            }
+            paths.sort(Comparator.comparingDouble(p -> positions.get(p).getY()));
+
+            List<SweepFinder> result = new ArrayList<>();
+            Map<PdfPath, SweepFinder> sweepLine = new HashMap<>();
+            Set<SweepFinder> adjacentClustersSet = new HashSet<>();
+            List<SweepFinder> adjacentClusters = new ArrayList<>();
+            List<PdfPath> pathsToRemove = new ArrayList<>();
+
+            for (PdfPath path: paths) {
+                adjacentClusters.clear();
+                adjacentClustersSet.clear();
+                pathsToRemove.clear();
+
+                for (PdfPath p: sweepLine.keySet()) {
+                    if (positions.get(path).getY() - positions.get(p).getY() > maxDistance) {
+                        pathsToRemove.add(p);
+                    } else if (distanceLineLine(path, p) <= maxDistance && adjacentClustersSet.add(sweepLine.get(p))) {
+                        adjacentClusters.add(sweepLine.get(p));
+                    }
+                }
+
+                for (PdfPath p: pathsToRemove) {
+                    SweepFinder finder = sweepLine.remove(p);
+                    finder.refCount--;
+                    if (finder.refCount == 0) {
+                        result.add(finder);
+                    }
+                }
+
+                if (!adjacentClusters.isEmpty()) {
+                    SweepFinder finder = adjacentClusters.remove(0);
+                    finder.paths.add(path);
+                    sweepLine.put(path, finder);
+                    finder.refCount++;
+                    for (SweepFinder finder1: adjacentClusters) {
+                        for (PdfPath path1: finder1.paths) {
+                            finder.paths.add(path1);
+                            sweepLine.put(path1, finder);
+                            finder.refCount++;
+                        }
+                    }
+                } else {
+                    SweepFinder finder = new SweepFinder();
+                    finder.addPath(path, angle);
+                    sweepLine.put(path, finder);
+                    finder.refCount = 1;
+                }
+            }
+
+            for (SweepFinder finder: sweepLine.values()) {
+                finder.refCount--;
+                if (finder.refCount == 0) {
+                    result.add(finder);
+                }
+            }
+            return result;
+        }
+
+        private static double distanceLineLine(PdfPath p1, PdfPath p2) {
+            Point2D a1 = p1.firstPoint();
+            Point2D a2 = p1.lastPoint();
+            Point2D b1 = p2.firstPoint();
+            Point2D b2 = p2.lastPoint();
+            double dist1 = ParallelSegmentsFinder.closestPointToSegment(a1, a2, b1).distance(b1);
+            double dist2 = ParallelSegmentsFinder.closestPointToSegment(a1, a2, b2).distance(b2);
+            double dist3 = ParallelSegmentsFinder.closestPointToSegment(b1, b2, a1).distance(a1);
+            double dist4 = ParallelSegmentsFinder.closestPointToSegment(b1, b2, a2).distance(a2);
+            return Math.min(Math.min(dist1, dist2), Math.min(dist3, dist4));
+        }
+    }
+
+    /**
+     * Splits the paths with both implementations and compares the clusters.
+     * @return the number of clusters
+     */
+    private static int compare(List<PdfPath> paths, double angle, double maxDistance) {
+        ParallelSegmentsFinder finder = new ParallelSegmentsFinder();
+        SweepFinder sweep = new SweepFinder();
+        for (PdfPath path : paths) {
+            finder.addPath(path, angle);
+            sweep.addPath(path, angle);
+        }
+
+        Set<Set<PdfPath>> expected = new HashSet<>();
+        for (SweepFinder part : sweep.splitByDistance(maxDistance)) {
+            expected.add(new HashSet<>(part.paths));
+        }
+        Set<Set<PdfPath>> actual = new HashSet<>();
+        int count = 0;
+        for (ParallelSegmentsFinder part : finder.splitByDistance(maxDistance)) {
+            actual.add(new HashSet<>(part.paths));
+            count += part.paths.size();
+        }
+        assertEquals(expected, actual);
+        assertEquals(paths.size(), count);
+        return actual.size();
+    }
+
+    private static PdfPath segment(double x1, double y1, double x2, double y2) {
+        return new PdfPath(new ArrayList<>(Arrays.asList(new Point2D.Double(x1, y1), new Point2D.Double(x2, y2))));
+    }
+
+    @Test
+    void testRandomSegments() {
+        Random random = new Random(5);
+        for (int trial = 0; trial < 50; trial++) {
+            double angle = random.nextDouble() * Math.PI;
+            List<PdfPath> paths = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                double x = random.nextDouble() * 100;
+                double y = random.nextDouble() * 100;
+                double length = random.nextDouble() * 5;
+                paths.add(segment(x, y, x + Math.sin(angle) * length, y + Math.cos(angle) * length));
+            }
+            for (double maxDistance : new double[] {0.5, 2, 5}) {
+                compare(paths, angle, maxDistance);
+            }
+        }
+    }
+
+    @Test
+    void testHatching() {
+        // two hatched areas and a few distant lines, all parallel
+        List<PdfPath> paths = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            paths.add(segment(i, 0, i, 10));
+            paths.add(segment(100 + i, 0, 100 + i, 10));
+        }
+        paths.add(segment(50, 0, 50, 10));
+        paths.add(segment(70, 0, 70, 10));
+        assertEquals(4, compare(paths, 0, 1.5));
+    }
+
+    /**
+     * The straight segments of a real document, grouped by direction like {@link PathOptimizer} does.
+     * @throws Exception if the document cannot be parsed
+     */
+    @Test
+    void testPdf() throws Exception {
+        PathOptimizer data = new PathOptimizer(0.0, null, false);
+        new PdfBoxParser(data).parse(new File(TestUtils.getRegressionDataFile(12176, "LYD_Etage_0.pdf")),
+                Integer.MAX_VALUE, NullProgressMonitor.INSTANCE);
+        double angleTolerance = Math.PI / 180;
+        int groups = 0;
+        for (LayerContents layer : data.getLayers()) {
+            List<SweepFinder> angles = new ArrayList<>();
+            for (PdfPath path : layer.paths) {
+                if (path.points.size() != 2) {
+                    continue;
+                }
+                double angle = Math.atan2(path.lastPoint().getX() - path.firstPoint().getX(),
+                        path.lastPoint().getY() - path.firstPoint().getY());
+                while (angle < 0) angle += Math.PI;
+                while (angle > Math.PI) angle -= Math.PI;
+                SweepFinder group = null;
+                for (SweepFinder pa : angles) {
+                    if (Math.abs(pa.angle - angle) < angleTolerance) {
+                        group = pa;
+                        break;
+                    }
+                }
+                if (group == null) {
+                    group = new SweepFinder();
+                    angles.add(group);
+                }
+                group.addPath(path, angle);
+            }
+            for (SweepFinder group : angles) {
+                if (group.paths.size() >= 10) {
+                    groups++;
+                    for (double maxDistance : new double[] {0.5, 2, 5}) {
+                        compare(group.paths, group.angle, maxDistance);
+                    }
+                }
+            }
+        }
+        assertTrue(groups > 0);
+    }
+}
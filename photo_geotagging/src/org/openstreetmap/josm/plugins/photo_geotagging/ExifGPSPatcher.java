@@ -0,0 +1,294 @@
+package org.openstreetmap.josm.plugins.photo_geotagging;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.imaging.ImageWriteException;
+import org.apache.commons.imaging.formats.tiff.write.TiffImageWriterLossy;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputSet;
+
+/**
+ * Sets the GPS values of a JPEG or TIFF file in place.
+ *
+ * The new values are encoded like {@link ExifGPSTagger} does for a full
+ * rewrite. They are written over the existing GPS fields, if every field
+ * exists with the same type and size. Only the EXIF header is read, and
+ * only the field values are written, so the image data is not copied.
+ */
+final class ExifGPSPatcher {
+
+    /** Tag of the GPS directory pointer in the first image directory. */
+    private static final int TAG_GPS_INFO = 0x8825;
+
+    @FunctionalInterface
+    private interface DataSource {
+        void read(ByteBuffer dst, long position) throws IOException;
+    }
+
+    /** Field of an image file directory. */
+    private static final class Field {
+        final int type;
+        final long count;
+        /** Offset of the value, relative to the start of the TIFF data. */
+        final long offset;
+        final long length;
+
+        Field(int type, long count, long offset, long length) {
+            this.type = type;
+            this.count = count;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /** TIFF data, either a whole file or embedded in the APP1 segment of a JPEG file. */
+    private static final class TiffData {
+        final DataSource source;
+        final long start;
+        final long end;
+        ByteOrder byteOrder;
+
+        TiffData(DataSource source, long start, long end) {
+            this.source = source;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Check if data is within the TIFF data.
+         */
+        boolean contains(long offset, long length) {
+            return offset >= 0 && length >= 0 && start + offset + length <= end;
+        }
+
+        /**
+         * Read data relative to the start of the TIFF data.
+         * @return the data, or {@code null} if it is out of bounds
+         */
+        ByteBuffer read(long offset, long length) throws IOException {
+            if (!contains(offset, length)) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            source.read(buffer, start + offset);
+            buffer.flip();
+            return buffer.order(byteOrder != null ? byteOrder : ByteOrder.BIG_ENDIAN);
+        }
+
+        /**
+         * Read the fields of the GPS directory.
+         * @return the fields by tag, or {@code null} if there is no GPS directory
+         */
+        Map<Integer, Field> readGPSDirectory() throws IOException {
+            ByteBuffer header = read(0, 8);
+            if (header == null) {
+                return null;
+            }
+            if (header.get(0) == 'I' && header.get(1) == 'I') {
+                byteOrder = ByteOrder.LITTLE_ENDIAN;
+            } else if (header.get(0) == 'M' && header.get(1) == 'M') {
+                byteOrder = ByteOrder.BIG_ENDIAN;
+            } else {
+                return null;
+            }
+            header.order(byteOrder);
+            if (header.getShort(2) != 42) {
+                return null;
+            }
+            Map<Integer, Field> root = readDirectory(header.getInt(4) & 0xffffffffL);
+            Field gpsInfo = root == null ? null : root.get(TAG_GPS_INFO);
+            if (gpsInfo == null || gpsInfo.count != 1 || gpsInfo.length != 4) {
+                return null;
+            }
+            ByteBuffer pointer = read(gpsInfo.offset, 4);
+            return pointer == null ? null : readDirectory(pointer.getInt(0) & 0xffffffffL);
+        }
+
+        private Map<Integer, Field> readDirectory(long offset) throws IOException {
+            ByteBuffer count = read(offset, 2);
+            if (count == null) {
+                return null;
+            }
+            int n = count.getShort(0) & 0xffff;
+            ByteBuffer entries = read(offset + 2, 12L * n);
+            if (entries == null) {
+                return null;
+            }
+            Map<Integer, Field> fields = new LinkedHashMap<>();
+            for (int i = 0; i < n; i++) {
+                int pos = 12 * i;
+                int tag = entries.getShort(pos) & 0xffff;
+                int type = entries.getShort(pos + 2) & 0xffff;
+                long valueCount = entries.getInt(pos + 4) & 0xffffffffL;
+                long length = getTypeSize(type) * valueCount;
+                // values of up to 4 bytes are stored in the entry itself
+                long valueOffset = length <= 4 ? offset + 2 + pos + 8 : entries.getInt(pos + 8) & 0xffffffffL;
+                fields.put(tag, new Field(type, valueCount, valueOffset, length));
+            }
+            return fields;
+        }
+    }
+
+    private final File file;
+    private final List<Long> positions = new ArrayList<>();
+    private final List<ByteBuffer> values = new ArrayList<>();
+
+    private ExifGPSPatcher(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Check if the GPS values of a file can be set in place, and encode the values.
+     * The file is not modified.
+     * Parameters are the same as for {@link ExifGPSTagger#setExifGPSTag}.
+     *
+     * @param imageFile The image file.
+     * @param lat latitude
+     * @param lon longitude
+     * @param gpsTime time - can be null if not available
+     * @param speed speed in km/h - can be null if not available
+     * @param ele elevation - can be null if not available
+     * @param imgDir image direction in degrees (0..360) - can be null if not available
+     * @return the patcher to {@link #apply()}, or {@code null} if the values cannot be set in place
+     * @throws IOException in case of I/O error
+     */
+    static ExifGPSPatcher prepare(File imageFile, double lat, double lon, Instant gpsTime, Double speed, Double ele, Double imgDir)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(imageFile.toPath(), StandardOpenOption.READ)) {
+            TiffData target = findTiffData(channel);
+            Map<Integer, Field> fields = target == null ? null : target.readGPSDirectory();
+            if (fields == null) {
+                return null;
+            }
+
+            TiffData encoded = encode(target.byteOrder, lat, lon, gpsTime, speed, ele, imgDir);
+            Map<Integer, Field> newFields = encoded.readGPSDirectory();
+            if (newFields == null) {
+                return null;
+            }
+
+            ExifGPSPatcher patcher = new ExifGPSPatcher(imageFile);
+            for (Map.Entry<Integer, Field> entry : newFields.entrySet()) {
+                Field field = fields.get(entry.getKey());
+                Field newField = entry.getValue();
+                if (field == null || field.type != newField.type || field.count != newField.count
+                        || !target.contains(field.offset, field.length)) {
+                    return null;
+                }
+                patcher.positions.add(target.start + field.offset);
+                patcher.values.add(encoded.read(newField.offset, newField.length));
+            }
+            return patcher;
+        }
+    }
+
+    /**
+     * Write the values to the file.
+     *
+     * @throws IOException in case of I/O error
+     */
+    void apply() throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            for (int i = 0; i < positions.size(); i++) {
+                ByteBuffer value = values.get(i).duplicate();
+                long position = positions.get(i);
+                while (value.hasRemaining()) {
+                    position += channel.write(value, position);
+                }
+            }
+        }
+    }
+
+    private static TiffData findTiffData(FileChannel channel) throws IOException {
+        DataSource source = (dst, position) -> {
+            while (dst.hasRemaining()) {
+                int n = channel.read(dst, position);
+                if (n < 0) {
+                    throw new EOFException();
+                }
+                position += n;
+            }
+        };
+        long size = channel.size();
+        TiffData file = new TiffData(source, 0, size);
+        ByteBuffer magic = file.read(0, 2);
+        if (magic == null) {
+            return null;
+        }
+        if ((magic.get(0) & 0xff) != 0xff || (magic.get(1) & 0xff) != 0xd8) {
+            // not a JPEG file, try TIFF
+            return file;
+        }
+
+        long position = 2;
+        ByteBuffer segment;
+        while ((segment = file.read(position, 4)) != null) {
+            int marker = segment.getShort(0) & 0xffff;
+            int length = segment.getShort(2) & 0xffff;
+            if ((marker & 0xff00) != 0xff00 || marker == 0xffda || marker == 0xffd9 || length < 2) {
+                // start of scan, end of image or not a segment
+                return null;
+            }
+            if (marker == 0xffe1 && length >= 8) {
+                ByteBuffer id = file.read(position + 4, 6);
+                if (id != null && id.getInt(0) == 0x45786966 && id.getShort(4) == 0) { // "Exif\0\0"
+                    return new TiffData(source, position + 10, Math.min(size, position + 2 + length));
+                }
+            }
+            position += 2 + length;
+        }
+        return null;
+    }
+
+    private static TiffData encode(ByteOrder byteOrder, double lat, double lon, Instant gpsTime, Double speed, Double ele, Double imgDir)
+            throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try {
+            TiffOutputSet outputSet = new TiffOutputSet(byteOrder);
+            ExifGPSTagger.setGPSFields(outputSet, lat, lon, gpsTime, speed, ele, imgDir);
+            new TiffImageWriterLossy(byteOrder).write(os, outputSet);
+        } catch (ImageWriteException e) {
+            throw new IOException(tr("Write error: "+e), e);
+        }
+        byte[] data = os.toByteArray();
+        return new TiffData((dst, position) -> dst.put(data, (int) position, dst.remaining()), 0, data.length);
+    }
+
+    private static long getTypeSize(int type) {
+        switch (type) {
+            case 1: // BYTE
+            case 2: // ASCII
+            case 6: // SBYTE
+            case 7: // UNDEFINED
+                return 1;
+            case 3: // SHORT
+            case 8: // SSHORT
+                return 2;
+            case 4: // LONG
+            case 9: // SLONG
+            case 11: // FLOAT
+            case 13: // IFD
+                return 4;
+            case 5: // RATIONAL
+            case 10: // SRATIONAL
+            case 12: // DOUBLE
+                return 8;
+            default:
+                // unknown type, never matches a new value
+                return Integer.MAX_VALUE;
+        }
+    }
+}
@@ -72,6 +72,37 @@ public class ExifGPSTagger {
             outputSet = new TiffOutputSet();
         }
 
+        setGPSFields(outputSet, lat, lon, gpsTime, speed, ele, imgDir);
+
+        try (BufferedOutputStream os = new BufferedOutputStream(new FileOutputStream(dst))) {
+            if (metadata instanceof JpegImageMetadata) {
+                if (lossy) {
+                    new ExifRewriter().updateExifMetadataLossy(imageFile, os, outputSet);
+                } else {
+                    new ExifRewriter().updateExifMetadataLossless(imageFile, os, outputSet);
+                }
+            } else if (metadata instanceof TiffImageMetadata) {
+                new TiffImageWriterLossy().write(os, outputSet);
+            }
+        }
+    }
+
+    /**
+     * Set the GPS values in the GPS directory of the given output set.
+     * Parameters are the same as for {@link #setExifGPSTag}.
+     *
+     * @param outputSet The output set, the GPS directory is created if needed.
+     * @param lat latitude
+     * @param lon longitude
+     * @param gpsTime time - can be null if not available
+     * @param speed speed in km/h - can be null if not available
+     * @param ele elevation - can be null if not available
+     * @param imgDir image direction in degrees (0..360) - can be null if not available
+     * @throws ImageWriteException if a value cannot be encoded
+     */
+    static void setGPSFields(TiffOutputSet outputSet, double lat, double lon, Instant gpsTime, Double speed, Double ele, Double imgDir)
+            throws ImageWriteException {
+
         TiffOutputDirectory gpsDirectory = outputSet.getOrCreateGPSDirectory();
         gpsDirectory.removeField(GpsTagConstants.GPS_TAG_GPS_VERSION_ID);
         gpsDirectory.add(GpsTagConstants.GPS_TAG_GPS_VERSION_ID, (byte)2, (byte)3, (byte)0, (byte)0);
@@ -146,17 +177,33 @@ public class ExifGPSTagger {
             gpsDirectory.removeField(GpsTagConstants.GPS_TAG_GPS_IMG_DIRECTION);
             gpsDirectory.add(GpsTagConstants.GPS_TAG_GPS_IMG_DIRECTION, RationalNumber.valueOf(imgDir));
         }
+    }
 
-        try (BufferedOutputStream os = new BufferedOutputStream(new FileOutputStream(dst))) {
-            if (metadata instanceof JpegImageMetadata) {
-                if (lossy) {
-                    new ExifRewriter().updateExifMetadataLossy(imageFile, os, outputSet);
-                } else {
-                    new ExifRewriter().updateExifMetadataLossless(imageFile, os, outputSet);
-                }
-            } else if (metadata instanceof TiffImageMetadata) {
-                new TiffImageWriterLossy().write(os, outputSet);
-            }
+    /**
+     * Set the GPS values in place, without rewriting the file.
+     * This is only possible if the file already has a GPS directory with all
+     * the fields to be set, and the fields have the size of the new values,
+     * e.g. because the file has been geotagged before.
+     * Parameters are the same as for {@link #setExifGPSTag}.
+     *
+     * @param imageFile The image file, which is modified.
+     * @param lat latitude
+     * @param lon longitude
+     * @param gpsTime time - can be null if not available
+     * @param speed speed in km/h - can be null if not available
+     * @param ele elevation - can be null if not available
+     * @param imgDir image direction in degrees (0..360) - can be null if not available
+     * @return {@code true} if the values have been set, {@code false} if the file
+     *         has not been changed and needs to be rewritten with {@link #setExifGPSTag}
+     * @throws IOException in case of I/O error
+     */
+    public static boolean patchExifGPSTag(File imageFile, double lat, double lon, Instant gpsTime, Double speed, Double ele, Double imgDir)
+            throws IOException {
+        ExifGPSPatcher patcher = ExifGPSPatcher.prepare(imageFile, lat, lon, gpsTime, speed, ele, imgDir);
+        if (patcher == null) {
+            return false;
         }
+        patcher.apply();
+        return true;
     }
 }
@@ -13,12 +13,17 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
 
 import javax.swing.AbstractAction;
 import javax.swing.BorderFactory;
@@ -48,6 +53,7 @@ import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.GBC;
 import org.openstreetmap.josm.tools.ImageProvider;
+import org.openstreetmap.josm.tools.JosmRuntimeException;
 import org.openstreetmap.josm.tools.Logging;
 import org.openstreetmap.josm.tools.Utils;
 
@@ -61,6 +67,7 @@ class GeotaggingAction extends AbstractAction implements LayerAction {
     final static String MTIME_MODE = "plugins.photo_geotagging.mtime-mode";
     final static int MTIME_MODE_GPS = 1;
     final static int MTIME_MODE_PREVIOUS_VALUE = 2;
+    final static String THREADS = "plugins.photo_geotagging.threads";
 
     public GeotaggingAction() {
         super(tr("Write coordinates to image header"), ImageProvider.get("geotagging"));
@@ -206,14 +213,32 @@ class GeotaggingAction extends AbstractAction implements LayerAction {
         final private boolean keep_backup;
         final private int mTimeMode;
 
-        private boolean canceled = false;
+        private volatile boolean canceled = false;
         Boolean override_backup = null;
 
-        private File fileFrom;
-        private File fileTo;
-        private File fileDelete;
+        /** Files used to rewrite an image file. */
+        private static class RewriteFiles {
+            final File fileFrom;
+            final File fileTo;
+            final File fileDelete;
 
-        private int currentIndex;
+            RewriteFiles(File fileFrom, File fileTo, File fileDelete) {
+                this.fileFrom = fileFrom;
+                this.fileTo = fileTo;
+                this.fileDelete = fileDelete;
+            }
+        }
+
+        /** Outcome of writing one image file. */
+        private static class Result {
+            final ImageEntry entry;
+            final IOException error;
+
+            Result(ImageEntry entry, IOException error) {
+                this.entry = entry;
+                this.error = error;
+            }
+        }
 
         public GeoTaggingRunnable(List<ImageEntry> images, boolean keep_backup, int mTimeMode) {
             super(tr("Photo Geotagging Plugin"));
@@ -278,71 +303,108 @@ class GeotaggingAction extends AbstractAction implements LayerAction {
 
             final long startTime = System.currentTimeMillis();
 
-            currentIndex = 0;
-            while (currentIndex < entries.size()) {
-                if (canceled)
-                    return exifFailedEntries;
-                ImageEntry e = entries.get(currentIndex);
-                Logging.trace("photo_geotagging: GeotaggingAction: i: {0} {1} ", currentIndex, e.getFile().getName());
-                try {
-                    processEntry(e, lossy);
-                } catch (final IOException ioe) {
-                    ioe.printStackTrace();
-                    restoreFile();
-                    if (!lossy && ioe.getCause() instanceof ExifRewriter.ExifOverflowException) {
-                        exifFailedEntries.add(e);
-                    } else {
-                        int ret = GuiHelper.runInEDTAndWaitAndReturn(() -> {
-                            ExtendedDialog dlg = new ExtendedDialog(progressMonitor.getWindowParent(),
-                                    tr("Error"),
-                                    tr("Abort"), tr("Retry"), tr("Ignore"));
-                            dlg.setButtonIcons("cancel", "dialogs/refresh", "dialogs/next");
-
-                            String msg;
-                            if (ioe instanceof NoSuchFileException) {
-                                msg = tr("File not found.");
-                            } else {
-                                msg = ioe.toString();
-                            }
+            // Files are written by a few threads, which mostly wait for I/O. Only a few files
+            // are queued per thread, so that nothing much is left to skip when aborting.
+            final int threads = Math.max(1, Config.getPref().getInt(THREADS, 4));
+            final ExecutorService executor = Utils.newFixedThreadPool(threads, "photo-geotagging-%d", Thread.NORM_PRIORITY);
+            final CompletionService<Result> completionService = new ExecutorCompletionService<>(executor);
+            int nextIndex = 0;
+            int running = 0;
+            int done = 0;
+            try {
+                while (true) {
+                    while (!canceled && nextIndex < entries.size() && running < 2 * threads) {
+                        submitEntry(completionService, entries.get(nextIndex++), lossy);
+                        running++;
+                    }
+                    if (running == 0)
+                        break;
 
-                            dlg.setIcon(JOptionPane.ERROR_MESSAGE)
-                               .setContent(tr("Unable to process file ''{0}'':", e.getFile().toString()) + "<br/>" + msg)
-                               .setDefaultButton(3)
-                               .showDialog();
-
-                            return dlg.getValue();
-                        });
-
-                        switch (ret) {
-                            case 2: // retry
-                                currentIndex--;
-                                break;
-                            case 3: // continue
-                                break;
-                            default: // abort
-                                canceled = true;
+                    final Result result = completionService.take().get();
+                    running--;
+                    if (canceled)
+                        continue;
+                    final ImageEntry e = result.entry;
+                    final IOException ioe = result.error;
+                    if (ioe != null) {
+                        ioe.printStackTrace();
+                        if (!lossy && ioe.getCause() instanceof ExifRewriter.ExifOverflowException) {
+                            exifFailedEntries.add(e);
+                        } else {
+                            int ret = GuiHelper.runInEDTAndWaitAndReturn(() -> {
+                                ExtendedDialog dlg = new ExtendedDialog(progressMonitor.getWindowParent(),
+                                        tr("Error"),
+                                        tr("Abort"), tr("Retry"), tr("Ignore"));
+                                dlg.setButtonIcons("cancel", "dialogs/refresh", "dialogs/next");
+
+                                String msg;
+                                if (ioe instanceof NoSuchFileException) {
+                                    msg = tr("File not found.");
+                                } else {
+                                    msg = ioe.toString();
+                                }
+
+                                dlg.setIcon(JOptionPane.ERROR_MESSAGE)
+                                   .setContent(tr("Unable to process file ''{0}'':", e.getFile().toString()) + "<br/>" + msg)
+                                   .setDefaultButton(3)
+                                   .showDialog();
+
+                                return dlg.getValue();
+                            });
+
+                            switch (ret) {
+                                case 2: // retry
+                                    submitEntry(completionService, e, lossy);
+                                    running++;
+                                    continue;
+                                case 3: // continue
+                                    break;
+                                default: // abort
+                                    canceled = true;
+                                    continue;
+                            }
                         }
                     }
-                }
-                progressMonitor.worked(1);
+                    progressMonitor.worked(1);
+                    done++;
 
-                float millisecondsPerFile = (float) (System.currentTimeMillis() - startTime) / (currentIndex + 1); // currentIndex starts at 0
-                int filesLeft = entries.size() - currentIndex - 1;
-                String timeLeft = Utils.getDurationString((long) Math.ceil(millisecondsPerFile * filesLeft));
+                    long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+                    String filesPerSecond = new DecimalFormat("0.0").format(done * 1000.0 / elapsed);
+                    String timeLeft = Utils.getDurationString((long) Math.ceil((double) elapsed / done * (entries.size() - done)));
 
-                progressMonitor.subTask(tr("Writing position information to image files... Estimated time left: {0}", timeLeft));
+                    progressMonitor.subTask(tr("Writing position information to image files... {0} files/s, estimated time left: {1}",
+                            filesPerSecond, timeLeft));
 
-                Logging.trace("photo_geotagging: GeotaggingAction: finished {0}", e.getFile());
-                currentIndex++;
+                    Logging.trace("photo_geotagging: GeotaggingAction: finished {0}", e.getFile());
+                }
+            } catch (InterruptedException ex) {
+                Logging.trace(ex);
+                canceled = true;
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                canceled = true;
+                throw new JosmRuntimeException(ex.getCause());
+            } finally {
+                executor.shutdown();
             }
             return exifFailedEntries;
         }
 
-        private void processEntry(ImageEntry e, boolean lossy) throws IOException {
-            fileFrom = null;
-            fileTo = null;
-            fileDelete = null;
+        private void submitEntry(CompletionService<Result> completionService, ImageEntry e, boolean lossy) {
+            completionService.submit(() -> {
+                if (canceled)
+                    return new Result(e, null);
+                Logging.trace("photo_geotagging: GeotaggingAction: {0}", e.getFile().getName());
+                try {
+                    processEntry(e, lossy);
+                    return new Result(e, null);
+                } catch (IOException ioe) {
+                    return new Result(e, ioe);
+                }
+            });
+        }
 
+        private void processEntry(ImageEntry e, boolean lossy) throws IOException {
             if (mTimeMode != 0) {
                 testMTimeReadAndWrite(e.getFile());
             }
@@ -365,51 +427,89 @@ class GeotaggingAction extends AbstractAction implements LayerAction {
                     throw new IOException(tr("Could not read mtime."));
             }
 
-            chooseFiles(e.getFile());
-            if (canceled) return;
-            ExifGPSTagger.setExifGPSTag(fileFrom, fileTo, e.getPos().lat(), e.getPos().lon(),
-                    e.getGpsInstant(), e.getSpeed(), e.getElevation(), e.getExifImgDir(), lossy);
-
-            if (mTime != null) {
-                if (!fileTo.setLastModified(mTime.toEpochMilli()))
-                    throw new IOException(tr("Could not write mtime."));
+            // Files which have been geotagged before usually have room for the new values,
+            // the whole file only needs to be rewritten if they don't.
+            ExifGPSPatcher patcher = lossy ? null : ExifGPSPatcher.prepare(e.getFile(), e.getPos().lat(), e.getPos().lon(),
+                    e.getGpsInstant(), e.getSpeed(), e.getElevation(), e.getExifImgDir());
+            boolean written = patcher != null ? patchFile(e.getFile(), patcher, mTime) : rewriteFile(e, lossy, mTime);
+            if (written) {
+                e.unflagNewGpsData();
             }
+        }
 
-            cleanupFiles();
-            e.unflagNewGpsData();
+        private boolean patchFile(File file, ExifGPSPatcher patcher, Instant mTime) throws IOException {
+            File fileBackup = chooseBackup(file);
+            if (canceled) return false;
+            if (fileBackup != null) {
+                Files.copy(file.toPath(), fileBackup.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+            }
+            try {
+                patcher.apply();
+                if (mTime != null) {
+                    if (!file.setLastModified(mTime.toEpochMilli()))
+                        throw new IOException(tr("Could not write mtime."));
+                }
+            } catch (IOException ioe) {
+                if (fileBackup != null) {
+                    Files.copy(fileBackup.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.COPY_ATTRIBUTES);
+                }
+                throw ioe;
+            }
+            return true;
         }
 
-        private void chooseFiles(File file) throws IOException {
-            Logging.trace("photo_geotagging: GeotaggingAction: f: "+file.getAbsolutePath());
+        private boolean rewriteFile(ImageEntry e, boolean lossy, Instant mTime) throws IOException {
+            RewriteFiles files = chooseFiles(e.getFile());
+            if (canceled) return false;
+            try {
+                ExifGPSTagger.setExifGPSTag(files.fileFrom, files.fileTo, e.getPos().lat(), e.getPos().lon(),
+                        e.getGpsInstant(), e.getSpeed(), e.getElevation(), e.getExifImgDir(), lossy);
 
-            if (!keep_backup) {
-                chooseFilesNoBackup(file);
-                return;
+                if (mTime != null) {
+                    if (!files.fileTo.setLastModified(mTime.toEpochMilli()))
+                        throw new IOException(tr("Could not write mtime."));
+                }
+
+                cleanupFiles(files);
+            } catch (IOException ioe) {
+                restoreFile(files);
+                throw ioe;
             }
+            return true;
+        }
+
+        private File chooseBackup(File file) throws IOException {
+            if (!keep_backup)
+                return null;
 
             File fileBackup = new File(file.getParentFile(),file.getName()+"_");
             if (fileBackup.exists()) {
-                confirm_override();
-                if (canceled)
-                    return;
-
-                if (override_backup) {
-                    if (!fileBackup.delete())
-                        throw new IOException(tr("File could not be deleted!"));
-                } else {
-                    chooseFilesNoBackup(file);
-                    return;
-                }
+                if (!confirm_override())
+                    return null;
+
+                if (!fileBackup.delete())
+                    throw new IOException(tr("File could not be deleted!"));
             }
+            return fileBackup;
+        }
+
+        private RewriteFiles chooseFiles(File file) throws IOException {
+            Logging.trace("photo_geotagging: GeotaggingAction: f: "+file.getAbsolutePath());
+
+            File fileBackup = chooseBackup(file);
+            if (canceled)
+                return null;
+            if (fileBackup == null)
+                return chooseFilesNoBackup(file);
+
             if (!file.renameTo(fileBackup))
                 throw new IOException(tr("Could not rename file!"));
 
-            fileFrom = fileBackup;
-            fileTo = file;
-            fileDelete = null;
+            return new RewriteFiles(fileBackup, file, null);
         }
 
-        private void chooseFilesNoBackup(File file) throws IOException {
+        private RewriteFiles chooseFilesNoBackup(File file) throws IOException {
             File fileTmp;
             //fileTmp = File.createTempFile("img", ".jpg", file.getParentFile());
             // on win32, file.renameTo(fileTmp) does not work when the destination file exists
@@ -427,14 +527,16 @@ class GeotaggingAction extends AbstractAction implements LayerAction {
                 Logging.error(tr("Could not rename file {0} to {1}!", file, fileTmp));
                 throw e;
             }
-            fileFrom = fileTmp;
-            fileTo = file;
-            fileDelete = fileTmp;
+            return new RewriteFiles(fileTmp, file, fileTmp);
         }
 
-        private void confirm_override() {
-            if (override_backup != null)
-                return;
+        /**
+         * Ask once whether old backup files may be overridden.
+         * @return {@code true} if old backup files may be overridden
+         */
+        private synchronized boolean confirm_override() {
+            if (override_backup != null || canceled)
+                return Boolean.TRUE.equals(override_backup);
             try {
                 SwingUtilities.invokeAndWait(() -> {
                     JLabel l = new JLabel(tr("<html><h3>There are old backup files in the image directory!</h3>"));
@@ -461,27 +563,28 @@ class GeotaggingAction extends AbstractAction implements LayerAction {
                 Logging.error(e);
                 canceled = true;
             }
+            return Boolean.TRUE.equals(override_backup);
         }
 
-        private void restoreFile() {
-            if (fileFrom != null && fileFrom.exists()) {
-                if (fileTo != null && fileTo.exists()) {
-                    fileTo.delete();
+        private void restoreFile(RewriteFiles files) {
+            if (files.fileFrom.exists()) {
+                if (files.fileTo.exists()) {
+                    files.fileTo.delete();
                 }
-                fileFrom.renameTo(fileTo);
+                files.fileFrom.renameTo(files.fileTo);
             }
         }
 
-        private void cleanupFiles() throws IOException {
-            if (fileDelete != null) {
-                if (!fileDelete.delete())
+        private void cleanupFiles(RewriteFiles files) throws IOException {
+            if (files.fileDelete != null) {
+                if (!files.fileDelete.delete())
                     throw new IOException(tr("Could not delete temporary file!"));
             }
         }
 
         boolean testMTimeReadAndWriteDone = false;
 
-        private void testMTimeReadAndWrite(File file) throws IOException {
+        private synchronized void testMTimeReadAndWrite(File file) throws IOException {
             if (testMTimeReadAndWriteDone)  // do this only once
                 return;
             File fileTest = File.createTempFile("geo", ".txt", file.getParentFile());
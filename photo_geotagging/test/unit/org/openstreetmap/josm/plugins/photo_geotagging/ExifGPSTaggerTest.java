@@ -3,9 +3,11 @@ package org.openstreetmap.josm.plugins.photo_geotagging;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.nio.file.Files;
 import java.time.Instant;
 import java.util.Scanner;
 
@@ -41,6 +43,26 @@ class ExifGPSTaggerTest {
         assertEquals(lastModified, in.lastModified());
     }
 
+    @Test
+    void testPatchExifGPSTag() throws Exception {
+        final File in = new File(TestUtils.getTestDataRoot(), "_DSC1234.jpg");
+        final File out = new File(tempFolder, in.getName());
+        // the GPS directory has no room for the values yet
+        Files.copy(in.toPath(), out.toPath());
+        assertFalse(ExifGPSTagger.patchExifGPSTag(out, 12, 34, null, null, null, null));
+        assertEquals(in.length(), out.length());
+
+        final File tagged = new File(tempFolder, "tagged.jpg");
+        ExifGPSTagger.setExifGPSTag(in, tagged, 12, 34, Instant.now(), 12.34, Math.E, Math.PI, true);
+        final long length = tagged.length();
+        assertTrue(ExifGPSTagger.patchExifGPSTag(tagged, -56.5, -78.25, Instant.now(), 43.21, -Math.E, 270.0));
+        assertEquals(length, tagged.length());
+
+        final TiffImageMetadata.GPSInfo gps = ((JpegImageMetadata) Imaging.getMetadata(tagged)).getExif().getGPS();
+        assertEquals(-56.5, gps.getLatitudeAsDegreesNorth(), 1e-6);
+        assertEquals(-78.25, gps.getLongitudeAsDegreesEast(), 1e-6);
+    }
+
     @Test
     @Disabled("To enable after https://josm.openstreetmap.de/ticket/11902 is fixed")
     void testTicket11902() throws Exception {
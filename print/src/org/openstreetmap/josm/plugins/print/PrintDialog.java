@@ -14,6 +14,7 @@ import java.awt.print.PageFormat;
 import java.awt.print.PrinterAbortException;
 import java.awt.print.PrinterException;
 import java.awt.print.PrinterJob;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -59,11 +60,15 @@ import javax.swing.event.DocumentListener;
 
 import org.openstreetmap.gui.jmapviewer.tilesources.AbstractOsmTileSource;
 import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.PleaseWaitRunnable;
+import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.gui.util.WindowGeometry;
+import org.openstreetmap.josm.io.OsmTransferException;
 import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.GBC;
 import org.openstreetmap.josm.tools.Logging;
 import org.openstreetmap.josm.tools.ReflectionUtils;
+import org.xml.sax.SAXException;
 
 /**
  * A print dialog with preview
@@ -121,6 +126,11 @@ public class PrintDialog extends JDialog implements ActionListener {
      */
     transient PrintRequestAttributeSet attrs = new HashPrintRequestAttributeSet();
 
+    /**
+     * True while the map is being printed in the background
+     */
+    private boolean printing;
+
     /**
      * Create a new print dialog
      *
@@ -133,6 +143,7 @@ public class PrintDialog extends JDialog implements ActionListener {
         job.setJobName("JOSM Map");
         job.setPrintable(mapView);
         build();
+        mapView.setRenderListener(printPreview::repaint);
         loadPrintSettings();
         updateFields();
         pack();
@@ -430,28 +441,74 @@ public class PrintDialog extends JDialog implements ActionListener {
         } else if ("zoom-to-actual-size".equals(cmd)) {
             printPreview.setZoom(1.0);
         } else if ("print".equals(cmd)) {
+            mapView.initialize(job.getPageFormat(attrs));
+            printing = true;
+            dispose();
+            MainApplication.worker.submit(new PrintTask());
+        } else if ("cancel".equals(cmd)) {
+            dispose();
+        }
+    }
+
+    /**
+     * Dispose the dialog, and the rendered map unless it is being printed
+     */
+    @Override
+    public void dispose() {
+        super.dispose();
+        if (!printing) {
+            mapView.disposeRaster();
+        }
+    }
+
+    /**
+     * Renders the map in the background, then prints it.
+     */
+    private class PrintTask extends PleaseWaitRunnable {
+        private volatile boolean canceled;
+
+        PrintTask() {
+            super(tr("Printing the Map"));
+        }
+
+        @Override
+        protected void cancel() {
+            canceled = true;
+            job.cancel();
+        }
+
+        @Override
+        protected void realRun() throws SAXException, IOException, OsmTransferException {
             try {
-                job.print(attrs);
+                if (mapView.renderMap(getProgressMonitor()) && !canceled) {
+                    getProgressMonitor().indeterminateSubTask(tr("Sending the map to the printer"));
+                    job.print(attrs);
+                }
             } catch (PrinterAbortException ex) {
                 String msg = ex.getLocalizedMessage();
-                if (msg.length() == 0) {
+                if (msg == null || msg.length() == 0) {
                     msg = tr("Printing has been cancelled.");
                 }
-                JOptionPane.showMessageDialog(MainApplication.getMainFrame(), msg,
-                  tr("Printing stopped"),
-                  JOptionPane.WARNING_MESSAGE);
+                showPrintError(msg, JOptionPane.WARNING_MESSAGE);
             } catch (PrinterException ex) {
                 String msg = ex.getLocalizedMessage();
                 if (msg == null || msg.length() == 0) {
                     msg = tr("Printing has failed.");
                 }
-                JOptionPane.showMessageDialog(MainApplication.getMainFrame(), msg,
-                  tr("Printing stopped"),
-                  JOptionPane.ERROR_MESSAGE);
+                showPrintError(msg, JOptionPane.ERROR_MESSAGE);
             }
-            dispose();
-        } else if ("cancel".equals(cmd)) {
-            dispose();
+        }
+
+        @Override
+        protected void finish() {
+            printing = false;
+            mapView.disposeRaster();
+        }
+
+        private void showPrintError(String msg, int messageType) {
+            GuiHelper.runInEDT(() -> JOptionPane.showMessageDialog(MainApplication.getMainFrame(), msg,
+                  tr("Printing stopped"),
+                  messageType));
         }
     }
 
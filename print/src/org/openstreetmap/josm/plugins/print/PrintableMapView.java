@@ -19,6 +19,7 @@ import java.awt.geom.Rectangle2D;
 import java.awt.print.PageFormat;
 import java.awt.print.Printable;
 import java.awt.print.PrinterException;
+import java.awt.print.PrinterGraphics;
 
 import org.openstreetmap.gui.jmapviewer.tilesources.AbstractOsmTileSource;
 import org.openstreetmap.josm.data.Bounds;
@@ -29,6 +30,8 @@ import org.openstreetmap.josm.gui.layer.Layer;
 import org.openstreetmap.josm.gui.layer.LayerManager.LayerAddEvent;
 import org.openstreetmap.josm.gui.layer.LayerManager.LayerOrderChangeEvent;
 import org.openstreetmap.josm.gui.layer.LayerManager.LayerRemoveEvent;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.spi.preferences.Config;
 
 /**
@@ -53,6 +56,11 @@ public class PrintableMapView extends MapView implements Printable {
      */
     public static final int FONT_SIZE = 8;
 
+    /**
+     * The map rendered in tiles, or null if the map is painted directly
+     */
+    private final transient TiledMapRaster raster;
+
     /**
      * Create a new PrintableMapView.
      */
@@ -66,6 +74,42 @@ public class PrintableMapView extends MapView implements Printable {
         for (int i = 0; i < listeners.length; i++) {
             removeComponentListener(listeners[i]);
         }
+
+        raster = Config.getPref().getBoolean("print.render.tiled", true) ? new TiledMapRaster(this) : null;
+    }
+
+    /**
+     * Set a listener to notify when a part of the map has been rendered
+     * in the background, i.e. when the preview should be repainted.
+     *
+     * @param listener the listener, called from any thread, or null
+     */
+    public void setRenderListener(Runnable listener) {
+        if (raster != null) {
+            raster.setListener(listener);
+        }
+    }
+
+    /**
+     * Render the map for printing, before the printer asks for it.
+     *
+     * The map view must have been initialized for the page format.
+     * Parts of the map which have been rendered for the preview are reused.
+     *
+     * @param monitor the progress monitor
+     * @return true if the map has been rendered, false if cancelled
+     */
+    public boolean renderMap(ProgressMonitor monitor) {
+        return raster == null || raster.render(monitor);
+    }
+
+    /**
+     * Discard the rendered map and its temporary file.
+     */
+    public void disposeRaster() {
+        if (raster != null) {
+            raster.dispose();
+        }
     }
 
     /**
@@ -190,6 +234,10 @@ public class PrintableMapView extends MapView implements Printable {
      * This implementation is derived from MapView's paint and
      * from other JOSM core components.
      *
+     * Unless disabled with "print.render.tiled", the map is rendered in
+     * tiles in the background. The preview is painted from the tiles
+     * available so far, while printing waits for all tiles.
+     *
      * @param g2d the graphics context to use for painting
      * @param pageFormat the size and orientation of the page being drawn
      */
@@ -197,7 +245,24 @@ public class PrintableMapView extends MapView implements Printable {
         AffineTransform at = g2d.getTransform();
         g2d.scale(g2dFactor, g2dFactor);
 
-        Bounds box = getRealBounds();
+        if (raster == null) {
+            paintLayers(g2d, getRealBounds());
+        } else if (g2d instanceof PrinterGraphics) {
+            raster.paint(g2d, NullProgressMonitor.INSTANCE);
+        } else {
+            raster.paintPreview(g2d);
+        }
+
+        g2d.setTransform(at);
+    }
+
+    /**
+     * Paint the visible layers
+     *
+     * @param g2d the graphics context to use for painting, in map view pixels
+     * @param box the area to paint
+     */
+    void paintLayers(Graphics2D g2d, Bounds box) {
         for (Layer l : getLayerManager().getVisibleLayersInZOrder()) {
             if (l.getOpacity() < 1) {
                 g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) l.getOpacity()));
@@ -205,8 +270,6 @@ public class PrintableMapView extends MapView implements Printable {
             l.paint(g2d, this, box);
             g2d.setPaintMode();
         }
-
-        g2d.setTransform(at);
     }
 
     /**
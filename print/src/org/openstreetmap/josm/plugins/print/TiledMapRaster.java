@@ -0,0 +1,487 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.print;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.gui.MapViewState;
+import org.openstreetmap.josm.gui.layer.Layer;
+import org.openstreetmap.josm.gui.layer.MapViewPaintable.PaintableInvalidationListener;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * The map of a {@link PrintableMapView}, rendered at print resolution in tiles.
+ *
+ * Tiles are rendered by a background thread and stored in a temporary file,
+ * so that large prints at a high resolution neither block the user
+ * interface nor need the whole page in memory. The tiles are rendered
+ * one at a time, as layers are not safe to paint concurrently. A downsampled copy of
+ * each tile is kept in memory for the preview.
+ *
+ * Tiles are aligned to the projected coordinates, not to the page. They
+ * remain valid when the page format changes, as long as the map scale
+ * and the visible layers do not change. When a layer changes, its tiles
+ * are rendered again, and the preview shows the previous tiles meanwhile.
+ */
+final class TiledMapRaster {
+
+    /**
+     * The size of the tiles, in pixels at print resolution
+     */
+    static final int TILE_SIZE = 512;
+
+    /**
+     * The margin painted around a tile, so that the symbols of
+     * objects just outside of the tile are not cut off
+     */
+    private static final int MARGIN = 64;
+
+    private static final class ExecutorHolder {
+        static final ExecutorService EXECUTOR = Utils.newFixedThreadPool(1, "print-render-%d", Thread.NORM_PRIORITY);
+    }
+
+    /**
+     * A rendered tile
+     */
+    private static final class Tile {
+        final int version;
+        final long offset;
+        final BufferedImage preview;
+
+        Tile(int version, long offset, BufferedImage preview) {
+            this.version = version;
+            this.offset = offset;
+            this.preview = preview;
+        }
+    }
+
+    /**
+     * The temporary file holding the tiles at print resolution.
+     * The file is divided into slots of the size of a tile.
+     */
+    static final class Storage implements Closeable {
+        static final int SLOT_SIZE = 4 * TILE_SIZE * TILE_SIZE;
+        final FileChannel channel;
+        final AtomicLong size = new AtomicLong();
+
+        Storage() throws IOException {
+            channel = FileChannel.open(Files.createTempFile("josm-print-", ".raster"),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        }
+
+        /**
+         * Reserve a new slot at the end of the file
+         *
+         * @return the offset of the slot
+         */
+        long allocate() {
+            return size.getAndAdd(SLOT_SIZE);
+        }
+
+        /**
+         * Write a tile to a slot, replacing its previous content
+         *
+         * @param offset the offset of the slot
+         * @param image the tile, of type {@link BufferedImage#TYPE_INT_ARGB}
+         * @throws IOException if an I/O error occurs
+         */
+        void write(long offset, BufferedImage image) throws IOException {
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            ByteBuffer buffer = ByteBuffer.allocate(4 * pixels.length);
+            buffer.asIntBuffer().put(pixels);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+        }
+
+        BufferedImage read(long offset) throws IOException {
+            BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            ByteBuffer buffer = ByteBuffer.allocate(4 * pixels.length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+            buffer.flip();
+            buffer.asIntBuffer().get(pixels);
+            return image;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * The tiles rendered at one map scale, with the same layers
+     */
+    private static final class TileSet {
+        final double scale;
+        final List<Object> layers;
+        final Map<Point, Tile> tiles = new ConcurrentHashMap<>();
+        final Map<Point, Future<?>> pending = new ConcurrentHashMap<>();
+        private Storage storage;
+        volatile boolean closed;
+
+        TileSet(double scale, List<Object> layers) {
+            this.scale = scale;
+            this.layers = layers;
+        }
+
+        boolean matches(double scale, List<Object> layers) {
+            // zooming to a fixed map scale is not exact
+            return Math.abs(this.scale - scale) <= 1e-9 * scale && this.layers.equals(layers);
+        }
+
+        synchronized Storage getStorage() throws IOException {
+            if (closed) {
+                throw new IOException("closed");
+            }
+            if (storage == null) {
+                storage = new Storage();
+            }
+            return storage;
+        }
+
+        synchronized void close() {
+            closed = true;
+            for (Future<?> future : pending.values()) {
+                future.cancel(false);
+            }
+            pending.clear();
+            tiles.clear();
+            Utils.close(storage);
+        }
+    }
+
+    private final PrintableMapView mapView;
+    private final AtomicInteger version = new AtomicInteger();
+    private final PaintableInvalidationListener invalidationListener = event -> {
+        version.incrementAndGet();
+        fireTileRendered();
+    };
+    private TileSet tileSet;
+    private volatile Runnable listener;
+
+    /**
+     * Create a new raster for a map view
+     *
+     * @param mapView the map view to render
+     */
+    TiledMapRaster(PrintableMapView mapView) {
+        this.mapView = mapView;
+    }
+
+    /**
+     * Set the listener to notify when a tile has been rendered,
+     * or when a layer has changed.
+     *
+     * @param listener the listener, called from any thread, or null
+     */
+    void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    private void fireTileRendered() {
+        Runnable l = listener;
+        if (l != null) {
+            l.run();
+        }
+    }
+
+    /**
+     * Get the tiles for the current map scale and layers, and discard
+     * the previous tiles if the map scale or the layers have changed.
+     */
+    private synchronized TileSet getTileSet() {
+        double scale = mapView.getScale();
+        List<Object> layers = new ArrayList<>();
+        for (Layer l : mapView.getLayerManager().getVisibleLayersInZOrder()) {
+            layers.add(l);
+            layers.add(l.getOpacity());
+        }
+        if (tileSet == null || !tileSet.matches(scale, layers)) {
+            dispose();
+            tileSet = new TileSet(scale, Collections.unmodifiableList(layers));
+            for (int i = 0; i < layers.size(); i += 2) {
+                ((Layer) layers.get(i)).addInvalidationListener(invalidationListener);
+            }
+        }
+        return tileSet;
+    }
+
+    /**
+     * Discard all tiles and stop rendering
+     */
+    synchronized void dispose() {
+        if (tileSet != null) {
+            for (int i = 0; i < tileSet.layers.size(); i += 2) {
+                ((Layer) tileSet.layers.get(i)).removeInvalidationListener(invalidationListener);
+            }
+            tileSet.close();
+            tileSet = null;
+        }
+    }
+
+    /**
+     * Get the tiles covering an area of the map view
+     *
+     * @param area the area, in map view pixels
+     * @return the tile positions
+     */
+    private List<Point> getTiles(Rectangle2D area) {
+        EastNorth origin = mapView.getEastNorth(0, 0);
+        return getTiles(origin.east() / mapView.getScale(), -origin.north() / mapView.getScale(), area);
+    }
+
+    /**
+     * Get the tiles covering an area
+     *
+     * @param originX the x coordinate of the area origin, in pixels from the projection origin
+     * @param originY the y coordinate of the area origin, in pixels from the projection origin, downwards
+     * @param area the area, in pixels from its origin
+     * @return the tile positions, row by row
+     */
+    static List<Point> getTiles(double originX, double originY, Rectangle2D area) {
+        List<Point> result = new ArrayList<>();
+        int minX = (int) Math.floor((originX + area.getMinX()) / TILE_SIZE);
+        int maxX = (int) Math.floor((originX + area.getMaxX()) / TILE_SIZE);
+        int minY = (int) Math.floor((originY + area.getMinY()) / TILE_SIZE);
+        int maxY = (int) Math.floor((originY + area.getMaxY()) / TILE_SIZE);
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                result.add(new Point(x, y));
+            }
+        }
+        return result;
+    }
+
+    private Future<?> schedule(TileSet set, Point p, int v) {
+        Future<?> future = set.pending.get(p);
+        if (future == null) {
+            synchronized (set) {
+                future = set.pending.get(p);
+                if (future == null && !set.closed) {
+                    FutureTask<Void> task = new FutureTask<>(() -> renderTile(set, p, v), null);
+                    set.pending.put(p, task);
+                    try {
+                        ExecutorHolder.EXECUTOR.execute(task);
+                        future = task;
+                    } catch (RejectedExecutionException e) {
+                        set.pending.remove(p);
+                        Logging.error(e);
+                    }
+                }
+            }
+        }
+        return future;
+    }
+
+    private void renderTile(TileSet set, Point p, int v) {
+        boolean rendered = false;
+        try {
+            if (set.closed) {
+                return;
+            }
+            MapViewState state = mapView.getState();
+            EastNorth origin = state.getForView(0, 0).getEastNorth();
+            double x = p.x * TILE_SIZE - origin.east() / state.getScale();
+            double y = p.y * TILE_SIZE + origin.north() / state.getScale();
+
+            BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            try {
+                g.translate(-x, -y);
+                g.clip(new Rectangle2D.Double(x, y, TILE_SIZE, TILE_SIZE));
+                Rectangle area = new Rectangle((int) Math.floor(x) - MARGIN, (int) Math.floor(y) - MARGIN,
+                        TILE_SIZE + 2 * MARGIN + 1, TILE_SIZE + 2 * MARGIN + 1);
+                mapView.paintLayers(g, mapView.getLatLonBounds(area));
+            } finally {
+                g.dispose();
+            }
+            if (set.closed || mapView.getState() != state) {
+                // the map has been moved while painting, the tile is scheduled again on the next paint
+                return;
+            }
+
+            // a tile rendered again replaces the previous one in its slot, so the file does not grow with every change
+            Storage storage = set.getStorage();
+            Tile previous = set.tiles.get(p);
+            long offset = previous != null ? previous.offset : storage.allocate();
+            storage.write(offset, image);
+            set.tiles.put(p, new Tile(v, offset, downsample(image)));
+            rendered = true;
+        } catch (IOException | RuntimeException e) {
+            if (!set.closed) {
+                Logging.error(e);
+            }
+        } finally {
+            set.pending.remove(p);
+        }
+        if (rendered) {
+            fireTileRendered();
+        }
+    }
+
+    private BufferedImage downsample(BufferedImage image) {
+        int maxSize = Config.getPref().getInt("print.preview.max-size", 2048);
+        double factor = Math.min(1.0, (double) maxSize / Math.max(mapView.getWidth(), mapView.getHeight()));
+        int size = Math.max(1, (int) Math.ceil(TILE_SIZE * factor));
+        // halve the size in each step, otherwise the bilinear interpolation skips pixels
+        BufferedImage result = image;
+        while (result.getWidth() > size) {
+            int next = Math.max(size, result.getWidth() / 2);
+            BufferedImage scaled = new BufferedImage(next, next, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = scaled.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(result, 0, 0, next, next, null);
+            } finally {
+                g.dispose();
+            }
+            result = scaled;
+        }
+        return result;
+    }
+
+    /**
+     * Paint the map from the downsampled tiles.
+     *
+     * Missing and outdated tiles within the clip area are scheduled for
+     * rendering, and the listener is notified when they are ready.
+     *
+     * @param g2d the graphics context, in map view pixels
+     */
+    void paintPreview(Graphics2D g2d) {
+        TileSet set = getTileSet();
+        int v = version.get();
+        Rectangle2D area = new Rectangle(0, 0, mapView.getWidth(), mapView.getHeight());
+        Rectangle clip = g2d.getClipBounds();
+        if (clip != null) {
+            area = area.createIntersection(clip);
+        }
+        if (area.isEmpty()) {
+            return;
+        }
+        EastNorth origin = mapView.getEastNorth(0, 0);
+        double originX = origin.east() / mapView.getScale();
+        double originY = -origin.north() / mapView.getScale();
+        for (Point p : getTiles(area)) {
+            Tile tile = set.tiles.get(p);
+            if (tile == null || tile.version != v) {
+                schedule(set, p, v);
+            }
+            if (tile != null) {
+                g2d.drawImage(tile.preview, (int) Math.round(p.x * TILE_SIZE - originX), (int) Math.round(p.y * TILE_SIZE - originY),
+                        TILE_SIZE, TILE_SIZE, null);
+            }
+        }
+    }
+
+    /**
+     * Render all tiles of the map view which are missing or outdated.
+     *
+     * @param monitor the progress monitor
+     * @return true if all tiles have been rendered, false if cancelled
+     */
+    boolean render(ProgressMonitor monitor) {
+        TileSet set = getTileSet();
+        int v = version.get();
+        List<Point> points = getTiles(new Rectangle(0, 0, mapView.getWidth(), mapView.getHeight()));
+        List<Future<?>> futures = new ArrayList<>();
+        for (Point p : points) {
+            Tile tile = set.tiles.get(p);
+            if (tile == null || tile.version != v) {
+                Future<?> future = schedule(set, p, v);
+                if (future != null) {
+                    futures.add(future);
+                }
+            }
+        }
+
+        monitor.subTask(tr("Rendering the map"));
+        monitor.setTicksCount(points.size());
+        monitor.setTicks(points.size() - futures.size());
+        for (Future<?> future : futures) {
+            if (monitor.isCanceled()) {
+                return false;
+            }
+            try {
+                future.get();
+            } catch (CancellationException | ExecutionException e) {
+                Logging.debug(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            monitor.worked(1);
+        }
+        return !monitor.isCanceled();
+    }
+
+    /**
+     * Paint the map at print resolution, rendering the missing tiles first.
+     *
+     * @param g2d the graphics context, in map view pixels
+     * @param monitor the progress monitor
+     */
+    void paint(Graphics2D g2d, ProgressMonitor monitor) {
+        if (!render(monitor)) {
+            return;
+        }
+        TileSet set = getTileSet();
+        Graphics2D g = (Graphics2D) g2d.create();
+        try {
+            g.clip(new Rectangle(0, 0, mapView.getWidth(), mapView.getHeight()));
+            EastNorth origin = mapView.getEastNorth(0, 0);
+            double originX = origin.east() / mapView.getScale();
+            double originY = -origin.north() / mapView.getScale();
+            for (Point p : getTiles(new Rectangle(0, 0, mapView.getWidth(), mapView.getHeight()))) {
+                Tile tile = set.tiles.get(p);
+                if (tile != null) {
+                    // a new image for each tile, printer graphics may draw the images later
+                    BufferedImage image = set.getStorage().read(tile.offset);
+                    g.drawImage(image, AffineTransform.getTranslateInstance(p.x * TILE_SIZE - originX, p.y * TILE_SIZE - originY), null);
+                }
+            }
+        } catch (IOException e) {
+            Logging.error(e);
+        } finally {
+            g.dispose();
+        }
+    }
+}
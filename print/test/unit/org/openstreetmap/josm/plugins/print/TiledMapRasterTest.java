@@ -0,0 +1,107 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.print;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test of {@link TiledMapRaster} class.
+ */
+class TiledMapRasterTest {
+
+    private static final int TILE_SIZE = TiledMapRaster.TILE_SIZE;
+
+    private static BufferedImage randomTile(Random random) {
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return image;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Unit test of {@link TiledMapRaster.Storage}: tiles are read back as written,
+     * and a tile written again replaces the previous one without growing the file.
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    void testStorage() throws IOException {
+        Random random = new Random(47);
+        try (TiledMapRaster.Storage storage = new TiledMapRaster.Storage()) {
+            BufferedImage first = randomTile(random);
+            BufferedImage second = randomTile(random);
+            long firstOffset = storage.allocate();
+            long secondOffset = storage.allocate();
+            storage.write(secondOffset, second);
+            storage.write(firstOffset, first);
+            assertArrayEquals(pixels(first), pixels(storage.read(firstOffset)));
+            assertArrayEquals(pixels(second), pixels(storage.read(secondOffset)));
+            assertEquals(2L * TiledMapRaster.Storage.SLOT_SIZE, storage.channel.size());
+
+            for (int i = 0; i < 5; i++) {
+                BufferedImage rendered = randomTile(random);
+                storage.write(firstOffset, rendered);
+                assertArrayEquals(pixels(rendered), pixels(storage.read(firstOffset)));
+            }
+            assertArrayEquals(pixels(second), pixels(storage.read(secondOffset)));
+            assertEquals(2L * TiledMapRaster.Storage.SLOT_SIZE, storage.channel.size());
+        }
+    }
+
+    /**
+     * Unit test of {@link TiledMapRaster#getTiles(double, double, Rectangle2D)}
+     */
+    @Test
+    void testGetTiles() {
+        assertEquals(Arrays.asList(new Point(0, 0), new Point(1, 0), new Point(0, 1), new Point(1, 1)),
+                TiledMapRaster.getTiles(0, 0, new Rectangle(0, 0, 1000, 600)));
+        assertEquals(Arrays.asList(new Point(-2, -1)),
+                TiledMapRaster.getTiles(-700, -100, new Rectangle(0, 0, 100, 50)));
+        assertEquals(Arrays.asList(new Point(-1, 3), new Point(0, 3)),
+                TiledMapRaster.getTiles(-10.5, 1600, new Rectangle(0, 0, 20, 20)));
+
+        // the tiles cover the area, and each tile intersects it
+        Random random = new Random(4700);
+        for (int round = 0; round < 1000; round++) {
+            double originX = (random.nextDouble() - 0.5) * 1e6;
+            double originY = (random.nextDouble() - 0.5) * 1e6;
+            Rectangle area = new Rectangle(random.nextInt(100), random.nextInt(100),
+                    1 + random.nextInt(3000), 1 + random.nextInt(3000));
+            List<Point> tiles = TiledMapRaster.getTiles(originX, originY, area);
+            Set<Point> distinct = new HashSet<>(tiles);
+            assertEquals(tiles.size(), distinct.size());
+            for (Point p : tiles) {
+                Rectangle2D tile = new Rectangle2D.Double(p.x * TILE_SIZE - originX, p.y * TILE_SIZE - originY,
+                        TILE_SIZE, TILE_SIZE);
+                assertTrue(tile.getMaxX() >= area.getMinX() && tile.getMinX() <= area.getMaxX()
+                        && tile.getMaxY() >= area.getMinY() && tile.getMinY() <= area.getMaxY(), p + " " + area);
+            }
+            for (int i = 0; i < 20; i++) {
+                double x = area.getMinX() + random.nextDouble() * area.getWidth();
+                double y = area.getMinY() + random.nextDouble() * area.getHeight();
+                Point p = new Point((int) Math.floor((originX + x) / TILE_SIZE), (int) Math.floor((originY + y) / TILE_SIZE));
+                assertTrue(distinct.contains(p), p + " " + area);
+            }
+        }
+    }
+}
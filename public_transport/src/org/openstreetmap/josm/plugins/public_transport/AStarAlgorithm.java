@@ -1,10 +1,8 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.public_transport;
 
-import java.util.Iterator;
-import java.util.Map;
+import java.util.ArrayList;
 import java.util.TreeMap;
-import java.util.TreeSet;
 import java.util.Vector;
 
 public abstract class AStarAlgorithm {
@@ -33,89 +31,56 @@ public abstract class AStarAlgorithm {
     public AStarAlgorithm(Vertex begin, Vertex end) {
         this.begin = begin;
         this.end = end;
-        openList = new TreeMap<>();
-        closedList = new TreeSet<>();
-        pathTail = new TreeMap<>();
     }
 
-    public Vertex determineCurrentStart() {
-        Vertex minVertex = null;
-        double minDist = 0;
-        Iterator<Map.Entry<Vertex, Double>> iter = openList.entrySet().iterator();
-        while (iter.hasNext()) {
-            Map.Entry<Vertex, Double> entry = iter.next();
-            double distance = entry.getValue().doubleValue() + estimateDistance(entry.getKey());
-            if (minVertex == null || distance < minDist) {
-                minDist = distance;
-                minVertex = entry.getKey();
-            }
-        }
-        if (minVertex != null) {
-            System.out.print(openList.get(minVertex).doubleValue());
-            System.out.print("\t");
-            System.out.println(minDist);
-        }
+    Vector<Edge> shortestPath() {
+        VertexGraph graph = new VertexGraph();
+        int[] path = new AStarSearch(graph).shortestPath(graph.idOf(begin), graph.idOf(end));
+        if (path == null)
+            return null;
 
-        return minVertex;
+        Vector<Edge> result = new Vector<>(path.length);
+        for (int edge : path) {
+            result.add(graph.edges.get(edge));
+        }
+        return result;
     }
 
-    Vector<Edge> shortestPath() {
-        // Travel through the network
-        Vertex currentStart = begin;
-        openList.put(currentStart, 0.0);
-        while (currentStart != null && !currentStart.equals(end)) {
-            double startDistance = openList.get(currentStart).doubleValue();
-
-            // Mark currentStart as visited.
-            openList.remove(currentStart);
-            closedList.add(currentStart);
-
-            Iterator<Edge> neighbors = getNeighbors(currentStart).iterator();
-            while (neighbors.hasNext()) {
-                Edge edge = neighbors.next();
-
-                // Don't walk back.
-                if (closedList.contains(edge.getEnd()))
-                    continue;
-
-                // Update entry in openList
-                Double knownDistance = openList.get(edge.getEnd());
-                double distance = startDistance + edge.getLength();
-
-                if (knownDistance == null || distance < knownDistance.doubleValue()) {
-                    openList.put(edge.getEnd(), distance);
-                    pathTail.put(edge.getEnd(), edge);
-                }
-            }
+    /**
+     * Numbers the vertices in the order they are discovered, so the search can work on ids.
+     */
+    private class VertexGraph implements AStarSearch.Graph {
+        private final TreeMap<Vertex, Integer> vertexIds = new TreeMap<>();
 
-            currentStart = determineCurrentStart();
-        }
+        private final ArrayList<Vertex> vertices = new ArrayList<>();
 
-        if (currentStart == null)
-            return null;
+        private final ArrayList<Edge> edges = new ArrayList<>();
 
-        // Reconstruct the found path
-        Vector<Edge> backwards = new Vector<>();
-        Vertex currentEnd = end;
-        while (!currentEnd.equals(begin)) {
-            backwards.add(pathTail.get(currentEnd));
-            currentEnd = pathTail.get(currentEnd).getBegin();
+        int idOf(Vertex vertex) {
+            Integer id = vertexIds.get(vertex);
+            if (id == null) {
+                id = vertices.size();
+                vertexIds.put(vertex, id);
+                vertices.add(vertex);
+            }
+            return id;
         }
 
-        Vector<Edge> result = new Vector<>();
-        for (int i = backwards.size() - 1; i >= 0; --i) {
-            result.add(backwards.elementAt(i));
+        @Override
+        public void visitEdges(int vertex, AStarSearch search) {
+            for (Edge edge : getNeighbors(vertices.get(vertex))) {
+                edges.add(edge);
+                search.relax(vertex, idOf(edge.getEnd()), edges.size() - 1, edge.getLength());
+            }
+        }
+
+        @Override
+        public double estimateDistance(int vertex) {
+            return AStarAlgorithm.this.estimateDistance(vertices.get(vertex));
         }
-        return result;
     }
 
     protected Vertex begin;
 
     protected Vertex end;
-
-    private TreeSet<Vertex> closedList;
-
-    private TreeMap<Vertex, Double> openList;
-
-    private TreeMap<Vertex, Edge> pathTail;
 }
@@ -0,0 +1,149 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.public_transport;
+
+import java.util.Arrays;
+
+/**
+ * A* search on a graph whose vertices and edges are identified by int ids.
+ * <p>
+ * Distances and predecessors are held in arrays indexed by vertex id and the open list is an {@link IndexedMinHeap}.
+ * The arrays are reused by subsequent searches: entries are only valid if they have been written by the current
+ * search, so a short search on a large graph does not pay for clearing them.
+ */
+public class AStarSearch {
+
+    /**
+     * The graph to search.
+     */
+    public interface Graph {
+        /**
+         * Reports the edges leaving a vertex by calling {@link AStarSearch#relax} for each of them.
+         * @param vertex the vertex id
+         * @param search the running search
+         */
+        void visitEdges(int vertex, AStarSearch search);
+
+        /**
+         * Estimates the remaining distance from a vertex to the end of the current search.
+         * @param vertex the vertex id
+         * @return the estimated distance, which must not be larger than the real one
+         */
+        double estimateDistance(int vertex);
+    }
+
+    private final Graph graph;
+
+    private final IndexedMinHeap openList = new IndexedMinHeap(16);
+
+    private double[] distances = new double[16];
+
+    private double[] estimates = new double[16];
+
+    private int[] predecessors = new int[16];
+
+    private int[] predecessorEdges = new int[16];
+
+    /** vertices with {@code seen[v] == generation} have a valid distance and predecessor */
+    private int[] seen = new int[16];
+
+    /** vertices with {@code closed[v] == generation} have their final distance */
+    private int[] closed = new int[16];
+
+    private int generation;
+
+    /**
+     * Constructs a new {@code AStarSearch}.
+     * @param graph the graph to search
+     */
+    public AStarSearch(Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Determines a shortest path.
+     * @param begin the id of the first vertex
+     * @param end the id of the last vertex
+     * @return the ids of the edges along the path or {@code null} if {@code end} cannot be reached
+     */
+    public int[] shortestPath(int begin, int end) {
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(seen, 0);
+            Arrays.fill(closed, 0);
+            generation = 0;
+        }
+        ++generation;
+        openList.clear();
+
+        ensureCapacity(Math.max(begin, end));
+        seen[begin] = generation;
+        distances[begin] = 0;
+        estimates[begin] = graph.estimateDistance(begin);
+        predecessors[begin] = -1;
+        openList.offer(begin, estimates[begin]);
+        while (!openList.isEmpty()) {
+            int vertex = openList.poll();
+            if (vertex == end)
+                return path(end);
+            closed[vertex] = generation;
+            graph.visitEdges(vertex, this);
+        }
+        return null;
+    }
+
+    /**
+     * Processes an edge of the vertex currently expanded. To be called from {@link Graph#visitEdges}.
+     * @param from the id of the vertex being expanded
+     * @param to the id of the vertex the edge leads to
+     * @param edge the id of the edge
+     * @param length the length of the edge
+     */
+    public void relax(int from, int to, int edge, double length) {
+        ensureCapacity(to);
+        if (closed[to] == generation)
+            return;
+        double distance = distances[from] + length;
+        if (seen[to] != generation) {
+            seen[to] = generation;
+            estimates[to] = graph.estimateDistance(to);
+        } else if (distance >= distances[to]) {
+            return;
+        }
+        distances[to] = distance;
+        predecessors[to] = from;
+        predecessorEdges[to] = edge;
+        openList.offer(to, distance + estimates[to]);
+    }
+
+    /**
+     * Returns the distance of a vertex found by the last search.
+     * @param vertex the vertex id
+     * @return the length of the shortest known path to {@code vertex} or {@link Double#POSITIVE_INFINITY}
+     */
+    public double getDistance(int vertex) {
+        return vertex < seen.length && seen[vertex] == generation ? distances[vertex] : Double.POSITIVE_INFINITY;
+    }
+
+    private int[] path(int end) {
+        int count = 0;
+        for (int vertex = end; predecessors[vertex] >= 0; vertex = predecessors[vertex]) {
+            ++count;
+        }
+        int[] path = new int[count];
+        for (int vertex = end; predecessors[vertex] >= 0; vertex = predecessors[vertex]) {
+            path[--count] = predecessorEdges[vertex];
+        }
+        return path;
+    }
+
+    private void ensureCapacity(int vertex) {
+        if (vertex < seen.length)
+            return;
+        int length = Math.max(vertex + 1, 2 * seen.length);
+        distances = Arrays.copyOf(distances, length);
+        estimates = Arrays.copyOf(estimates, length);
+        predecessors = Arrays.copyOf(predecessors, length);
+        predecessorEdges = Arrays.copyOf(predecessorEdges, length);
+        seen = Arrays.copyOf(seen, length);
+        closed = Arrays.copyOf(closed, length);
+    }
+}
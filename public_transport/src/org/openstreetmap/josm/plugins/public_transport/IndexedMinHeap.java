@@ -0,0 +1,154 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.public_transport;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Binary min-heap of int ids with double keys. The key of a queued id can be lowered in place,
+ * which is what Dijkstra and A* need for their open list.
+ */
+public class IndexedMinHeap {
+
+    private int[] ids;
+
+    private double[] keys;
+
+    /** heap position of each id, -1 if the id is not queued */
+    private int[] positions;
+
+    private int size;
+
+    /**
+     * Constructs a new {@code IndexedMinHeap}.
+     * @param capacity the expected number of distinct ids, the heap grows as needed
+     */
+    public IndexedMinHeap(int capacity) {
+        capacity = Math.max(capacity, 1);
+        ids = new int[capacity];
+        keys = new double[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        return id < positions.length && positions[id] >= 0;
+    }
+
+    /**
+     * Queues an id or lowers its key if it is already queued with a higher key.
+     * @param id the id, must not be negative
+     * @param key the key
+     * @return {@code true} if the heap has been changed
+     */
+    public boolean offer(int id, double key) {
+        if (id >= positions.length) {
+            int oldLength = positions.length;
+            positions = Arrays.copyOf(positions, Math.max(id + 1, 2 * oldLength));
+            Arrays.fill(positions, oldLength, positions.length, -1);
+        }
+        int pos = positions[id];
+        if (pos < 0) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, 2 * size);
+                keys = Arrays.copyOf(keys, 2 * size);
+            }
+            pos = size++;
+        } else if (key >= keys[pos]) {
+            return false;
+        }
+        siftUp(pos, id, key);
+        return true;
+    }
+
+    /**
+     * Returns the id with the lowest key without removing it.
+     * @return the id with the lowest key
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public int peek() {
+        if (size == 0)
+            throw new NoSuchElementException();
+        return ids[0];
+    }
+
+    /**
+     * Returns the lowest key.
+     * @return the key of {@link #peek()}
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public double peekKey() {
+        if (size == 0)
+            throw new NoSuchElementException();
+        return keys[0];
+    }
+
+    /**
+     * Removes the id with the lowest key.
+     * @return the removed id
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public int poll() {
+        int id = peek();
+        positions[id] = -1;
+        --size;
+        if (size > 0)
+            siftDown(0, ids[size], keys[size]);
+        return id;
+    }
+
+    /**
+     * Removes all ids. Takes time proportional to the number of queued ids only.
+     */
+    public void clear() {
+        for (int i = 0; i < size; ++i) {
+            positions[ids[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int pos, int id, double key) {
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (keys[parent] <= key)
+                break;
+            move(parent, pos);
+            pos = parent;
+        }
+        place(pos, id, key);
+    }
+
+    private void siftDown(int pos, int id, double key) {
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child])
+                ++child;
+            if (key <= keys[child])
+                break;
+            move(child, pos);
+            pos = child;
+        }
+        place(pos, id, key);
+    }
+
+    private void move(int from, int to) {
+        ids[to] = ids[from];
+        keys[to] = keys[from];
+        positions[ids[to]] = to;
+    }
+
+    private void place(int pos, int id, double key) {
+        ids[pos] = id;
+        keys[pos] = key;
+        positions[id] = pos;
+    }
+}
@@ -1,19 +1,20 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.public_transport;
 
-import java.util.Iterator;
 import java.util.Objects;
-import java.util.TreeMap;
-import java.util.TreeSet;
 import java.util.Vector;
 
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.gui.MainApplication;
 
 public class PublicTransportAStar extends AStarAlgorithm {
     public PublicTransportAStar(Node start, Node end) {
         super(new NodeVertex(start), new NodeVertex(end));
+        ds = MainApplication.getLayerManager().getEditDataSet();
+        graph = RoutingGraph.get(ds);
     }
 
     public static class NodeVertex extends AStarAlgorithm.Vertex {
@@ -83,56 +84,43 @@ public class PublicTransportAStar extends AStarAlgorithm {
 
     @Override
     public Vector<AStarAlgorithm.Edge> getNeighbors(AStarAlgorithm.Vertex vertex) {
-        if (waysPerNode == null) {
-            waysPerNode = new TreeMap<>();
-
-            Iterator<Way> iter = MainApplication.getLayerManager().getEditDataSet().getWays().iterator();
-            while (iter.hasNext()) {
-                Way way = iter.next();
-
-                // Only consider ways that are usable
-                if (!way.isUsable())
-                    continue;
-
-                // Further tests whether the way is eligible.
-
-                for (int i = 0; i < way.getNodesCount(); ++i) {
-                    if (waysPerNode.get(way.getNode(i)) == null)
-                        waysPerNode.put(way.getNode(i), new TreeSet<Way>());
-                    waysPerNode.get(way.getNode(i)).add(way);
-                }
-            }
-        }
-
-        NodeVertex nodeVertex = (NodeVertex) vertex;
-        System.out.println(nodeVertex.node.getUniqueId());
-
         Vector<AStarAlgorithm.Edge> result = new Vector<>();
-        // Determine all ways in which nodeVertex.node is contained.
-        Iterator<Way> iter = waysPerNode.get(nodeVertex.node).iterator();
-        while (iter.hasNext()) {
-            Way way = iter.next();
-
-            // Only consider ways that are usable
-            if (!way.isUsable())
-                continue;
-
-            // Further tests whether the way is eligible.
-
-            for (int i = 0; i < way.getNodesCount(); ++i) {
-                if (way.getNode(i).equals(nodeVertex.node)) {
-                    if (i > 0)
-                        result.add(new PartialWayEdge(way, i, i - 1));
-                    if (i < way.getNodesCount() - 1)
-                        result.add(new PartialWayEdge(way, i, i + 1));
-                }
-            }
+        int index = graph.indexOf(((NodeVertex) vertex).node);
+        if (index < 0)
+            return result;
+        for (int edge = graph.getFirstEdge(index); edge < graph.getEndEdge(index); ++edge) {
+            result.add(getEdge(edge));
         }
+        return result;
+    }
 
+    @Override
+    Vector<AStarAlgorithm.Edge> shortestPath() {
+        // Search on the cached graph directly instead of through the generic vertices.
+        int beginIndex = graph.indexOf(((NodeVertex) begin).node);
+        int endIndex = graph.indexOf(((NodeVertex) end).node);
+        if (beginIndex < 0 || endIndex < 0)
+            return begin.equals(end) ? new Vector<>() : null;
+
+        int[] path = graph.shortestPath(beginIndex, endIndex);
+        if (path == null)
+            return null;
+
+        Vector<AStarAlgorithm.Edge> result = new Vector<>(path.length);
+        for (int edge : path) {
+            result.add(getEdge(edge));
+        }
         return result;
     }
 
-    TreeMap<Node, TreeSet<Way>> waysPerNode = null;
+    private PartialWayEdge getEdge(int edge) {
+        Way way = (Way) ds.getPrimitiveById(graph.getEdgeWay(edge), OsmPrimitiveType.WAY);
+        return new PartialWayEdge(way, graph.getEdgeBeginIndex(edge), graph.getEdgeEndIndex(edge));
+    }
+
+    private final DataSet ds;
+
+    private final RoutingGraph graph;
 
     @Override
     public double estimateDistance(AStarAlgorithm.Vertex vertex) {
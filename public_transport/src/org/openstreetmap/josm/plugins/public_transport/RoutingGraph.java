@@ -0,0 +1,211 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.public_transport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
+
+/**
+ * Adjacency of the nodes of all usable ways of a dataset.
+ * <p>
+ * Nodes are numbered by their position in the sorted array of node ids. The edges between consecutive way nodes
+ * are stored in both directions, grouped by their first node. A graph is built once per dataset and reused
+ * until the dataset changes. It refers to ways and nodes by id only, so it does not keep the dataset alive.
+ */
+public final class RoutingGraph implements AStarSearch.Graph {
+
+    private static final Map<DataSet, RoutingGraph> CACHE = new WeakHashMap<>();
+
+    private final long[] nodeIds;
+
+    private final LatLon[] coors;
+
+    /** the edges leaving node {@code i} are {@code firstEdges[i]} up to {@code firstEdges[i + 1] - 1} */
+    private final int[] firstEdges;
+
+    private final int[] edgeTargets;
+
+    private final double[] edgeLengths;
+
+    private final long[] edgeWays;
+
+    private final int[] edgeBeginIndices;
+
+    private final int[] edgeEndIndices;
+
+    private final DataSetListenerAdapter listener = new DataSetListenerAdapter(this::invalidate);
+
+    private volatile boolean valid = true;
+
+    private AStarSearch pathSearch;
+
+    private LatLon target;
+
+    /**
+     * Returns the graph of a dataset, building it if the dataset has changed since the last call.
+     * @param ds the dataset
+     * @return the graph of {@code ds}
+     */
+    public static synchronized RoutingGraph get(DataSet ds) {
+        RoutingGraph graph = CACHE.get(ds);
+        if (graph == null || !graph.valid) {
+            graph = new RoutingGraph(ds);
+            CACHE.put(ds, graph);
+            ds.addDataSetListener(graph.listener);
+        }
+        return graph;
+    }
+
+    private RoutingGraph(DataSet ds) {
+        List<Way> ways = new ArrayList<>();
+        int nodeCount = 0;
+        for (Way way : ds.getWays()) {
+            // Only consider ways that are usable
+            if (!way.isUsable() || way.getNodesCount() < 2)
+                continue;
+            ways.add(way);
+            nodeCount += way.getNodesCount();
+        }
+
+        long[] ids = new long[nodeCount];
+        int pos = 0;
+        for (Way way : ways) {
+            for (int i = 0; i < way.getNodesCount(); ++i) {
+                ids[pos++] = way.getNode(i).getUniqueId();
+            }
+        }
+        Arrays.sort(ids);
+        int count = 0;
+        for (int i = 0; i < ids.length; ++i) {
+            if (count == 0 || ids[i] != ids[count - 1])
+                ids[count++] = ids[i];
+        }
+        nodeIds = Arrays.copyOf(ids, count);
+        coors = new LatLon[count];
+
+        firstEdges = new int[count + 1];
+        int edgeCount = 0;
+        for (Way way : ways) {
+            for (int i = 0; i < way.getNodesCount(); ++i) {
+                int node = indexOf(way.getNode(i));
+                coors[node] = way.getNode(i).getCoor();
+                if (i > 0)
+                    ++firstEdges[node + 1];
+                if (i < way.getNodesCount() - 1)
+                    ++firstEdges[node + 1];
+            }
+            edgeCount += 2 * (way.getNodesCount() - 1);
+        }
+        for (int i = 0; i < count; ++i) {
+            firstEdges[i + 1] += firstEdges[i];
+        }
+
+        edgeTargets = new int[edgeCount];
+        edgeLengths = new double[edgeCount];
+        edgeWays = new long[edgeCount];
+        edgeBeginIndices = new int[edgeCount];
+        edgeEndIndices = new int[edgeCount];
+        int[] next = Arrays.copyOf(firstEdges, count);
+        for (Way way : ways) {
+            for (int i = 0; i < way.getNodesCount() - 1; ++i) {
+                int from = indexOf(way.getNode(i));
+                int to = indexOf(way.getNode(i + 1));
+                double length = way.getNode(i).greatCircleDistance(way.getNode(i + 1));
+                addEdge(next[from]++, to, length, way.getUniqueId(), i, i + 1);
+                addEdge(next[to]++, from, length, way.getUniqueId(), i + 1, i);
+            }
+        }
+    }
+
+    private void addEdge(int edge, int to, double length, long way, int beginIndex, int endIndex) {
+        edgeTargets[edge] = to;
+        edgeLengths[edge] = length;
+        edgeWays[edge] = way;
+        edgeBeginIndices[edge] = beginIndex;
+        edgeEndIndices[edge] = endIndex;
+    }
+
+    private void invalidate(AbstractDatasetChangedEvent event) {
+        valid = false;
+        event.getDataset().removeDataSetListener(listener);
+    }
+
+    /**
+     * Returns the vertex id of a node.
+     * @param node the node
+     * @return the vertex id or -1 if the node is not part of a usable way
+     */
+    public int indexOf(Node node) {
+        int index = Arrays.binarySearch(nodeIds, node.getUniqueId());
+        return index >= 0 ? index : -1;
+    }
+
+    public int getFirstEdge(int vertex) {
+        return firstEdges[vertex];
+    }
+
+    public int getEndEdge(int vertex) {
+        return firstEdges[vertex + 1];
+    }
+
+    /**
+     * Returns the id of the way an edge belongs to.
+     * @param edge the edge id
+     * @return the unique id of the way
+     */
+    public long getEdgeWay(int edge) {
+        return edgeWays[edge];
+    }
+
+    /**
+     * Returns the position of the first node of an edge in its way.
+     * @param edge the edge id
+     * @return the node index in the way
+     */
+    public int getEdgeBeginIndex(int edge) {
+        return edgeBeginIndices[edge];
+    }
+
+    /**
+     * Returns the position of the last node of an edge in its way.
+     * @param edge the edge id
+     * @return the node index in the way
+     */
+    public int getEdgeEndIndex(int edge) {
+        return edgeEndIndices[edge];
+    }
+
+    /**
+     * Determines a shortest path along the ways.
+     * @param begin the vertex id of the first node
+     * @param end the vertex id of the last node
+     * @return the edge ids along the path or {@code null} if there is no path
+     */
+    public synchronized int[] shortestPath(int begin, int end) {
+        if (pathSearch == null)
+            pathSearch = new AStarSearch(this);
+        target = coors[end];
+        return pathSearch.shortestPath(begin, end);
+    }
+
+    @Override
+    public void visitEdges(int vertex, AStarSearch search) {
+        for (int edge = firstEdges[vertex]; edge < firstEdges[vertex + 1]; ++edge) {
+            search.relax(vertex, edgeTargets[edge], edge, edgeLengths[edge]);
+        }
+    }
+
+    @Override
+    public double estimateDistance(int vertex) {
+        return coors[vertex].greatCircleDistance(target);
+    }
+}
@@ -4,15 +4,14 @@ package org.openstreetmap.josm.plugins.public_transport.actions;
 import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.awt.event.ActionEvent;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.text.DecimalFormat;
 import java.text.Format;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Vector;
 
 import javax.swing.AbstractAction;
@@ -36,6 +35,9 @@ import org.openstreetmap.josm.plugins.public_transport.commands.GTFSCatchCommand
 import org.openstreetmap.josm.plugins.public_transport.commands.GTFSDeleteCommand;
 import org.openstreetmap.josm.plugins.public_transport.commands.GTFSJoinCommand;
 import org.openstreetmap.josm.plugins.public_transport.dialogs.GTFSImporterDialog;
+import org.openstreetmap.josm.plugins.public_transport.gtfs.GTFSFeed;
+import org.openstreetmap.josm.plugins.public_transport.gtfs.GTFSTableReader;
+import org.openstreetmap.josm.plugins.public_transport.gtfs.StopIndex;
 import org.openstreetmap.josm.plugins.public_transport.models.GTFSStopTableModel;
 import org.openstreetmap.josm.plugins.public_transport.refs.TrackReference;
 import org.openstreetmap.josm.spi.preferences.Config;
@@ -49,8 +51,6 @@ public class GTFSImporterAction extends JosmAction {
 
     private static DefaultListModel<?> tracksListModel = null;
 
-    private static Vector<String> data = null;
-
     private static TrackReference currentTrack = null;
 
     private static GTFSStopTableModel gtfsStopTM = null;
@@ -99,7 +99,8 @@ public class GTFSImporterAction extends JosmAction {
                 curDir = ".";
             }
             JFileChooser fc = new JFileChooser(new File(curDir));
-            fc.setDialogTitle(tr("Select GTFS file (stops.txt)"));
+            fc.setDialogTitle(tr("Select GTFS feed (zip file, directory or stops.txt)"));
+            fc.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
             fc.setMultiSelectionEnabled(false);
 
             int answer = fc.showOpenDialog(MainApplication.getMainFrame());
@@ -111,8 +112,6 @@ public class GTFSImporterAction extends JosmAction {
 
             importData(fc.getSelectedFile());
 
-            refreshData();
-
 /*    } else if ("stopImporter.settingsGPSTimeStart".equals(event.getActionCommand()))
     {
       if ((!inEvent) && (dialog.gpsTimeStartValid()) && (currentTrack != null))
@@ -163,16 +162,58 @@ public class GTFSImporterAction extends JosmAction {
     }
 
     private void importData(final File file) {
-        try (BufferedReader r = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
-            if (data == null)
-                data = new Vector<>();
-            else
-                data.clear();
-
-            while (r.ready()) {
-                data.add(r.readLine());
+        DataSet ds = MainApplication.getLayerManager().getEditDataSet();
+        if (ds == null) {
+            JOptionPane.showMessageDialog(null,
+                    tr("There exists no dataset. Try to download data from the server or open an OSM file."),
+                    tr("No data found"), JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        Vector<Node> existingStops = new Vector<>();
+        Iterator<Node> iter = ds.getNodes().iterator();
+        while (iter.hasNext()) {
+            Node node = iter.next();
+            if ("bus_stop".equals(node.get("highway")))
+                existingStops.add(node);
+        }
+        StopIndex stopIndex = new StopIndex(existingStops, GTFSStopTableModel.NEAR_STOP_DISTANCE);
+
+        try (GTFSFeed feed = new GTFSFeed(file)) {
+            Map<String, String> routeRefs = feed.readRouteRefs();
+            try (GTFSTableReader stops = feed.openTable(GTFSFeed.STOPS)) {
+                if (stops == null || !stops.next()) {
+                    JOptionPane.showMessageDialog(null, tr("The GTFS file was empty."),
+                            tr("No data found"), JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                int idCol = stops.getColumn("stop_id");
+                int nameCol = stops.getColumn("stop_name");
+                int latCol = stops.getColumn("stop_lat");
+                int lonCol = stops.getColumn("stop_lon");
+
+                gtfsStopTM = new GTFSStopTableModel(this);
+                ds.beginUpdate();
+                try {
+                    do {
+                        String id = stops.get(idCol);
+                        LatLon coor;
+                        try {
+                            coor = new LatLon(Double.parseDouble(stops.get(latCol)),
+                                    Double.parseDouble(stops.get(lonCol)));
+                        } catch (NumberFormatException e) {
+                            // stations without position, e.g. generic nodes or boarding areas
+                            Logging.debug("GTFS stop {0} has no valid position", id);
+                            continue;
+                        }
+                        gtfsStopTM.addStop(id, stops.get(nameCol), coor, routeRefs.get(id), stopIndex);
+                    } while (stops.next());
+                } finally {
+                    ds.endUpdate();
+                }
             }
-        } catch (FileNotFoundException e) {
+            dialog.setGTFSStopTableModel(gtfsStopTM);
+        } catch (FileNotFoundException | NoSuchFileException e) {
             Logging.error(e);
             JOptionPane.showMessageDialog(null, tr("File \"{0}\" does not exist", file.getName()));
         } catch (IOException e) {
@@ -181,46 +222,6 @@ public class GTFSImporterAction extends JosmAction {
         }
     }
 
-    private void refreshData() {
-        if (data != null) {
-            Vector<Node> existingStops = new Vector<>();
-
-            DataSet ds = MainApplication.getLayerManager().getEditDataSet();
-            if (ds == null) {
-                JOptionPane.showMessageDialog(null,
-                        tr("There exists no dataset. Try to download data from the server or open an OSM file."),
-                        tr("No data found"), JOptionPane.ERROR_MESSAGE);
-
-                return;
-            } else {
-                Iterator<Node> iter = ds.getNodes().iterator();
-                while (iter.hasNext()) {
-                    Node node = iter.next();
-                    if ("bus_stop".equals(node.get("highway")))
-                        existingStops.add(node);
-                }
-            }
-
-            Iterator<String> iter = data.iterator();
-            if (iter.hasNext())
-                gtfsStopTM = new GTFSStopTableModel(this, iter.next());
-            else {
-                JOptionPane.showMessageDialog(null, tr("The GTFS file was empty."),
-                        tr("No data found"), JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
-            while (iter.hasNext()) {
-                String s = iter.next();
-                gtfsStopTM.addRow(s, existingStops);
-            }
-            dialog.setGTFSStopTableModel(gtfsStopTM);
-        } else {
-            JOptionPane.showMessageDialog(null, tr("The GTFS file was empty."), tr("No data found"),
-                    JOptionPane.ERROR_MESSAGE);
-        }
-    }
-
 //   public void tracksSelectionChanged(int selectedPos)
 //   {
 //     if (selectedPos >= 0)
@@ -245,10 +246,16 @@ public class GTFSImporterAction extends JosmAction {
 //   }
 
     public static Node createNode(LatLon latLon, String id, String name) {
+        return createNode(latLon, id, name, null);
+    }
+
+    public static Node createNode(LatLon latLon, String id, String name, String routeRef) {
         Node node = new Node(latLon);
         node.put("highway", "bus_stop");
         node.put("stop_id", id);
         node.put("name", name);
+        if (routeRef != null && !routeRef.isEmpty())
+            node.put("route_ref", routeRef);
         DataSet ds = MainApplication.getLayerManager().getEditDataSet();
         if (ds == null) {
             JOptionPane.showMessageDialog(null,
@@ -53,7 +53,8 @@ public class GTFSAddCommand extends Command {
             int j = workingLines.elementAt(i).intValue();
             typesForUndo.add((String) gtfsStopTM.getValueAt(j, 2));
             Node node = GTFSImporterAction.createNode(gtfsStopTM.coors.elementAt(j),
-                    (String) gtfsStopTM.getValueAt(j, 0), (String) gtfsStopTM.getValueAt(j, 1));
+                    (String) gtfsStopTM.getValueAt(j, 0), (String) gtfsStopTM.getValueAt(j, 1),
+                    gtfsStopTM.routeRefs.elementAt(j));
             gtfsStopTM.nodes.set(j, node);
             gtfsStopTM.setValueAt(tr("added"), j, 2);
         }
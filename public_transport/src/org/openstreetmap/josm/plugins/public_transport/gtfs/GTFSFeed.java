@@ -0,0 +1,179 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.public_transport.gtfs;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.openstreetmap.josm.tools.AlphanumComparator;
+
+/**
+ * A GTFS feed, given either as zip file, as directory or by its {@code stops.txt}.
+ * <p>
+ * The tables of the feed are not loaded but opened as {@link GTFSTableReader} on demand,
+ * so even large feeds can be processed with little memory.
+ */
+public class GTFSFeed implements Closeable {
+
+    public static final String STOPS = "stops.txt";
+
+    public static final String ROUTES = "routes.txt";
+
+    public static final String TRIPS = "trips.txt";
+
+    public static final String STOP_TIMES = "stop_times.txt";
+
+    private static final int ZIP_SIGNATURE = 0x504b0304;
+
+    private final ZipFile zipFile;
+
+    private final Map<String, ZipEntry> zipEntries = new HashMap<>();
+
+    private final File directory;
+
+    private final File stopsFile;
+
+    /**
+     * Opens a GTFS feed.
+     * @param file a zip file, a directory or a single stops file whose directory contains the other tables
+     * @throws IOException if the zip file cannot be opened
+     */
+    public GTFSFeed(File file) throws IOException {
+        if (file.isDirectory()) {
+            zipFile = null;
+            directory = file;
+            stopsFile = new File(file, STOPS);
+        } else if (isZipFile(file)) {
+            zipFile = new ZipFile(file);
+            directory = null;
+            stopsFile = null;
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+                if (!entry.isDirectory())
+                    zipEntries.putIfAbsent(name, entry);
+            }
+        } else {
+            zipFile = null;
+            directory = file.getAbsoluteFile().getParentFile();
+            stopsFile = file;
+        }
+    }
+
+    private static boolean isZipFile(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file.toPath()))) {
+            return file.length() >= 4 && in.readInt() == ZIP_SIGNATURE;
+        }
+    }
+
+    /**
+     * Opens a table of the feed.
+     * @param name the file name of the table, e.g. {@link #STOPS}
+     * @return a reader positioned before the first record or {@code null} if the feed has no such table
+     * @throws IOException if the table cannot be read
+     */
+    public GTFSTableReader openTable(String name) throws IOException {
+        InputStream in;
+        if (zipFile != null) {
+            ZipEntry entry = zipEntries.get(name);
+            if (entry == null)
+                return null;
+            in = zipFile.getInputStream(entry);
+        } else {
+            File file = STOPS.equals(name) ? stopsFile : new File(directory, name);
+            if (!file.isFile())
+                return null;
+            in = Files.newInputStream(file.toPath());
+        }
+        try {
+            return new GTFSTableReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Determines the routes serving each stop from the routes, trips and stop times of the feed.
+     * The stop times are streamed, so only the routes and the trip to route mapping are held in memory.
+     * @return the {@code route_ref} value per {@code stop_id}, empty if the feed has no timetable
+     * @throws IOException if a table cannot be read
+     */
+    public Map<String, String> readRouteRefs() throws IOException {
+        Map<String, String> routeNames = new HashMap<>();
+        try (GTFSTableReader routes = openTable(ROUTES)) {
+            if (routes == null)
+                return Collections.emptyMap();
+            int idCol = routes.getColumn("route_id");
+            int shortNameCol = routes.getColumn("route_short_name");
+            int longNameCol = routes.getColumn("route_long_name");
+            while (routes.next()) {
+                String name = routes.get(shortNameCol).trim();
+                if (name.isEmpty())
+                    name = routes.get(longNameCol).trim();
+                if (!name.isEmpty())
+                    routeNames.put(routes.get(idCol), name);
+            }
+        }
+
+        Map<String, String> tripRoutes = new HashMap<>();
+        try (GTFSTableReader trips = openTable(TRIPS)) {
+            if (trips == null)
+                return Collections.emptyMap();
+            int tripCol = trips.getColumn("trip_id");
+            int routeCol = trips.getColumn("route_id");
+            while (trips.next()) {
+                String route = routeNames.get(trips.get(routeCol));
+                if (route != null)
+                    tripRoutes.put(trips.get(tripCol), route);
+            }
+        }
+
+        Map<String, Set<String>> stopRoutes = new HashMap<>();
+        try (GTFSTableReader stopTimes = openTable(STOP_TIMES)) {
+            if (stopTimes == null)
+                return Collections.emptyMap();
+            int tripCol = stopTimes.getColumn("trip_id");
+            int stopCol = stopTimes.getColumn("stop_id");
+            // stop times are usually grouped by trip, so the route lookup is done once per trip
+            String lastTrip = null;
+            String route = null;
+            while (stopTimes.next()) {
+                String trip = stopTimes.get(tripCol);
+                if (!trip.equals(lastTrip)) {
+                    lastTrip = trip;
+                    route = tripRoutes.get(trip);
+                }
+                if (route != null)
+                    stopRoutes.computeIfAbsent(stopTimes.get(stopCol),
+                            k -> new TreeSet<>(AlphanumComparator.getInstance())).add(route);
+            }
+        }
+
+        Map<String, String> routeRefs = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : stopRoutes.entrySet()) {
+            routeRefs.put(entry.getKey(), String.join(";", entry.getValue()));
+        }
+        return routeRefs;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (zipFile != null)
+            zipFile.close();
+    }
+}
@@ -0,0 +1,153 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.public_transport.gtfs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams the records of a single GTFS table.
+ * <p>
+ * A GTFS table is a CSV file whose first record names the columns. Fields may be enclosed in double quotes,
+ * a doubled double quote within such a field stands for a literal one. Only the current record is kept in memory.
+ * As the importer always did, ';' and tab are accepted as separators if the header contains no comma.
+ */
+public class GTFSTableReader implements Closeable {
+
+    private final Reader reader;
+
+    private final char[] buffer = new char[8192];
+
+    private int pos;
+
+    private int limit;
+
+    private char separator = ',';
+
+    private final Map<String, Integer> columns = new HashMap<>();
+
+    private final List<String> fields = new ArrayList<>();
+
+    private final StringBuilder field = new StringBuilder();
+
+    /**
+     * Constructs a new {@code GTFSTableReader} and reads the header of the table.
+     * @param reader the source of the table, closed together with this reader
+     * @throws IOException if the header cannot be read
+     */
+    public GTFSTableReader(Reader reader) throws IOException {
+        this.reader = reader;
+        fill();
+        if (limit > 0 && buffer[0] == '\uFEFF')
+            pos = 1;
+        separator = detectSeparator();
+        if (readRecord()) {
+            for (int i = 0; i < fields.size(); ++i) {
+                columns.putIfAbsent(fields.get(i).trim(), i);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the named column.
+     * @param name the column name, e.g. {@code stop_id}
+     * @return the column index or -1 if the table has no such column
+     */
+    public int getColumn(String name) {
+        Integer column = columns.get(name);
+        return column != null ? column : -1;
+    }
+
+    /**
+     * Advances to the next record, skipping empty lines.
+     * @return {@code false} if the end of the table has been reached
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean next() throws IOException {
+        while (readRecord()) {
+            if (fields.size() > 1 || !fields.get(0).isEmpty())
+                return true;
+        }
+        fields.clear();
+        return false;
+    }
+
+    /**
+     * Returns a field of the current record.
+     * @param column the column index as returned by {@link #getColumn}
+     * @return the field value or an empty string if the column or the field does not exist
+     */
+    public String get(int column) {
+        return column >= 0 && column < fields.size() ? fields.get(column) : "";
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private char detectSeparator() {
+        boolean semicolon = false;
+        boolean tab = false;
+        for (int i = pos; i < limit && buffer[i] != '\n'; ++i) {
+            if (buffer[i] == ',')
+                return ',';
+            semicolon |= buffer[i] == ';';
+            tab |= buffer[i] == '\t';
+        }
+        return semicolon ? ';' : tab ? '\t' : ',';
+    }
+
+    private void fill() throws IOException {
+        pos = 0;
+        limit = Math.max(reader.read(buffer, 0, buffer.length), 0);
+    }
+
+    private int read() throws IOException {
+        if (pos == limit) {
+            fill();
+            if (limit == 0)
+                return -1;
+        }
+        return buffer[pos++];
+    }
+
+    private boolean readRecord() throws IOException {
+        fields.clear();
+        field.setLength(0);
+        int c = read();
+        if (c < 0)
+            return false;
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c < 0)
+                    break;
+                if (c == '"') {
+                    c = read();
+                    if (c != '"') {
+                        quoted = false;
+                        continue;
+                    }
+                }
+                field.append((char) c);
+            } else if (c < 0 || c == '\n') {
+                break;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == separator) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = read();
+        }
+        fields.add(field.toString());
+        return true;
+    }
+}
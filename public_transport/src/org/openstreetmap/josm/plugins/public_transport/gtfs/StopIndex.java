@@ -0,0 +1,112 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.public_transport.gtfs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.projection.Ellipsoid;
+
+/**
+ * Grid of stop nodes to find stops near a coordinate.
+ * <p>
+ * The index is built once from the existing stops. A query only compares against the stops in the grid cells
+ * that may lie within the requested distance, so matching a whole feed no longer compares every feed stop
+ * with every existing stop.
+ */
+public class StopIndex {
+
+    private final double cellSize;
+
+    private final int columns;
+
+    private final Map<Long, List<Node>> cells = new HashMap<>();
+
+    /**
+     * Constructs a new {@code StopIndex}.
+     * @param stops the stops to index, nodes with unknown coordinates are skipped
+     * @param distance the distance in meters that is typically queried, used as grid cell size
+     */
+    public StopIndex(Collection<Node> stops, double distance) {
+        // the columns divide the full circle evenly, so that column -1 is the last column
+        columns = Math.max((int) Math.floor(360 / Math.max(Math.toDegrees(distance / Ellipsoid.WGS84.a), 1e-6)), 1);
+        cellSize = 360.0 / columns;
+        for (Node stop : stops) {
+            if (stop.isLatLonKnown())
+                cells.computeIfAbsent(key(row(stop.lat()), column(stop.lon())), k -> new ArrayList<>()).add(stop);
+        }
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor((lat + 90) / cellSize);
+    }
+
+    private int column(double lon) {
+        return Math.floorMod((int) Math.floor((lon + 180) / cellSize), columns);
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    /**
+     * Determines whether an indexed stop is closer than the given distance.
+     * @param coor the coordinate to look around
+     * @param distance the distance in meters, as measured by {@link LatLon#greatCircleDistance}
+     * @return {@code true} if at least one stop is closer than {@code distance} to {@code coor}
+     */
+    public boolean hasStopWithin(LatLon coor, double distance) {
+        if (cells.isEmpty())
+            return false;
+        // the latitude differs by at most the central angle, the longitude by at most
+        // the central angle widened by the cosine of the latitude farthest from the equator
+        double angle = distance / Ellipsoid.WGS84.a;
+        double dLat = Math.toDegrees(angle);
+        double maxLat = Math.min(Math.abs(coor.lat()) + dLat, 90);
+        double sinLon = Math.sin(Math.min(angle, Math.PI) / 2) / Math.cos(Math.toRadians(maxLat));
+        int minColumn;
+        int maxColumn;
+        if (sinLon >= 1 || Double.isNaN(sinLon)) {
+            minColumn = 0;
+            maxColumn = columns - 1;
+        } else {
+            double dLon = Math.toDegrees(2 * Math.asin(sinLon));
+            minColumn = (int) Math.floor((coor.lon() - dLon + 180) / cellSize);
+            maxColumn = (int) Math.floor((coor.lon() + dLon + 180) / cellSize);
+            if (maxColumn - minColumn >= columns) {
+                minColumn = 0;
+                maxColumn = columns - 1;
+            }
+        }
+        int minRow = row(coor.lat() - dLat);
+        int maxRow = row(coor.lat() + dLat);
+        if ((double) (maxRow - minRow + 1) * (maxColumn - minColumn + 1) > cells.size()) {
+            // near the poles, fewer cells are occupied than would be looked up
+            for (List<Node> cell : cells.values()) {
+                if (hasStopWithin(cell, coor, distance))
+                    return true;
+            }
+            return false;
+        }
+        for (int row = minRow; row <= maxRow; ++row) {
+            for (int column = minColumn; column <= maxColumn; ++column) {
+                List<Node> cell = cells.get(key(row, Math.floorMod(column, columns)));
+                if (cell != null && hasStopWithin(cell, coor, distance))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasStopWithin(List<Node> cell, LatLon coor, double distance) {
+        for (Node stop : cell) {
+            if (coor.greatCircleDistance(stop) < distance)
+                return true;
+        }
+        return false;
+    }
+}
@@ -14,62 +14,27 @@ import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.plugins.public_transport.actions.GTFSImporterAction;
+import org.openstreetmap.josm.plugins.public_transport.gtfs.StopIndex;
 
 /**
  * GTFS stop table model
  */
 public class GTFSStopTableModel extends DefaultTableModel {
 
+    /** Existing stops closer than this distance in meters keep a GTFS stop from being added */
+    public static final double NEAR_STOP_DISTANCE = 1000;
+
     public Vector<Node> nodes = new Vector<>();
 
     public Vector<LatLon> coors = new Vector<>();
 
-    private int idCol = -1;
-
-    private int nameCol = -1;
-
-    private int latCol = -1;
-
-    private int lonCol = -1;
-
-    private char separator = ',';
-
-    public GTFSStopTableModel(GTFSImporterAction controller, String columnConfig) {
-        int pos = columnConfig.indexOf(separator);
-        if (pos == -1) {
-            separator = ';';
-            pos = columnConfig.indexOf(separator);
-        }
-        if (pos == -1) {
-            separator = '\t';
-            pos = columnConfig.indexOf(separator);
-        }
-        int oldPos = 0;
-        int i = 0;
-        while (pos > -1) {
-            String title = stripQuot(columnConfig.substring(oldPos, pos));
-            if ("stop_id".equals(title))
-                idCol = i;
-            else if ("stop_name".equals(title))
-                nameCol = i;
-            else if ("stop_lat".equals(title))
-                latCol = i;
-            else if ("stop_lon".equals(title))
-                lonCol = i;
-            ++i;
-            oldPos = pos + 1;
-            pos = columnConfig.indexOf(separator, oldPos);
-        }
-        String title = columnConfig.substring(oldPos);
-        if ("stop_id".equals(title))
-            idCol = i;
-        else if ("stop_name".equals(title))
-            nameCol = i;
-        else if ("stop_lat".equals(title))
-            latCol = i;
-        else if ("stop_lon".equals(title))
-            lonCol = i;
+    public Vector<String> routeRefs = new Vector<>();
 
+    /**
+     * Constructs a new {@code GTFSStopTableModel}.
+     * @param controller the importer action
+     */
+    public GTFSStopTableModel(GTFSImporterAction controller) {
         addColumn(tr("Id"));
         addColumn(tr("Name"));
         addColumn(tr("State"));
@@ -90,76 +55,22 @@ public class GTFSStopTableModel extends DefaultTableModel {
         throw new UnsupportedOperationException();
     }
 
-    public void addRow(String s) {
-        insertRow(-1, s, new Vector<Node>());
-    }
-
-    public void addRow(String s, Vector<Node> existingStops) {
-        insertRow(-1, s, existingStops);
+    public void addStop(String id, String name, LatLon coor, String routeRef, StopIndex existingStops) {
+        insertStop(-1, id, name, coor, routeRef, existingStops);
     }
 
     /**
-     * tokenizes a line as follows: any comma outside a pair of double quotation marks is taken as field separator.
-     * In particular, neither \" nor \, have a special meaning.
-     * @param s the string to tokenize
-     * @param startPos  the position of the last field separator plus 1 or the value 0
-     * @return the position of the next field separator, if any. Otherwise it returns -1
+     * inserts a GTFS stop. A node is created for the stop unless it lies outside the downloaded area
+     * or an existing stop is closer than {@link #NEAR_STOP_DISTANCE}
+     * @param insPos the row to insert at or -1 to append
+     * @param id the GTFS stop id
+     * @param name the stop name
+     * @param coor the stop position
+     * @param routeRef the routes serving the stop or {@code null}
+     * @param existingStops the stops already present in the dataset
      */
-    private int tokenize(String s, int startPos) {
-        int pos = startPos;
-        boolean insideDoubleQuoted = false;
-        while (pos < s.length()) {
-            if ('"' == s.charAt(pos))
-                insideDoubleQuoted = !insideDoubleQuoted;
-            else if (separator == s.charAt(pos) && !insideDoubleQuoted)
-                break;
-            ++pos;
-        }
-        if (pos < s.length())
-            return pos;
-        else
-            return -1;
-    }
-
-    private String stripQuot(String s) {
-        int pos = s.indexOf('"');
-        while (pos > -1) {
-            s = s.substring(0, pos) + s.substring(pos + 1);
-            pos = s.indexOf('"');
-        }
-        return s;
-    }
-
-    public void insertRow(int insPos, String s, Vector<Node> existingStops) {
-        String[] buf = {"", "", tr("pending")};
-        int pos = tokenize(s, 0);
-        int oldPos = 0;
-        int i = 0;
-        double lat = 0;
-        double lon = 0;
-        while (pos > -1) {
-            if (i == idCol)
-                buf[0] = stripQuot(s.substring(oldPos, pos));
-            else if (i == nameCol)
-                buf[1] = stripQuot(s.substring(oldPos, pos));
-            else if (i == latCol)
-                lat = Double.parseDouble(stripQuot(s.substring(oldPos, pos)));
-            else if (i == lonCol)
-                lon = Double.parseDouble(stripQuot(s.substring(oldPos, pos)));
-            ++i;
-            oldPos = pos + 1;
-            pos = tokenize(s, oldPos);
-        }
-        if (i == idCol)
-            buf[0] = stripQuot(s.substring(oldPos));
-        else if (i == nameCol)
-            buf[1] = stripQuot(s.substring(oldPos));
-        else if (i == latCol)
-            lat = Double.parseDouble(stripQuot(s.substring(oldPos)));
-        else if (i == lonCol)
-            lon = Double.parseDouble(stripQuot(s.substring(oldPos)));
-
-        LatLon coor = new LatLon(lat, lon);
+    public void insertStop(int insPos, String id, String name, LatLon coor, String routeRef, StopIndex existingStops) {
+        String[] buf = {id, name, tr("pending")};
 
         DataSet ds = MainApplication.getLayerManager().getEditDataSet();
         if (ds != null) {
@@ -175,41 +86,37 @@ public class GTFSStopTableModel extends DefaultTableModel {
                 buf[2] = tr("outside");
         }
 
-        boolean nearBusStop = false;
-        Iterator<Node> iter = existingStops.iterator();
-        while (iter.hasNext()) {
-            Node node = iter.next();
-            if (coor.greatCircleDistance(node) < 1000) {
-                nearBusStop = true;
-                break;
-            }
-        }
+        boolean nearBusStop = existingStops.hasStopWithin(coor, NEAR_STOP_DISTANCE);
 
         if (insPos == -1) {
             if (nearBusStop || !tr("pending").equals(buf[2]))
                 nodes.addElement(null);
             else {
-                Node node = GTFSImporterAction.createNode(coor, buf[0], buf[1]);
+                Node node = GTFSImporterAction.createNode(coor, buf[0], buf[1], routeRef);
                 nodes.addElement(node);
                 buf[2] = tr("added");
             }
             coors.addElement(coor);
+            routeRefs.addElement(routeRef);
             super.addRow(buf);
         } else {
             if (nearBusStop || !tr("pending").equals(buf[2]))
                 nodes.insertElementAt(null, insPos);
             else {
-                Node node = GTFSImporterAction.createNode(coor, buf[0], buf[1]);
+                Node node = GTFSImporterAction.createNode(coor, buf[0], buf[1], routeRef);
                 nodes.insertElementAt(node, insPos);
                 buf[2] = tr("added");
             }
             coors.insertElementAt(coor, insPos);
+            routeRefs.insertElementAt(routeRef, insPos);
             super.insertRow(insPos, buf);
         }
     }
 
     public void clear() {
         nodes.clear();
+        coors.clear();
+        routeRefs.clear();
         super.setRowCount(0);
     }
 }
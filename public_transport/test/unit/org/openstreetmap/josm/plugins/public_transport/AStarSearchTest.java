@@ -0,0 +1,184 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.public_transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test of {@link AStarSearch}
+ */
+class AStarSearchTest {
+
+    /**
+     * Points in the plane, connected by edges at least as long as the straight line between their ends.
+     */
+    private static final class PlaneGraph implements AStarSearch.Graph {
+        private final double[] x;
+        private final double[] y;
+        private final List<int[]> edges = new ArrayList<>();
+        private final List<Double> lengths = new ArrayList<>();
+        private final List<List<Integer>> outgoing = new ArrayList<>();
+        private int target;
+
+        PlaneGraph(double[] x, double[] y) {
+            this.x = x;
+            this.y = y;
+            for (int i = 0; i < x.length; ++i) {
+                outgoing.add(new ArrayList<>());
+            }
+        }
+
+        void addEdge(int from, int to, double detour) {
+            double length = Math.hypot(x[to] - x[from], y[to] - y[from]) * detour;
+            for (int[] ends : Arrays.asList(new int[] {from, to}, new int[] {to, from})) {
+                outgoing.get(ends[0]).add(edges.size());
+                edges.add(ends);
+                lengths.add(length);
+            }
+        }
+
+        int[] shortestPath(AStarSearch search, int begin, int end) {
+            target = end;
+            return search.shortestPath(begin, end);
+        }
+
+        @Override
+        public void visitEdges(int vertex, AStarSearch search) {
+            for (int edge : outgoing.get(vertex)) {
+                search.relax(vertex, edges.get(edge)[1], edge, lengths.get(edge));
+            }
+        }
+
+        @Override
+        public double estimateDistance(int vertex) {
+            return Math.hypot(x[target] - x[vertex], y[target] - y[vertex]);
+        }
+
+        /**
+         * Dijkstra's algorithm without heuristic and with a plain priority queue, as reference.
+         */
+        double dijkstra(int begin, int end) {
+            double[] distances = new double[x.length];
+            Arrays.fill(distances, Double.POSITIVE_INFINITY);
+            distances[begin] = 0;
+            PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+            queue.add(new double[] {0, begin});
+            while (!queue.isEmpty()) {
+                double[] head = queue.poll();
+                int vertex = (int) head[1];
+                if (head[0] > distances[vertex])
+                    continue;
+                if (vertex == end)
+                    break;
+                for (int edge : outgoing.get(vertex)) {
+                    int to = edges.get(edge)[1];
+                    double distance = distances[vertex] + lengths.get(edge);
+                    if (distance < distances[to]) {
+                        distances[to] = distance;
+                        queue.add(new double[] {distance, to});
+                    }
+                }
+            }
+            return distances[end];
+        }
+
+        /**
+         * Checks that the edges form a path from {@code begin} to {@code end} and returns its length.
+         */
+        double pathLength(int[] path, int begin, int end) {
+            double length = 0;
+            int vertex = begin;
+            for (int edge : path) {
+                assertEquals(vertex, edges.get(edge)[0]);
+                vertex = edges.get(edge)[1];
+                length += lengths.get(edge);
+            }
+            assertEquals(end, vertex);
+            return length;
+        }
+    }
+
+    private static PlaneGraph randomGraph(Random random, int vertices, int edges) {
+        double[] x = new double[vertices];
+        double[] y = new double[vertices];
+        for (int i = 0; i < vertices; ++i) {
+            x[i] = random.nextDouble();
+            y[i] = random.nextDouble();
+        }
+        PlaneGraph graph = new PlaneGraph(x, y);
+        for (int i = 0; i < edges; ++i) {
+            graph.addEdge(random.nextInt(vertices), random.nextInt(vertices), 1 + random.nextDouble());
+        }
+        return graph;
+    }
+
+    /**
+     * The paths found on random graphs are as short as those found by Dijkstra's algorithm.
+     * The same search is reused for all queries of a graph.
+     */
+    @Test
+    void testRandomGraphs() {
+        Random random = new Random(2024);
+        for (int round = 0; round < 50; ++round) {
+            int vertices = 2 + random.nextInt(300);
+            PlaneGraph graph = randomGraph(random, vertices, random.nextInt(3 * vertices));
+            AStarSearch search = new AStarSearch(graph);
+            for (int query = 0; query < 20; ++query) {
+                int begin = random.nextInt(vertices);
+                int end = random.nextInt(vertices);
+                double expected = graph.dijkstra(begin, end);
+                int[] path = graph.shortestPath(search, begin, end);
+                if (Double.isInfinite(expected)) {
+                    assertNull(path);
+                } else {
+                    assertNotNull(path);
+                    assertEquals(expected, graph.pathLength(path, begin, end), 1e-9);
+                    assertEquals(expected, search.getDistance(end), 1e-9);
+                }
+            }
+        }
+    }
+
+    /**
+     * Routes along a chain of 10 up to 10,000 nodes with shortcuts, the lengths of the routes built by the plugin.
+     */
+    @Test
+    void testRouteLengths() {
+        Random random = new Random(10);
+        for (int nodes = 10; nodes <= 10_000; nodes *= 10) {
+            double[] x = new double[nodes];
+            double[] y = new double[nodes];
+            for (int i = 1; i < nodes; ++i) {
+                x[i] = x[i - 1] + random.nextDouble();
+                y[i] = y[i - 1] + random.nextDouble() - 0.5;
+            }
+            PlaneGraph graph = new PlaneGraph(x, y);
+            for (int i = 1; i < nodes; ++i) {
+                graph.addEdge(i - 1, i, 1);
+                if (i > 5 && random.nextInt(4) == 0)
+                    graph.addEdge(i - 1 - random.nextInt(5), i, 1 + random.nextDouble());
+            }
+            int[] path = graph.shortestPath(new AStarSearch(graph), 0, nodes - 1);
+            assertNotNull(path);
+            assertEquals(graph.dijkstra(0, nodes - 1), graph.pathLength(path, 0, nodes - 1), 1e-9);
+        }
+    }
+
+    /**
+     * A path from a vertex to itself has no edges.
+     */
+    @Test
+    void testSameVertex() {
+        PlaneGraph graph = randomGraph(new Random(1), 10, 20);
+        assertEquals(0, graph.shortestPath(new AStarSearch(graph), 3, 3).length);
+    }
+}
@@ -0,0 +1,102 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.public_transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test of {@link IndexedMinHeap}
+ */
+class IndexedMinHeapTest {
+
+    /**
+     * Ids are removed in the order of their keys.
+     */
+    @Test
+    void testOrdering() {
+        Random random = new Random(42);
+        IndexedMinHeap heap = new IndexedMinHeap(1);
+        double[] keys = new double[1000];
+        for (int id = 0; id < keys.length; ++id) {
+            keys[id] = random.nextInt(100);
+            assertTrue(heap.offer(id, keys[id]));
+        }
+        assertEquals(keys.length, heap.size());
+
+        double[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        for (double key : sorted) {
+            assertEquals(key, heap.peekKey());
+            int id = heap.poll();
+            assertEquals(key, keys[id]);
+            assertFalse(heap.contains(id));
+        }
+        assertTrue(heap.isEmpty());
+        assertThrows(NoSuchElementException.class, heap::poll);
+    }
+
+    /**
+     * Offering a lower key moves a queued id forward, offering a higher key does nothing.
+     */
+    @Test
+    void testDecreaseKey() {
+        IndexedMinHeap heap = new IndexedMinHeap(4);
+        for (int id = 0; id < 10; ++id) {
+            heap.offer(id, 10 + id);
+        }
+        assertFalse(heap.offer(3, 20));
+        assertEquals(0, heap.peek());
+
+        assertTrue(heap.offer(7, 5));
+        assertTrue(heap.offer(3, 6));
+        assertEquals(10, heap.size());
+        assertEquals(7, heap.poll());
+        assertEquals(3, heap.poll());
+        assertEquals(0, heap.poll());
+        assertEquals(11, heap.peekKey());
+    }
+
+    /**
+     * Random inserts, decreases and removals agree with a linear scan over all keys.
+     */
+    @Test
+    void testAgainstLinearScan() {
+        Random random = new Random(7);
+        IndexedMinHeap heap = new IndexedMinHeap(8);
+        double[] keys = new double[500];
+        Arrays.fill(keys, Double.NaN);
+        for (int step = 0; step < 20_000; ++step) {
+            int id = random.nextInt(keys.length);
+            if (random.nextInt(3) > 0) {
+                double key = random.nextDouble();
+                boolean lower = Double.isNaN(keys[id]) || key < keys[id];
+                assertEquals(lower, heap.offer(id, key));
+                if (lower)
+                    keys[id] = key;
+            } else if (!heap.isEmpty()) {
+                int min = -1;
+                for (int i = 0; i < keys.length; ++i) {
+                    if (!Double.isNaN(keys[i]) && (min < 0 || keys[i] < keys[min]))
+                        min = i;
+                }
+                assertEquals(keys[min], heap.peekKey());
+                keys[heap.poll()] = Double.NaN;
+            }
+            assertEquals(!Double.isNaN(keys[id]), heap.contains(id));
+        }
+
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        for (int id = 0; id < keys.length; ++id) {
+            assertFalse(heap.contains(id));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.public_transport.gtfs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test of {@link GTFSTableReader}
+ */
+class GTFSTableReaderTest {
+
+    /**
+     * Reads a table and returns the named columns of all records.
+     */
+    private static List<List<String>> read(String table, String... columns) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (GTFSTableReader reader = new GTFSTableReader(new StringReader(table))) {
+            int[] indices = new int[columns.length];
+            for (int i = 0; i < columns.length; ++i) {
+                indices[i] = reader.getColumn(columns[i]);
+            }
+            while (reader.next()) {
+                List<String> record = new ArrayList<>();
+                for (int index : indices) {
+                    record.add(reader.get(index));
+                }
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Columns are found by name in any order, missing columns and fields read as empty strings.
+     */
+    @Test
+    void testColumns() throws IOException {
+        List<List<String>> records = read("stop_lat,stop_id,stop_name\n48.1,1,A\n48.2,2\n",
+                "stop_id", "stop_name", "stop_lat", "stop_code");
+        assertEquals(Arrays.asList(Arrays.asList("1", "A", "48.1", ""), Arrays.asList("2", "", "48.2", "")), records);
+        try (GTFSTableReader reader = new GTFSTableReader(new StringReader("stop_id,stop_name\n"))) {
+            assertEquals(1, reader.getColumn("stop_name"));
+            assertEquals(-1, reader.getColumn("stop_lat"));
+            assertFalse(reader.next());
+        }
+    }
+
+    /**
+     * Quoted fields may contain separators, doubled quotes and line breaks.
+     */
+    @Test
+    void testQuotedFields() throws IOException {
+        String table = "stop_id,stop_name,stop_desc\r\n"
+                + "\"1\",\"Main St, North\",plain\r\n"
+                + "2,\"The \"\"Big\"\" Tree\",\"\"\r\n"
+                + "3,\"Line one\nline two\",\"a,\"\"b\"\"\"\r\n";
+        assertEquals(Arrays.asList(
+                Arrays.asList("1", "Main St, North", "plain"),
+                Arrays.asList("2", "The \"Big\" Tree", ""),
+                Arrays.asList("3", "Line one\nline two", "a,\"b\"")),
+                read(table, "stop_id", "stop_name", "stop_desc"));
+    }
+
+    /**
+     * A byte order mark before the header is skipped, blank lines and a missing final line break are accepted.
+     */
+    @Test
+    void testByteOrderMark() throws IOException {
+        assertEquals(Arrays.asList(Arrays.asList("1", "A"), Arrays.asList("2", "B")),
+                read("\uFEFFstop_id,stop_name\n1,A\n\n\r\n2,B", "stop_id", "stop_name"));
+    }
+
+    /**
+     * Semicolons and tabs separate fields if the header contains no comma.
+     */
+    @Test
+    void testSeparators() throws IOException {
+        assertEquals(Arrays.asList(Arrays.asList("1", "A, B")),
+                read("stop_id;stop_name\n1;A, B\n", "stop_id", "stop_name"));
+        assertEquals(Arrays.asList(Arrays.asList("1", "A; B")),
+                read("stop_id\tstop_name\n1\tA; B\n", "stop_id", "stop_name"));
+        assertEquals(Arrays.asList(Arrays.asList("1", "\"x\";y")),
+                read("\"stop_id\";\"stop_name\"\n1;\"\"\"x\"\";y\"\n", "stop_id", "stop_name"));
+    }
+
+    /**
+     * Records spanning the internal buffer boundary are read completely.
+     */
+    @Test
+    void testLongTable() throws IOException {
+        StringBuilder table = new StringBuilder("stop_id,stop_name\n");
+        for (int i = 0; i < 5000; ++i) {
+            table.append(i).append(",\"Stop ").append(i).append(", \"\"").append(i % 7).append("\"\"\"\n");
+        }
+        List<List<String>> records = read(table.toString(), "stop_id", "stop_name");
+        assertEquals(5000, records.size());
+        for (int i = 0; i < records.size(); ++i) {
+            assertEquals(Arrays.asList(Integer.toString(i), "Stop " + i + ", \"" + (i % 7) + "\""), records.get(i));
+        }
+        assertTrue(table.length() > 8192);
+    }
+}
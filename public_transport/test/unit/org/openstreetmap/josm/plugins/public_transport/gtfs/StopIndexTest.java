@@ -0,0 +1,89 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.public_transport.gtfs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Unit test of {@link StopIndex}
+ */
+@BasicPreferences
+class StopIndexTest {
+
+    private static boolean bruteForce(List<Node> stops, LatLon coor, double distance) {
+        for (Node stop : stops) {
+            if (coor.greatCircleDistance(stop) < distance)
+                return true;
+        }
+        return false;
+    }
+
+    private static LatLon randomNear(Random random, double lat, double lon, double spread) {
+        double newLat = Math.max(-90, Math.min(90, lat + (random.nextDouble() - 0.5) * spread));
+        double newLon = lon + (random.nextDouble() - 0.5) * spread;
+        return new LatLon(newLat, newLon > 180 ? newLon - 360 : newLon < -180 ? newLon + 360 : newLon);
+    }
+
+    /**
+     * Random queries around the equator, at high latitudes, near the poles and across the antimeridian
+     * give the same result as comparing with every stop.
+     */
+    @Test
+    void testAgainstBruteForce() {
+        Random random = new Random(48);
+        double[][] centers = {{0, 0}, {48.2, 16.4}, {-33.9, 151.2}, {70, 25}, {-78, 166}, {89.99, 0}, {-89.99, 90},
+                {0, 180}, {65, -180}, {-17, 179.99}};
+        for (double[] center : centers) {
+            for (double spread : new double[] {0.01, 0.1, 1}) {
+                List<Node> stops = new ArrayList<>();
+                for (int i = 0; i < 200; ++i) {
+                    stops.add(new Node(randomNear(random, center[0], center[1], spread)));
+                }
+                for (double distance : new double[] {10, 250, 1000, 5000}) {
+                    StopIndex index = new StopIndex(stops, distance);
+                    for (int i = 0; i < 200; ++i) {
+                        LatLon coor = randomNear(random, center[0], center[1], spread);
+                        double queried = random.nextBoolean() ? distance : distance * 3 * random.nextDouble();
+                        assertEquals(bruteForce(stops, coor, queried), index.hasStopWithin(coor, queried),
+                                coor + " " + queried + " " + spread);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops on the other side of the antimeridian or of a pole are found.
+     */
+    @Test
+    void testWrapAround() {
+        StopIndex index = new StopIndex(Collections.singletonList(new Node(new LatLon(10, 179.999))), 1000);
+        assertTrue(index.hasStopWithin(new LatLon(10, -179.999), 1000));
+        assertFalse(index.hasStopWithin(new LatLon(10, -179.98), 1000));
+
+        index = new StopIndex(Collections.singletonList(new Node(new LatLon(89.999, 0))), 1000);
+        assertTrue(index.hasStopWithin(new LatLon(89.999, 180), 1000));
+        assertTrue(index.hasStopWithin(new LatLon(89.999, -90), 1000));
+        assertFalse(index.hasStopWithin(new LatLon(89.98, 180), 1000));
+    }
+
+    /**
+     * An empty index finds nothing, stops without coordinates are not indexed.
+     */
+    @Test
+    void testEmpty() {
+        assertFalse(new StopIndex(Collections.<Node>emptyList(), 1000).hasStopWithin(new LatLon(0, 0), 1000));
+        assertFalse(new StopIndex(Collections.singletonList(new Node()), 1000).hasStopWithin(new LatLon(0, 0), 1e7));
+    }
+}
@@ -0,0 +1,64 @@
+package org.openstreetmap.josm.plugins.rasterfilters.filters;
+
+import java.rmi.server.UID;
+
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+
+/**
+ * Gamma correction of the color channels, as a {@link PixelFilter}.
+ * <p>
+ * The state has a single slider value {@code gamma}. Values above 1
+ * brighten the image, values below 1 darken it. The alpha channel
+ * isn't changed.
+ */
+public class GammaFilter implements PixelFilter {
+
+    private UID id;
+    private double gamma = 1;
+
+    @Override
+    public JsonObject changeFilterState(JsonObject filterState) {
+        JsonObject gammaState = filterState.getJsonObject("gamma");
+        if (gammaState != null) {
+            JsonNumber value = gammaState.getJsonNumber("value");
+            if (value != null) {
+                gamma = value.doubleValue();
+            }
+        }
+        return filterState;
+    }
+
+    @Override
+    public PixelKernel getKernel() {
+        if (gamma == 1 || !(gamma > 0) || Double.isInfinite(gamma)) {
+            return null;
+        }
+
+        // the kernel gets its own table, so it keeps working with the gamma it was created with
+        int[] table = new int[256];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (int) Math.round(255 * Math.pow(i / 255.0, 1 / gamma));
+        }
+
+        return (argb, offset, length) -> {
+            for (int i = offset; i < offset + length; i++) {
+                int pixel = argb[i];
+                argb[i] = (pixel & 0xff000000)
+                        | table[(pixel >>> 16) & 0xff] << 16
+                        | table[(pixel >>> 8) & 0xff] << 8
+                        | table[pixel & 0xff];
+            }
+        };
+    }
+
+    @Override
+    public void setId(UID id) {
+        this.id = id;
+    }
+
+    @Override
+    public UID getId() {
+        return id;
+    }
+}
@@ -0,0 +1,41 @@
+package org.openstreetmap.josm.plugins.rasterfilters.filters;
+
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+
+import org.openstreetmap.josm.plugins.rasterfilters.model.FilterPipeline;
+
+/**
+ * A filter which changes every pixel independently of the other pixels,
+ * like brightness, contrast or color corrections.
+ * <p>
+ * Instead of processing whole images, such a filter provides a
+ * {@link PixelKernel}. The kernels of consecutive pixel filters are fused
+ * into one pass over the image, and tiles are filtered in parallel.
+ * <p>
+ * The filters downloaded by the {@code FiltersDownloader} don't implement
+ * this interface yet, so they are still applied one after the other on
+ * whole images. Of the filters in this plugin, only {@link GammaFilter} is
+ * a pixel filter, and it is only used if the filter metadata names it.
+ *
+ * @see FilterPipeline
+ */
+public interface PixelFilter extends Filter {
+
+    /**
+     * Returns the kernel for the current filter state.
+     * <p>
+     * The kernel is used from other threads, so it must keep the state
+     * values it was created with, instead of reading them from the filter
+     * whenever it is applied.
+     *
+     * @return the kernel, or {@code null} if the current state doesn't change the image
+     */
+    PixelKernel getKernel();
+
+    @Override
+    default BufferedImage applyFilter(BufferedImage img) {
+        PixelKernel kernel = getKernel();
+        return kernel == null ? img : FilterPipeline.applyKernels(img, Collections.singletonList(kernel));
+    }
+}
@@ -0,0 +1,24 @@
+package org.openstreetmap.josm.plugins.rasterfilters.filters;
+
+/**
+ * Per-pixel operation of a {@link PixelFilter}.
+ * <p>
+ * The kernel changes a range of packed ARGB pixels in place. Each pixel
+ * must only depend on its own previous value, so the kernels of several
+ * filters can be applied block by block in a single pass over the image,
+ * and different images can be processed at the same time.
+ *
+ * @see org.openstreetmap.josm.plugins.rasterfilters.model.FilterPipeline
+ */
+@FunctionalInterface
+public interface PixelKernel {
+
+    /**
+     * Applies the operation to a range of pixels.
+     *
+     * @param argb   pixels in the packed ARGB format
+     * @param offset index of the first pixel to change
+     * @param length number of pixels to change
+     */
+    void apply(int[] argb, int offset, int length);
+}
@@ -0,0 +1,171 @@
+package org.openstreetmap.josm.plugins.rasterfilters.model;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.json.JsonObject;
+
+import org.openstreetmap.josm.plugins.rasterfilters.filters.Filter;
+import org.openstreetmap.josm.plugins.rasterfilters.filters.PixelFilter;
+import org.openstreetmap.josm.plugins.rasterfilters.filters.PixelKernel;
+
+/**
+ * Snapshot of the enabled filters of a layer, in the order they are applied.
+ * <p>
+ * The kernels of consecutive {@link PixelFilter}s are fused: the image is
+ * copied once into an {@code int[]} raster, and every block of pixels runs
+ * through all kernels while it is in the processor cache. Other filters are
+ * applied with {@link Filter#applyFilter(BufferedImage)} as before.
+ * <p>
+ * The pipeline also has a key made of the filter states, so filtered images
+ * can be cached for the state they were created with.
+ */
+public final class FilterPipeline {
+
+    /** Number of pixels passed through all fused kernels at once. */
+    private static final int BLOCK_SIZE = 4096;
+
+    /** The pipeline without filters. */
+    public static final FilterPipeline EMPTY = new FilterPipeline(Collections.emptyList(), Collections.emptyList(), true);
+
+    /** Either a {@link Filter} or a list of fused {@link PixelKernel}s. */
+    private final List<Object> stages;
+    /** The ids and states of the filters, in the order they are applied. */
+    private final List<Object> stateKey;
+    private final boolean pixelOnly;
+
+    private FilterPipeline(List<Object> stages, List<Object> stateKey, boolean pixelOnly) {
+        this.stages = stages;
+        this.stateKey = stateKey;
+        this.pixelOnly = pixelOnly;
+    }
+
+    /**
+     * Creates a pipeline from the current state of the filters.
+     *
+     * @param filters enabled filters, in the order they are applied
+     * @param states  current state of the filters, used for the state key
+     * @return the pipeline
+     */
+    public static FilterPipeline create(List<Filter> filters, Map<Filter, JsonObject> states) {
+        List<Object> stages = new ArrayList<>();
+        List<PixelKernel> kernels = null;
+        List<Object> stateKey = new ArrayList<>();
+        boolean pixelOnly = true;
+
+        for (Filter filter : filters) {
+            stateKey.add(filter.getId());
+            stateKey.add(states.get(filter));
+
+            if (filter instanceof PixelFilter) {
+                PixelKernel kernel = ((PixelFilter) filter).getKernel();
+                if (kernel != null) {
+                    if (kernels == null) {
+                        kernels = new ArrayList<>();
+                        stages.add(kernels);
+                    }
+                    kernels.add(kernel);
+                }
+            } else {
+                kernels = null;
+                pixelOnly = false;
+                stages.add(filter);
+            }
+        }
+
+        return stages.isEmpty() ? EMPTY : new FilterPipeline(stages, Collections.unmodifiableList(stateKey), pixelOnly);
+    }
+
+    /**
+     * @return true if no filter changes the image
+     */
+    public boolean isEmpty() {
+        return stages.isEmpty();
+    }
+
+    /**
+     * @return true if all filters are pixel filters, so images can be filtered in any thread
+     */
+    public boolean isPixelOnly() {
+        return pixelOnly;
+    }
+
+    /**
+     * Returns the key of the filters and their states. Pipelines created from
+     * the same filters in the same states have equal keys.
+     *
+     * @return the ids and states of the filters
+     */
+    public Object getStateKey() {
+        return stateKey;
+    }
+
+    /**
+     * Filters an image. The given image isn't changed.
+     *
+     * @param image image to process
+     * @return processed image
+     */
+    @SuppressWarnings("unchecked")
+    public BufferedImage apply(BufferedImage image) {
+
+        for (Object stage : stages) {
+
+            if (stage instanceof Filter) {
+                // if next filter will return null
+                // we should take an old example of the image
+                BufferedImage oldImg = image;
+
+                image = ((Filter) stage).applyFilter(image);
+
+                if (image == null) {
+                    image = oldImg;
+                }
+            } else {
+                image = applyKernels(image, (List<PixelKernel>) stage);
+            }
+        }
+
+        return image;
+    }
+
+    /**
+     * Applies pixel kernels in a single pass to a copy of an image.
+     *
+     * @param image   image to process, isn't changed
+     * @param kernels kernels, in the order they are applied
+     * @return processed image of type {@link BufferedImage#TYPE_INT_ARGB}
+     */
+    public static BufferedImage applyKernels(BufferedImage image, List<PixelKernel> kernels) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] argb = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+
+        int type = image.getType();
+        if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) {
+            // packed the same way already, no color conversion needed
+            image.getRaster().getDataElements(0, 0, width, height, argb);
+            if (type == BufferedImage.TYPE_INT_RGB) {
+                for (int i = 0; i < argb.length; i++) {
+                    argb[i] |= 0xff000000;
+                }
+            }
+        } else {
+            image.getRGB(0, 0, width, height, argb, 0, width);
+        }
+
+        for (int offset = 0; offset < argb.length; offset += BLOCK_SIZE) {
+            int length = Math.min(BLOCK_SIZE, argb.length - offset);
+            for (PixelKernel kernel : kernels) {
+                kernel.apply(argb, offset, length);
+            }
+        }
+
+        return result;
+    }
+}
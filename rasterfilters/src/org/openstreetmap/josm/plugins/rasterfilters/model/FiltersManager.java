@@ -7,11 +7,17 @@ import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.image.BufferedImage;
 import java.rmi.server.UID;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.json.JsonArray;
 import javax.json.JsonObject;
@@ -24,13 +30,16 @@ import javax.swing.JPanel;
 import javax.swing.JSlider;
 
 import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.plugins.rasterfilters.filters.Filter;
 import org.openstreetmap.josm.plugins.rasterfilters.gui.FilterGuiListener;
 import org.openstreetmap.josm.plugins.rasterfilters.gui.FilterPanel;
 import org.openstreetmap.josm.plugins.rasterfilters.gui.FiltersDialog;
 import org.openstreetmap.josm.plugins.rasterfilters.preferences.FiltersDownloader;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.ImageProcessor;
 import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
 
 import com.bric.swing.ColorPicker;
 
@@ -47,10 +56,44 @@ public class FiltersManager implements StateChangeListener, ImageProcessor, Acti
     public Set<Filter> disabledFilters = new HashSet<>();
     public FiltersDialog dialog;
 
+    /** Last state given to each filter. */
+    private final Map<Filter, JsonObject> filterStates = new HashMap<>();
+    private volatile FilterPipeline pipeline = FilterPipeline.EMPTY;
+
+    /**
+     * Filtered tiles, by original tile image and state key. The two most
+     * recent states are kept for each tile, so the previous result can be
+     * shown while the tile is filtered again.
+     */
+    private final Map<BufferedImage, Map<Object, BufferedImage>> tileCache =
+            Collections.synchronizedMap(new WeakHashMap<>());
+    /** Tiles being filtered, with the state key they are filtered for. */
+    private final Map<BufferedImage, Object> pendingTiles =
+            Collections.synchronizedMap(new WeakHashMap<>());
+    private final AtomicBoolean repaintScheduled = new AtomicBoolean();
+
+    private static final class DefaultPool {
+        static final ForkJoinPool INSTANCE = Utils.newForkJoinPool(
+                "rasterfilters.threads", "rasterfilters-%d", Thread.NORM_PRIORITY);
+    }
+
     public FiltersManager(FiltersDialog dialog) {
         this.dialog = dialog;
     }
 
+    /**
+     * Rebuilds the filter pipeline after filters or their states changed.
+     */
+    private void updatePipeline() {
+        List<Filter> enabled = new ArrayList<>();
+        for (Filter filter : filtersMap.values()) {
+            if (!disabledFilters.contains(filter)) {
+                enabled.add(filter);
+            }
+        }
+        pipeline = FilterPipeline.create(enabled, filterStates);
+    }
+
     @SuppressWarnings("unchecked")
     private JPanel createFilterWithPanel(JsonObject meta) {
 
@@ -129,7 +172,10 @@ public class FiltersManager implements StateChangeListener, ImageProcessor, Acti
         fp.setPreferredSize(new Dimension(300, fp.getNeededHeight()));
 
         if (filter != null) {
-            filter.changeFilterState(filterState.encodeJson());
+            JsonObject state = filterState.encodeJson();
+            filter.changeFilterState(state);
+            filterStates.put(filter, state);
+            updatePipeline();
         }
         MainApplication.getLayerManager().getActiveLayer().setFilterStateChanged();
 
@@ -151,8 +197,12 @@ public class FiltersManager implements StateChangeListener, ImageProcessor, Acti
     @Override
     public void filterStateChanged(UID filterId, FilterStateModel filterState) {
 
-        if (filtersMap.get(filterId) != null) {
-            filtersMap.get(filterId).changeFilterState(filterState.encodeJson());
+        Filter filter = filtersMap.get(filterId);
+        if (filter != null) {
+            JsonObject state = filterState.encodeJson();
+            filter.changeFilterState(state);
+            filterStates.put(filter, state);
+            updatePipeline();
         }
 
         if (MainApplication.getLayerManager().getActiveLayer() != null) {
@@ -173,31 +223,92 @@ public class FiltersManager implements StateChangeListener, ImageProcessor, Acti
         return null;
     }
 
+    /**
+     * Filters a tile. Results are cached by tile and filter state, so tiles
+     * are only processed again if the filters changed.
+     * <p>
+     * If all filters are {@link org.openstreetmap.josm.plugins.rasterfilters.filters.PixelFilter}s,
+     * tiles are filtered in parallel in the background. Meanwhile the
+     * previous result for the tile (or the tile itself) is returned, and
+     * the layer is repainted when the new result is ready.
+     *
+     * @param image tile image
+     * @return filtered image
+     */
     @Override
     public BufferedImage process(BufferedImage image) {
 
-        Iterator<Filter> it = filtersMap.values().iterator();
-
-        // iterating through map of filters according to the order
-        while (it.hasNext()) {
+        FilterPipeline current = pipeline;
+        if (current.isEmpty()) {
+            return image;
+        }
 
-            Filter curFilter = it.next();
+        Object key = current.getStateKey();
+        Map<Object, BufferedImage> results = tileCache.get(image);
+        BufferedImage cached = results == null ? null : results.get(key);
+        if (cached != null) {
+            return cached;
+        }
 
-            if (!disabledFilters.contains(curFilter)) {
-                // if next filter will return null
-                // we should take an old example of the image
-                BufferedImage oldImg = image;
+        if (!current.isPixelOnly() || !Config.getPref().getBoolean("rasterfilters.parallel", true)) {
+            BufferedImage result = current.apply(image);
+            putResult(image, key, result);
+            return result;
+        }
 
-                // applying filter to the current image
-                image = curFilter.applyFilter(image);
+        Object pending = pendingTiles.put(image, key);
+        if (!key.equals(pending)) {
+            DefaultPool.INSTANCE.execute(() -> filterTile(image, current));
+        }
 
-                if (image == null) {
-                    image = oldImg;
+        BufferedImage previous = null;
+        if (results != null) {
+            synchronized (results) {
+                for (BufferedImage result : results.values()) {
+                    previous = result;
                 }
             }
         }
+        return previous != null ? previous : image;
+    }
+
+    private void filterTile(BufferedImage image, FilterPipeline tilePipeline) {
+        Object key = tilePipeline.getStateKey();
+        // skip states which were replaced while the tile was waiting, e.g. by dragging a slider
+        if (pipeline == tilePipeline) {
+            try {
+                putResult(image, key, tilePipeline.apply(image));
+            } catch (RuntimeException e) {
+                Logging.error(e);
+            }
+        }
+        synchronized (pendingTiles) {
+            if (key.equals(pendingTiles.get(image))) {
+                pendingTiles.remove(image);
+            }
+        }
+        if (repaintScheduled.compareAndSet(false, true)) {
+            GuiHelper.runInEDT(() -> {
+                repaintScheduled.set(false);
+                dialog.getLayer().invalidate();
+            });
+        }
+    }
 
-        return image;
+    private void putResult(BufferedImage image, Object key, BufferedImage result) {
+        Map<Object, BufferedImage> results;
+        synchronized (tileCache) {
+            results = tileCache.computeIfAbsent(image, k -> Collections.synchronizedMap(
+                    new LinkedHashMap<Object, BufferedImage>(4, 0.75f, true) {
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        protected boolean removeEldestEntry(Map.Entry<Object, BufferedImage> eldest) {
+                            return size() > 2;
+                        }
+                    }));
+        }
+        results.put(key, result);
     }
 
     @Override
@@ -209,7 +320,8 @@ public class FiltersManager implements StateChangeListener, ImageProcessor, Acti
         UID filterId = filterPanel.getFilterId();
 
         // removing filter from the filters chain
-        filtersMap.remove(filterId);
+        filterStates.remove(filtersMap.remove(filterId));
+        updatePipeline();
 
         dialog.getShowedFiltersTitles().remove(filterPanel.getName());
 
@@ -254,6 +366,7 @@ public class FiltersManager implements StateChangeListener, ImageProcessor, Acti
 
             UID filterId = filterPanel.getFilterId();
             disabledFilters.add(filtersMap.get(filterId));
+            updatePipeline();
 
             MainApplication.getLayerManager().getActiveLayer().setFilterStateChanged();
 
@@ -261,6 +374,7 @@ public class FiltersManager implements StateChangeListener, ImageProcessor, Acti
 
             UID filterId = filterPanel.getFilterId();
             disabledFilters.remove(filtersMap.get(filterId));
+            updatePipeline();
 
             MainApplication.getLayerManager().getActiveLayer().setFilterStateChanged();
 
@@ -0,0 +1,244 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.rasterfilters.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.rmi.server.UID;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.plugins.rasterfilters.filters.Filter;
+import org.openstreetmap.josm.plugins.rasterfilters.filters.GammaFilter;
+import org.openstreetmap.josm.plugins.rasterfilters.filters.PixelFilter;
+import org.openstreetmap.josm.plugins.rasterfilters.filters.PixelKernel;
+
+/**
+ * Unit test of {@link FilterPipeline}
+ */
+class FilterPipelineTest {
+
+    /**
+     * A pixel filter with a fixed kernel.
+     */
+    private static class KernelFilter implements PixelFilter {
+        private final PixelKernel kernel;
+        private UID id = new UID();
+
+        KernelFilter(PixelKernel kernel) {
+            this.kernel = kernel;
+        }
+
+        @Override
+        public JsonObject changeFilterState(JsonObject filterState) {
+            return filterState;
+        }
+
+        @Override
+        public PixelKernel getKernel() {
+            return kernel;
+        }
+
+        @Override
+        public void setId(UID id) {
+            this.id = id;
+        }
+
+        @Override
+        public UID getId() {
+            return id;
+        }
+    }
+
+    /**
+     * A filter which isn't a pixel filter: it mirrors the image.
+     */
+    private static class MirrorFilter implements Filter {
+        private UID id = new UID();
+
+        @Override
+        public JsonObject changeFilterState(JsonObject filterState) {
+            return filterState;
+        }
+
+        @Override
+        public BufferedImage applyFilter(BufferedImage img) {
+            BufferedImage result = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            for (int y = 0; y < img.getHeight(); y++) {
+                for (int x = 0; x < img.getWidth(); x++) {
+                    result.setRGB(img.getWidth() - 1 - x, y, img.getRGB(x, y));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void setId(UID id) {
+            this.id = id;
+        }
+
+        @Override
+        public UID getId() {
+            return id;
+        }
+    }
+
+    private static final PixelKernel INVERT = (argb, offset, length) -> {
+        for (int i = offset; i < offset + length; i++) {
+            argb[i] ^= 0x00ffffff;
+        }
+    };
+
+    private static final PixelKernel SWAP_RED_BLUE = (argb, offset, length) -> {
+        for (int i = offset; i < offset + length; i++) {
+            int p = argb[i];
+            argb[i] = (p & 0xff00ff00) | (p >>> 16 & 0xff) | (p & 0xff) << 16;
+        }
+    };
+
+    private static final PixelKernel HALF_ALPHA = (argb, offset, length) -> {
+        for (int i = offset; i < offset + length; i++) {
+            argb[i] = (argb[i] >>> 25) << 24 | (argb[i] & 0xffffff);
+        }
+    };
+
+    private static JsonObject gammaState(double gamma) {
+        return Json.createObjectBuilder()
+                .add("gamma", Json.createObjectBuilder().add("value", gamma).build())
+                .build();
+    }
+
+    private static GammaFilter gamma(double gamma) {
+        GammaFilter filter = new GammaFilter();
+        filter.setId(new UID());
+        filter.changeFilterState(gammaState(gamma));
+        return filter;
+    }
+
+    private static BufferedImage randomImage(Random random, int type) {
+        // more pixels than a block, and not a multiple of the block size
+        BufferedImage image = new BufferedImage(131, 97, type);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private static BufferedImage applySequentially(List<Filter> filters, BufferedImage image) {
+        for (Filter filter : filters) {
+            image = filter.applyFilter(image);
+        }
+        return image;
+    }
+
+    /**
+     * The fused kernels produce the same image as applying the filters one after the other.
+     */
+    @Test
+    void testFusedEqualsSequential() {
+        Random random = new Random(42);
+        List<List<Filter>> chains = Arrays.asList(
+                Arrays.asList(gamma(2.2)),
+                Arrays.asList(new KernelFilter(INVERT), gamma(0.5), new KernelFilter(SWAP_RED_BLUE)),
+                Arrays.asList(gamma(1.7), new KernelFilter(HALF_ALPHA), new MirrorFilter(),
+                        new KernelFilter(INVERT), gamma(0.8)),
+                Arrays.asList(new MirrorFilter(), new KernelFilter(SWAP_RED_BLUE), new KernelFilter(SWAP_RED_BLUE)));
+        for (List<Filter> chain : chains) {
+            FilterPipeline pipeline = FilterPipeline.create(chain, Collections.emptyMap());
+            boolean pixelOnly = chain.stream().allMatch(f -> f instanceof PixelFilter);
+            assertEquals(pixelOnly, pipeline.isPixelOnly());
+            for (int type : new int[] {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB,
+                    BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR}) {
+                BufferedImage image = randomImage(random, type);
+                int[] original = pixels(image);
+                assertArrayEquals(pixels(applySequentially(chain, image)), pixels(pipeline.apply(image)));
+                // the given image isn't changed
+                assertArrayEquals(original, pixels(image));
+            }
+        }
+    }
+
+    /**
+     * Unit test of {@link GammaFilter}
+     */
+    @Test
+    void testGammaFilter() {
+        assertNull(gamma(1).getKernel());
+        assertNull(gamma(0).getKernel());
+
+        BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0x80ff4000);
+        image.setRGB(1, 0, 0xff000000);
+        BufferedImage result = gamma(2).applyFilter(image);
+        // 255 * sqrt(64 / 255) = 127.75
+        assertEquals(0x80ff8000, result.getRGB(0, 0));
+        assertEquals(0xff000000, result.getRGB(1, 0));
+
+        // a kernel keeps the gamma it was created with
+        GammaFilter filter = gamma(2);
+        PixelKernel kernel = filter.getKernel();
+        filter.changeFilterState(gammaState(0.5));
+        int[] argb = {0xff404040};
+        kernel.apply(argb, 0, 1);
+        assertEquals(0xff808080, argb[0]);
+    }
+
+    /**
+     * Pipelines with the same filters in equal states have equal state keys.
+     */
+    @Test
+    void testStateKey() {
+        GammaFilter first = gamma(1.5);
+        GammaFilter second = gamma(0.7);
+        List<Filter> filters = new ArrayList<>(Arrays.asList(first, second));
+        Map<Filter, JsonObject> states = new HashMap<>();
+        states.put(first, gammaState(1.5));
+        states.put(second, gammaState(0.7));
+        Object key = FilterPipeline.create(filters, states).getStateKey();
+
+        states.put(first, gammaState(1.5));
+        assertEquals(key, FilterPipeline.create(filters, states).getStateKey());
+        assertEquals(key.hashCode(), FilterPipeline.create(filters, states).getStateKey().hashCode());
+
+        states.put(first, gammaState(1.6));
+        assertNotEquals(key, FilterPipeline.create(filters, states).getStateKey());
+        states.put(first, gammaState(1.5));
+
+        Collections.reverse(filters);
+        assertNotEquals(key, FilterPipeline.create(filters, states).getStateKey());
+        assertNotEquals(key, FilterPipeline.create(filters.subList(0, 1), states).getStateKey());
+    }
+
+    /**
+     * Filters without a kernel for their state are skipped.
+     */
+    @Test
+    void testEmpty() {
+        FilterPipeline pipeline = FilterPipeline.create(Collections.singletonList(gamma(1)), Collections.emptyMap());
+        assertTrue(pipeline.isEmpty());
+        assertTrue(pipeline.isPixelOnly());
+        assertSame(FilterPipeline.EMPTY, FilterPipeline.create(Collections.emptyList(), Collections.emptyMap()));
+        assertFalse(FilterPipeline.create(Collections.singletonList(gamma(2)), Collections.emptyMap()).isEmpty());
+    }
+}
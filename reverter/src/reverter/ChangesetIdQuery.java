@@ -42,6 +42,7 @@ public class ChangesetIdQuery extends ExtendedDialog {
     private final JRadioButton rbSelection = new JRadioButton(tr("Revert selection only"));
     private final JRadioButton rbSelectionUndelete = new JRadioButton(tr("Revert selection and restore deleted objects"));
     private final JCheckBox cbNewLayer = new JCheckBox(tr("Download as new layer"));
+    private final JCheckBox cbBatch = new JCheckBox(tr("Revert all changesets at once"));
 
     public Collection<Integer> getIdsInReverseOrder() {
         return tcid.getIdsInReverseOrder();
@@ -56,6 +57,15 @@ public class ChangesetIdQuery extends ExtendedDialog {
         return cbNewLayer.isSelected();
     }
 
+    /**
+     * Replies true if the user wants to revert all given changesets at once
+     *
+     * @return true if the user wants to revert all given changesets at once
+     */
+    public boolean isBatchRevertRequired() {
+        return cbBatch.isSelected();
+    }
+
     public RevertType getRevertType() {
         if (rbFull.isSelected()) return RevertType.FULL;
         if (rbSelection.isSelected()) return RevertType.SELECTION;
@@ -95,6 +105,10 @@ public class ChangesetIdQuery extends ExtendedDialog {
         cbNewLayer.setToolTipText(tr("<html>Select to download data into a new data layer.<br>"
                 +"Unselect to download into the currently active data layer.</html>"));
         panel.add(cbNewLayer, GBC.eol().fill(GBC.HORIZONTAL));
+
+        cbBatch.setToolTipText(tr("<html>Select to revert a range of changesets in one step, downloading the history of each object only once.<br>"
+                +"Unselect to revert the changesets one after the other.</html>"));
+        panel.add(cbBatch, GBC.eol().fill(GBC.HORIZONTAL));
     }
 
     @Override
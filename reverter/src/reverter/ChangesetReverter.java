@@ -4,16 +4,18 @@ package reverter;
 import static org.openstreetmap.josm.tools.I18n.tr;
 import static org.openstreetmap.josm.tools.I18n.trn;
 
-import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.openstreetmap.josm.command.Command;
@@ -44,13 +46,13 @@ import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.io.MultiFetchServerObjectReader;
-import org.openstreetmap.josm.io.OsmApiException;
 import org.openstreetmap.josm.io.OsmServerChangesetReader;
 import org.openstreetmap.josm.io.OsmTransferException;
-import org.openstreetmap.josm.tools.Logging;
 
 /**
  * Fetches and stores data for reverting of specific changeset.
+ * A range of changesets can be reverted at once, their contents are then merged so that each
+ * object is reverted to its version before the first changeset of the range touching it.
  * @author Upliner
  *
  */
@@ -68,6 +70,9 @@ public class ChangesetReverter {
             ));
 
     public final int changesetId;
+    /** all reverted changesets, in the order given */
+    public final List<Integer> changesetIds;
+    /** the last of the reverted changesets */
     public final Changeset changeset;
     public final RevertType revertType;
 
@@ -84,6 +89,8 @@ public class ChangesetReverter {
     private final HashSet<HistoryOsmPrimitive> updated = new HashSet<>();
     private final HashSet<HistoryOsmPrimitive> deleted = new HashSet<>();
     private final HashMap<PrimitiveId, Integer> earliestVersions = new HashMap<>();
+    /** objects modified by other changesets in between the reverted ones */
+    private final HashSet<PrimitiveId> interleaved = new HashSet<>();
 
     //// Handling missing objects
     ////////////////////////////////////////
@@ -139,12 +146,34 @@ public class ChangesetReverter {
      */
     public ChangesetReverter(int changesetId, RevertType revertType, boolean newLayer, DataSet ods, ProgressMonitor monitor)
             throws OsmTransferException, RevertRedactedChangesetException {
-        this.changesetId = changesetId;
+        this(Collections.singletonList(changesetId), revertType, newLayer, ods, monitor);
+    }
+
+    /**
+     * creates a reverter for a range of changesets and fetches initial data
+     * @param changesetIds changeset ids, must not be empty
+     * @param revertType type of revert
+     * @param newLayer set to true if a new layer should be created
+     * @param ods original dataset to search for selected primitives, can be null
+     * @param monitor progress monitor
+     * @throws OsmTransferException if data transfer errors occur
+     * @throws RevertRedactedChangesetException if a redacted changeset is requested
+     */
+    public ChangesetReverter(Collection<Integer> changesetIds, RevertType revertType, boolean newLayer, DataSet ods,
+            ProgressMonitor monitor) throws OsmTransferException, RevertRedactedChangesetException {
+        if (changesetIds.isEmpty()) {
+            throw new IllegalArgumentException("No changeset to revert");
+        }
+        this.changesetIds = Collections.unmodifiableList(new ArrayList<>(changesetIds));
+        this.changesetId = this.changesetIds.get(0);
         OsmDataLayer editLayer = MainApplication.getLayerManager().getEditLayer();
         newLayer = newLayer || editLayer == null;
         if (newLayer) {
             this.ds = new DataSet();
-            this.layer = new OsmDataLayer(this.ds, tr("Reverted changeset") + tr(" [id: {0}]", String.valueOf(changesetId)), null);
+            String name = this.changesetIds.size() == 1
+                    ? tr("Reverted changeset") + tr(" [id: {0}]", String.valueOf(changesetId))
+                    : tr("Reverted changesets") + tr(" [ids: {0}]", joinIds());
+            this.layer = new OsmDataLayer(this.ds, name, null);
         } else {
             this.layer = editLayer;
             this.ds = editLayer.data;
@@ -157,13 +186,24 @@ public class ChangesetReverter {
         }
 
         OsmServerChangesetReader csr = new OsmServerChangesetReader(true);
-        monitor.beginTask("", 2);
-        changeset = csr.readChangeset(changesetId, false, monitor.createSubTaskMonitor(1, false));
-        if (MODERATOR_REDACTION_ACCOUNTS.contains(changeset.getUser().getId())) {
-            throw new RevertRedactedChangesetException(tr("It is not allowed to revert changeset from {0}", changeset.getUser().getName()));
+        monitor.beginTask("", 2 * this.changesetIds.size());
+        Changeset last = null;
+        for (int id : this.changesetIds) {
+            Changeset cs = csr.readChangeset(id, false, monitor.createSubTaskMonitor(1, false));
+            if (MODERATOR_REDACTION_ACCOUNTS.contains(cs.getUser().getId())) {
+                throw new RevertRedactedChangesetException(tr("It is not allowed to revert changeset from {0}", cs.getUser().getName()));
+            }
+            if (last == null || cs.getId() > last.getId()) {
+                last = cs;
+            }
         }
+        changeset = last;
         try {
-            cds = csr.downloadChangeset(changesetId, monitor.createSubTaskMonitor(1, false));
+            List<ChangesetDataSet> contents = new ArrayList<>();
+            for (int id : this.changesetIds) {
+                contents.add(csr.downloadChangeset(id, monitor.createSubTaskMonitor(1, false)));
+            }
+            cds = contents.size() == 1 ? contents.get(0) : merge(contents, interleaved);
         } finally {
             monitor.finishTask();
             if (newLayer) {
@@ -189,6 +229,47 @@ public class ChangesetReverter {
         }
     }
 
+    /**
+     * Merges the contents of several changesets. For each object the merged data set holds the
+     * earliest and the latest version found in any of the changesets. Objects where another
+     * changeset created a version in between are added to {@code interleaved}.
+     * @param contents the changeset contents
+     * @param interleaved the set to add the objects modified in between to
+     * @return the merged contents
+     */
+    static ChangesetDataSet merge(List<ChangesetDataSet> contents, Set<PrimitiveId> interleaved) {
+        Map<PrimitiveId, List<ChangesetDataSetEntry>> entries = new HashMap<>();
+        for (ChangesetDataSet content : contents) {
+            for (PrimitiveId id : content.getIds()) {
+                List<ChangesetDataSetEntry> list = entries.computeIfAbsent(id, k -> new ArrayList<>());
+                ChangesetDataSetEntry first = content.getFirstEntry(id);
+                ChangesetDataSetEntry last = content.getLastEntry(id);
+                list.add(first);
+                if (last != first && last.getPrimitive().getVersion() != first.getPrimitive().getVersion()) {
+                    list.add(last);
+                }
+            }
+        }
+        Comparator<ChangesetDataSetEntry> byVersion = Comparator.comparingLong(e -> e.getPrimitive().getVersion());
+        ChangesetDataSet merged = new ChangesetDataSet();
+        for (Map.Entry<PrimitiveId, List<ChangesetDataSetEntry>> e : entries.entrySet()) {
+            List<ChangesetDataSetEntry> list = e.getValue();
+            list.sort(byVersion);
+            long previous = -1;
+            long previousChangeset = -1;
+            for (ChangesetDataSetEntry entry : list) {
+                HistoryOsmPrimitive p = entry.getPrimitive();
+                if (previous >= 0 && p.getChangesetId() != previousChangeset && p.getVersion() > previous + 1) {
+                    interleaved.add(e.getKey());
+                }
+                previous = p.getVersion();
+                previousChangeset = p.getChangesetId();
+                merged.put(p, entry.getModificationType());
+            }
+        }
+        return merged;
+    }
+
     public void checkMissingCreated() {
         addMissingHistoryIds(created);
     }
@@ -203,23 +284,7 @@ public class ChangesetReverter {
 
     private static void readObjectVersion(OsmServerMultiObjectReader rdr, PrimitiveId id, int version, ProgressMonitor progressMonitor)
             throws OsmTransferException {
-        boolean readOK = false;
-        while (!readOK && version >= 1) {
-            try {
-                rdr.readObject(id, version, progressMonitor.createSubTaskMonitor(1, true));
-                readOK = true;
-            } catch (OsmApiException e) {
-                if (e.getResponseCode() != HttpURLConnection.HTTP_FORBIDDEN) {
-                    throw e;
-                }
-                String message = "Version " + version + " of " + id + " is unauthorized";
-                Logging.info(version <= 1 ? message : message + ", requesting previous one");
-                version--;
-            }
-        }
-        if (!readOK) {
-            Logging.warn("Cannot retrieve any previous version of "+id);
-        }
+        rdr.readObjectVersion(id, version, progressMonitor.createSubTaskMonitor(1, true));
     }
 
     /**
@@ -229,6 +294,7 @@ public class ChangesetReverter {
      */
     public void downloadObjectsHistory(ProgressMonitor progressMonitor) throws OsmTransferException {
         final OsmServerMultiObjectReader rdr = new OsmServerMultiObjectReader();
+        rdr.setCache(HistoryCache.getInstance());
 
         int num = updated.size() + deleted.size();
         progressMonitor.beginTask(
@@ -253,22 +319,16 @@ public class ChangesetReverter {
                     }
                 }
             }
-            rdr.readMultiObjects(OsmPrimitiveType.NODE, nodeList, progressMonitor);
-            rdr.readMultiObjects(OsmPrimitiveType.WAY, wayList, progressMonitor);
-            rdr.readMultiObjects(OsmPrimitiveType.RELATION, relationList, progressMonitor);
+            Map<OsmPrimitiveType, Map<Long, Integer>> lists = new EnumMap<>(OsmPrimitiveType.class);
+            lists.put(OsmPrimitiveType.NODE, nodeList);
+            lists.put(OsmPrimitiveType.WAY, wayList);
+            lists.put(OsmPrimitiveType.RELATION, relationList);
+            rdr.readMultiObjects(lists, progressMonitor);
             if (progressMonitor.isCanceled()) return;
             // If multi-read failed, retry with regular read
-            for (Map.Entry<Long, Integer> entry : nodeList.entrySet()) {
-                if (progressMonitor.isCanceled()) return;
-                readObjectVersion(rdr, new SimplePrimitiveId(entry.getKey(), OsmPrimitiveType.NODE), entry.getValue(), progressMonitor);
-            }
-            for (Map.Entry<Long, Integer> entry : wayList.entrySet()) {
-                if (progressMonitor.isCanceled()) return;
-                readObjectVersion(rdr, new SimplePrimitiveId(entry.getKey(), OsmPrimitiveType.WAY), entry.getValue(), progressMonitor);
-            }
-            for (Map.Entry<Long, Integer> entry : relationList.entrySet()) {
+            for (Map.Entry<OsmPrimitiveType, Map<Long, Integer>> entry : lists.entrySet()) {
                 if (progressMonitor.isCanceled()) return;
-                readObjectVersion(rdr, new SimplePrimitiveId(entry.getKey(), OsmPrimitiveType.RELATION), entry.getValue(), progressMonitor);
+                rdr.readObjectVersions(entry.getKey(), entry.getValue(), progressMonitor);
             }
             if (progressMonitor.isCanceled()) return;
             nds = rdr.parseOsm(progressMonitor.createSubTaskMonitor(1, true));
@@ -437,11 +497,13 @@ public class ChangesetReverter {
                 throw new IllegalStateException(addChangesetIdPrefix(tr("Missing merge target for {0}", hp.getPrimitiveId())));
             }
 
-            if (hp.getVersion() != dp.getVersion()
+            if ((interleaved.contains(hp.getPrimitiveId())
+                    /* Reverting would also drop the changes made in between by other changesets */
+                    || hp.getVersion() != dp.getVersion()
                     && (hp.isVisible() || dp.isVisible()) &&
                     /* Don't create conflict if changeset object and dataset object
                      * has same semantic attributes (but different versions) */
-                    !hasEqualSemanticAttributes(dp, hp)
+                    !hasEqualSemanticAttributes(dp, hp))
                     /* Don't create conflict if the object has to be deleted but has already been deleted */
                     && !(toDelete.contains(dp) && dp.isDeleted())) {
                 cmds.add(new ConflictAddCommand(layer.data, createConflict(dp,
@@ -515,6 +577,7 @@ public class ChangesetReverter {
                             // find the version that was in use when the current changeset was closed
                             --version;
                             final OsmServerMultiObjectReader rdr = new OsmServerMultiObjectReader();
+                            rdr.setCache(HistoryCache.getInstance());
                             readObjectVersion(rdr, id, version, progressMonitor);
                             DataSet history = rdr.parseOsm(progressMonitor.createSubTaskMonitor(1, true));
                             if (!history.isEmpty()) {
@@ -542,6 +605,13 @@ public class ChangesetReverter {
      * @return prefixed message
      */
     String addChangesetIdPrefix(String msg) {
+        if (changesetIds.size() > 1) {
+            return tr("Changesets {0}: {1}", joinIds(), msg);
+        }
         return tr("Changeset {0}: {1}", Long.toString(changesetId), msg);
     }
+
+    private String joinIds() {
+        return changesetIds.stream().map(String::valueOf).collect(Collectors.joining(", "));
+    }
 }
@@ -0,0 +1,149 @@
+// License: GPL. For details, see LICENSE file.
+package reverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.commons.jcs3.access.CacheAccess;
+import org.openstreetmap.josm.data.cache.JCSCacheManager;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.io.OsmApi;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.XmlUtils;
+
+/**
+ * Disk cache of object versions downloaded from the OSM API, shared by all reverts.
+ * A version of an object never changes once it has been created, so entries never get stale.
+ * Each entry holds a small OSM document with just one object version. Entries are keyed by the
+ * server URL as well, as object ids and versions are only unique on one server.
+ */
+public final class HistoryCache {
+    private static HistoryCache instance;
+
+    private final CacheAccess<String, byte[]> cache;
+
+    HistoryCache(CacheAccess<String, byte[]> cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Replies the shared history cache.
+     * @return the cache, or {@code null} if it is disabled
+     */
+    public static synchronized HistoryCache getInstance() {
+        if (!Config.getPref().getBoolean("reverter.history-cache.enabled", true)) {
+            return null;
+        }
+        if (instance == null) {
+            String path = new File(Config.getDirs().getCacheDirectory(true), "reverter").getAbsolutePath();
+            instance = new HistoryCache(JCSCacheManager.getCache("reverter-history",
+                    1000, Config.getPref().getInt("reverter.history-cache.max-objects", 200_000), path));
+        }
+        return instance;
+    }
+
+    private static String key(OsmPrimitiveType type, long id, int version) {
+        return OsmApi.getOsmApi().getServerUrl() + " " + type.getAPIName() + id + "v" + version;
+    }
+
+    /**
+     * Looks up an object version.
+     * @param type the object type
+     * @param id the object id
+     * @param version the version
+     * @return an OSM document with the object version, or {@code null} if it is not cached
+     */
+    public byte[] get(OsmPrimitiveType type, long id, int version) {
+        return cache.get(key(type, id, version));
+    }
+
+    /**
+     * Stores all object versions of an OSM document returned by the API.
+     * @param data the OSM document
+     */
+    public void putAll(byte[] data) {
+        try {
+            XMLStreamReader parser = XmlUtils.newSafeXMLInputFactory().createXMLStreamReader(new ByteArrayInputStream(data));
+            try {
+                XMLOutputFactory factory = XMLOutputFactory.newInstance();
+                int depth = 0;
+                while (parser.hasNext()) {
+                    int event = parser.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        depth++;
+                        if (depth == 2) {
+                            store(parser, factory);
+                            depth--;
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth--;
+                    }
+                }
+            } finally {
+                parser.close();
+            }
+        } catch (XMLStreamException e) {
+            // the cache is an optimization only
+            Logging.warn(e);
+        }
+    }
+
+    /**
+     * Copies the current top level element to its own document and stores it, if it is an object.
+     * @param parser the parser, positioned on the start of the element; it is left on its end
+     * @param factory factory for the writer
+     * @throws XMLStreamException in case of parse errors
+     */
+    private void store(XMLStreamReader parser, XMLOutputFactory factory) throws XMLStreamException {
+        OsmPrimitiveType type;
+        try {
+            type = OsmPrimitiveType.fromApiTypeName(parser.getLocalName());
+        } catch (IllegalArgumentException e) {
+            type = null;
+        }
+        String id = parser.getAttributeValue(null, "id");
+        String version = parser.getAttributeValue(null, "version");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XMLStreamWriter writer = factory.createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+        writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+        writer.writeStartElement("osm");
+        writer.writeAttribute("version", "0.6");
+        int depth = 0;
+        do {
+            if (parser.getEventType() == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                writer.writeStartElement(parser.getLocalName());
+                for (int i = 0; i < parser.getAttributeCount(); i++) {
+                    writer.writeAttribute(parser.getAttributeLocalName(i), parser.getAttributeValue(i));
+                }
+            } else if (parser.getEventType() == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                writer.writeEndElement();
+            }
+            if (depth > 0) {
+                parser.next();
+            }
+        } while (depth > 0);
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        writer.close();
+
+        if (type != null && id != null && version != null) {
+            try {
+                cache.put(key(type, Long.parseLong(id), Integer.parseInt(version)), out.toByteArray());
+            } catch (NumberFormatException e) {
+                Logging.trace(e);
+            }
+        }
+    }
+}
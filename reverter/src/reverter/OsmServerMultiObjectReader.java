@@ -3,50 +3,143 @@ package reverter;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.PrimitiveId;
+import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.io.OsmApi;
+import org.openstreetmap.josm.io.OsmApiException;
 import org.openstreetmap.josm.io.OsmServerReader;
 import org.openstreetmap.josm.io.OsmTransferException;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
 
+/**
+ * Reads specific versions of objects from the OSM API into one data set.
+ *
+ * Multi-object queries are split into batches limited by number of ids and URL length and run
+ * with up to {@code osm-server.max-threads} concurrent requests. Failed requests are retried
+ * with exponential backoff; each response is parsed as soon as it has arrived, while the
+ * other requests are still running.
+ *
+ * If a {@link HistoryCache} is set, object versions found in the cache are not requested,
+ * and all downloaded versions are added to the cache.
+ */
 public class OsmServerMultiObjectReader extends OsmServerReader {
     private final MultiOsmReader rdr = new MultiOsmReader();
+    private final Set<Connection> connections = Collections.synchronizedSet(new HashSet<>());
+    private HistoryCache cache;
 
+    /**
+     * Sets the cache for object versions.
+     * @param cache the cache, can be {@code null}
+     */
+    public void setCache(HistoryCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Reads a single version of an object.
+     * @param id the object id
+     * @param version the version
+     * @param progressMonitor progress monitor
+     * @throws OsmTransferException in case of error
+     */
     public void readObject(PrimitiveId id, int version, ProgressMonitor progressMonitor) throws OsmTransferException {
         readObject(id.getUniqueId(), version, id.getType(), progressMonitor);
     }
 
+    /**
+     * Reads a single version of an object.
+     * @param id the object id
+     * @param version the version
+     * @param type the object type
+     * @param progressMonitor progress monitor
+     * @throws OsmTransferException in case of error
+     */
     public void readObject(long id, int version, OsmPrimitiveType type, ProgressMonitor progressMonitor) throws OsmTransferException {
-        StringBuilder sb = new StringBuilder();
-        sb.append(type.getAPIName());
-        sb.append("/");
-        sb.append(id);
-        sb.append("/");
-        sb.append(version);
         progressMonitor.beginTask("", 1);
-        try (InputStream in = getInputStream(sb.toString(), progressMonitor.createSubTaskMonitor(1, true))) {
-            rdr.addData(in);
-        } catch (IOException | IllegalDataException e) {
-            throw new OsmTransferException(e);
+        try {
+            byte[] data = fetchVersion(new Requester(), type, id, version, progressMonitor.createSubTaskMonitor(1, true));
+            parse(data);
         } finally {
             progressMonitor.finishTask();
         }
     }
-    private static List<String> makeQueryStrings(OsmPrimitiveType type, Map<Long,Integer> list) {
+
+    /**
+     * Reads the given version of an object. If the version is unauthorized (redacted), the previous
+     * versions are tried until one can be read.
+     * @param id the object id
+     * @param version the version
+     * @param progressMonitor progress monitor
+     * @throws OsmTransferException in case of error
+     */
+    public void readObjectVersion(PrimitiveId id, int version, ProgressMonitor progressMonitor) throws OsmTransferException {
+        progressMonitor.beginTask("", 1);
+        try {
+            byte[] data = fetchReadableVersion(new Requester(), id, version, progressMonitor.createSubTaskMonitor(1, true));
+            if (data != null) {
+                parse(data);
+            }
+        } finally {
+            progressMonitor.finishTask();
+        }
+    }
+
+    private byte[] fetchVersion(Requester conn, OsmPrimitiveType type, long id, int version, ProgressMonitor progressMonitor)
+            throws OsmTransferException {
+        byte[] data = cache != null ? cache.get(type, id, version) : null;
+        if (data == null) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(type.getAPIName());
+            sb.append("/");
+            sb.append(id);
+            sb.append("/");
+            sb.append(version);
+            data = fetchAndCache(conn, sb.toString(), progressMonitor);
+        }
+        return data;
+    }
+
+    private byte[] fetchAndCache(Requester conn, String query, ProgressMonitor progressMonitor) throws OsmTransferException {
+        byte[] data = conn.fetch(query, progressMonitor);
+        if (cache != null) {
+            cache.putAll(data);
+        }
+        return data;
+    }
+
+    private static List<String> makeQueryStrings(OsmPrimitiveType type, Map<Long, Integer> list) {
         List<String> result = new ArrayList<>((list.size()+maxQueryIds-1)/maxQueryIds);
         StringBuilder sb = new StringBuilder();
-        int cnt=0;
-        for (Map.Entry<Long,Integer> entry : list.entrySet()) {
+        int cnt = 0;
+        for (Map.Entry<Long, Integer> entry : list.entrySet()) {
+            String item = entry.getKey() + "v" + entry.getValue();
+            if (cnt > 0 && (cnt >= maxQueryIds || sb.length() + 1 + item.length() > maxQueryLength)) {
+                result.add(sb.toString());
+                sb.setLength(0);
+                cnt = 0;
+            }
             if (cnt == 0) {
                 sb.append(type.getAPIName());
                 sb.append("s?");
@@ -55,44 +148,293 @@ public class OsmServerMultiObjectReader extends OsmServerReader {
             } else {
                 sb.append(",");
             }
-            sb.append(entry.getKey());
-            sb.append("v");
-            sb.append(entry.getValue());
+            sb.append(item);
             cnt++;
-            if (cnt >=maxQueryIds) {
-                result.add(sb.toString());
-                sb.setLength(0);
-                cnt = 0;
-            }
         }
-        if (cnt>0) {
+        if (cnt > 0) {
             result.add(sb.toString());
         }
         return result;
     }
 
     protected static final int maxQueryIds = 128;
-    public void readMultiObjects(OsmPrimitiveType type, Map<Long,Integer> list, ProgressMonitor progressMonitor) throws OsmTransferException {
-        for (String query : makeQueryStrings(type,list)) {
-            if (progressMonitor.isCanceled()) {
-                return;
+    /** Maximum length of a multi-object query, leaving room for the API base URL */
+    protected static final int maxQueryLength = 1900;
+
+    /**
+     * Reads the given versions of objects of one type.
+     * @param type the object type
+     * @param list map from object id to version, objects read are removed
+     * @param progressMonitor progress monitor, one tick per object read
+     * @throws OsmTransferException in case of error
+     * @see #readMultiObjects(Map, ProgressMonitor)
+     */
+    public void readMultiObjects(OsmPrimitiveType type, Map<Long, Integer> list, ProgressMonitor progressMonitor) throws OsmTransferException {
+        readMultiObjects(Collections.singletonMap(type, list), progressMonitor);
+    }
+
+    /**
+     * Reads the given versions of objects using concurrent multi-object queries.
+     * Objects read are removed from the maps. The objects of a query rejected by the server
+     * (e.g. because one of its versions is redacted) stay in the maps, so they can be read
+     * one by one with {@link #readObjectVersions}.
+     * @param lists maps from object id to version, by object type
+     * @param progressMonitor progress monitor, one tick per object read
+     * @throws OsmTransferException if a query fails after all retries
+     */
+    public void readMultiObjects(Map<OsmPrimitiveType, Map<Long, Integer>> lists, ProgressMonitor progressMonitor)
+            throws OsmTransferException {
+        rdr.callback = id -> {
+            Map<Long, Integer> list = lists.get(id.getType());
+            if (list != null && list.remove(id.getUniqueId()) != null) {
+                progressMonitor.worked(1);
             }
-            rdr.callback = id -> {
-                if (id.getType() == type && list.remove(id.getUniqueId()) != null) {
-                    progressMonitor.worked(1);
+        };
+        try {
+            if (cache != null) {
+                readCachedObjects(lists);
+            }
+            List<Fetch> fetches = new ArrayList<>();
+            for (Map.Entry<OsmPrimitiveType, Map<Long, Integer>> entry : lists.entrySet()) {
+                for (String query : makeQueryStrings(entry.getKey(), entry.getValue())) {
+                    fetches.add(conn -> fetchMultiObjects(conn, query));
+                }
+            }
+            runAll(fetches, false, progressMonitor);
+        } finally {
+            rdr.callback = null;
+        }
+    }
+
+    private void readCachedObjects(Map<OsmPrimitiveType, Map<Long, Integer>> lists) throws OsmTransferException {
+        List<byte[]> hits = new ArrayList<>();
+        for (Map.Entry<OsmPrimitiveType, Map<Long, Integer>> entry : lists.entrySet()) {
+            for (Map.Entry<Long, Integer> version : entry.getValue().entrySet()) {
+                byte[] data = cache.get(entry.getKey(), version.getKey(), version.getValue());
+                if (data != null) {
+                    hits.add(data);
+                }
+            }
+        }
+        // parsing removes the objects from the lists
+        for (byte[] data : hits) {
+            parse(data);
+        }
+    }
+
+    private byte[] fetchMultiObjects(Requester conn, String query) throws OsmTransferException {
+        try {
+            return fetchAndCache(conn, query, NullProgressMonitor.INSTANCE);
+        } catch (OsmApiException e) {
+            // leave the objects for reading them one by one
+            Logging.warn("Multi-object query failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads the given versions of objects one by one, using concurrent requests. Objects whose
+     * version is unauthorized (redacted) are read in their latest readable previous version.
+     * @param type the object type
+     * @param list map from object id to version
+     * @param progressMonitor progress monitor, one tick per object
+     * @throws OsmTransferException if a request fails after all retries
+     */
+    public void readObjectVersions(OsmPrimitiveType type, Map<Long, Integer> list, ProgressMonitor progressMonitor)
+            throws OsmTransferException {
+        List<Fetch> fetches = new ArrayList<>(list.size());
+        for (Map.Entry<Long, Integer> entry : list.entrySet()) {
+            PrimitiveId id = new SimplePrimitiveId(entry.getKey(), type);
+            int version = entry.getValue();
+            fetches.add(conn -> fetchReadableVersion(conn, id, version, NullProgressMonitor.INSTANCE));
+        }
+        runAll(fetches, true, progressMonitor);
+    }
+
+    private byte[] fetchReadableVersion(Requester conn, PrimitiveId id, int version, ProgressMonitor progressMonitor)
+            throws OsmTransferException {
+        for (int v = version; v >= 1; v--) {
+            try {
+                return fetchVersion(conn, id.getType(), id.getUniqueId(), v, progressMonitor);
+            } catch (OsmApiException e) {
+                if (e.getResponseCode() != HttpURLConnection.HTTP_FORBIDDEN) {
+                    throw e;
                 }
-            };
-            try (InputStream in = getInputStream(query, NullProgressMonitor.INSTANCE)) {
+                String message = "Version " + v + " of " + id + " is unauthorized";
+                Logging.info(v <= 1 ? message : message + ", requesting previous one");
+            }
+        }
+        Logging.warn("Cannot retrieve any previous version of "+id);
+        return null;
+    }
+
+    /**
+     * A request run by one of the download threads.
+     */
+    @FunctionalInterface
+    private interface Fetch {
+        /**
+         * Runs the request.
+         * @param conn the requester of the download thread
+         * @return the response to parse or {@code null}
+         * @throws OsmTransferException in case of error
+         */
+        byte[] fetch(Requester conn) throws OsmTransferException;
+    }
+
+    private static int getThreadCount(int tasks) {
+        int threads = Config.getPref().getInt("osm-server.max-threads", OsmApi.MAX_DOWNLOAD_THREADS);
+        return Math.max(1, Math.min(Math.min(threads, OsmApi.MAX_DOWNLOAD_THREADS), tasks));
+    }
+
+    /**
+     * Runs the requests on a bounded thread pool. Each response is parsed by the thread that
+     * received it, one at a time.
+     * @param fetches the requests
+     * @param tick whether to advance the progress monitor by one tick per request
+     * @param progressMonitor progress monitor
+     * @throws OsmTransferException if a request fails
+     */
+    private void runAll(List<Fetch> fetches, boolean tick, ProgressMonitor progressMonitor) throws OsmTransferException {
+        if (fetches.isEmpty()) return;
+
+        ExecutorService exec = Utils.newFixedThreadPool(getThreadCount(fetches.size()), "reverter-download-%d", Thread.NORM_PRIORITY);
+        List<Future<?>> futures = new ArrayList<>(fetches.size());
+        try {
+            for (Fetch fetch : fetches) {
+                futures.add(exec.submit(() -> {
+                    if (progressMonitor.isCanceled()) return null;
+                    byte[] data = fetch.fetch(new Requester(progressMonitor));
+                    synchronized (rdr) {
+                        if (data != null && !progressMonitor.isCanceled()) {
+                            parse(data);
+                        }
+                        if (tick) {
+                            progressMonitor.worked(1);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OsmTransferException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OsmTransferException) {
+                throw (OsmTransferException) e.getCause();
+            }
+            throw new OsmTransferException(e.getCause());
+        } catch (CancellationException e) {
+            throw new OsmTransferException(e);
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            exec.shutdown();
+        }
+    }
+
+    private void parse(byte[] data) throws OsmTransferException {
+        synchronized (rdr) {
+            try (InputStream in = new ByteArrayInputStream(data)) {
                 rdr.addData(in);
             } catch (IOException | IllegalDataException e) {
                 Logging.warn(e);
                 throw new OsmTransferException(e);
-            } finally {
-                rdr.callback = null;
             }
         }
     }
 
+    /**
+     * Cancels the download, disconnecting the open connections of all download threads.
+     */
+    @Override
+    public void cancel() {
+        super.cancel();
+        synchronized (connections) {
+            for (Connection connection : connections) {
+                connection.cancel();
+            }
+        }
+    }
+
+    /**
+     * The connection of one download thread. Each thread needs its own, as the reader keeps
+     * the state of the active connection.
+     */
+    private static class Connection extends OsmServerReader {
+        InputStream open(String query, ProgressMonitor progressMonitor) throws OsmTransferException {
+            return getInputStream(query, progressMonitor);
+        }
+
+        @Override
+        public DataSet parseOsm(ProgressMonitor progressMonitor) throws OsmTransferException {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Sends the requests of one download thread. Requests failing with a transient error
+     * (connection problem, 429 or 5xx status) are retried with exponential backoff.
+     */
+    private class Requester {
+        private final Connection connection = new Connection();
+        private final ProgressMonitor cancelMonitor;
+
+        Requester() {
+            this(NullProgressMonitor.INSTANCE);
+        }
+
+        Requester(ProgressMonitor cancelMonitor) {
+            this.cancelMonitor = cancelMonitor;
+        }
+
+        byte[] fetch(String query, ProgressMonitor progressMonitor) throws OsmTransferException {
+            int retries = Math.max(0, Config.getPref().getInt("reverter.download.retries", 3));
+            long delay = Math.max(0, Config.getPref().getLong("reverter.download.retry-delay", 1000));
+            for (int attempt = 0;; attempt++) {
+                connections.add(connection);
+                if (cancel) {
+                    connection.cancel();
+                }
+                try (InputStream in = connection.open(query, progressMonitor)) {
+                    if (in == null) {
+                        throw new OsmTransferException(tr("No response for {0}", query));
+                    }
+                    return Utils.readBytesFromStream(in);
+                } catch (IOException e) {
+                    if (attempt >= retries || cancelMonitor.isCanceled()) {
+                        throw new OsmTransferException(e);
+                    }
+                    Logging.info("Reading {0} failed ({1}), retrying", query, e.getMessage());
+                } catch (OsmTransferException e) {
+                    if (attempt >= retries || cancelMonitor.isCanceled() || !isTransient(e)) {
+                        throw e;
+                    }
+                    Logging.info("Reading {0} failed ({1}), retrying", query, e.getMessage());
+                } finally {
+                    connections.remove(connection);
+                }
+                try {
+                    Thread.sleep(delay << attempt);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new OsmTransferException(e);
+                }
+            }
+        }
+    }
+
+    private static boolean isTransient(OsmTransferException e) {
+        if (e instanceof OsmApiException) {
+            int code = ((OsmApiException) e).getResponseCode();
+            return code == 429 || code >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+        }
+        return e.getCause() instanceof IOException;
+    }
 
     /**
      * Method to parse downloaded objects
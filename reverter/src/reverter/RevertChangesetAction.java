@@ -31,6 +31,7 @@ public class RevertChangesetAction extends JosmAction {
 
         boolean newLayer = dlg.isNewLayerRequired();
         final boolean autoConfirmDownload = newLayer || changesetIds.size() > 1;
-        MainApplication.worker.submit(new RevertChangesetTask(changesetIds, revertType, autoConfirmDownload, newLayer));
+        MainApplication.worker.submit(new RevertChangesetTask(null, changesetIds, revertType, autoConfirmDownload, newLayer,
+                dlg.isBatchRevertRequired()));
     }
 }
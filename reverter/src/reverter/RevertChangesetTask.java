@@ -33,6 +33,7 @@ public class RevertChangesetTask extends PleaseWaitRunnable {
     private final Collection<Integer> changesetIds;
     private final RevertType revertType;
     private boolean newLayer;
+    private final boolean batch;
     private final DataSet oldDataSet;
 
     private ChangesetReverter rev;
@@ -64,11 +65,26 @@ public class RevertChangesetTask extends PleaseWaitRunnable {
      * @param newLayer {@code true} if the user wants the reversion to be on a new layer
      */
     public RevertChangesetTask(ProgressMonitor progressMonitor, Collection<Integer> changesetIds, RevertType revertType, boolean autoConfirmDownload, boolean newLayer) {
+        this(progressMonitor, changesetIds, revertType, autoConfirmDownload, newLayer, false);
+    }
+
+    /**
+     * Create a new task for reverting changesets
+     * @param progressMonitor The {@link ProgressMonitor} to use. May be {@code null}
+     * @param changesetIds The changeset ids to revert
+     * @param revertType The type of revert to do
+     * @param autoConfirmDownload {@code true} if the user has already indicated that they want to download missing data
+     * @param newLayer {@code true} if the user wants the reversion to be on a new layer
+     * @param batch {@code true} to revert all changesets at once, downloading the history of each object only once
+     */
+    public RevertChangesetTask(ProgressMonitor progressMonitor, Collection<Integer> changesetIds, RevertType revertType,
+            boolean autoConfirmDownload, boolean newLayer, boolean batch) {
         super(tr("Reverting..."), progressMonitor, false);
         this.changesetIds = new ArrayList<>(changesetIds);
         this.revertType = revertType;
         this.downloadConfirmed = autoConfirmDownload;
         this.newLayer = newLayer;
+        this.batch = batch;
         OsmDataLayer editLayer = MainApplication.getLayerManager().getEditLayer();
         this.oldDataSet = editLayer == null ? null : editLayer.data;
     }
@@ -99,14 +115,22 @@ public class RevertChangesetTask extends PleaseWaitRunnable {
         final List<Command> allcmds = new ArrayList<>();
         Logging.info("Reverting {0} changeset(s): {1}",
                 changesetIds.size(), changesetIds.stream().map(Long::toString).collect(Collectors.toList()));
-        for (int changesetId : changesetIds) {
+        List<Collection<Integer>> runs = new ArrayList<>();
+        if (batch && changesetIds.size() > 1) {
+            runs.add(changesetIds);
+        } else {
+            for (int changesetId : changesetIds) {
+                runs.add(Collections.singletonList(changesetId));
+            }
+        }
+        for (Collection<Integer> ids : runs) {
             try {
-                Logging.info("Reverting changeset {0}", Long.toString(changesetId));
-                RevertChangesetCommand cmd = revertChangeset(changesetId);
+                Logging.info("Reverting changeset(s) {0}", ids);
+                RevertChangesetCommand cmd = revertChangesets(ids);
                 if (cmd != null) {
                     allcmds.add(cmd);
                 }
-                Logging.info("Reverted changeset {0}", Long.toString(changesetId));
+                Logging.info("Reverted changeset(s) {0}", ids);
                 newLayer = false; // reuse layer for subsequent reverts
             } catch (OsmTransferException e) {
                 rollback(allcmds);
@@ -136,10 +160,15 @@ public class RevertChangesetTask extends PleaseWaitRunnable {
         }
     }
 
-    private RevertChangesetCommand revertChangeset(int changesetId) throws OsmTransferException, UserCancelException {
-        progressMonitor.indeterminateSubTask(tr("Reverting changeset {0}", Long.toString(changesetId)));
+    private RevertChangesetCommand revertChangesets(Collection<Integer> ids) throws OsmTransferException, UserCancelException {
+        final String idList = ids.stream().map(String::valueOf).collect(Collectors.joining(", "));
+        if (ids.size() == 1) {
+            progressMonitor.indeterminateSubTask(tr("Reverting changeset {0}", idList));
+        } else {
+            progressMonitor.indeterminateSubTask(tr("Reverting changesets {0}", idList));
+        }
         try {
-            rev = new ChangesetReverter(changesetId, revertType, newLayer, oldDataSet, progressMonitor.createSubTaskMonitor(0, true));
+            rev = new ChangesetReverter(ids, revertType, newLayer, oldDataSet, progressMonitor.createSubTaskMonitor(0, true));
         } catch (final RevertRedactedChangesetException e) {
             GuiHelper.runInEDT(() -> new Notification(
                     e.getMessage()+"<br>"+
@@ -187,7 +216,7 @@ public class RevertChangesetTask extends PleaseWaitRunnable {
             throw new UserCancelException();
         List<Command> cmds = rev.getCommands();
         if (cmds.isEmpty()) {
-            Logging.warn(MessageFormat.format("No revert commands found for changeset {0}", Long.toString(changesetId)));
+            Logging.warn(MessageFormat.format("No revert commands found for changeset(s) {0}", idList));
             return null;
         }
         GuiHelper.runInEDT(() -> {
@@ -199,10 +228,13 @@ public class RevertChangesetTask extends PleaseWaitRunnable {
             }
         });
         final String desc;
-        if (revertType == RevertType.FULL) {
-            desc = tr("Revert changeset {0}", String.valueOf(changesetId));
+        if (ids.size() > 1) {
+            desc = revertType == RevertType.FULL ? tr("Revert changesets {0}", idList)
+                    : tr("Partially revert changesets {0}", idList);
+        } else if (revertType == RevertType.FULL) {
+            desc = tr("Revert changeset {0}", idList);
         } else {
-            desc = tr("Partially revert changeset {0}", String.valueOf(changesetId));
+            desc = tr("Partially revert changeset {0}", idList);
         }
         return new RevertChangesetCommand(desc, cmds);
     }
@@ -3,6 +3,7 @@ package reverter;
 
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -10,9 +11,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -43,9 +47,14 @@ import org.openstreetmap.josm.TestUtils;
 import org.openstreetmap.josm.actions.downloadtasks.DownloadOsmTask;
 import org.openstreetmap.josm.actions.downloadtasks.DownloadParams;
 import org.openstreetmap.josm.data.UndoRedoHandler;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.ChangesetDataSet;
+import org.openstreetmap.josm.data.osm.ChangesetDataSet.ChangesetModificationType;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.PrimitiveId;
 import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.history.HistoryNode;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
@@ -88,6 +97,48 @@ class ChangesetReverterTest {
         assertTrue(UndoRedoHandler.getInstance().hasUndoCommands());
     }
 
+    private static void put(ChangesetDataSet cds, long id, long version, long changeset, ChangesetModificationType type) {
+        cds.put(new HistoryNode(id, version, type != ChangesetModificationType.DELETED, User.createOsmUser(1, "test"),
+                changeset, Instant.ofEpochSecond(version), new LatLon(50, 8)), type);
+    }
+
+    /**
+     * Merging the contents of a changeset range detects the objects that other changesets modified in between.
+     */
+    @Test
+    void testMergeInterleaved() {
+        PrimitiveId node1 = new SimplePrimitiveId(1, OsmPrimitiveType.NODE);
+        PrimitiveId node2 = new SimplePrimitiveId(2, OsmPrimitiveType.NODE);
+        PrimitiveId node3 = new SimplePrimitiveId(3, OsmPrimitiveType.NODE);
+        PrimitiveId node4 = new SimplePrimitiveId(4, OsmPrimitiveType.NODE);
+        // node 1 is created and modified by changeset 10, changeset 11 (not reverted) creates v3
+        ChangesetDataSet cs10 = new ChangesetDataSet();
+        put(cs10, 1, 1, 10, ChangesetModificationType.CREATED);
+        put(cs10, 1, 2, 10, ChangesetModificationType.UPDATED);
+        put(cs10, 2, 3, 10, ChangesetModificationType.UPDATED);
+        put(cs10, 4, 1, 10, ChangesetModificationType.CREATED);
+        put(cs10, 4, 4, 10, ChangesetModificationType.UPDATED);
+        ChangesetDataSet cs12 = new ChangesetDataSet();
+        put(cs12, 1, 4, 12, ChangesetModificationType.UPDATED);
+        put(cs12, 2, 4, 12, ChangesetModificationType.UPDATED);
+        put(cs12, 3, 7, 12, ChangesetModificationType.DELETED);
+
+        for (List<ChangesetDataSet> contents : Arrays.asList(Arrays.asList(cs10, cs12), Arrays.asList(cs12, cs10))) {
+            Set<PrimitiveId> interleaved = new HashSet<>();
+            ChangesetDataSet merged = ChangesetReverter.merge(contents, interleaved);
+            // node 2 was modified by consecutive versions, node 4 only by changeset 10
+            assertEquals(Collections.singleton(node1), interleaved);
+            assertEquals(new HashSet<>(Arrays.asList(node1, node2, node3, node4)), merged.getIds());
+            assertEquals(1, merged.getFirstEntry(node1).getPrimitive().getVersion());
+            assertEquals(4, merged.getLastEntry(node1).getPrimitive().getVersion());
+            assertEquals(ChangesetModificationType.CREATED, merged.getFirstEntry(node1).getModificationType());
+            assertEquals(3, merged.getFirstEntry(node2).getPrimitive().getVersion());
+            assertEquals(4, merged.getLastEntry(node2).getPrimitive().getVersion());
+            assertEquals(ChangesetModificationType.DELETED, merged.getLastEntry(node3).getModificationType());
+            assertEquals(4, merged.getLastEntry(node4).getPrimitive().getVersion());
+        }
+    }
+
     /**
      * A transformer for the /nodes?node, /ways?ways, and /relations?relations endpoints. This is needed since we don't always do the requests in the same order.
      */
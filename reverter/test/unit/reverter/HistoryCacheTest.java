@@ -0,0 +1,107 @@
+// License: GPL. For details, see LICENSE file.
+package reverter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.jcs3.access.CacheAccess;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.cache.JCSCacheManager;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Test class for {@link HistoryCache}
+ */
+@BasicPreferences
+class HistoryCacheTest {
+    private static final String SERVER = "https://api.example.org/api";
+    private static final String OTHER_SERVER = "https://other.example.org/api";
+
+    private static final String DATA = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<osm version=\"0.6\" generator=\"OpenStreetMap server\">"
+            + "<bounds minlat=\"50.0\" minlon=\"8.0\" maxlat=\"50.1\" maxlon=\"8.1\"/>"
+            + "<node id=\"1\" version=\"2\" changeset=\"10\" timestamp=\"2020-01-01T00:00:00Z\" user=\"a\" uid=\"1\""
+            + " visible=\"true\" lat=\"50.05\" lon=\"8.05\"><tag k=\"name\" v=\"A &amp; B\"/></node>"
+            + "<node id=\"2\" version=\"1\" changeset=\"10\" timestamp=\"2020-01-01T00:00:00Z\" user=\"a\" uid=\"1\""
+            + " visible=\"true\" lat=\"50.06\" lon=\"8.06\"/>"
+            + "<way id=\"3\" version=\"5\" changeset=\"11\" timestamp=\"2020-01-02T00:00:00Z\" user=\"b\" uid=\"2\""
+            + " visible=\"true\"><nd ref=\"1\"/><nd ref=\"2\"/><tag k=\"highway\" v=\"path\"/></way>"
+            + "</osm>";
+
+    private HistoryCache cache;
+
+    @BeforeEach
+    void setUp() {
+        Config.getPref().put("osm-server.url", SERVER);
+        CacheAccess<String, byte[]> access = JCSCacheManager.getCache("reverter-history-test");
+        access.clear();
+        cache = new HistoryCache(access);
+        cache.putAll(DATA.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static OsmPrimitive read(byte[] data, OsmPrimitiveType type, long id) throws Exception {
+        assertNotNull(data);
+        DataSet ds = OsmReader.parseDataSet(new ByteArrayInputStream(data), NullProgressMonitor.INSTANCE);
+        assertEquals(1, ds.allPrimitives().stream().filter(p -> !p.isIncomplete()).count());
+        return ds.getPrimitiveById(id, type);
+    }
+
+    /**
+     * Each object version of a document is stored as a document of its own.
+     * @throws Exception if the cached documents cannot be parsed
+     */
+    @Test
+    void testPutAll() throws Exception {
+        Node node = (Node) read(cache.get(OsmPrimitiveType.NODE, 1, 2), OsmPrimitiveType.NODE, 1);
+        assertEquals(2, node.getVersion());
+        assertEquals(10, node.getChangesetId());
+        assertEquals("A & B", node.get("name"));
+        assertEquals(50.05, node.lat(), 1e-9);
+
+        Way way = (Way) read(cache.get(OsmPrimitiveType.WAY, 3, 5), OsmPrimitiveType.WAY, 3);
+        assertEquals(5, way.getVersion());
+        assertEquals(2, way.getNodesCount());
+        assertEquals("path", way.get("highway"));
+
+        assertNotNull(cache.get(OsmPrimitiveType.NODE, 2, 1));
+        assertNull(cache.get(OsmPrimitiveType.NODE, 1, 1));
+        assertNull(cache.get(OsmPrimitiveType.WAY, 1, 2));
+    }
+
+    /**
+     * Entries stored for one server are not found for another one.
+     */
+    @Test
+    void testServerUrl() {
+        assertNotNull(cache.get(OsmPrimitiveType.NODE, 1, 2));
+        Config.getPref().put("osm-server.url", OTHER_SERVER);
+        assertNull(cache.get(OsmPrimitiveType.NODE, 1, 2));
+        Config.getPref().put("osm-server.url", SERVER);
+        assertNotNull(cache.get(OsmPrimitiveType.NODE, 1, 2));
+    }
+
+    /**
+     * Broken documents are ignored, the complete objects before the error are stored.
+     */
+    @Test
+    void testBrokenDocument() {
+        Config.getPref().put("osm-server.url", OTHER_SERVER);
+        String broken = DATA.substring(0, DATA.indexOf("<way"));
+        cache.putAll(broken.getBytes(StandardCharsets.UTF_8));
+        assertNotNull(cache.get(OsmPrimitiveType.NODE, 2, 1));
+        assertNull(cache.get(OsmPrimitiveType.WAY, 3, 5));
+    }
+}
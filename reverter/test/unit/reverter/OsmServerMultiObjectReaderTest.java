@@ -0,0 +1,180 @@
+// License: GPL. For details, see LICENSE file.
+package reverter;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.common.FileSource;
+import com.github.tomakehurst.wiremock.extension.Parameters;
+import com.github.tomakehurst.wiremock.extension.ResponseTransformer;
+import com.github.tomakehurst.wiremock.http.QueryParameter;
+import com.github.tomakehurst.wiremock.http.Request;
+import com.github.tomakehurst.wiremock.http.Response;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+import org.openstreetmap.josm.testutils.annotations.HTTP;
+
+/**
+ * Test class for {@link OsmServerMultiObjectReader}
+ */
+@BasicPreferences
+@HTTP
+class OsmServerMultiObjectReaderTest {
+    @RegisterExtension
+    static WireMockExtension wireMockExtension = WireMockExtension.newInstance()
+            .options(wireMockConfig().dynamicPort().extensions(new NodesTransformer()))
+            .build();
+
+    private static final String CAPABILITIES = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<osm version=\"0.6\" generator=\"OpenStreetMap server\"><api><version minimum=\"0.6\" maximum=\"0.6\"/>"
+            + "<area maximum=\"0.25\"/><waynodes maximum=\"2000\"/><changesets maximum_elements=\"10000\"/>"
+            + "<timeout seconds=\"300\"/><status database=\"online\" api=\"online\" gpx=\"online\"/></api></osm>";
+
+    @BeforeEach
+    void setUp(WireMockRuntimeInfo wireMockRuntimeInfo) {
+        wireMockRuntimeInfo.getWireMock().register(get(urlPathEqualTo("/capabilities"))
+                .willReturn(aResponse().withStatus(200).withBody(CAPABILITIES)));
+        Config.getPref().put("osm-server.url", wireMockRuntimeInfo.getHttpBaseUrl());
+        Config.getPref().putInt("reverter.download.retry-delay", 0);
+    }
+
+    private static Map<Long, Integer> nodeVersions(int count) {
+        Map<Long, Integer> list = new HashMap<>();
+        for (long id = 1; id <= count; id++) {
+            list.put(id, 2);
+        }
+        return list;
+    }
+
+    /**
+     * Large id lists are split into batches and every object is read exactly once.
+     * @param wireMockRuntimeInfo the mock API server
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testReadMultiObjectsInBatches(WireMockRuntimeInfo wireMockRuntimeInfo) throws Exception {
+        wireMockRuntimeInfo.getWireMock().register(get(urlPathEqualTo("/0.6/nodes"))
+                .willReturn(aResponse().withTransformers("NodesTransformer")));
+        Map<Long, Integer> list = nodeVersions(300);
+
+        OsmServerMultiObjectReader rdr = new OsmServerMultiObjectReader();
+        rdr.readMultiObjects(OsmPrimitiveType.NODE, list, NullProgressMonitor.INSTANCE);
+        DataSet ds = rdr.parseOsm(NullProgressMonitor.INSTANCE);
+
+        assertTrue(list.isEmpty());
+        assertEquals(300, ds.getNodes().size());
+        assertEquals(2, ds.getNodes().iterator().next().getVersion());
+        wireMockRuntimeInfo.getWireMock().verifyThat(3, getRequestedFor(urlPathEqualTo("/0.6/nodes")));
+    }
+
+    /**
+     * A query failing with a server error is retried.
+     * @param wireMockRuntimeInfo the mock API server
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testRetryOnServerError(WireMockRuntimeInfo wireMockRuntimeInfo) throws Exception {
+        WireMock wireMock = wireMockRuntimeInfo.getWireMock();
+        wireMock.register(get(urlPathEqualTo("/0.6/nodes")).inScenario("retry")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse().withStatus(503))
+                .willSetStateTo("recovered"));
+        wireMock.register(get(urlPathEqualTo("/0.6/nodes")).inScenario("retry")
+                .whenScenarioStateIs("recovered")
+                .willReturn(aResponse().withTransformers("NodesTransformer")));
+        Map<Long, Integer> list = nodeVersions(10);
+
+        OsmServerMultiObjectReader rdr = new OsmServerMultiObjectReader();
+        rdr.readMultiObjects(OsmPrimitiveType.NODE, list, NullProgressMonitor.INSTANCE);
+
+        assertTrue(list.isEmpty());
+        assertEquals(10, rdr.parseOsm(NullProgressMonitor.INSTANCE).getNodes().size());
+        wireMock.verifyThat(2, getRequestedFor(urlPathEqualTo("/0.6/nodes")));
+    }
+
+    /**
+     * Objects of a rejected query stay in the list and can be read one by one, falling back to
+     * the previous version if a version is unauthorized.
+     * @param wireMockRuntimeInfo the mock API server
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testFallbackToSingleReads(WireMockRuntimeInfo wireMockRuntimeInfo) throws Exception {
+        WireMock wireMock = wireMockRuntimeInfo.getWireMock();
+        wireMock.register(get(urlPathEqualTo("/0.6/nodes")).willReturn(aResponse().withStatus(403)));
+        wireMock.register(get(urlPathEqualTo("/0.6/node/1/2")).willReturn(aResponse().withStatus(403)));
+        wireMock.register(get(urlPathEqualTo("/0.6/node/1/1")).willReturn(aResponse().withBody(osm(1, 1))));
+        wireMock.register(get(urlPathEqualTo("/0.6/node/2/2")).willReturn(aResponse().withBody(osm(2, 2))));
+        Map<Long, Integer> list = nodeVersions(2);
+
+        OsmServerMultiObjectReader rdr = new OsmServerMultiObjectReader();
+        rdr.readMultiObjects(OsmPrimitiveType.NODE, list, NullProgressMonitor.INSTANCE);
+        assertEquals(2, list.size());
+        rdr.readObjectVersions(OsmPrimitiveType.NODE, list, NullProgressMonitor.INSTANCE);
+        DataSet ds = rdr.parseOsm(NullProgressMonitor.INSTANCE);
+
+        Node n1 = (Node) ds.getPrimitiveById(new SimplePrimitiveId(1, OsmPrimitiveType.NODE));
+        Node n2 = (Node) ds.getPrimitiveById(new SimplePrimitiveId(2, OsmPrimitiveType.NODE));
+        assertNotNull(n1);
+        assertNotNull(n2);
+        assertEquals(1, n1.getVersion());
+        assertEquals(2, n2.getVersion());
+    }
+
+    private static String node(long id, int version) {
+        return "<node id=\"" + id + "\" visible=\"true\" version=\"" + version + "\" changeset=\"1\" lat=\"" + (id * 1e-4)
+                + "\" lon=\"0.0\"/>";
+    }
+
+    private static String osm(long id, int version) {
+        return "<osm version=\"0.6\">" + node(id, version) + "</osm>";
+    }
+
+    /**
+     * Answers {@code /nodes?nodes=1v2,...} queries with the requested node versions.
+     */
+    private static class NodesTransformer extends ResponseTransformer {
+        @Override
+        public String getName() {
+            return "NodesTransformer";
+        }
+
+        @Override
+        public Response transform(Request request, Response response, FileSource files, Parameters parameters) {
+            QueryParameter nodes = request.queryParameter("nodes");
+            StringBuilder sb = new StringBuilder("<osm version=\"0.6\">");
+            for (String item : nodes.firstValue().split(",", -1)) {
+                String[] parts = item.split("v", -1);
+                sb.append(node(Long.parseLong(parts[0]), Integer.parseInt(parts[1])));
+            }
+            sb.append("</osm>");
+            return Response.Builder.like(response).but().body(sb.toString()).build();
+        }
+
+        @Override
+        public boolean applyGlobally() {
+            return false;
+        }
+    }
+}
@@ -123,7 +123,7 @@ public final class Jbasemap {
         File in = new File(src);
         map = new S57map(false);
         try {
-            S57osm.OSMmap(in, map, true);
+            S57osm.OSMmap(in, map);
         } catch (Exception e) {
             System.err.println("Input data error");
             System.exit(-1);
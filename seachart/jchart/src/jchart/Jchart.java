@@ -133,7 +133,7 @@ public final class Jchart {
         File in = new File(args[0]);
         zoom = Integer.parseInt(args[1]);
         map = new S57map(false);
-        S57osm.OSMmap(in, map, false);
+        S57osm.OSMmap(in, map);
         if (args.length >= 8) {
             map.bounds.minlat = Math.toRadians(Double.parseDouble(args[4]));
             map.bounds.minlon = Math.toRadians(Double.parseDouble(args[5]));
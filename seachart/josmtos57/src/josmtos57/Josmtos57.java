@@ -94,7 +94,7 @@ public final class Josmtos57 {
         }
         in = new File(args[0]);
         try {
-            S57osm.OSMmap(in, map, false);
+            S57osm.OSMmap(in, map);
         } catch (Exception e) {
             System.err.println("Input data error");
             System.exit(-1);
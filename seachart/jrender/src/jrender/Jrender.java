@@ -166,7 +166,7 @@ public final class Jrender {
         deletes = new HashMap<>();
         File in = new File(srcdir + xtile + "-" + ytile + "-" + zoom + ".osm");
         map = new S57map(true);
-        S57osm.OSMmap(in, map, false);
+        S57osm.OSMmap(in, map);
         context = new Context();
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         ImageIO.write(new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB), "png", bos);
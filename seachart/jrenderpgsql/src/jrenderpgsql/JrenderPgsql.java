@@ -397,7 +397,7 @@ public final class JrenderPgsql {
 
         BufferedReader in = new BufferedReader(new StringReader(combinedBuf.toString()));
         map = new S57map(true);
-        S57osm.OSMmap(in, map, false);
+        S57osm.OSMmap(in, map);
         in.close();
 
         // this ChartContext is mainly there for converting lat/lon to
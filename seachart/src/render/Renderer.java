@@ -22,11 +22,14 @@ import java.awt.geom.RoundRectangle2D;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.BitSet;
 
 import s57.S57map;
+import s57.S57map.Feature;
 import s57.S57map.GeomIterator;
 import s57.S57map.Pflag;
 import s57.S57map.Snode;
+import s57.S57obj.Obj;
 import s57.S57val.UniHLU;
 import symbols.Areas;
 import symbols.Symbols;
@@ -58,6 +61,7 @@ public final class Renderer {
     static double sScale;
     static Graphics2D g2;
     static int zoom;
+    static BitSet cover;
 
     public static void reRender(Graphics2D g, Rectangle rect, int z, double factor, S57map m, ChartContext c) {
         g2 = g;
@@ -65,7 +69,11 @@ public final class Renderer {
         context = c;
         map = m;
         sScale = symbolScale[zoom] * factor;
+        cover = null;
         if (map != null) {
+            double margin = Math.max(rect.width, rect.height);
+            cover = map.grid().cover(context::getPoint,
+                    new Rectangle2D.Double(rect.x - margin, rect.y - margin, rect.width + 2 * margin, rect.height + 2 * margin));
             if (context.clip()) {
                 Point2D tl = context.getPoint(new Snode(map.bounds.maxlat, map.bounds.minlon));
                 Point2D br = context.getPoint(new Snode(map.bounds.minlat, map.bounds.maxlon));
@@ -84,6 +92,18 @@ public final class Renderer {
         }
     }
 
+    static ArrayList<Feature> features(Obj obj) {
+        switch (obj) {
+        case LIGHTS:
+        case LITMAJ:
+        case LITMIN:
+            // Light sectors and ranges can reach far beyond the window margin
+            return map.features.get(obj);
+        default:
+            return (cover != null) ? map.grid().select(obj, cover) : map.features.get(obj);
+        }
+    }
+
     public static void symbol(Symbol symbol) {
         Point2D point = context.getPoint(Rules.feature.geom.centre);
         Symbols.drawSymbol(g2, symbol, sScale, point.getX(), point.getY(), null, null);
@@ -269,7 +269,7 @@ public class Rules {
 	static ArrayList<Feature> objects;
 
 	static boolean testObject(Obj obj) {
-		return ((objects = Renderer.map.features.get(obj)) != null);
+		return ((objects = Renderer.features(obj)) != null);
 	}
 
 	static boolean testFeature(Feature f) {
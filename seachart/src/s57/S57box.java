@@ -77,7 +77,7 @@ public final class S57box { //S57 bounding box truncation
                 land.objs.get(Obj.LNDARE).put(0, new AttMap());
                 if (feature.geom.prim == Pflag.AREA) {
                     land.geom = feature.geom;
-                    map.features.get(Obj.LNDARE).add(land);
+                    map.addFeature(land);
                 } else if (feature.geom.prim == Pflag.LINE) {
                     land.geom.prim = Pflag.LINE;
                     land.geom.elems.addAll(feature.geom.elems);
@@ -117,7 +117,7 @@ public final class S57box { //S57 bounding box truncation
                 map.sortGeom(land.land);
                 if (land.land.geom.prim == Pflag.AREA) {
                     islands.add(land);
-                    map.features.get(Obj.LNDARE).add(land.land);
+                    map.addFeature(land.land);
                 }
             }
             for (Land island : islands) {
@@ -171,7 +171,7 @@ public final class S57box { //S57 bounding box truncation
                 land.land.geom.elems.add(new Prim(map.xref));
                 land.land.geom.comps.get(0).size++;
                 land.land.geom.prim = Pflag.AREA;
-                map.features.get(Obj.LNDARE).add(land.land);
+                map.addFeature(land.land);
             }
         }
         return;
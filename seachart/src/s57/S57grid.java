@@ -0,0 +1,241 @@
+// License: GPL. For details, see LICENSE file.
+package s57;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import s57.S57map.Edge;
+import s57.S57map.Feature;
+import s57.S57map.Pflag;
+import s57.S57map.Prim;
+import s57.S57map.Snode;
+import s57.S57obj.Obj;
+
+/**
+ * Uniform grid over the bounding boxes of the features in an S57map, so that
+ * rendering only visits the features that can appear in the render window.
+ * Each feature type keeps its own compact cell table holding indices into the
+ * {@code S57map.features} list, so selections keep the drawing order of the map.
+ * The grid is rebuilt when features are added with {@link S57map#addFeature}.
+ */
+public class S57grid { // S57 feature spatial index
+    // CHECKSTYLE.OFF: LineLength
+
+    static final int MAXSIDE = 64;
+
+    static class Layer {        // Cell table of one feature type
+        int[] start;                // Offset of each cell in items (CSR layout)
+        int[] items;                // Feature list indices, grouped by cell
+        int[] always;                // Features without usable geometry
+    }
+
+    private final S57map map;
+    private final int modCount;
+    private final EnumMap<Obj, Layer> layers;
+    private double minlat;
+    private double minlon;
+    private double dlat;
+    private double dlon;
+    private int rows;
+    private int cols;
+
+    public S57grid(S57map m) {
+        map = m;
+        modCount = m.modCount;
+        layers = new EnumMap<>(Obj.class);
+        EnumMap<Obj, double[][]> boxes = new EnumMap<>(Obj.class);
+        double lat0 = Double.POSITIVE_INFINITY;
+        double lon0 = Double.POSITIVE_INFINITY;
+        double lat1 = Double.NEGATIVE_INFINITY;
+        double lon1 = Double.NEGATIVE_INFINITY;
+        int total = 0;
+        for (Map.Entry<Obj, ArrayList<Feature>> entry : map.features.entrySet()) {
+            ArrayList<Feature> list = entry.getValue();
+            double[][] bb = new double[list.size()][];
+            for (int i = 0; i < list.size(); i++) {
+                bb[i] = box(list.get(i));
+                if (bb[i] != null) {
+                    lat0 = Math.min(lat0, bb[i][0]);
+                    lon0 = Math.min(lon0, bb[i][1]);
+                    lat1 = Math.max(lat1, bb[i][2]);
+                    lon1 = Math.max(lon1, bb[i][3]);
+                }
+            }
+            boxes.put(entry.getKey(), bb);
+            total += list.size();
+        }
+        if (lat0 > lat1) {
+            lat0 = lat1 = lon0 = lon1 = 0;
+        }
+        int side = Math.max(1, Math.min(MAXSIDE, (int) Math.sqrt(total / 8.0)));
+        rows = (lat1 > lat0) ? side : 1;
+        cols = (lon1 > lon0) ? side : 1;
+        minlat = lat0;
+        minlon = lon0;
+        dlat = (lat1 > lat0) ? (lat1 - lat0) / rows : 1.0;
+        dlon = (lon1 > lon0) ? (lon1 - lon0) / cols : 1.0;
+        for (Map.Entry<Obj, double[][]> entry : boxes.entrySet()) {
+            layers.put(entry.getKey(), index(entry.getValue()));
+        }
+    }
+
+    /**
+     * Whether features have been added to the map since the grid was built.
+     * @return true if the grid needs to be rebuilt
+     */
+    boolean stale() {
+        return modCount != map.modCount;
+    }
+
+    /**
+     * Computes the cells whose projected extent intersects a window.
+     * @param project projection from map coordinates to window coordinates
+     * @param window the window, in projected coordinates
+     * @return the set of visible cells, for use with {@link #select}
+     */
+    public BitSet cover(Function<Snode, Point2D> project, Rectangle2D window) {
+        Point2D[] corners = new Point2D[(rows + 1) * (cols + 1)];
+        for (int r = 0; r <= rows; r++) {
+            for (int c = 0; c <= cols; c++) {
+                corners[r * (cols + 1) + c] = project.apply(new Snode(minlat + r * dlat, minlon + c * dlon));
+            }
+        }
+        BitSet cells = new BitSet(rows * cols);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                double x0 = Double.POSITIVE_INFINITY;
+                double y0 = Double.POSITIVE_INFINITY;
+                double x1 = Double.NEGATIVE_INFINITY;
+                double y1 = Double.NEGATIVE_INFINITY;
+                boolean valid = true;
+                for (int k = 0; k < 4; k++) {
+                    Point2D p = corners[(r + k / 2) * (cols + 1) + c + k % 2];
+                    if ((p == null) || Double.isNaN(p.getX()) || Double.isNaN(p.getY()) || Double.isInfinite(p.getX()) || Double.isInfinite(p.getY())) {
+                        valid = false;
+                        break;
+                    }
+                    x0 = Math.min(x0, p.getX());
+                    y0 = Math.min(y0, p.getY());
+                    x1 = Math.max(x1, p.getX());
+                    y1 = Math.max(y1, p.getY());
+                }
+                if (!valid || ((x1 >= window.getMinX()) && (x0 <= window.getMaxX()) && (y1 >= window.getMinY()) && (y0 <= window.getMaxY()))) {
+                    cells.set(r * cols + c);
+                }
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Selects the features of a type that lie in a set of cells.
+     * @param obj the feature type
+     * @param cells the cells, as returned by {@link #cover}
+     * @return the features, in map order, or null if the map has none of this type
+     */
+    public ArrayList<Feature> select(Obj obj, BitSet cells) {
+        ArrayList<Feature> list = map.features.get(obj);
+        Layer layer = layers.get(obj);
+        if ((list == null) || (layer == null) || stale()) {
+            return list;
+        }
+        BitSet hits = new BitSet(list.size());
+        for (int cell = cells.nextSetBit(0); cell >= 0; cell = cells.nextSetBit(cell + 1)) {
+            for (int i = layer.start[cell]; i < layer.start[cell + 1]; i++) {
+                hits.set(layer.items[i]);
+            }
+        }
+        for (int i : layer.always) {
+            hits.set(i);
+        }
+        if (hits.cardinality() == list.size()) {
+            return list;
+        }
+        ArrayList<Feature> result = new ArrayList<>(hits.cardinality());
+        for (int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1)) {
+            result.add(list.get(i));
+        }
+        return result;
+    }
+
+    private Layer index(double[][] bb) {
+        Layer layer = new Layer();
+        layer.start = new int[rows * cols + 1];
+        int always = 0;
+        for (double[] b : bb) {
+            if (b == null) {
+                always++;
+            } else {
+                for (int r = row(b[0]); r <= row(b[2]); r++) {
+                    for (int c = col(b[1]); c <= col(b[3]); c++) {
+                        layer.start[r * cols + c + 1]++;
+                    }
+                }
+            }
+        }
+        for (int cell = 0; cell < rows * cols; cell++) {
+            layer.start[cell + 1] += layer.start[cell];
+        }
+        layer.items = new int[layer.start[rows * cols]];
+        layer.always = new int[always];
+        int[] fill = Arrays.copyOf(layer.start, rows * cols);
+        always = 0;
+        for (int i = 0; i < bb.length; i++) {
+            double[] b = bb[i];
+            if (b == null) {
+                layer.always[always++] = i;
+            } else {
+                for (int r = row(b[0]); r <= row(b[2]); r++) {
+                    for (int c = col(b[1]); c <= col(b[3]); c++) {
+                        layer.items[fill[r * cols + c]++] = i;
+                    }
+                }
+            }
+        }
+        return layer;
+    }
+
+    private int row(double lat) {
+        return Math.max(0, Math.min(rows - 1, (int) ((lat - minlat) / dlat)));
+    }
+
+    private int col(double lon) {
+        return Math.max(0, Math.min(cols - 1, (int) ((lon - minlon) / dlon)));
+    }
+
+    private double[] box(Feature feature) {
+        if (feature.geom.prim == Pflag.NOSP) {
+            return null;
+        }
+        double[] b = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        if ((feature.geom.prim == Pflag.LINE) || (feature.geom.prim == Pflag.AREA)) {
+            for (Prim prim : feature.geom.elems) {
+                Edge edge = map.edges.get(prim.id);
+                if (edge != null) {    // Missing edges are not drawn either
+                    extend(b, map.nodes.get(edge.first));
+                    for (int i = 0; i < edge.nodes.size(); i++) {
+                        extend(b, map.nodes.get(edge.nodes.get(i)));
+                    }
+                    extend(b, map.nodes.get(edge.last));
+                }
+            }
+        }
+        extend(b, feature.geom.centre);
+        return (b[0] <= b[2]) ? b : null;
+    }
+
+    private static void extend(double[] b, Snode node) {
+        if ((node != null) && !Double.isNaN(node.lat) && !Double.isNaN(node.lon)) {
+            b[0] = Math.min(b[0], node.lat);
+            b[1] = Math.min(b[1], node.lon);
+            b[2] = Math.max(b[2], node.lat);
+            b[3] = Math.max(b[3], node.lon);
+        }
+    }
+}
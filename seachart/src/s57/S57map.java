@@ -2,6 +2,7 @@
 package s57;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.ListIterator;
@@ -76,12 +77,44 @@ public class S57map { // S57/OSM map generation methods
     public static class Edge {        // A polyline segment
         public long first;    // First CONN node
         public long last;        // Last CONN node
-        public ArrayList<Long> nodes; // Inner ANON nodes
+        public RefList nodes; // Inner ANON nodes
 
         public Edge() {
             first = 0;
             last = 0;
-            nodes = new ArrayList<>();
+            nodes = new RefList();
+        }
+    }
+
+    public static class RefList {    // Packed list of node refs
+        private long[] refs;
+        private int size;
+
+        public RefList() {
+            refs = new long[4];
+            size = 0;
+        }
+
+        public void add(long ref) {
+            if (size == refs.length) {
+                refs = Arrays.copyOf(refs, size * 2);
+            }
+            refs[size++] = ref;
+        }
+
+        public long get(int i) {
+            if (i >= size) {
+                throw new IndexOutOfBoundsException(Integer.toString(i));
+            }
+            return refs[i];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
         }
     }
 
@@ -122,13 +155,131 @@ public class S57map { // S57/OSM map generation methods
         }
     }
 
-    public static class NodeTab extends HashMap<Long, Snode> {
+    public static class RefTab<T> {    // Open addressed table keyed by primitive refs
+        private long[] keys;
+        private Object[] vals;
+        private Object zero;    // Value for ref 0, which cannot be held in the slots
+        private int size;
+
+        public RefTab() {
+            keys = new long[16];
+            vals = new Object[16];
+            zero = null;
+            size = 0;
+        }
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            long h = key * 0x9E3779B97F4A7C15L;
+            int i = (int) (h ^ (h >>> 32)) & mask;
+            while ((vals[i] != null) && (keys[i] != key)) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        @SuppressWarnings("unchecked")
+        public T get(long key) {
+            if (key == 0) {
+                return (T) zero;
+            }
+            return (T) vals[slot(key)];
+        }
+
+        public boolean containsKey(long key) {
+            return get(key) != null;
+        }
+
+        public void put(long key, T val) {
+            if (val == null) {
+                throw new IllegalArgumentException("null value for ref " + key);
+            }
+            if (key == 0) {
+                if (zero == null) {
+                    size++;
+                }
+                zero = val;
+                return;
+            }
+            int i = slot(key);
+            if (vals[i] == null) {
+                if ((size + 1) * 4 > keys.length * 3) {
+                    grow();
+                    i = slot(key);
+                }
+                keys[i] = key;
+                size++;
+            }
+            vals[i] = val;
+        }
+
+        private void grow() {
+            long[] okeys = keys;
+            Object[] ovals = vals;
+            keys = new long[okeys.length * 2];
+            vals = new Object[okeys.length * 2];
+            for (int j = 0; j < okeys.length; j++) {
+                if (ovals[j] != null) {
+                    int i = slot(okeys[j]);
+                    keys[i] = okeys[j];
+                    vals[i] = ovals[j];
+                }
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public RefIterator iterator() {
+            return new RefIterator();
+        }
+
+        public class RefIterator {
+            int pos;
+            int next;
+
+            RefIterator() {
+                pos = -2;
+                next = (zero != null) ? -1 : seek(0);
+            }
+
+            private int seek(int from) {
+                int i = from;
+                while ((i < vals.length) && (vals[i] == null)) {
+                    i++;
+                }
+                return i;
+            }
+
+            public boolean hasNext() {
+                return next < vals.length;
+            }
+
+            public long nextRef() {
+                pos = next;
+                next = seek(pos + 1);
+                return (pos < 0) ? 0 : keys[pos];
+            }
+
+            @SuppressWarnings("unchecked")
+            public T value() {
+                return (T) ((pos < 0) ? zero : vals[pos]);
+            }
+        }
+    }
+
+    public static class NodeTab extends RefTab<Snode> {
         public NodeTab() {
             super();
         }
     }
 
-    public static class EdgeTab extends HashMap<Long, Edge> {
+    public static class EdgeTab extends RefTab<Edge> {
         public EdgeTab() {
             super();
         }
@@ -232,6 +383,8 @@ public class S57map { // S57/OSM map generation methods
     public FtrTab index;
     public long xref;
 
+    private S57grid grid;
+    int modCount;               // Count of feature list changes, for the spatial index
     private long cref;
     private Feature feature;
     private Edge edge;
@@ -246,6 +399,8 @@ public class S57map { // S57/OSM map generation methods
         features = new FtrMap();    // All features in map, grouped by type
         index = new FtrTab();       // Feature look-up table
         bounds = new MapBounds();
+        grid = null;                // Feature spatial index, built on first use
+        modCount = 0;
         cref = 0x0000ffffffff0000L; // Compound reference generator
         xref = 0x0fff000000000000L; // Extras reference generator
     }
@@ -318,6 +473,7 @@ public class S57map { // S57/OSM map generation methods
     }
 
     public void endFile() {
+        grid = null;
         for (long id : index.keySet()) {
             Feature feature = index.get(id);
             sortGeom(feature);
@@ -344,10 +500,7 @@ public class S57map { // S57/OSM map generation methods
                 feature.reln = Rflag.MASTER;
             }
             if ((feature.type != Obj.UNKOBJ) && (feature.reln == Rflag.MASTER)) {
-                if (features.get(feature.type) == null) {
-                    features.put(feature.type, new ArrayList<Feature>());
-                }
-                features.get(feature.type).add(feature);
+                addFeature(feature);
             }
         }
         for (long id : index.keySet()) {
@@ -514,10 +667,7 @@ public class S57map { // S57/OSM map generation methods
         if (sortGeom(feature) && !((edge != null) && (edge.last == 0))) {
             if (feature.type != Obj.UNKOBJ) {
                 index.put(id, feature);
-                if (features.get(feature.type) == null) {
-                    features.put(feature.type, new ArrayList<Feature>());
-                }
-                features.get(feature.type).add(feature);
+                addFeature(feature);
             }
             for (KeyVal<?> kvx : osm) {
                 Feature base = new Feature();
@@ -532,10 +682,7 @@ public class S57map { // S57/OSM map generation methods
                     atts.put(kvx.att, new AttVal<>(kvx.conv, kvx.val));
                 }
                 index.put(++xref, base);
-                if (features.get(kvx.obj) == null) {
-                    features.put(kvx.obj, new ArrayList<Feature>());
-                }
-                features.get(kvx.obj).add(base);
+                addFeature(base);
             }
             /*            if (!osm.isEmpty()) {
                 if (feature.type == Obj.UNKOBJ) {
@@ -575,10 +722,28 @@ public class S57map { // S57/OSM map generation methods
         }
     }
 
+    public void addFeature(Feature feature) {
+        ArrayList<Feature> list = features.get(feature.type);
+        if (list == null) {
+            list = new ArrayList<>();
+            features.put(feature.type, list);
+        }
+        list.add(feature);
+        modCount++;
+    }
+
     public void mapDone() {
         if (!sea) {
             S57box.bBox(this);
         }
+        grid = null;
+    }
+
+    public S57grid grid() {
+        if ((grid == null) || grid.stale()) {
+            grid = new S57grid(this);
+        }
+        return grid;
     }
 
     // Utility methods
@@ -718,12 +883,12 @@ public class S57map { // S57/OSM map generation methods
     public class EdgeIterator {
         Edge edge;
         boolean forward;
-        ListIterator<Long> it;
+        int it;
 
         public EdgeIterator(Edge e, boolean dir) {
             edge = e;
             forward = dir;
-            it = null;
+            it = -1;
         }
 
         public boolean hasNext() {
@@ -733,24 +898,24 @@ public class S57map { // S57/OSM map generation methods
         public long nextRef() {
             long ref = 0;
             if (forward) {
-                if (it == null) {
+                if (it < 0) {
                     ref = edge.first;
-                    it = edge.nodes.listIterator();
+                    it = 0;
                 } else {
-                    if (it.hasNext()) {
-                        ref = it.next();
+                    if (it < edge.nodes.size()) {
+                        ref = edge.nodes.get(it++);
                     } else {
                         ref = edge.last;
                         edge = null;
                     }
                 }
             } else {
-                if (it == null) {
+                if (it < 0) {
                     ref = edge.last;
-                    it = edge.nodes.listIterator(edge.nodes.size());
+                    it = edge.nodes.size();
                 } else {
-                    if (it.hasPrevious()) {
-                        ref = it.previous();
+                    if (it > 0) {
+                        ref = edge.nodes.get(--it);
                     } else {
                         ref = edge.first;
                         edge = null;
@@ -1,12 +1,19 @@
 // License: GPL. For details, see LICENSE file.
 package s57;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.DocumentBuilder;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Node;
@@ -14,6 +21,9 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 
 import s57.S57att.Att;
+import s57.S57map.Edge;
+import s57.S57map.MapBounds;
+import s57.S57map.RefList;
 import s57.S57map.Snode;
 import s57.S57obj.Obj;
 import s57.S57val.CatROD;
@@ -97,7 +107,220 @@ public final class S57osm { // OSM to S57 Object/Attribute and Object/Primitive
         return;
     }
 
+    /**
+     * Builds the map from an OSM file in a single streaming pass, without holding the document in memory.
+     * Elements are expected in the usual OSM order (nodes, then ways, then relations).
+     * @param in the OSM file
+     * @param map the map to build
+     * @param bb ignored
+     * @throws Exception if the file cannot be read or parsed
+     * @deprecated use {@link #OSMmap(File, S57map)}, the flag has never been used
+     */
+    @Deprecated
     public static void OSMmap(File in, S57map map, boolean bb) throws Exception {
+        OSMmap(in, map);
+    }
+
+    /**
+     * Builds the map from an OSM file in a single streaming pass, without holding the document in memory.
+     * Elements are expected in the usual OSM order (nodes, then ways, then relations).
+     * @param in the OSM file
+     * @param map the map to build
+     * @throws Exception if the file cannot be read or parsed
+     */
+    public static void OSMmap(File in, S57map map) throws Exception {
+        OSMmap(in, map, null);
+    }
+
+    /**
+     * Builds the map from an OSM file in a single streaming pass, keeping only the features near the clip bounds.
+     * @param in the OSM file
+     * @param map the map to build
+     * @param clip if not null, the tags of nodes outside these bounds (in radians), and of ways and relations
+     * whose bounding box does not intersect them, are dropped; their geometry is kept for the features that use it
+     * @throws Exception if the file cannot be read or parsed
+     */
+    public static void OSMmap(File in, S57map map, MapBounds clip) throws Exception {
+        try (InputStream is = new BufferedInputStream(new FileInputStream(in))) {
+            OSMmap(is, map, clip);
+        }
+    }
+
+    public static void OSMmap(InputStream in, S57map map) throws Exception {
+        OSMmap(in, map, null);
+    }
+
+    public static void OSMmap(InputStream in, S57map map, MapBounds clip) throws Exception {
+        long id = 0;
+        boolean inside = true;
+        RefList refs = new RefList();
+        ArrayList<String[]> tags = new ArrayList<>();
+        ArrayList<long[]> members = new ArrayList<>();    // {ref, outer}
+
+        map.nodes.put(1L, new Snode());
+        map.nodes.put(2L, new Snode());
+        map.nodes.put(3L, new Snode());
+        map.nodes.put(4L, new Snode());
+
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XMLStreamReader xml = factory.createXMLStreamReader(in);
+        try {
+            while (xml.hasNext() && (xml.next() != XMLStreamConstants.START_ELEMENT)) {
+                continue;
+            }
+            if (!xml.isStartElement() || !xml.getLocalName().equals("osm")) {
+                System.err.println("OSM file format error");
+                System.exit(-1);
+            }
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (xml.getLocalName()) {
+                    case "bounds":
+                        map.bounds.minlat = Math.toRadians(Double.parseDouble(xml.getAttributeValue(null, "minlat")));
+                        map.nodes.get(2L).lat = map.bounds.minlat;
+                        map.nodes.get(3L).lat = map.bounds.minlat;
+                        map.bounds.minlon = Math.toRadians(Double.parseDouble(xml.getAttributeValue(null, "minlon")));
+                        map.nodes.get(1L).lon = map.bounds.minlon;
+                        map.nodes.get(2L).lon = map.bounds.minlon;
+                        map.bounds.maxlat = Math.toRadians(Double.parseDouble(xml.getAttributeValue(null, "maxlat")));
+                        map.nodes.get(1L).lat = map.bounds.maxlat;
+                        map.nodes.get(4L).lat = map.bounds.maxlat;
+                        map.bounds.maxlon = Math.toRadians(Double.parseDouble(xml.getAttributeValue(null, "maxlon")));
+                        map.nodes.get(3L).lon = map.bounds.maxlon;
+                        map.nodes.get(4L).lon = map.bounds.maxlon;
+                        break;
+                    case "node":
+                        id = Long.parseLong(xml.getAttributeValue(null, "id"));
+                        double lat = Double.parseDouble(xml.getAttributeValue(null, "lat"));
+                        double lon = Double.parseDouble(xml.getAttributeValue(null, "lon"));
+                        map.addNode(id, lat, lon);
+                        inside = (clip == null) || inClip(map.nodes.get(id), clip);
+                        tags.clear();
+                        break;
+                    case "way":
+                    case "relation":
+                        id = Long.parseLong(xml.getAttributeValue(null, "id"));
+                        refs = new RefList();
+                        members.clear();
+                        tags.clear();
+                        break;
+                    case "nd":
+                        refs.add(Long.parseLong(xml.getAttributeValue(null, "ref")));
+                        break;
+                    case "member":
+                        String role = xml.getAttributeValue(null, "role");
+                        if ((role.equals("outer") || role.equals("inner")) && xml.getAttributeValue(null, "type").equals("way")) {
+                            members.add(new long[] {Long.parseLong(xml.getAttributeValue(null, "ref")), role.equals("outer") ? 1 : 0 });
+                        }
+                        break;
+                    case "tag":
+                        String k = xml.getAttributeValue(null, "k");
+                        String v = xml.getAttributeValue(null, "v");
+                        if (!k.isEmpty() && !v.isEmpty()) {
+                            tags.add(new String[] {k, v });
+                        }
+                        break;
+                    default:
+                        break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    switch (xml.getLocalName()) {
+                    case "node":
+                        if (inside) {
+                            addTags(map, tags);
+                        }
+                        map.tagsDone(id);
+                        break;
+                    case "way":
+                        map.addEdge(id);
+                        MapBounds box = new MapBounds();
+                        for (int i = 0; i < refs.size(); i++) {
+                            try {
+                                map.addToEdge(refs.get(i));
+                            } catch (Exception e) {
+                                System.err.println("Unknown node in way");
+                                System.exit(-1);
+                            }
+                            if (clip != null) {
+                                extend(box, map.nodes.get(refs.get(i)));
+                            }
+                        }
+                        if ((clip == null) || intersects(box, clip)) {
+                            addTags(map, tags);
+                        }
+                        map.tagsDone(id);
+                        break;
+                    case "relation":
+                        map.addArea(id);
+                        MapBounds area = new MapBounds();
+                        for (long[] member : members) {
+                            map.addToArea(member[0], member[1] != 0);
+                            if (clip != null) {
+                                extend(map, area, map.edges.get(member[0]));
+                            }
+                        }
+                        if ((clip == null) || intersects(area, clip)) {
+                            addTags(map, tags);
+                        }
+                        map.tagsDone(id);
+                        break;
+                    default:
+                        break;
+                    }
+                }
+            }
+        } finally {
+            xml.close();
+        }
+
+        map.mapDone();
+        return;
+    }
+
+    private static void addTags(S57map map, ArrayList<String[]> tags) {
+        for (String[] tag : tags) {
+            map.addTag(tag[0], tag[1]);
+        }
+    }
+
+    private static boolean inClip(Snode node, MapBounds clip) {
+        return (node != null) && (node.lat >= clip.minlat) && (node.lat <= clip.maxlat) && (node.lon >= clip.minlon) && (node.lon <= clip.maxlon);
+    }
+
+    private static boolean intersects(MapBounds box, MapBounds clip) {
+        return (box.minlat <= clip.maxlat) && (box.maxlat >= clip.minlat) && (box.minlon <= clip.maxlon) && (box.maxlon >= clip.minlon);
+    }
+
+    private static void extend(MapBounds box, Snode node) {
+        if (node != null) {
+            box.minlat = Math.min(box.minlat, node.lat);
+            box.maxlat = Math.max(box.maxlat, node.lat);
+            box.minlon = Math.min(box.minlon, node.lon);
+            box.maxlon = Math.max(box.maxlon, node.lon);
+        }
+    }
+
+    private static void extend(S57map map, MapBounds box, Edge edge) {
+        if (edge != null) {
+            extend(box, map.nodes.get(edge.first));
+            extend(box, map.nodes.get(edge.last));
+            for (int i = 0; i < edge.nodes.size(); i++) {
+                extend(box, map.nodes.get(edge.nodes.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Builds the map from an OSM file parsed into a DOM tree.
+     * This holds the whole document in memory and is kept for comparison with the streaming reader.
+     * @param in the OSM file
+     * @param map the map to build
+     * @throws Exception if the file cannot be read or parsed
+     */
+    public static void OSMdom(File in, S57map map) throws Exception {
         double lat = 0;
         double lon = 0;
         long id = 0;
@@ -0,0 +1,240 @@
+// License: GPL. For details, see LICENSE file.
+package s57;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import s57.S57att.Att;
+import s57.S57map.AttMap;
+import s57.S57map.Comp;
+import s57.S57map.Edge;
+import s57.S57map.EdgeTab;
+import s57.S57map.Feature;
+import s57.S57map.MapBounds;
+import s57.S57map.NodeTab;
+import s57.S57map.Prim;
+import s57.S57map.Reln;
+import s57.S57map.Snode;
+import s57.S57obj.Obj;
+
+/**
+ * Unit test of {@link S57osm}: the streaming reader has to build the same map as the DOM reader.
+ */
+class S57osmTest {
+
+    private static final String OSM = String.join("\n",
+            "<?xml version='1.0' encoding='UTF-8'?>",
+            "<osm version='0.6' generator='test'>",
+            "  <bounds minlat='50.0' minlon='-1.0' maxlat='50.1' maxlon='-0.8'/>",
+            "  <node id='-10' lat='50.05' lon='-0.95'>",
+            "    <tag k='seamark:type' v='buoy_lateral'/>",
+            "    <tag k='seamark:buoy_lateral:category' v='port'/>",
+            "    <tag k='seamark:buoy_lateral:colour' v='red'/>",
+            "    <tag k='seamark:name' v='No 1'/>",
+            "    <tag k='seamark:light:1:colour' v='red'/>",
+            "    <tag k='seamark:light:2:colour' v='white'/>",
+            "  </node>",
+            "  <node id='-11' lat='50.06' lon='-0.9'>",
+            "    <tag k='seamark:type' v='sounding'/>",
+            "    <tag k='seamark:sounding:depth' v='12.5'/>",
+            "  </node>",
+            "  <node id='-12' lat='50.02' lon='-0.99'>",
+            "    <tag k='note' v=''/>",
+            "  </node>",
+            "  <node id='-13' lat='50.03' lon='-0.97'/>",
+            "  <node id='-14' lat='50.08' lon='-0.85'/>",
+            "  <node id='-20' lat='50.01' lon='-0.95'/>",
+            "  <node id='-21' lat='50.01' lon='-0.85'/>",
+            "  <node id='-22' lat='50.09' lon='-0.85'/>",
+            "  <node id='-23' lat='50.09' lon='-0.95'/>",
+            "  <node id='-30' lat='50.04' lon='-0.92'/>",
+            "  <node id='-31' lat='50.04' lon='-0.88'/>",
+            "  <node id='-32' lat='50.06' lon='-0.88'/>",
+            "  <way id='-100'>",
+            "    <nd ref='-12'/>",
+            "    <nd ref='-13'/>",
+            "    <nd ref='-14'/>",
+            "    <tag k='natural' v='coastline'/>",
+            "  </way>",
+            "  <way id='-101'>",
+            "    <nd ref='-20'/>",
+            "    <nd ref='-21'/>",
+            "    <nd ref='-22'/>",
+            "    <nd ref='-23'/>",
+            "    <nd ref='-20'/>",
+            "  </way>",
+            "  <way id='-102'>",
+            "    <nd ref='-30'/>",
+            "    <nd ref='-31'/>",
+            "    <nd ref='-32'/>",
+            "    <nd ref='-30'/>",
+            "    <tag k='natural' v='water'/>",
+            "  </way>",
+            "  <relation id='-200'>",
+            "    <member type='way' ref='-101' role='outer'/>",
+            "    <member type='way' ref='-102' role='inner'/>",
+            "    <member type='node' ref='-10' role='outer'/>",
+            "    <tag k='type' v='multipolygon'/>",
+            "    <tag k='seamark:type' v='anchorage'/>",
+            "    <tag k='seamark:name' v='Outer Roads'/>",
+            "  </relation>",
+            "</osm>",
+            "");
+
+    @TempDir
+    File tempFolder;
+
+    private static String dump(Snode node) {
+        return node.lat + " " + node.lon + " " + node.flg + " " + node.val;
+    }
+
+    private static String dump(AttMap atts) {
+        Map<Att, String> sorted = new EnumMap<>(Att.class);
+        for (Map.Entry<Att, S57val.AttVal<?>> entry : atts.entrySet()) {
+            sorted.put(entry.getKey(), entry.getValue().conv + "=" + entry.getValue().val);
+        }
+        return sorted.toString();
+    }
+
+    private static String dump(Feature feature) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(feature.type).append(' ').append(feature.reln).append(' ').append(feature.geom.prim);
+        for (Prim prim : feature.geom.elems) {
+            sb.append(" (").append(prim.id).append(' ').append(prim.forward).append(' ').append(prim.outer)
+                .append(' ').append(prim.trunc).append(')');
+        }
+        sb.append(" outers=").append(feature.geom.outers).append(" inners=").append(feature.geom.inners);
+        for (Comp comp : feature.geom.comps) {
+            sb.append(" [").append(comp.ref).append(' ').append(comp.size).append(']');
+        }
+        sb.append(" area=").append(feature.geom.area).append(" length=").append(feature.geom.length)
+            .append(" centre=").append(dump(feature.geom.centre));
+        sb.append(" atts=").append(dump(feature.atts));
+        for (Map.Entry<Obj, S57map.ObjTab> entry : feature.objs.entrySet()) {
+            sb.append(' ').append(entry.getKey()).append('{');
+            for (Map.Entry<Integer, AttMap> obj : new TreeMap<>(entry.getValue()).entrySet()) {
+                sb.append(obj.getKey()).append(':').append(dump(obj.getValue()));
+            }
+            sb.append('}');
+        }
+        for (Reln rel : feature.rels) {
+            sb.append(" rel=").append(rel.id).append(' ').append(rel.reln);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Replies a description of the map which doesn't depend on the iteration order of its hash tables.
+     */
+    private static List<String> dump(S57map map) {
+        List<String> lines = new ArrayList<>();
+        lines.add("bounds " + map.bounds.minlat + " " + map.bounds.minlon + " " + map.bounds.maxlat + " " + map.bounds.maxlon);
+        Map<Long, String> nodes = new TreeMap<>();
+        for (NodeTab.RefIterator it = map.nodes.iterator(); it.hasNext();) {
+            long ref = it.nextRef();
+            nodes.put(ref, dump(it.value()));
+        }
+        nodes.forEach((ref, node) -> lines.add("node " + ref + " " + node));
+        Map<Long, String> edges = new TreeMap<>();
+        for (EdgeTab.RefIterator it = map.edges.iterator(); it.hasNext();) {
+            long ref = it.nextRef();
+            Edge edge = it.value();
+            StringBuilder sb = new StringBuilder().append(edge.first).append(' ').append(edge.last);
+            for (int i = 0; i < edge.nodes.size(); i++) {
+                sb.append(' ').append(edge.nodes.get(i));
+            }
+            edges.put(ref, sb.toString());
+        }
+        edges.forEach((ref, edge) -> lines.add("edge " + ref + " " + edge));
+        for (Map.Entry<Obj, ArrayList<Feature>> entry : map.features.entrySet()) {
+            for (Feature feature : entry.getValue()) {
+                lines.add("feature " + entry.getKey() + " " + dump(feature));
+            }
+        }
+        new TreeMap<>(map.index).forEach((ref, feature) -> lines.add("index " + ref + " " + dump(feature)));
+        lines.add("xref " + map.xref);
+        return lines;
+    }
+
+    @Test
+    void testSameAsDom() throws Exception {
+        File file = new File(tempFolder, "test.osm");
+        Files.write(file.toPath(), OSM.getBytes(StandardCharsets.UTF_8));
+
+        for (boolean sea : new boolean[] {false, true}) {
+            S57map dom = new S57map(sea);
+            S57osm.OSMdom(file, dom);
+            S57map map = new S57map(sea);
+            S57osm.OSMmap(file, map);
+            assertEquals(dump(dom), dump(map), "sea=" + sea);
+
+            assertEquals(Obj.BOYLAT, map.index.get(-10L).type);
+            assertEquals(12.5, map.nodes.get(-11L).val);
+            assertEquals(Obj.ACHARE, map.index.get(-200L).type);
+            assertEquals(1, map.index.get(-200L).geom.inners);
+            assertEquals(!sea, map.features.containsKey(Obj.COALNE));
+            assertEquals(!sea, map.features.containsKey(Obj.LAKARE));
+        }
+    }
+
+    /**
+     * An OSM file without bounds and with elements that have no tags at all.
+     * @throws Exception if the file cannot be written or read
+     */
+    @Test
+    void testNoBounds() throws Exception {
+        File file = new File(tempFolder, "nobounds.osm");
+        Files.write(file.toPath(), OSM.replaceAll("  <bounds [^>]*>\n", "").replaceAll("    <tag [^>]*>\n", "")
+                .getBytes(StandardCharsets.UTF_8));
+
+        S57map dom = new S57map(false);
+        S57osm.OSMdom(file, dom);
+        S57map map = new S57map(false);
+        S57osm.OSMmap(file, map);
+        assertEquals(dump(dom), dump(map));
+        assertTrue(map.index.isEmpty());
+    }
+
+    /**
+     * Features are kept if their bounding box intersects the clip bounds, even if none of their nodes is inside.
+     * @throws Exception if the file cannot be written or read
+     */
+    @Test
+    void testClip() throws Exception {
+        File file = new File(tempFolder, "clip.osm");
+        Files.write(file.toPath(), OSM.getBytes(StandardCharsets.UTF_8));
+        // inside the outer ring of the anchorage, away from all nodes
+        MapBounds clip = new MapBounds();
+        clip.minlat = Math.toRadians(50.07);
+        clip.maxlat = Math.toRadians(50.08);
+        clip.minlon = Math.toRadians(-0.93);
+        clip.maxlon = Math.toRadians(-0.90);
+
+        S57map map = new S57map(false);
+        S57osm.OSMmap(file, map, clip);
+        assertEquals(Obj.ACHARE, map.index.get(-200L).type);
+        assertTrue(map.features.containsKey(Obj.COALNE));
+        assertFalse(map.features.containsKey(Obj.LAKARE));
+        assertFalse(map.features.containsKey(Obj.BOYLAT));
+        assertFalse(map.features.containsKey(Obj.SOUNDG));
+        // the edges of the dropped features are kept
+        S57map all = new S57map(false);
+        S57osm.OSMmap(file, all);
+        assertEquals(dump(all).stream().filter(l -> l.startsWith("edge ")).collect(Collectors.toList()),
+                dump(map).stream().filter(l -> l.startsWith("edge ")).collect(Collectors.toList()));
+    }
+}
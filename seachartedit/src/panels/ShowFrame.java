@@ -14,7 +14,6 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.geom.Point2D;
-import java.util.ArrayList;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -45,8 +44,7 @@ public class ShowFrame extends JFrame {
             showMap.edges = map.edges;
             showMap.index = map.index;
             if (feature != null) {
-                showMap.features.put(feature.type, new ArrayList<Feature>());
-                showMap.features.get(feature.type).add(feature);
+                showMap.addFeature(feature);
             }
             repaint();
         }
@@ -5,9 +5,11 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.awt.geom.Point2D;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.openstreetmap.josm.command.AddCommand;
 import org.openstreetmap.josm.command.ChangeCommand;
@@ -24,7 +26,6 @@ import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.plugins.tracer2.preferences.ServerParam;
-import org.openstreetmap.josm.tools.Pair;
 import org.openstreetmap.josm.tools.Utils;
 
 public final class ConnectWays {
@@ -45,6 +46,7 @@ public final class ConnectWays {
 	static Way s_oWayOld;
 	static List<Way> s_oWays;
 	static List<Node> s_oNodes;
+	static NeighbourIndex s_oIndex;
 
 	static ServerParam s_oParam;
 	static boolean s_bCtrl;
@@ -69,6 +71,27 @@ public final class ConnectWays {
 		s_oWays = MainApplication.getLayerManager().getEditDataSet().searchWays(bbox);
 	}
 
+	/**
+	 * Indexes the nodes and ways which may be connected to the traced way,
+	 * so they can be looked up by position instead of checking all of them.
+	 * @param way traced way
+	 */
+	private static void buildIndex(Way way) {
+		BBox bbox = new BBox(way);
+		bbox.addPrimitive(way, s_dMinDistance);
+		s_oIndex = new NeighbourIndex(bbox, s_dMinDistance);
+		for (Node n : s_oNodes) {
+			if (n.isUsable() && isInSameTag(n)) {
+				s_oIndex.addNode(n);
+			}
+		}
+		for (Way w : s_oWays) {
+			if (w.isUsable() && isSameTag(w)) {
+				s_oIndex.addWay(w, w);
+			}
+		}
+	}
+
 	private static List<Way> getWaysOfNode(Node node) {
 		List<Way> ways;
 		ways = new LinkedList<>(Utils.filteredCollection(node.getReferrers(), Way.class));
@@ -185,6 +208,7 @@ public final class ConnectWays {
 			s_oWay = tempWay;
 		}
 
+		buildIndex(newWay);
 		cmds2.addAll(connectTo());
 		DataSet ds = MainApplication.getLayerManager().getEditDataSet();
 
@@ -236,10 +260,10 @@ public final class ConnectWays {
 		Map<Way, Way> modifiedWays = new HashMap<>();
 		LinkedList<Command> cmds = new LinkedList<>();
 		Way way = new Way(s_oWay);
+		// nodes of the way before and after merging, which must not be merged again
+		Set<Node> setWayNodes = new HashSet<>(way.getNodes());
 		for (int i = 0; i < way.getNodesCount() - 1; i++) {
 			Node n = way.getNode(i);
-			System.out.println("-------");
-			System.out.println("Node: " + n);
 			LatLon ll = n.getCoor();
 			//BBox bbox = new BBox(
 			//        ll.getX() - MIN_DISTANCE,
@@ -251,24 +275,25 @@ public final class ConnectWays {
 			double minDistanceSq = s_dMinDistanceN2N;
 			//List<Node> nodes = Main.main.getCurrentDataSet().searchNodes(bbox);
 			Node nearestNode = null;
-			for (Node nn : s_oNodes) {
-				System.out.println("Node: " + nn);
-				if (!nn.isUsable() || way.containsNode(nn) || s_oWay.containsNode(nn) || !isInSameTag(nn)) {
+			int nearestOrder = Integer.MAX_VALUE;
+			for (Node nn : s_oIndex.getNodes(ll, s_dMinDistanceN2N)) {
+				if (setWayNodes.contains(nn)) {
 					continue;
 				}
 				double dist = nn.getCoor().distance(ll);
-				if (dist < minDistanceSq) {
+				int order = s_oIndex.getOrder(nn);
+				if (dist < minDistanceSq || (nearestNode != null && dist == minDistanceSq && order < nearestOrder)) {
 					minDistanceSq = dist;
 					nearestNode = nn;
+					nearestOrder = order;
 				}
 			}
 
-			System.out.println("Nearest: " + nearestNode + " distance: " + minDistanceSq);
 			if (nearestNode == null) {
 				tryConnectNodeToAnyWay(n, modifiedWays);
 			} else {
-				System.out.println("+add Node distance: " + minDistanceSq);
-				cmds.addAll(mergeNodes(n, nearestNode));
+				cmds.addAll(mergeNodes(n, nearestNode, i));
+				setWayNodes.add(nearestNode);
 			}
 		}
 
@@ -286,10 +311,10 @@ public final class ConnectWays {
 	 * Merges two nodes
 	 * @param n1 First node
 	 * @param n2 Second node
-	 * @param way Way containing first node
+	 * @param j Index of the first node in the way
 	 * @return List of Commands.
 	 */
-	private static List<Command> mergeNodes(Node n1, Node n2) {
+	private static List<Command> mergeNodes(Node n1, Node n2, int j) {
 		List<Command> cmds = new LinkedList<>();
 		cmds.add(new MoveCommand(n2,
 				(n1.getEastNorth().getX() - n2.getEastNorth().getX())/2,
@@ -298,7 +323,6 @@ public final class ConnectWays {
 
 		Way newWay = new Way(s_oWay);
 
-		int j = s_oWay.getNodes().indexOf(n1);
 		newWay.addNode(j, n2);
 		if (j == 0) {
 			// first + last point
@@ -342,40 +366,27 @@ public final class ConnectWays {
 		// hledani pripadne blizke usecky, kam bod pridat
 		//List<Way> ways = Main.main.getCurrentDataSet().searchWays(bbox);
 		double minDist = Double.MAX_VALUE;
-		Way nearestWay = null;
-		int nearestNodeIndex = 0;
-		for (Way ww : s_oWays) {
-			System.out.println("Way: " + ww);
-			if (!ww.isUsable() || ww.containsNode(node) || !isSameTag(ww)) {
+		NeighbourIndex.Segment nearest = null;
+		for (NeighbourIndex.Segment seg : s_oIndex.getSegments(node, s_dMinDistanceN2oW)) {
+			if (seg.getWay().containsNode(node)) {
 				continue;
 			}
-
-			if (m.get(ww) != null) {
-				ww = m.get(ww);
-			}
-
-			for (Pair<Node, Node> np : ww.getNodePairs(false)) {
-				//double dist1 = TracerGeometry.distanceFromSegment(ll, np.a.getCoor(), np.b.getCoor());
-				double dist = distanceFromSegment2(node, np.a, np.b);
-				//System.out.println(" distance: " + dist1 + "  " + dist);
-
-				if (dist < minDist) {
-					minDist = dist;
-					nearestWay = ww;
-					nearestNodeIndex = ww.getNodes().indexOf(np.a);
-				}
+			//double dist1 = TracerGeometry.distanceFromSegment(ll, np.a.getCoor(), np.b.getCoor());
+			double dist = distanceFromSegment2(node, seg.getFirstNode(), seg.getSecondNode());
+			//System.out.println(" distance: " + dist1 + "  " + dist);
+
+			if (dist < minDist || (dist == minDist && (seg.getOrder() < nearest.getOrder()
+					|| (seg.getOrder() == nearest.getOrder() && seg.getIndex() < nearest.getIndex())))) {
+				minDist = dist;
+				nearest = seg;
 			}
 		}
-		System.out.println("Nearest way: " + nearestWay + " distance: " + minDist);
 		if (minDist < s_dMinDistanceN2oW) {
-			Way newNWay = new Way(nearestWay);
-
-			newNWay.addNode(nearestNodeIndex + 1, node);
-			System.out.println("New way:" + newNWay);
-			System.out.println("+add WayOld.Node distance: " + minDist);
-			m.put(nearestWay, newNWay);
-			s_oWays.remove(newNWay);
-			s_oWays.add(nearestWay);
+			Way newNWay = new Way(nearest.getVersion());
+
+			newNWay.addNode(nearest.getIndex() + 1, node);
+			m.put(nearest.getWay(), newNWay);
+			s_oIndex.addWay(nearest.getWay(), newNWay);
 		}
 	}
 
@@ -416,12 +427,12 @@ public final class ConnectWays {
 			throws IndexOutOfBoundsException, IllegalStateException {
 
 		// projdi kazdou novou usecku a zjisti, zda by nemela vest pres existujici body
+		Set<Node> setWayNodes = new HashSet<>(way.getNodes());
 		int i = 0;
 		while (i < way.getNodesCount()) {
 			// usecka n1, n2
 			ILatLon n1 = way.getNodes().get(i);
 			ILatLon n2 = way.getNodes().get((i + 1) % way.getNodesCount());
-			System.out.println(way.getNodes().get(i) + "-----" + way.getNodes().get((i + 1) % way.getNodesCount()));
 			double minDistanceSq = Double.MAX_VALUE;
 			//            double maxAngle = MAX_ANGLE;
 			//List<Node> nodes = Main.main.getCurrentDataSet().searchNodes(new BBox(
@@ -432,8 +443,9 @@ public final class ConnectWays {
 			//));
 
 			Node nearestNode = null;
-			for (Node nod : s_oNodes) {
-				if (!nod.isUsable() || way.containsNode(nod) || !isInSameTag(nod)) {
+			int nearestOrder = Integer.MAX_VALUE;
+			for (Node nod : s_oIndex.getNodes(n1, n2, s_dMinDistanceN2tW)) {
+				if (setWayNodes.contains(nod)) {
 					continue;
 				}
 				//double dist = TracerGeometry.distanceFromSegment(nod, n1, n2);
@@ -441,24 +453,23 @@ public final class ConnectWays {
 				//                double angle = TracerGeometry.angleOfLines(n1, nod, nod, n2);
 				//System.out.println("Angle: " + angle + " distance: " + dist + " Node: " + nod);
 				if (!n1.equalsEpsilon(nod, ILatLon.MAX_SERVER_PRECISION)
-				 && !n2.equalsEpsilon(nod, ILatLon.MAX_SERVER_PRECISION) && dist < minDistanceSq) { // && Math.abs(angle) < maxAngle) {
+				 && !n2.equalsEpsilon(nod, ILatLon.MAX_SERVER_PRECISION)
+				 && (dist < minDistanceSq || (dist == minDistanceSq && s_oIndex.getOrder(nod) < nearestOrder))) { // && Math.abs(angle) < maxAngle) {
 					minDistanceSq = dist;
 					//                    maxAngle = angle;
 					nearestNode = nod;
+					nearestOrder = s_oIndex.getOrder(nod);
 				}
 			}
-			System.out.println("Nearest_: " + nearestNode + " distance: " + minDistanceSq);
 			if (nearestNode == null || minDistanceSq >= s_dMinDistanceN2tW) {
 				// tato usecka se nerozdeli
 				i++;
-				System.out.println("");
 				continue;
 			} else {
 				// rozdeleni usecky
 				way.addNode(i + 1, nearestNode);
+				setWayNodes.add(nearestNode);
 				i++;
-				System.out.println("+add Way.Node distance: " + minDistanceSq);
-				System.out.println("");
 				//i++;
 				continue; // i nezvetsuji, treba bude treba rozdelit usecku znovu
 			}
@@ -0,0 +1,246 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.tracer2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.data.coor.ILatLon;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+
+/**
+ * Grid of the nodes and way segments around a traced way.
+ *
+ * The grid covers the area searched by {@link ConnectWays}, so that the nodes and segments near a point
+ * or a segment can be found without looking at every object of that area. Every node and segment keeps
+ * the position it was added at, so callers can break ties in the same order as a linear search.
+ */
+final class NeighbourIndex {
+
+    /**
+     * Segment of a way, between the node at {@link #getIndex()} and the next one.
+     */
+    static final class Segment {
+        private final Way m_oWay;
+        private final Way m_oVersion;
+        private final int m_nIndex;
+        private final int m_nOrder;
+
+        Segment(Way way, Way version, int nIndex, int nOrder) {
+            m_oWay = way;
+            m_oVersion = version;
+            m_nIndex = nIndex;
+            m_nOrder = nOrder;
+        }
+
+        /** @return the way in the dataset */
+        Way getWay() {
+            return m_oWay;
+        }
+
+        /** @return the (possibly modified) copy of the way the segment belongs to */
+        Way getVersion() {
+            return m_oVersion;
+        }
+
+        /** @return the index of the first node of the segment */
+        int getIndex() {
+            return m_nIndex;
+        }
+
+        /** @return the position of the way in the order the ways were added */
+        int getOrder() {
+            return m_nOrder;
+        }
+
+        Node getFirstNode() {
+            return m_oVersion.getNode(m_nIndex);
+        }
+
+        Node getSecondNode() {
+            return m_oVersion.getNode(m_nIndex + 1);
+        }
+    }
+
+    private final double m_dMinLon;
+    private final double m_dMinLat;
+    private final double m_dCellSize;
+    private final int m_nCols;
+    private final int m_nRows;
+
+    private final Map<Long, List<Node>> m_mapNodes = new HashMap<>();
+    private final Map<Node, Integer> m_mapNodeOrder = new HashMap<>();
+    private final Map<Long, List<Segment>> m_mapSegments = new HashMap<>();
+    private final Map<Way, Integer> m_mapWayOrder = new HashMap<>();
+    private final Map<Way, Way> m_mapVersions = new HashMap<>();
+
+    /**
+     * Constructs a new empty index.
+     * @param bbox area covered by the index; objects outside of it are clipped to the border cells
+     * @param dCellSize size of a cell in degrees, should not be smaller than the distances searched for
+     */
+    NeighbourIndex(BBox bbox, double dCellSize) {
+        m_dMinLon = bbox.getTopLeftLon();
+        m_dMinLat = bbox.getBottomRightLat();
+        m_dCellSize = dCellSize;
+        m_nCols = (int) Math.min(Integer.MAX_VALUE, Math.floor((bbox.getBottomRightLon() - m_dMinLon) / dCellSize) + 1);
+        m_nRows = (int) Math.min(Integer.MAX_VALUE, Math.floor((bbox.getTopLeftLat() - m_dMinLat) / dCellSize) + 1);
+    }
+
+    private int col(double dLon) {
+        return clamp(Math.floor((dLon - m_dMinLon) / m_dCellSize), m_nCols);
+    }
+
+    private int row(double dLat) {
+        return clamp(Math.floor((dLat - m_dMinLat) / m_dCellSize), m_nRows);
+    }
+
+    private static int clamp(double d, int nCount) {
+        if (d < 0) {
+            return 0;
+        }
+        return d >= nCount ? nCount - 1 : (int) d;
+    }
+
+    private static long key(int nCol, int nRow) {
+        return ((long) nCol << 32) | (nRow & 0xffffffffL);
+    }
+
+    /**
+     * Adds a node.
+     * @param node node to add
+     */
+    void addNode(Node node) {
+        if (m_mapNodeOrder.putIfAbsent(node, m_mapNodeOrder.size()) == null) {
+            m_mapNodes.computeIfAbsent(key(col(node.lon()), row(node.lat())), k -> new ArrayList<>(4)).add(node);
+        }
+    }
+
+    /**
+     * Replies the position of a node in the order the nodes were added.
+     * @param node node added before
+     * @return the position of the node
+     */
+    int getOrder(Node node) {
+        return m_mapNodeOrder.get(node);
+    }
+
+    /**
+     * Adds the segments of a way, or replaces them by the segments of a modified copy of the way.
+     * @param way way in the dataset
+     * @param version the way itself or a modified copy of it
+     */
+    void addWay(Way way, Way version) {
+        Integer nOrder = m_mapWayOrder.computeIfAbsent(way, w -> m_mapWayOrder.size());
+        m_mapVersions.put(way, version);
+        for (int i = 0; i < version.getNodesCount() - 1; i++) {
+            addSegment(new Segment(way, version, i, nOrder));
+        }
+    }
+
+    private void addSegment(Segment oSegment) {
+        Node a = oSegment.getFirstNode();
+        Node b = oSegment.getSecondNode();
+        double dMinLon = Math.min(a.lon(), b.lon());
+        double dMaxLon = Math.max(a.lon(), b.lon());
+        int nColMin = col(dMinLon);
+        int nColMax = col(dMaxLon);
+        for (int nCol = nColMin; nCol <= nColMax; nCol++) {
+            // only the rows the segment crosses within this column
+            double dLat1;
+            double dLat2;
+            if (nColMin == nColMax) {
+                dLat1 = a.lat();
+                dLat2 = b.lat();
+            } else {
+                double dLon1 = Math.max(dMinLon, m_dMinLon + nCol * m_dCellSize);
+                double dLon2 = Math.min(dMaxLon, m_dMinLon + (nCol + 1) * m_dCellSize);
+                if (nCol == nColMin) {
+                    dLon1 = dMinLon;
+                }
+                if (nCol == nColMax) {
+                    dLon2 = dMaxLon;
+                }
+                dLat1 = latAt(a, b, dLon1);
+                dLat2 = latAt(a, b, dLon2);
+            }
+            int nRowMax = row(Math.max(dLat1, dLat2));
+            for (int nRow = row(Math.min(dLat1, dLat2)); nRow <= nRowMax; nRow++) {
+                m_mapSegments.computeIfAbsent(key(nCol, nRow), k -> new ArrayList<>(4)).add(oSegment);
+            }
+        }
+    }
+
+    private static double latAt(ILatLon a, ILatLon b, double dLon) {
+        return a.lat() + (b.lat() - a.lat()) * (dLon - a.lon()) / (b.lon() - a.lon());
+    }
+
+    /**
+     * Replies the nodes which may be within the given distance of a point.
+     * @param c the point
+     * @param dDistance the distance in degrees
+     * @return the candidate nodes, the distance still has to be checked
+     */
+    List<Node> getNodes(ILatLon c, double dDistance) {
+        return getNodes(c, c, dDistance);
+    }
+
+    /**
+     * Replies the nodes which may be within the given distance of a segment.
+     * @param a first point of the segment
+     * @param b second point of the segment
+     * @param dDistance the distance in degrees
+     * @return the candidate nodes, the distance still has to be checked
+     */
+    List<Node> getNodes(ILatLon a, ILatLon b, double dDistance) {
+        List<Node> listNodes = new ArrayList<>();
+        int nColMax = col(Math.max(a.lon(), b.lon()) + dDistance);
+        int nRowMin = row(Math.min(a.lat(), b.lat()) - dDistance);
+        int nRowMax = row(Math.max(a.lat(), b.lat()) + dDistance);
+        for (int nCol = col(Math.min(a.lon(), b.lon()) - dDistance); nCol <= nColMax; nCol++) {
+            for (int nRow = nRowMin; nRow <= nRowMax; nRow++) {
+                List<Node> listCell = m_mapNodes.get(key(nCol, nRow));
+                if (listCell != null) {
+                    listNodes.addAll(listCell);
+                }
+            }
+        }
+        return listNodes;
+    }
+
+    /**
+     * Replies the current segments which may be within the given distance of a point.
+     * A segment may be returned more than once.
+     * @param c the point
+     * @param dDistance the distance in degrees
+     * @return the candidate segments, the distance still has to be checked
+     */
+    List<Segment> getSegments(ILatLon c, double dDistance) {
+        List<Segment> listSegments = null;
+        int nColMax = col(c.lon() + dDistance);
+        int nRowMin = row(c.lat() - dDistance);
+        int nRowMax = row(c.lat() + dDistance);
+        for (int nCol = col(c.lon() - dDistance); nCol <= nColMax; nCol++) {
+            for (int nRow = nRowMin; nRow <= nRowMax; nRow++) {
+                List<Segment> listCell = m_mapSegments.get(key(nCol, nRow));
+                if (listCell == null) {
+                    continue;
+                }
+                for (Segment oSegment : listCell) {
+                    // segments of replaced versions stay in the cells, but are skipped
+                    if (m_mapVersions.get(oSegment.getWay()) == oSegment.getVersion()) {
+                        if (listSegments == null) {
+                            listSegments = new ArrayList<>();
+                        }
+                        listSegments.add(oSegment);
+                    }
+                }
+            }
+        }
+        return listSegments == null ? Collections.<Segment>emptyList() : listSegments;
+    }
+}
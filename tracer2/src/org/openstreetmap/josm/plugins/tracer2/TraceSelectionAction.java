@@ -0,0 +1,59 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.tracer2;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openstreetmap.josm.actions.JosmAction;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.tools.Shortcut;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Traces the shapes at all selected nodes at once.
+ */
+class TraceSelectionAction extends JosmAction {
+    private static final long serialVersionUID = 1L;
+
+    private final TracerAction m_oTracerAction;
+
+    TraceSelectionAction(TracerAction tracerAction) {
+        super(tr("Tracer2: trace selected nodes"), "tracer2-sml", tr("Traces the shapes at all selected nodes."),
+                Shortcut.registerShortcut("tools:tracer2selection", tr("More tools: {0}", tr("Tracer2: trace selected nodes")),
+                        KeyEvent.CHAR_UNDEFINED, Shortcut.NONE), false);
+        m_oTracerAction = tracerAction;
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        DataSet ds = getLayerManager().getEditDataSet();
+        if (ds == null) {
+            return;
+        }
+        List<LatLon> listSeeds = new ArrayList<>();
+        for (Node node : Utils.filteredCollection(ds.getSelected(), Node.class)) {
+            if (node.isLatLonKnown()) {
+                listSeeds.add(node.getCoor());
+            }
+        }
+        m_oTracerAction.traceBatch(listSeeds);
+    }
+
+    @Override
+    protected void updateEnabledState() {
+        updateEnabledStateOnCurrentSelection();
+    }
+
+    @Override
+    protected void updateEnabledState(Collection<? extends OsmPrimitive> selection) {
+        setEnabled(!Utils.filteredCollection(selection, Node.class).isEmpty());
+    }
+}
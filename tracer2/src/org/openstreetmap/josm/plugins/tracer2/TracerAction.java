@@ -12,10 +12,14 @@ import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.swing.JDialog;
 import javax.swing.JOptionPane;
@@ -33,14 +37,17 @@ import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.MapView;
 import org.openstreetmap.josm.gui.PleaseWaitRunnable;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.plugins.tracer2.engine.RasterTracer;
 import org.openstreetmap.josm.plugins.tracer2.preferences.ServerParam;
 import org.openstreetmap.josm.plugins.tracer2.preferences.ServerParamList;
 import org.openstreetmap.josm.plugins.tracer2.preferences.ServerParamSelectDialog;
 import org.openstreetmap.josm.plugins.tracer2.server.GetTrace;
 import org.openstreetmap.josm.plugins.tracer2.server.GetVersion;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.ImageProvider;
 import org.openstreetmap.josm.tools.Logging;
 import org.openstreetmap.josm.tools.Shortcut;
+import org.openstreetmap.josm.tools.Utils;
 import org.xml.sax.SAXException;
 
 class TracerAction extends MapMode implements MouseListener, KeyListener {
@@ -221,7 +228,7 @@ class TracerAction extends MapMode implements MouseListener, KeyListener {
     }
 
     private boolean checkActiveServerParam() {
-        if (checkServerVersion() == false) {
+        if (TracerPlugin.useServer() && checkServerVersion() == false) {
             return false;
         }
         if (m_bEnter == true || TracerPlugin.s_oPlugin.m_oParamList.getActivParam() == null) {
@@ -266,61 +273,18 @@ class TracerAction extends MapMode implements MouseListener, KeyListener {
     }
 
     private void traceSync(LatLon pos, ProgressMonitor progressMonitor) {
-        Collection<Command> commands = new LinkedList<>();
-
         progressMonitor.beginTask(null, 3);
         try {
-            ArrayList<LatLon> coordList;
-
             if (checkActiveServerParam() == false) return;
 
             ServerParam param = TracerPlugin.s_oPlugin.m_oParamList.getActivParam();
-            GetTrace oTraceSimple = new GetTrace(pos, param);
-            oTraceSimple.start();
-            try {
-                while (oTraceSimple.isAlive()) {
-                    Thread.sleep(50);
-                    if (m_bCancel == true) {
-                        oTraceSimple.interrupt();
-                        break;
-                    }
-                }
-                coordList = oTraceSimple.m_listLatLon;
-            } catch (Exception e) {
-                coordList = new ArrayList<>();
-            }
+            List<LatLon> coordList = getTrace(pos, param);
 
             if (m_bCancel == true || coordList.size() == 0) {
                 return;
             }
 
-            // make nodes a way
-            Way way = new Way();
-            Node firstNode = null;
-            for (LatLon coord : coordList) {
-                Node node = new Node(coord);
-                if (firstNode == null) {
-                    firstNode = node;
-                }
-                //commands.add(new AddCommand(node));
-                way.addNode(node);
-            }
-            way.addNode(firstNode);
-
-            tagBuilding(way);
-
-            // connect to other buildings
-            commands.add(ConnectWays.connect(way, pos, param, m_bCtrl, m_bAlt));
-
-            if (!commands.isEmpty()) {
-                String strCommand;
-                if (ConnectWays.s_bAddNewWay == true) {
-                    strCommand = tr("Tracer2: add a way with {0} points", coordList.size());
-                } else {
-                    strCommand = tr("Tracer2: modify way to {0} points", coordList.size());
-                }
-                UndoRedoHandler.getInstance().add(new SequenceCommand(strCommand, commands));
-
+            if (addWay(coordList, pos, param)) {
                 if (m_bShift) {
                     getLayerManager().getEditDataSet().addSelected(ConnectWays.s_oWay);
                 } else {
@@ -335,6 +299,141 @@ class TracerAction extends MapMode implements MouseListener, KeyListener {
         }
     }
 
+    /**
+     * Traces the shape at a position, with the built-in tracer or the Tracer2Server.
+     * @param pos position inside the shape
+     * @param param parameter for tracing
+     * @return the outline of the shape; empty if nothing was found
+     */
+    private List<LatLon> getTrace(LatLon pos, ServerParam param) {
+        if (!TracerPlugin.useServer()) {
+            try {
+                return RasterTracer.trace(pos, param, () -> m_bCancel);
+            } catch (IOException | RuntimeException e) {
+                Logging.warn(e);
+                return new ArrayList<>();
+            }
+        }
+        GetTrace oTraceSimple = new GetTrace(pos, param);
+        oTraceSimple.start();
+        try {
+            while (oTraceSimple.isAlive()) {
+                Thread.sleep(50);
+                if (m_bCancel == true) {
+                    oTraceSimple.interrupt();
+                    break;
+                }
+            }
+            return oTraceSimple.m_listLatLon;
+        } catch (Exception e) {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Adds a traced way and connects it to other buildings.
+     * @return true if a command was added
+     */
+    private boolean addWay(List<LatLon> coordList, LatLon pos, ServerParam param) {
+        Collection<Command> commands = new LinkedList<>();
+
+        // make nodes a way
+        Way way = new Way();
+        Node firstNode = null;
+        for (LatLon coord : coordList) {
+            Node node = new Node(coord);
+            if (firstNode == null) {
+                firstNode = node;
+            }
+            //commands.add(new AddCommand(node));
+            way.addNode(node);
+        }
+        way.addNode(firstNode);
+
+        tagBuilding(way);
+
+        // connect to other buildings
+        commands.add(ConnectWays.connect(way, pos, param, m_bCtrl, m_bAlt));
+
+        if (commands.isEmpty()) {
+            return false;
+        }
+        String strCommand;
+        if (ConnectWays.s_bAddNewWay == true) {
+            strCommand = tr("Tracer2: add a way with {0} points", coordList.size());
+        } else {
+            strCommand = tr("Tracer2: modify way to {0} points", coordList.size());
+        }
+        UndoRedoHandler.getInstance().add(new SequenceCommand(strCommand, commands));
+        return true;
+    }
+
+    /**
+     * Traces the shapes at several positions, like the selected nodes. The shapes are traced on a thread pool,
+     * the ways are added one after the other in the order of the positions.
+     * @param listSeeds positions inside the shapes
+     */
+    void traceBatch(final List<LatLon> listSeeds) {
+        m_bCtrl = false;
+        m_bAlt = false;
+        if (listSeeds.isEmpty() || checkActiveServerParam() == false) return;
+        final ServerParam param = TracerPlugin.s_oPlugin.m_oParamList.getActivParam();
+        m_bCancel = false;
+
+        PleaseWaitRunnable tracerTask = new PleaseWaitRunnable(tr("Tracing")) {
+            private final List<List<LatLon>> m_listTraces = new ArrayList<>();
+
+            @Override
+            protected void realRun() throws SAXException {
+                progressMonitor.setTicksCount(listSeeds.size());
+                int nThreads = Math.min(listSeeds.size(),
+                        Config.getPref().getInt("tracer2.batch.threads", Runtime.getRuntime().availableProcessors()));
+                ExecutorService exec = Utils.newFixedThreadPool(Math.max(1, nThreads), "tracer2-batch-%d", Thread.NORM_PRIORITY);
+                try {
+                    List<Future<List<LatLon>>> listFutures = new ArrayList<>();
+                    for (LatLon pos : listSeeds) {
+                        listFutures.add(exec.submit(() -> getTrace(pos, param)));
+                    }
+                    for (Future<List<LatLon>> future : listFutures) {
+                        if (m_bCancel) {
+                            return;
+                        }
+                        m_listTraces.add(future.get());
+                        progressMonitor.worked(1);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    Logging.warn(e);
+                } catch (ExecutionException e) {
+                    Logging.warn(e);
+                } finally {
+                    exec.shutdownNow();
+                }
+            }
+
+            @Override
+            protected void finish() {
+                if (m_bCancel) {
+                    return;
+                }
+                List<Way> listWays = new ArrayList<>();
+                for (int i = 0; i < m_listTraces.size(); i++) {
+                    List<LatLon> coordList = m_listTraces.get(i);
+                    if (!coordList.isEmpty() && addWay(coordList, listSeeds.get(i), param)) {
+                        listWays.add(ConnectWays.s_oWay);
+                    }
+                }
+                getLayerManager().getEditDataSet().setSelected(listWays);
+            }
+
+            @Override
+            protected void cancel() {
+                TracerAction.this.cancel();
+            }
+        };
+        MainApplication.worker.submit(tracerTask);
+    }
+
     public void cancel() {
         m_bCancel = true;
     }
@@ -10,6 +10,7 @@ import org.openstreetmap.josm.plugins.Plugin;
 import org.openstreetmap.josm.plugins.PluginInformation;
 import org.openstreetmap.josm.plugins.tracer2.preferences.ServerParamList;
 import org.openstreetmap.josm.plugins.tracer2.preferences.ServerParamPreference;
+import org.openstreetmap.josm.spi.preferences.Config;
 
 public class TracerPlugin extends Plugin {
 
@@ -19,7 +20,9 @@ public class TracerPlugin extends Plugin {
 
     public TracerPlugin(PluginInformation info) {
         super(info);
-        MainMenu.add(MainApplication.getMenu().moreToolsMenu, new TracerAction());
+        TracerAction oTracerAction = new TracerAction();
+        MainMenu.add(MainApplication.getMenu().moreToolsMenu, oTracerAction);
+        MainMenu.add(MainApplication.getMenu().moreToolsMenu, new TraceSelectionAction(oTracerAction));
 
         s_oPlugin = this;
 
@@ -28,6 +31,14 @@ public class TracerPlugin extends Plugin {
         m_oParamList = new ServerParamList(new File(plugindir, "serverParam.cfg").getAbsolutePath());
     }
 
+    /**
+     * Replies if shapes are traced by the external Tracer2Server instead of the built-in tracer.
+     * @return true if the Tracer2Server is used
+     */
+    public static boolean useServer() {
+        return Config.getPref().getBoolean("tracer2.use-server", false);
+    }
+
     @Override
     public PreferenceSetting getPreferenceSetting() {
         return new ServerParamPreference(this);
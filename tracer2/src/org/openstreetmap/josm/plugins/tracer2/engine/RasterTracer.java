@@ -0,0 +1,398 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.tracer2.engine;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.plugins.tracer2.preferences.ServerParam;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Traces a shape in the imagery of a parameter set, without the Tracer2Server.
+ *
+ * Starting at the clicked pixel, the region of pixels belonging to the shape is filled: in the mode
+ * {@code boundary} all pixels enclosed by pixels darker than the threshold, in all other modes the pixels
+ * whose color differs from the clicked pixel by less than the threshold. The outline of the region is
+ * then followed and simplified. Tiles are loaded from the {@link TileCache} as the region reaches them.
+ */
+public final class RasterTracer {
+
+    /** How many tiles the region may extend from the clicked tile */
+    private static final int MAX_TILE_DISTANCE = 2;
+    /** Maximal distance of the simplified outline from the traced outline, in pixels */
+    private static final double TOLERANCE = 1.2;
+
+    // neighbours in clockwise order, starting east, with y growing to the south
+    private static final int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] DY = {0, 1, 1, 1, 0, -1, -1, -1};
+
+    /**
+     * Buffers reused by all traces of a thread.
+     */
+    private static final class Buffers {
+        int[] m_anStack = new int[4096];
+        final Map<Long, BitSet> m_mapRegion = new HashMap<>();
+        final List<BitSet> m_listFree = new ArrayList<>();
+
+        BitSet getMask(long key, int nSize) {
+            BitSet mask = m_mapRegion.get(key);
+            if (mask == null) {
+                mask = m_listFree.isEmpty() ? new BitSet(nSize) : m_listFree.remove(m_listFree.size() - 1);
+                m_mapRegion.put(key, mask);
+            }
+            return mask;
+        }
+
+        void clear() {
+            for (BitSet mask : m_mapRegion.values()) {
+                mask.clear();
+                m_listFree.add(mask);
+            }
+            m_mapRegion.clear();
+        }
+    }
+
+    /**
+     * Source of the tile pixels, see {@link TileCache#getTile(ServerParam, int, int)}.
+     */
+    @FunctionalInterface
+    interface TileSource {
+        int[] getTile(ServerParam param, int x, int y) throws IOException;
+    }
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private final ServerParam m_oParam;
+    private final TileSource m_oTileSource;
+    private final int m_nResolution;
+    private final double m_dTileSize;
+    private final int m_nThreshold;
+    private final boolean m_bBoundary;
+    private final int m_nPointsPerCircle;
+    private final int m_nTileX;
+    private final int m_nTileY;
+    private final Buffers m_oBuffers;
+
+    private long m_lLastTile = Long.MIN_VALUE;
+    private int[] m_anLastPixels;
+    private int m_nSeedColor;
+
+    private RasterTracer(LatLon pos, ServerParam param, TileSource tileSource) {
+        m_oParam = param;
+        m_oTileSource = tileSource;
+        m_nResolution = Integer.parseInt(param.getResolution());
+        m_dTileSize = Double.parseDouble(param.getTileSize());
+        m_nThreshold = Integer.parseInt(param.getThreshold());
+        m_bBoundary = "boundary".equals(param.getMode());
+        m_nPointsPerCircle = Integer.parseInt(param.getPointsPerCircle());
+        m_nTileX = (int) Math.floor(pos.lon() / m_dTileSize);
+        m_nTileY = (int) Math.floor(pos.lat() / m_dTileSize);
+        m_oBuffers = BUFFERS.get();
+    }
+
+    /**
+     * Traces the shape at a position.
+     * @param pos position inside the shape
+     * @param param parameter set, defining the imagery and how it is traced
+     * @param canceled replies true if tracing should be stopped
+     * @return the outline of the shape, without repeating the first point; empty if nothing was found
+     * @throws IOException if the imagery can't be loaded
+     */
+    public static List<LatLon> trace(LatLon pos, ServerParam param, BooleanSupplier canceled) throws IOException {
+        return trace(pos, param, TileCache.getInstance()::getTile, canceled);
+    }
+
+    /**
+     * Traces the shape at a position in the tiles of a tile source.
+     * @param pos position inside the shape
+     * @param param parameter set, defining the tile grid and how it is traced
+     * @param tileSource source of the tiles
+     * @param canceled replies true if tracing should be stopped
+     * @return the outline of the shape, without repeating the first point; empty if nothing was found
+     * @throws IOException if a tile can't be loaded
+     */
+    static List<LatLon> trace(LatLon pos, ServerParam param, TileSource tileSource, BooleanSupplier canceled) throws IOException {
+        RasterTracer oTracer = new RasterTracer(pos, param, tileSource);
+        try {
+            return oTracer.trace(pos, canceled);
+        } finally {
+            oTracer.m_oBuffers.clear();
+        }
+    }
+
+    private List<LatLon> trace(LatLon pos, BooleanSupplier canceled) throws IOException {
+        int x = (int) Math.floor((pos.lon() / m_dTileSize - m_nTileX) * m_nResolution);
+        int y = (int) Math.floor((m_nTileY + 1 - pos.lat() / m_dTileSize) * m_nResolution);
+        m_nSeedColor = getPixel(x, y);
+        if (!isInside(m_nSeedColor)) {
+            return new ArrayList<>();
+        }
+        int[] anStart = fill(x, y, canceled);
+        if (anStart == null) {
+            return new ArrayList<>();
+        }
+        List<int[]> listOutline = followOutline(anStart[0], anStart[1]);
+
+        List<LatLon> listResult = new ArrayList<>();
+        double[] adCircle = getCircle(listOutline);
+        if (adCircle != null) {
+            for (int i = 0; i < m_nPointsPerCircle; i++) {
+                double dAngle = 2 * Math.PI * i / m_nPointsPerCircle;
+                listResult.add(toLatLon(adCircle[0] + adCircle[2] * Math.cos(dAngle), adCircle[1] + adCircle[2] * Math.sin(dAngle)));
+            }
+            return listResult;
+        }
+        for (int[] anPoint : simplify(listOutline)) {
+            listResult.add(toLatLon(anPoint[0], anPoint[1]));
+        }
+        return listResult.size() >= 3 ? listResult : new ArrayList<LatLon>();
+    }
+
+    private LatLon toLatLon(double x, double y) {
+        return new LatLon((m_nTileY + 1 - (y + 0.5) / m_nResolution) * m_dTileSize,
+                (m_nTileX + (x + 0.5) / m_nResolution) * m_dTileSize);
+    }
+
+    private static long tileKey(int dx, int dy) {
+        return ((long) dx << 32) | (dy & 0xffffffffL);
+    }
+
+    private boolean isInRange(int x, int y) {
+        return Math.abs(Math.floorDiv(x, m_nResolution)) <= MAX_TILE_DISTANCE
+                && Math.abs(Math.floorDiv(y, m_nResolution)) <= MAX_TILE_DISTANCE;
+    }
+
+    /**
+     * Replies a pixel, with x growing to the east and y growing to the south from the north west corner of the clicked tile.
+     */
+    private int getPixel(int x, int y) throws IOException {
+        int dx = Math.floorDiv(x, m_nResolution);
+        int dy = Math.floorDiv(y, m_nResolution);
+        long lKey = tileKey(dx, dy);
+        if (lKey != m_lLastTile) {
+            m_anLastPixels = m_oTileSource.getTile(m_oParam, m_nTileX + dx, m_nTileY - dy);
+            m_lLastTile = lKey;
+        }
+        return m_anLastPixels[(y - dy * m_nResolution) * m_nResolution + (x - dx * m_nResolution)];
+    }
+
+    private boolean isInside(int nColor) {
+        if (m_bBoundary) {
+            int nAlpha = nColor >>> 24;
+            int nBrightness = (((nColor >> 16) & 0xff) + ((nColor >> 8) & 0xff) + (nColor & 0xff)) / 3;
+            return nAlpha < 128 || nBrightness >= m_nThreshold;
+        }
+        int nDiff = Math.max(Math.abs(((nColor >> 16) & 0xff) - ((m_nSeedColor >> 16) & 0xff)),
+                Math.max(Math.abs(((nColor >> 8) & 0xff) - ((m_nSeedColor >> 8) & 0xff)),
+                        Math.abs((nColor & 0xff) - (m_nSeedColor & 0xff))));
+        return nDiff < m_nThreshold;
+    }
+
+    private boolean isMarked(int x, int y) {
+        int dx = Math.floorDiv(x, m_nResolution);
+        int dy = Math.floorDiv(y, m_nResolution);
+        BitSet mask = m_oBuffers.m_mapRegion.get(tileKey(dx, dy));
+        return mask != null && mask.get((y - dy * m_nResolution) * m_nResolution + (x - dx * m_nResolution));
+    }
+
+    private void mark(int x, int y) {
+        int dx = Math.floorDiv(x, m_nResolution);
+        int dy = Math.floorDiv(y, m_nResolution);
+        m_oBuffers.getMask(tileKey(dx, dy), m_nResolution * m_nResolution)
+                .set((y - dy * m_nResolution) * m_nResolution + (x - dx * m_nResolution));
+    }
+
+    /**
+     * Fills the region containing the start pixel.
+     * @return the northernmost, then westernmost pixel of the region, or null if the region is too large or tracing was canceled
+     */
+    private int[] fill(int x, int y, BooleanSupplier canceled) throws IOException {
+        int[] anStack = m_oBuffers.m_anStack;
+        int nSize = 0;
+        int nTopX = x;
+        int nTopY = y;
+        long lCount = 0;
+        mark(x, y);
+        anStack[nSize++] = x;
+        anStack[nSize++] = y;
+        while (nSize > 0) {
+            int py = anStack[--nSize];
+            int px = anStack[--nSize];
+            if (py < nTopY || (py == nTopY && px < nTopX)) {
+                nTopX = px;
+                nTopY = py;
+            }
+            if ((++lCount & 0xffff) == 0 && canceled.getAsBoolean()) {
+                return null;
+            }
+            for (int i = 0; i < 8; i += 2) {
+                int nx = px + DX[i];
+                int ny = py + DY[i];
+                if (isMarked(nx, ny)) {
+                    continue;
+                }
+                if (!isInRange(nx, ny)) {
+                    Logging.info("Tracer2: the shape is too large to be traced");
+                    return null;
+                }
+                if (isInside(getPixel(nx, ny))) {
+                    mark(nx, ny);
+                    if (nSize + 2 > anStack.length) {
+                        int[] anLarger = new int[anStack.length * 2];
+                        System.arraycopy(anStack, 0, anLarger, 0, nSize);
+                        anStack = anLarger;
+                        m_oBuffers.m_anStack = anLarger;
+                    }
+                    anStack[nSize++] = nx;
+                    anStack[nSize++] = ny;
+                }
+            }
+        }
+        return new int[] {nTopX, nTopY};
+    }
+
+    /**
+     * Follows the outer outline of the filled region clockwise (Moore neighbour tracing).
+     */
+    private List<int[]> followOutline(int x, int y) {
+        List<int[]> listOutline = new ArrayList<>();
+        listOutline.add(new int[] {x, y});
+        int px = x;
+        int py = y;
+        int nDir = 0;
+        int nFirstDir = -1;
+        while (true) {
+            int nNext = -1;
+            for (int i = 0; i < 8; i++) {
+                int d = (nDir + 6 + i) % 8;
+                if (isMarked(px + DX[d], py + DY[d])) {
+                    nNext = d;
+                    break;
+                }
+            }
+            if (nNext < 0) {
+                // single pixel
+                return listOutline;
+            }
+            if (px == x && py == y) {
+                if (nFirstDir == nNext) {
+                    break;
+                }
+                if (nFirstDir < 0) {
+                    nFirstDir = nNext;
+                }
+            }
+            px += DX[nNext];
+            py += DY[nNext];
+            nDir = nNext;
+            if (px != x || py != y) {
+                listOutline.add(new int[] {px, py});
+            }
+        }
+        return listOutline;
+    }
+
+    /**
+     * Checks if the outline is a circle.
+     * @return center x, center y and radius, or null if it isn't a circle
+     */
+    private double[] getCircle(List<int[]> listOutline) {
+        if (m_nPointsPerCircle < 3 || listOutline.size() < 24) {
+            return null;
+        }
+        double dCx = 0;
+        double dCy = 0;
+        for (int[] anPoint : listOutline) {
+            dCx += anPoint[0];
+            dCy += anPoint[1];
+        }
+        dCx /= listOutline.size();
+        dCy /= listOutline.size();
+        double dRadius = 0;
+        for (int[] anPoint : listOutline) {
+            dRadius += Math.hypot(anPoint[0] - dCx, anPoint[1] - dCy);
+        }
+        dRadius /= listOutline.size();
+        double dMaxDeviation = Math.max(1.5, dRadius * 0.08);
+        for (int[] anPoint : listOutline) {
+            if (Math.abs(Math.hypot(anPoint[0] - dCx, anPoint[1] - dCy) - dRadius) > dMaxDeviation) {
+                return null;
+            }
+        }
+        return new double[] {dCx, dCy, dRadius};
+    }
+
+    /**
+     * Simplifies the closed outline with the Douglas-Peucker algorithm.
+     */
+    private static List<int[]> simplify(List<int[]> listOutline) {
+        int nSize = listOutline.size();
+        if (nSize < 4) {
+            return listOutline;
+        }
+        // split the ring at the point farthest from the first one
+        int[] anFirst = listOutline.get(0);
+        int nFar = 0;
+        double dFar = -1;
+        for (int i = 1; i < nSize; i++) {
+            int[] anPoint = listOutline.get(i);
+            double d = Math.hypot(anPoint[0] - anFirst[0], anPoint[1] - anFirst[1]);
+            if (d > dFar) {
+                dFar = d;
+                nFar = i;
+            }
+        }
+        boolean[] abKeep = new boolean[nSize + 1];
+        abKeep[0] = true;
+        abKeep[nFar] = true;
+        Deque<int[]> stack = new ArrayDeque<>();
+        stack.push(new int[] {0, nFar});
+        stack.push(new int[] {nFar, nSize});
+        while (!stack.isEmpty()) {
+            int[] anRange = stack.pop();
+            int nMax = getFarthest(listOutline, anRange[0], anRange[1]);
+            if (nMax >= 0) {
+                abKeep[nMax] = true;
+                stack.push(new int[] {anRange[0], nMax});
+                stack.push(new int[] {nMax, anRange[1]});
+            }
+        }
+        List<int[]> listResult = new ArrayList<>();
+        for (int i = 0; i < nSize; i++) {
+            if (abKeep[i]) {
+                listResult.add(listOutline.get(i));
+            }
+        }
+        return listResult;
+    }
+
+    /**
+     * Replies the point between two points of the outline farthest from the line between them,
+     * or -1 if all points are within the tolerance.
+     */
+    private static int getFarthest(List<int[]> listOutline, int nFrom, int nTo) {
+        int[] a = listOutline.get(nFrom);
+        int[] b = listOutline.get(nTo % listOutline.size());
+        double dLength = Math.hypot(b[0] - a[0], b[1] - a[1]);
+        int nMax = -1;
+        double dMax = TOLERANCE;
+        for (int i = nFrom + 1; i < nTo; i++) {
+            int[] c = listOutline.get(i);
+            double d = dLength == 0 ? Math.hypot(c[0] - a[0], c[1] - a[1])
+                    : Math.abs((b[0] - a[0]) * (double) (a[1] - c[1]) - (a[0] - c[0]) * (double) (b[1] - a[1])) / dLength;
+            if (d > dMax) {
+                dMax = d;
+                nMax = i;
+            }
+        }
+        return nMax;
+    }
+}
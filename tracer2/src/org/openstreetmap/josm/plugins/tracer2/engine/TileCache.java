@@ -0,0 +1,156 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.tracer2.engine;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.jcs3.access.CacheAccess;
+import org.openstreetmap.josm.data.cache.JCSCacheManager;
+import org.openstreetmap.josm.plugins.tracer2.preferences.ServerParam;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.HttpClient;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Cache of the imagery tiles used for tracing.
+ *
+ * A tile is a square of {@link ServerParam#getTileSize()} degrees rendered with {@link ServerParam#getResolution()}
+ * pixels per side, like the tiles requested by the Tracer2Server. The downloaded images are kept in a disk cache,
+ * so they are only requested once, and the most recently used tiles are kept decoded in memory.
+ */
+public final class TileCache {
+
+    private static final Pattern HEADER = Pattern.compile("\\{header\\(([^,]+),([^}]+)\\)\\}");
+    private static final int MEMORY_TILES = 64;
+
+    private static TileCache s_oInstance;
+
+    private final CacheAccess<String, byte[]> m_oDiskCache;
+    private final Map<String, int[]> m_mapMemory = new LinkedHashMap<String, int[]>(MEMORY_TILES, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+            return size() > MEMORY_TILES;
+        }
+    };
+
+    private TileCache(CacheAccess<String, byte[]> diskCache) {
+        m_oDiskCache = diskCache;
+    }
+
+    /**
+     * Replies the shared tile cache.
+     * @return the tile cache
+     */
+    public static synchronized TileCache getInstance() {
+        if (s_oInstance == null) {
+            String strPath = new File(Config.getDirs().getCacheDirectory(true), "tracer2").getAbsolutePath();
+            s_oInstance = new TileCache(JCSCacheManager.getCache("tracer2-tiles",
+                    0, Config.getPref().getInt("tracer2.tile-cache.max-tiles", 2000), strPath));
+        }
+        return s_oInstance;
+    }
+
+    /**
+     * Replies the pixels of a tile, downloading it if it isn't cached.
+     * @param param parameter set, defining the imagery and the tile size
+     * @param x tile column, counted from longitude 0
+     * @param y tile row, counted from latitude 0 to the north
+     * @return the ARGB pixels of the tile, row by row from north to south; the array must not be changed
+     * @throws IOException if the tile can't be downloaded or decoded
+     */
+    public int[] getTile(ServerParam param, int x, int y) throws IOException {
+        int nResolution = Integer.parseInt(param.getResolution());
+        String strKey = param.getUrl() + '|' + param.getTileSize() + '|' + nResolution + '|' + x + '|' + y;
+        synchronized (m_mapMemory) {
+            int[] anPixels = m_mapMemory.get(strKey);
+            if (anPixels != null) {
+                return anPixels;
+            }
+        }
+        byte[] abData = m_oDiskCache.get(strKey);
+        if (abData == null) {
+            abData = download(param, x, y, nResolution);
+            m_oDiskCache.put(strKey, abData);
+        }
+        int[] anPixels = decode(abData, nResolution);
+        synchronized (m_mapMemory) {
+            m_mapMemory.put(strKey, anPixels);
+        }
+        return anPixels;
+    }
+
+    private static byte[] download(ServerParam param, int x, int y, int nResolution) throws IOException {
+        double dTileSize = Double.parseDouble(param.getTileSize());
+        double dMinLon = x * dTileSize;
+        double dMinLat = y * dTileSize;
+        double dMaxLon = dMinLon + dTileSize;
+        double dMaxLat = dMinLat + dTileSize;
+
+        String strUrl = param.getUrl();
+        if (strUrl.startsWith("wms:")) {
+            strUrl = strUrl.substring(4);
+        }
+        Map<String, String> mapHeaders = new LinkedHashMap<>();
+        Matcher oMatcher = HEADER.matcher(strUrl);
+        while (oMatcher.find()) {
+            mapHeaders.put(oMatcher.group(1), oMatcher.group(2));
+        }
+        strUrl = oMatcher.replaceAll("");
+        // WMS 1.3.0 uses the axis order of EPSG:4326, which is latitude first
+        boolean bLatFirst = strUrl.toUpperCase(Locale.ENGLISH).contains("VERSION=1.3.0");
+        String strBBox = bLatFirst
+                ? dMinLat + "," + dMinLon + "," + dMaxLat + "," + dMaxLon
+                : dMinLon + "," + dMinLat + "," + dMaxLon + "," + dMaxLat;
+        strUrl = strUrl.replace("{proj}", "EPSG:4326")
+                .replace("{width}", Integer.toString(nResolution))
+                .replace("{height}", Integer.toString(nResolution))
+                .replace("{bbox}", strBBox);
+
+        HttpClient oClient = HttpClient.create(new URL(strUrl));
+        for (Map.Entry<String, String> e : mapHeaders.entrySet()) {
+            oClient.setHeader(e.getKey(), e.getValue());
+        }
+        try {
+            HttpClient.Response oResponse = oClient.connect();
+            if (oResponse.getResponseCode() != 200) {
+                throw new IOException("HTTP " + oResponse.getResponseCode() + " for " + strUrl);
+            }
+            try (InputStream oInput = oResponse.getContent()) {
+                return Utils.readBytesFromStream(oInput);
+            }
+        } finally {
+            oClient.disconnect();
+        }
+    }
+
+    private static int[] decode(byte[] abData, int nResolution) throws IOException {
+        BufferedImage oImage = ImageIO.read(new ByteArrayInputStream(abData));
+        if (oImage == null) {
+            throw new IOException("Unsupported image format");
+        }
+        // draw into an image of the expected size, so that the pixels can be addressed directly
+        BufferedImage oTile = new BufferedImage(nResolution, nResolution, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = oTile.createGraphics();
+        try {
+            g.drawImage(oImage, 0, 0, nResolution, nResolution, null);
+        } finally {
+            g.dispose();
+        }
+        return ((DataBufferInt) oTile.getRaster().getDataBuffer()).getData();
+    }
+}
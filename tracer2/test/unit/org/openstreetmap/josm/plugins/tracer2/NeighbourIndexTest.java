@@ -0,0 +1,177 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.tracer2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.ILatLon;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+
+/**
+ * Unit test of {@link NeighbourIndex}: the index finds everything a linear scan finds.
+ */
+class NeighbourIndexTest {
+
+    private static final double MIN_LON = 16.3;
+    private static final double MIN_LAT = 48.1;
+    private static final double SIZE = 0.001;
+    private static final double CELL_SIZE = 0.00005;
+
+    private static Node randomNode(Random random) {
+        // some nodes outside of the indexed area, and some on cell borders
+        double dLon = random.nextInt(10) == 0 ? random.nextInt(25) * CELL_SIZE : random.nextDouble() * SIZE * 1.2 - SIZE * 0.1;
+        double dLat = random.nextInt(10) == 0 ? random.nextInt(25) * CELL_SIZE : random.nextDouble() * SIZE * 1.2 - SIZE * 0.1;
+        return new Node(new LatLon(MIN_LAT + dLat, MIN_LON + dLon));
+    }
+
+    private static Way randomWay(Random random, List<Node> nodes) {
+        Way way = new Way();
+        Node first = nodes.get(random.nextInt(nodes.size()));
+        way.addNode(first);
+        for (int i = 1 + random.nextInt(5); i > 0; i--) {
+            if (random.nextBoolean()) {
+                way.addNode(nodes.get(random.nextInt(nodes.size())));
+            } else {
+                // short segments, also vertical and horizontal ones
+                Node last = way.getNode(way.getNodesCount() - 1);
+                double dLon = random.nextInt(3) == 0 ? 0 : (random.nextDouble() - 0.5) * CELL_SIZE * 4;
+                double dLat = random.nextInt(3) == 0 ? 0 : (random.nextDouble() - 0.5) * CELL_SIZE * 4;
+                Node node = new Node(new LatLon(last.lat() + dLat, last.lon() + dLon));
+                nodes.add(node);
+                way.addNode(node);
+            }
+        }
+        if (random.nextBoolean()) {
+            way.addNode(first);
+        }
+        return way;
+    }
+
+    private static double distance(ILatLon a, ILatLon b) {
+        return Math.hypot(a.lon() - b.lon(), a.lat() - b.lat());
+    }
+
+    private static double distanceFromSegment(ILatLon c, ILatLon a, ILatLon b) {
+        double dx = b.lon() - a.lon();
+        double dy = b.lat() - a.lat();
+        double len2 = dx * dx + dy * dy;
+        if (len2 == 0) {
+            return distance(c, a);
+        }
+        double t = Math.max(0, Math.min(1, ((c.lon() - a.lon()) * dx + (c.lat() - a.lat()) * dy) / len2));
+        return Math.hypot(a.lon() + t * dx - c.lon(), a.lat() + t * dy - c.lat());
+    }
+
+    /**
+     * Nodes and segments near points and segments are found like by comparing with all of them.
+     */
+    @Test
+    void testAgainstLinearScan() {
+        Random random = new Random(39);
+        for (int round = 0; round < 20; round++) {
+            NeighbourIndex index = new NeighbourIndex(
+                    new BBox(MIN_LON, MIN_LAT, MIN_LON + SIZE, MIN_LAT + SIZE), CELL_SIZE);
+            List<Node> nodes = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                nodes.add(randomNode(random));
+            }
+            List<Way> ways = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                ways.add(randomWay(random, nodes));
+            }
+            for (Node node : nodes) {
+                index.addNode(node);
+            }
+            for (Way way : ways) {
+                index.addWay(way, way);
+            }
+            for (int i = 0; i < nodes.size(); i++) {
+                assertEquals(i, index.getOrder(nodes.get(i)));
+            }
+
+            for (int query = 0; query < 300; query++) {
+                Node c = randomNode(random);
+                Node d = random.nextBoolean() ? c : randomNode(random);
+                double dDistance = random.nextDouble() * CELL_SIZE * 2;
+
+                Set<Node> found = new HashSet<>(index.getNodes(c, d, dDistance));
+                for (Node node : nodes) {
+                    if (distanceFromSegment(node, c, d) <= dDistance) {
+                        assertTrue(found.contains(node), node + " near " + c + " " + d);
+                    }
+                }
+                if (c == d) {
+                    assertEquals(found, new HashSet<>(index.getNodes(c, dDistance)));
+                }
+
+                Set<String> foundSegments = new HashSet<>();
+                for (NeighbourIndex.Segment segment : index.getSegments(c, dDistance)) {
+                    assertTrue(segment.getVersion() == segment.getWay());
+                    foundSegments.add(ways.indexOf(segment.getWay()) + ":" + segment.getIndex());
+                }
+                for (int w = 0; w < ways.size(); w++) {
+                    Way way = ways.get(w);
+                    for (int i = 0; i < way.getNodesCount() - 1; i++) {
+                        if (distanceFromSegment(c, way.getNode(i), way.getNode(i + 1)) <= dDistance) {
+                            assertTrue(foundSegments.contains(w + ":" + i),
+                                    "segment " + i + " near " + c);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The segments of a modified copy of a way replace the segments of the way.
+     */
+    @Test
+    void testModifiedWay() {
+        NeighbourIndex index = new NeighbourIndex(
+                new BBox(MIN_LON, MIN_LAT, MIN_LON + SIZE, MIN_LAT + SIZE), CELL_SIZE);
+        Node a = new Node(new LatLon(MIN_LAT + SIZE / 2, MIN_LON + SIZE / 4));
+        Node b = new Node(new LatLon(MIN_LAT + SIZE / 2, MIN_LON + SIZE * 3 / 4));
+        Node c = new Node(new LatLon(MIN_LAT + SIZE / 4, MIN_LON + SIZE / 2));
+        Way other = new Way();
+        other.addNode(c);
+        other.addNode(b);
+        Way way = new Way();
+        way.addNode(a);
+        way.addNode(b);
+        index.addWay(other, other);
+        index.addWay(way, way);
+
+        // segments may be returned more than once, and segments of other ways in the neighbouring cells as well
+        Node probe = new Node(new LatLon(MIN_LAT + SIZE / 2, MIN_LON + SIZE / 2));
+        Set<NeighbourIndex.Segment> segments = new HashSet<>(index.getSegments(probe, CELL_SIZE));
+        segments.removeIf(s -> s.getWay() != way);
+        assertEquals(1, segments.size());
+        NeighbourIndex.Segment segment = segments.iterator().next();
+        assertTrue(segment.getVersion() == way);
+        assertEquals(0, segment.getIndex());
+        assertEquals(1, segment.getOrder());
+
+        // the node is inserted into the segment, which is split
+        Way version = new Way(way);
+        version.addNode(1, probe);
+        index.addWay(way, version);
+        segments = new HashSet<>(index.getSegments(probe, CELL_SIZE));
+        segments.removeIf(s -> s.getWay() != way);
+        assertEquals(2, segments.size());
+        for (NeighbourIndex.Segment s : segments) {
+            assertTrue(s.getVersion() == version);
+            assertEquals(1, s.getOrder());
+            assertTrue(s.getFirstNode() == probe || s.getSecondNode() == probe);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.tracer2.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.plugins.tracer2.preferences.ServerParam;
+
+/**
+ * Unit test of {@link RasterTracer} on small synthetic rasters.
+ */
+class RasterTracerTest {
+
+    private static final int RESOLUTION = 64;
+    private static final double TILE_SIZE = 0.001;
+    private static final double EPSILON = 1e-9;
+
+    private static final int WHITE = 0xffffffff;
+    private static final int BLACK = 0xff000000;
+    private static final int RED = 0xffd02020;
+
+    /**
+     * The color of a pixel, with x growing to the east and y growing to the south.
+     * Pixel (0, 0) is the north western pixel of the tile south east of latitude and longitude 0.
+     */
+    @FunctionalInterface
+    private interface Picture {
+        int getPixel(int x, int y);
+    }
+
+    /**
+     * Tiles of a picture. Counts the requested tiles.
+     */
+    private static final class PictureTiles implements RasterTracer.TileSource {
+        private final Picture m_oPicture;
+        final List<String> m_listRequested = new ArrayList<>();
+
+        PictureTiles(Picture picture) {
+            m_oPicture = picture;
+        }
+
+        @Override
+        public int[] getTile(ServerParam param, int x, int y) throws IOException {
+            assertEquals(RESOLUTION, Integer.parseInt(param.getResolution()));
+            m_listRequested.add(x + "/" + y);
+            int[] anPixels = new int[RESOLUTION * RESOLUTION];
+            for (int row = 0; row < RESOLUTION; row++) {
+                for (int col = 0; col < RESOLUTION; col++) {
+                    anPixels[row * RESOLUTION + col] = m_oPicture.getPixel(x * RESOLUTION + col, -(y + 1) * RESOLUTION + row);
+                }
+            }
+            return anPixels;
+        }
+    }
+
+    private static ServerParam param(String mode, int pointsPerCircle) {
+        ServerParam param = new ServerParam("test");
+        param.setTileSize(Double.toString(TILE_SIZE));
+        param.setResolution(Integer.toString(RESOLUTION));
+        param.setMode(mode);
+        param.setThreshold("100");
+        param.setPointsPerCircle(Integer.toString(pointsPerCircle));
+        return param;
+    }
+
+    /** The center of a pixel */
+    private static LatLon pixel(int x, int y) {
+        return new LatLon(-(y + 0.5) / RESOLUTION * TILE_SIZE, (x + 0.5) / RESOLUTION * TILE_SIZE);
+    }
+
+    private static List<LatLon> trace(Picture picture, String mode, int pointsPerCircle, int x, int y) throws IOException {
+        return RasterTracer.trace(pixel(x, y), param(mode, pointsPerCircle), new PictureTiles(picture), () -> false);
+    }
+
+    private static boolean inRectangle(int x, int y, int minX, int minY, int maxX, int maxY) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY;
+    }
+
+    /**
+     * Asserts that the outline consists of the centers of the given pixels, in any order.
+     */
+    private static void assertOutline(List<LatLon> outline, int[]... pixels) {
+        assertEquals(pixels.length, outline.size(), outline.toString());
+        for (int[] anPixel : pixels) {
+            LatLon expected = pixel(anPixel[0], anPixel[1]);
+            assertTrue(outline.stream().anyMatch(ll -> ll.equalsEpsilon(expected, EPSILON)),
+                    Arrays.toString(anPixel) + " not in " + outline);
+        }
+    }
+
+    /**
+     * A square drawn with a dark line is traced inside the line in the mode "boundary".
+     * @throws IOException never
+     */
+    @Test
+    void testSquareBoundary() throws IOException {
+        Picture picture = (x, y) -> inRectangle(x, y, 10, 10, 40, 40) && !inRectangle(x, y, 11, 11, 39, 39) ? BLACK : WHITE;
+        assertOutline(trace(picture, "boundary", 0, 25, 25),
+                new int[] {11, 11}, new int[] {39, 11}, new int[] {39, 39}, new int[] {11, 39});
+        // clicking on the line finds nothing
+        assertEquals(0, trace(picture, "boundary", 0, 10, 25).size());
+    }
+
+    /**
+     * A filled square is traced along its border in the color modes.
+     * @throws IOException never
+     */
+    @Test
+    void testSquareColor() throws IOException {
+        Picture picture = (x, y) -> inRectangle(x, y, 10, 12, 40, 50) ? RED : WHITE;
+        assertOutline(trace(picture, "match color", 0, 20, 30),
+                new int[] {10, 12}, new int[] {40, 12}, new int[] {40, 50}, new int[] {10, 50});
+    }
+
+    /**
+     * Only the outer outline of a shape with a hole is traced, and the hole is a shape of its own.
+     * @throws IOException never
+     */
+    @Test
+    void testHole() throws IOException {
+        Picture picture = (x, y) -> inRectangle(x, y, 10, 10, 40, 40) && !inRectangle(x, y, 20, 22, 30, 32) ? RED : WHITE;
+        int[][] outer = {{10, 10}, {40, 10}, {40, 40}, {10, 40}};
+        assertOutline(trace(picture, "match color", 0, 15, 15), outer);
+        // the same outline from the other side of the hole
+        assertOutline(trace(picture, "match color", 0, 35, 35), outer);
+        assertOutline(trace(picture, "match color", 0, 25, 25),
+                new int[] {20, 22}, new int[] {30, 22}, new int[] {30, 32}, new int[] {20, 32});
+    }
+
+    /**
+     * A shape across the borders of four tiles is traced as a whole, only the tiles it reaches are loaded.
+     * @throws IOException never
+     */
+    @Test
+    void testAcrossTileBorders() throws IOException {
+        Picture picture = (x, y) -> inRectangle(x, y, -20, -10, 20, 15) ? RED : WHITE;
+        PictureTiles tiles = new PictureTiles(picture);
+        List<LatLon> outline = RasterTracer.trace(pixel(5, 5), param("match color", 0), tiles, () -> false);
+        assertOutline(outline, new int[] {-20, -10}, new int[] {20, -10}, new int[] {20, 15}, new int[] {-20, 15});
+        assertEquals(4, tiles.m_listRequested.stream().distinct().count(), tiles.m_listRequested.toString());
+        assertTrue(tiles.m_listRequested.containsAll(Arrays.asList("-1/-1", "0/-1", "-1/0", "0/0")), tiles.m_listRequested.toString());
+    }
+
+    /**
+     * A shape touching the limit of the traced area, or a canceled trace, gives no outline.
+     * @throws IOException never
+     */
+    @Test
+    void testTooLarge() throws IOException {
+        Picture picture = (x, y) -> x < 3 * RESOLUTION ? RED : WHITE;
+        assertEquals(0, trace(picture, "match color", 0, 5, 5).size());
+        assertEquals(0, trace((x, y) -> WHITE, "boundary", 0, 5, 5).size());
+
+        // the tracer can be used again after a failed trace
+        Picture square = (x, y) -> inRectangle(x, y, 0, 0, 5, 5) ? RED : WHITE;
+        assertOutline(trace(square, "match color", 0, 2, 2), new int[] {0, 0}, new int[] {5, 0}, new int[] {5, 5}, new int[] {0, 5});
+
+        // within the tiles around the clicked one, and large enough for the cancel check
+        Picture large = (x, y) -> inRectangle(x, y, -120, -120, 180, 180) ? RED : WHITE;
+        assertEquals(0, RasterTracer.trace(pixel(5, 5), param("match color", 0), new PictureTiles(large), () -> true).size());
+        assertEquals(4, RasterTracer.trace(pixel(5, 5), param("match color", 0), new PictureTiles(large), () -> false).size());
+    }
+
+    /**
+     * A disc is replaced by a regular polygon.
+     * @throws IOException never
+     */
+    @Test
+    void testCircle() throws IOException {
+        Picture picture = (x, y) -> Math.hypot(x - 30, y - 30) <= 15 ? RED : WHITE;
+        List<LatLon> outline = trace(picture, "match color", 16, 30, 30);
+        assertEquals(16, outline.size());
+        LatLon center = pixel(30, 30);
+        for (LatLon ll : outline) {
+            double dRadius = Math.hypot(ll.lat() - center.lat(), ll.lon() - center.lon()) / TILE_SIZE * RESOLUTION;
+            assertEquals(14.5, dRadius, 1.0);
+        }
+        // without circle detection the outline is a polygon with more points
+        assertTrue(trace(picture, "match color", 0, 30, 30).size() > 4);
+    }
+}
@@ -29,6 +29,7 @@ import org.openstreetmap.josm.data.osm.RelationMember;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.gui.widgets.JMultilineLabel;
 import org.openstreetmap.josm.plugins.turnrestrictions.preferences.PreferenceKeys;
+import org.openstreetmap.josm.plugins.turnrestrictions.qa.Severity;
 import org.openstreetmap.josm.spi.preferences.IPreferences;
 import org.openstreetmap.josm.tools.ImageProvider;
 
@@ -213,6 +214,33 @@ public class TurnRestrictionCellRenderer extends JPanel implements ListCellRende
         this.to.setForeground(fg);
     }
 
+    /**
+     * Renders the result of the QA checks of the turn restriction, unless
+     * the turn restriction is selected
+     *
+     * @param severity the severity of the most severe issue; null, if there is no issue
+     * @param isSelected true if the turn restriction is selected; false,
+     * otherwise
+     */
+    protected void renderIssues(Severity severity, boolean isSelected) {
+        if (severity == null) {
+            setToolTipText(null);
+            return;
+        }
+        if (severity == Severity.ERROR) {
+            setToolTipText(tr("This turn restriction has errors. Open it in the editor to see them."));
+        } else {
+            setToolTipText(tr("This turn restriction has warnings. Open it in the editor to see them."));
+        }
+        if (!isSelected) {
+            Color bg = severity == Severity.ERROR ? new Color(0xffd0d0) : new Color(0xfff0c0);
+            setBackground(bg);
+            this.icon.setBackground(bg);
+            this.from.setBackground(bg);
+            this.to.setBackground(bg);
+        }
+    }
+
     /**
      * Initializes the set of icons used from the preference key
      * {@link PreferenceKeys#ROAD_SIGNS}.
@@ -240,6 +268,11 @@ public class TurnRestrictionCellRenderer extends JPanel implements ListCellRende
         renderIcon(tr);
         renderFrom(tr);
         renderTo(tr);
+        if (list.getModel() instanceof TurnRestrictionsListModel) {
+            renderIssues(((TurnRestrictionsListModel) list.getModel()).getIssueSeverity(tr), isSelected);
+        } else {
+            setToolTipText(null);
+        }
         return this;
     }
 
@@ -1,6 +1,7 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.turnrestrictions.list;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -30,7 +31,8 @@ import org.openstreetmap.josm.gui.layer.OsmDataLayer;
  * the current edit layer.</p>
  *
  * <p>The model is a {@link DataSetListener}. It updates itself to reflect the list of turn
- * restrictions in the current data set.</p>
+ * restrictions in the current data set. Only the turn restrictions affected by an event are
+ * looked at, the data set is only rescanned if the edit layer changes.</p>
  *
  */
 public class TurnRestrictionsInDatasetListModel extends TurnRestrictionsListModel implements ActiveLayerChangeListener, DataSetListener {
@@ -84,9 +86,20 @@ public class TurnRestrictionsInDatasetListModel extends TurnRestrictionsListMode
         OsmDataLayer layer = MainApplication.getLayerManager().getEditLayer();
         if (layer == null) {
             setTurnRestrictions(null);
-        } else {
+        } else if (event.getEvents() == null || event.getEvents().isEmpty()) {
             List<Relation> turnRestrictions = filterTurnRestrictions(layer.data.getRelations());
             setTurnRestrictions(turnRestrictions);
+        } else {
+            // replay the consolidated events, so the list is only updated where needed,
+            // and sort it once for all of them
+            beginBatch();
+            try {
+                for (AbstractDatasetChangedEvent e: event.getEvents()) {
+                    e.fire(this);
+                }
+            } finally {
+                endBatch();
+            }
         }
     }
 
@@ -108,34 +121,28 @@ public class TurnRestrictionsInDatasetListModel extends TurnRestrictionsListMode
 
     @Override
     public void relationMembersChanged(RelationMembersChangedEvent event) {
-        List<Relation> turnRestrictions = filterTurnRestrictions(event.getPrimitives());
-        if (!turnRestrictions.isEmpty()) {
-            List<Relation> sel = getSelectedTurnRestrictions();
-            for (Relation tr: turnRestrictions) {
-                // enforce a repaint of the respective turn restriction
-                int idx = getTurnRestrictionIndex(tr);
-                fireContentsChanged(this, idx, idx);
-            }
-            setSelectedTurnRestrictions(sel);
-        }
+        updateTurnRestrictions(event.getPrimitives());
     }
 
     @Override
     public void tagsChanged(TagsChangedEvent event) {
-        List<Relation> turnRestrictions = filterTurnRestrictions(event.getPrimitives());
-        if (!turnRestrictions.isEmpty()) {
-            List<Relation> sel = getSelectedTurnRestrictions();
-            for (Relation tr: turnRestrictions) {
-                // enforce a repaint of the respective turn restriction
-                int idx = getTurnRestrictionIndex(tr);
-                fireContentsChanged(this, idx, idx);
-            }
-            setSelectedTurnRestrictions(sel);
-        }
+        // a relation may have become a turn restriction or may not be one anymore
+        updateTurnRestrictions(event.getPrimitives());
     }
 
     @Override
-    public void wayNodesChanged(WayNodesChangedEvent event) {/* ignore */}
+    public void wayNodesChanged(WayNodesChangedEvent event) {
+        // the QA checks of the turn restrictions referring to the way depend on its nodes
+        List<Relation> turnRestrictions = new ArrayList<>();
+        for (OsmPrimitive referrer: event.getChangedWay().getReferrers()) {
+            if (isTurnRestriction(referrer)) {
+                turnRestrictions.add((Relation) referrer);
+            }
+        }
+        if (!turnRestrictions.isEmpty()) {
+            invalidateIssues(turnRestrictions);
+        }
+    }
 
     @Override
     public void nodeMoved(NodeMovedEvent event) {/* ignore */}
@@ -5,25 +5,66 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.swing.AbstractListModel;
 import javax.swing.DefaultListSelectionModel;
+import javax.swing.SwingUtilities;
 
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.DefaultNameFormatter;
 import org.openstreetmap.josm.data.osm.NameFormatter;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.plugins.turnrestrictions.qa.Severity;
+import org.openstreetmap.josm.plugins.turnrestrictions.qa.TurnRestrictionChecker;
+import org.openstreetmap.josm.tools.Utils;
 
 /**
- * This is a list model for a list of turn restrictions.
+ * <p>This is a list model for a list of turn restrictions.</p>
  *
+ * <p>The turn restrictions are kept sorted by display name. The model maintains an identity
+ * map from turn restriction to row, so looking up the row of a turn restriction doesn't
+ * depend on the number of turn restrictions. Changes are applied in batches: each call
+ * sorts the list at most once and fires one set of list data events. Several calls can be
+ * combined in one batch with {@link #beginBatch()} and {@link #endBatch()}.</p>
+ *
+ * <p>The QA checks of a turn restriction (see {@link TurnRestrictionChecker}) are run lazily
+ * in a background thread when the severity of its issues is first requested.</p>
  */
 public class TurnRestrictionsListModel extends AbstractListModel<Relation> {
     private final ArrayList<Relation> turnrestrictions = new ArrayList<>();
+    /** the row of each turn restriction */
+    private final Map<Relation, Integer> rows = new IdentityHashMap<>();
+    /** the sort keys, i.e. the display names, of the turn restrictions */
+    private final Map<Relation, String> names = new IdentityHashMap<>();
+    /** the severity of the most severe issue of the checked turn restrictions */
+    private final Map<Relation, Optional<Severity>> issues = new IdentityHashMap<>();
+    /** the turn restrictions which are currently checked, mapped to a token identifying the check */
+    private final Map<Relation, Object> pendingChecks = new IdentityHashMap<>();
+    /** the checked turn restrictions which have to be repainted */
+    private final List<Relation> checked = new ArrayList<>();
     private DefaultListSelectionModel selectionModel;
+    /** the nesting depth of the current batch of changes; 0, if there is no batch */
+    private int batchDepth;
+    /** the size of the list when the current batch started */
+    private int batchSize;
+    /** the selected turn restrictions when the current batch started */
+    private List<Relation> batchSelection;
+    /** true, if the list has changed in the current batch */
+    private boolean batchChanged;
+
+    private static final class CheckExecutorHolder {
+        static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(
+                Utils.newThreadFactory("turnrestrictions-qa-%d", Thread.MIN_PRIORITY));
+    }
 
     /**
      * Creates the model
@@ -48,17 +89,102 @@ public class TurnRestrictionsListModel extends AbstractListModel<Relation> {
      * Sorts the turn restrictions in this model
      */
     public void sort() {
-        Collections.sort(
-                turnrestrictions,
-                new Comparator<Relation>() {
-                    NameFormatter formatter = DefaultNameFormatter.getInstance();
-
-                    @Override
-                    public int compare(Relation r1, Relation r2) {
-                        return r1.getDisplayName(formatter).compareTo(r2.getDisplayName(formatter));
-                    }
-                }
-        );
+        NameFormatter formatter = DefaultNameFormatter.getInstance();
+        for (Relation r: turnrestrictions) {
+            names.computeIfAbsent(r, k -> k.getDisplayName(formatter));
+        }
+        turnrestrictions.sort(Comparator.comparing(names::get));
+        rows.clear();
+        for (int i = 0; i < turnrestrictions.size(); i++) {
+            rows.put(turnrestrictions.get(i), i);
+        }
+    }
+
+    /**
+     * Starts a batch of changes. Until the matching call of {@link #endBatch()}, the changes
+     * are only recorded: the list is neither sorted nor are list data events fired.
+     * Batches may be nested.
+     */
+    public void beginBatch() {
+        if (batchDepth++ == 0) {
+            batchSize = getSize();
+            batchSelection = getSelectedTurnRestrictions();
+            batchChanged = false;
+        }
+    }
+
+    /**
+     * Ends a batch of changes. If it is the outermost batch and the list has changed,
+     * the list is sorted once and the list data events are fired.
+     */
+    public void endBatch() {
+        if (--batchDepth > 0) return;
+        List<Relation> sel = batchSelection;
+        batchSelection = null;
+        if (batchChanged) {
+            batchChanged = false;
+            turnrestrictions.removeIf(r -> rows.get(r) < 0);
+            fireBatchChanged(batchSize, sel);
+        }
+    }
+
+    /**
+     * Adds a turn restriction to the list in the current batch, unless it is already there.
+     */
+    private void include(Relation r) {
+        Integer row = rows.get(r);
+        if (row == null) {
+            turnrestrictions.add(r);
+            rows.put(r, turnrestrictions.size() - 1);
+        } else if (row < 0) {
+            // removed earlier in the current batch, but still in the list
+            rows.put(r, turnrestrictions.indexOf(r));
+        } else {
+            return;
+        }
+        batchChanged = true;
+    }
+
+    /**
+     * Removes a turn restriction from the list in the current batch, if it is there.
+     */
+    private void exclude(Relation r) {
+        Integer row = rows.get(r);
+        if (row == null || row < 0) return;
+        forget(r);
+        rows.put(r, -1);
+        batchChanged = true;
+    }
+
+    private boolean isIncluded(Relation r) {
+        Integer row = rows.get(r);
+        return row != null && row >= 0;
+    }
+
+    /**
+     * Sorts the list and fires the list data events after a batch of changes.
+     *
+     * @param oldSize the size of the list before the changes
+     * @param sel the selected turn restrictions before the changes
+     */
+    protected void fireBatchChanged(int oldSize, List<Relation> sel) {
+        sort();
+        int size = getSize();
+        if (size > oldSize) {
+            fireIntervalAdded(this, oldSize, size - 1);
+        } else if (size < oldSize) {
+            fireIntervalRemoved(this, size, oldSize - 1);
+        }
+        if (Math.min(size, oldSize) > 0) {
+            fireContentsChanged(this, 0, Math.min(size, oldSize) - 1);
+        }
+        setSelectedTurnRestrictions(sel);
+    }
+
+    private void forget(Relation r) {
+        names.remove(r);
+        issues.remove(r);
+        pendingChecks.remove(r);
     }
 
     protected boolean isValid(Relation r) {
@@ -87,21 +213,33 @@ public class TurnRestrictionsListModel extends AbstractListModel<Relation> {
      * @param turnrestrictions the turn restrictions
      */
     public void setTurnRestrictions(Collection<Relation> turnrestrictions) {
-        List<Relation> sel = getSelectedTurnRestrictions();
-        this.turnrestrictions.clear();
-        if (turnrestrictions == null) {
-            selectionModel.clearSelection();
-            fireContentsChanged(this, 0, getSize());
-            return;
-        }
-        for (Relation r: turnrestrictions) {
-            if (isValid(r) && isTurnRestriction(r)) {
-                this.turnrestrictions.add(r);
+        beginBatch();
+        try {
+            Set<Relation> added = Collections.newSetFromMap(new IdentityHashMap<>());
+            this.turnrestrictions.clear();
+            if (turnrestrictions != null) {
+                for (Relation r: turnrestrictions) {
+                    if (isValid(r) && isTurnRestriction(r) && added.add(r)) {
+                        this.turnrestrictions.add(r);
+                    }
+                }
+            }
+            for (Relation r: rows.keySet()) {
+                if (!added.contains(r)) {
+                    forget(r);
+                }
             }
+            rows.clear();
+            for (int i = 0; i < this.turnrestrictions.size(); i++) {
+                rows.put(this.turnrestrictions.get(i), i);
+            }
+            if (turnrestrictions == null) {
+                batchSelection = null;
+            }
+            batchChanged = true;
+        } finally {
+            endBatch();
         }
-        sort();
-        fireIntervalAdded(this, 0, getSize());
-        setSelectedTurnRestrictions(sel);
     }
 
     /**
@@ -112,25 +250,19 @@ public class TurnRestrictionsListModel extends AbstractListModel<Relation> {
      * ways, and relations.
      */
     public void addTurnRestrictions(Collection<? extends OsmPrimitive> addedPrimitives) {
-        boolean added = false;
-        for (OsmPrimitive p: addedPrimitives) {
-            if (!isTurnRestriction(p)) {
-                continue;
-            }
+        beginBatch();
+        try {
+            for (OsmPrimitive p: addedPrimitives) {
+                if (!isTurnRestriction(p)) {
+                    continue;
+                }
 
-            Relation r = (Relation) p;
-            if (!isValid(r)) continue;
-            if (turnrestrictions.contains(r)) {
-                continue;
+                Relation r = (Relation) p;
+                if (!isValid(r)) continue;
+                include(r);
             }
-            turnrestrictions.add(r);
-            added = true;
-        }
-        if (added) {
-            List<Relation> sel = getSelectedTurnRestrictions();
-            sort();
-            fireIntervalAdded(this, 0, getSize());
-            setSelectedTurnRestrictions(sel);
+        } finally {
+            endBatch();
         }
     }
 
@@ -142,19 +274,121 @@ public class TurnRestrictionsListModel extends AbstractListModel<Relation> {
      */
     public void removeTurnRestrictions(Collection<? extends OsmPrimitive> removedPrimitives) {
         if (removedPrimitives == null) return;
-        Set<Relation> removedTurnRestrictions = new HashSet<>();
-        for (OsmPrimitive p: removedPrimitives) {
-            if (!isTurnRestriction(p)) continue;
-            removedTurnRestrictions.add((Relation) p);
+        beginBatch();
+        try {
+            for (OsmPrimitive p: removedPrimitives) {
+                // the tags of a removed relation may already have changed, so don't test for a turn restriction
+                if (p instanceof Relation) {
+                    exclude((Relation) p);
+                }
+            }
+        } finally {
+            endBatch();
         }
-        if (removedTurnRestrictions.isEmpty()) return;
-        int size = turnrestrictions.size();
-        turnrestrictions.removeAll(removedTurnRestrictions);
-        if (size != turnrestrictions.size()) {
-            List<Relation> sel = getSelectedTurnRestrictions();
-            sort();
-            fireContentsChanged(this, 0, getSize());
-            setSelectedTurnRestrictions(sel);
+    }
+
+    /**
+     * Updates the model after the primitives in <code>changedPrimitives</code> have changed.
+     * Relations which became turn restrictions are added, relations which aren't turn restrictions
+     * anymore are removed, and the other turn restrictions are resorted and repainted. The results
+     * of their QA checks are discarded.
+     *
+     * @param changedPrimitives the changed primitives. May include nodes, ways, and relations.
+     */
+    public void updateTurnRestrictions(Collection<? extends OsmPrimitive> changedPrimitives) {
+        if (changedPrimitives == null) return;
+        beginBatch();
+        try {
+            for (OsmPrimitive p: changedPrimitives) {
+                if (!(p instanceof Relation)) continue;
+                Relation r = (Relation) p;
+                if (!isValid(r) || !isTurnRestriction(r)) {
+                    exclude(r);
+                } else if (isIncluded(r)) {
+                    // resort and repaint
+                    forget(r);
+                    batchChanged = true;
+                } else {
+                    include(r);
+                }
+            }
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Discards the results of the QA checks of the turn restrictions in <code>turnRestrictions</code>
+     * and repaints them, without resorting the list.
+     *
+     * @param turnRestrictions the turn restrictions
+     */
+    public void invalidateIssues(Collection<Relation> turnRestrictions) {
+        for (Relation r: turnRestrictions) {
+            issues.remove(r);
+            pendingChecks.remove(r);
+        }
+        if (!batchChanged) {
+            // otherwise the rows are out of date, and all rows are repainted at the end of the batch anyway
+            invalidateRows(turnRestrictions);
+        }
+    }
+
+    /**
+     * Replies the severity of the most severe QA issue of a turn restriction. If the turn
+     * restriction hasn't been checked yet, a check is scheduled in the background and the
+     * row of the turn restriction is repainted when the check is completed.
+     *
+     * @param tr the turn restriction
+     * @return the severity; null, if there is no issue or if the turn restriction isn't checked yet
+     */
+    public Severity getIssueSeverity(Relation tr) {
+        Optional<Severity> severity = issues.get(tr);
+        if (severity != null) return severity.orElse(null);
+        if (!rows.containsKey(tr) || pendingChecks.containsKey(tr)) return null;
+
+        Object token = new Object();
+        pendingChecks.put(tr, token);
+        CheckExecutorHolder.EXECUTOR.execute(() -> {
+            DataSet ds = tr.getDataSet();
+            if (ds == null) return;
+            Severity result;
+            ds.getReadLock().lock();
+            try {
+                result = TurnRestrictionChecker.check(tr);
+            } finally {
+                ds.getReadLock().unlock();
+            }
+            GuiHelper.runInEDT(() -> checkCompleted(tr, token, result));
+        });
+        return null;
+    }
+
+    private void checkCompleted(Relation tr, Object token, Severity severity) {
+        if (pendingChecks.get(tr) != token) return; // discarded in the meantime
+        pendingChecks.remove(tr);
+        issues.put(tr, Optional.ofNullable(severity));
+        checked.add(tr);
+        if (checked.size() == 1) {
+            // repaint the results of all checks completed until then at once
+            SwingUtilities.invokeLater(() -> {
+                invalidateRows(checked);
+                checked.clear();
+            });
+        }
+    }
+
+    private void invalidateRows(Collection<Relation> turnRestrictions) {
+        int min = Integer.MAX_VALUE;
+        int max = -1;
+        for (Relation r: turnRestrictions) {
+            Integer row = rows.get(r);
+            if (row == null) continue;
+            min = Math.min(min, row);
+            max = Math.max(max, row);
+        }
+        if (max >= 0) {
+            fireContentsChanged(this, min, max);
         }
     }
 
@@ -176,7 +410,9 @@ public class TurnRestrictionsListModel extends AbstractListModel<Relation> {
      */
     public List<Relation> getSelectedNonNewRelations() {
         ArrayList<Relation> ret = new ArrayList<>();
-        for (int i = 0; i < getSize(); i++) {
+        if (selectionModel.isSelectionEmpty()) return ret;
+        int max = Math.min(selectionModel.getMaxSelectionIndex(), getSize() - 1);
+        for (int i = selectionModel.getMinSelectionIndex(); i <= max; i++) {
             if (!selectionModel.isSelectedIndex(i)) {
                 continue;
             }
@@ -196,7 +432,9 @@ public class TurnRestrictionsListModel extends AbstractListModel<Relation> {
      */
     public List<Relation> getSelectedTurnRestrictions() {
         ArrayList<Relation> ret = new ArrayList<>();
-        for (int i = 0; i < getSize(); i++) {
+        if (selectionModel.isSelectionEmpty()) return ret;
+        int max = Math.min(selectionModel.getMaxSelectionIndex(), getSize() - 1);
+        for (int i = selectionModel.getMinSelectionIndex(); i <= max; i++) {
             if (!selectionModel.isSelectedIndex(i)) {
                 continue;
             }
@@ -211,15 +449,20 @@ public class TurnRestrictionsListModel extends AbstractListModel<Relation> {
      * @param sel the list of selected turn restrictions
      */
     public void setSelectedTurnRestrictions(List<Relation> sel) {
-        selectionModel.clearSelection();
-        if (sel == null || sel.isEmpty())
-            return;
-        for (Relation r: sel) {
-            int i = turnrestrictions.indexOf(r);
-            if (i < 0) {
-                continue;
+        selectionModel.setValueIsAdjusting(true);
+        try {
+            selectionModel.clearSelection();
+            if (sel == null || sel.isEmpty())
+                return;
+            for (Relation r: sel) {
+                int i = getTurnRestrictionIndex(r);
+                if (i < 0) {
+                    continue;
+                }
+                selectionModel.addSelectionInterval(i, i);
             }
-            selectionModel.addSelectionInterval(i, i);
+        } finally {
+            selectionModel.setValueIsAdjusting(false);
         }
     }
 
@@ -230,8 +473,8 @@ public class TurnRestrictionsListModel extends AbstractListModel<Relation> {
      * @return index of relation (-1, if not found)
      */
     public int getTurnRestrictionIndex(Relation tr) {
-        int i = turnrestrictions.indexOf(tr);
-        if (i < 0) return -1;
+        Integer i = rows.get(tr);
+        if (i == null || i < 0) return -1;
         return i;
     }
 }
@@ -0,0 +1,102 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.turnrestrictions.qa;
+
+import static org.openstreetmap.josm.plugins.turnrestrictions.TurnRestrictionBuilder.isInnerNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.plugins.turnrestrictions.TurnRestrictionBuilder;
+import org.openstreetmap.josm.plugins.turnrestrictions.editor.ExceptValueModel;
+import org.openstreetmap.josm.plugins.turnrestrictions.editor.TurnRestrictionEditorModel;
+import org.openstreetmap.josm.plugins.turnrestrictions.editor.TurnRestrictionType;
+
+/**
+ * <p>Applies the checks of {@link IssuesModel} directly to a turn restriction relation.</p>
+ *
+ * <p>Unlike {@link IssuesModel} it doesn't need a turn restriction editor and it doesn't
+ * create {@link Issue}s with fix actions. It only replies the most severe issue found,
+ * which is enough to flag turn restrictions in the lists of turn restrictions. It doesn't
+ * touch any Swing models and can therefore be run outside of the EDT, provided the caller
+ * holds the read lock of the data set.</p>
+ */
+public final class TurnRestrictionChecker {
+
+    private TurnRestrictionChecker() {
+        // Hide default constructor for utilities classes
+    }
+
+    private static List<OsmPrimitive> getMembers(Relation r, String role) {
+        List<OsmPrimitive> ret = new ArrayList<>();
+        for (RelationMember rm: r.getMembers()) {
+            if (rm.getRole().equals(role)) {
+                ret.add(rm.getMember());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Replies the distinct members with role {@code role}, like
+     * {@link TurnRestrictionEditorModel#getTurnRestrictionLeg} does.
+     */
+    private static Set<OsmPrimitive> getLegs(Relation r, String role) {
+        return new LinkedHashSet<>(getMembers(r, role));
+    }
+
+    private static Severity max(Severity s1, Severity s2) {
+        if (s1 == null) return s2;
+        if (s2 == null) return s1;
+        return s1.compareTo(s2) >= 0 ? s1 : s2;
+    }
+
+    /**
+     * Checks a turn restriction.
+     *
+     * @param r the turn restriction
+     * @return the severity of the most severe issue; null, if there is no issue
+     */
+    public static Severity check(Relation r) {
+        Severity ret = checkTags(r);
+        if (ret == Severity.ERROR) return ret;
+
+        Set<OsmPrimitive> froms = getLegs(r, "from");
+        Set<OsmPrimitive> tos = getLegs(r, "to");
+        if (froms.size() != 1 || tos.size() != 1) return Severity.ERROR;
+        OsmPrimitive fromLeg = froms.iterator().next();
+        OsmPrimitive toLeg = tos.iterator().next();
+        if (!(fromLeg instanceof Way) || !(toLeg instanceof Way)) return Severity.ERROR;
+
+        Way from = (Way) fromLeg;
+        Way to = (Way) toLeg;
+        if (from.equals(to) && !"no_u_turn".equals(r.get("restriction"))) return Severity.ERROR;
+        return max(ret, checkVias(r, from, to));
+    }
+
+    private static Severity checkTags(Relation r) {
+        if (!"restriction".equals(r.get("type"))) return Severity.ERROR;
+        String restriction = r.get("restriction");
+        if (restriction == null || !TurnRestrictionType.isStandardTagValue(restriction)) return Severity.ERROR;
+        if (!new ExceptValueModel(r.get("except")).isStandard()) return Severity.WARNING;
+        return null;
+    }
+
+    private static Severity checkVias(Relation r, Way from, Way to) {
+        List<OsmPrimitive> vias = getMembers(r, "via");
+        Node intersect = TurnRestrictionBuilder.getUniqueCommonNode(from, to);
+        if (intersect != null) {
+            if (!vias.contains(intersect)) return Severity.ERROR;
+            if (isInnerNode(from, intersect) || isInnerNode(to, intersect)) return Severity.ERROR;
+        } else if (vias.isEmpty() && !from.equals(to)) {
+            return Severity.WARNING;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,140 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.turnrestrictions.list;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.DefaultListSelectionModel;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Unit test for {@link TurnRestrictionsListModel}
+ */
+@BasicPreferences
+class TurnRestrictionsListModelTest {
+
+    private static Relation turnRestriction(String name) {
+        Relation r = new Relation();
+        r.put("type", "restriction");
+        r.put("name", name);
+        return r;
+    }
+
+    @Test
+    void testAddRemoveAndIndex() {
+        DefaultListSelectionModel selectionModel = new DefaultListSelectionModel();
+        TurnRestrictionsListModel model = new TurnRestrictionsListModel(selectionModel);
+        Relation b = turnRestriction("b");
+        Relation a = turnRestriction("a");
+        Relation other = new Relation();
+
+        model.setTurnRestrictions(Arrays.asList(b, other));
+        assertEquals(1, model.getSize());
+
+        model.addTurnRestrictions(Arrays.asList(a, b));
+        assertEquals(2, model.getSize());
+        assertEquals(0, model.getTurnRestrictionIndex(a));
+        assertEquals(1, model.getTurnRestrictionIndex(b));
+        assertEquals(-1, model.getTurnRestrictionIndex(other));
+
+        model.setSelectedTurnRestrictions(Collections.singletonList(b));
+        model.removeTurnRestrictions(Collections.singletonList(a));
+        assertEquals(1, model.getSize());
+        assertEquals(0, model.getTurnRestrictionIndex(b));
+        assertEquals(-1, model.getTurnRestrictionIndex(a));
+        assertEquals(Collections.singletonList(b), model.getSelectedTurnRestrictions());
+    }
+
+    @Test
+    void testUpdateTurnRestrictions() {
+        TurnRestrictionsListModel model = new TurnRestrictionsListModel(new DefaultListSelectionModel());
+        Relation a = turnRestriction("a");
+        Relation b = turnRestriction("b");
+        Relation c = new Relation();
+        model.setTurnRestrictions(Arrays.asList(a, b));
+
+        // renamed relations are resorted
+        a.put("name", "z");
+        model.updateTurnRestrictions(Collections.singletonList(a));
+        assertEquals(b, model.getTurnRestriction(0));
+        assertEquals(1, model.getTurnRestrictionIndex(a));
+
+        // relations which became turn restrictions are added, the others are removed
+        c.put("type", "restriction");
+        b.remove("type");
+        model.updateTurnRestrictions(Arrays.asList(b, c));
+        assertEquals(2, model.getSize());
+        assertEquals(-1, model.getTurnRestrictionIndex(b));
+        assertEquals(a, model.getTurnRestriction(model.getTurnRestrictionIndex(a)));
+        assertEquals(c, model.getTurnRestriction(model.getTurnRestrictionIndex(c)));
+    }
+
+    @Test
+    void testBatch() {
+        DefaultListSelectionModel selectionModel = new DefaultListSelectionModel();
+        TurnRestrictionsListModel model = new TurnRestrictionsListModel(selectionModel);
+        Relation a = turnRestriction("a");
+        Relation b = turnRestriction("b");
+        Relation c = turnRestriction("c");
+        Relation d = turnRestriction("d");
+        model.setTurnRestrictions(Arrays.asList(c, b));
+        model.setSelectedTurnRestrictions(Collections.singletonList(c));
+
+        List<ListDataEvent> events = new ArrayList<>();
+        model.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                events.add(e);
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+                events.add(e);
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+                events.add(e);
+            }
+        });
+
+        model.beginBatch();
+        model.addTurnRestrictions(Arrays.asList(d, a));
+        // removed and added again in the same batch
+        model.removeTurnRestrictions(Arrays.asList(b, d));
+        model.addTurnRestrictions(Collections.singletonList(b));
+        c.put("name", "0");
+        model.updateTurnRestrictions(Collections.singletonList(c));
+        assertEquals(0, events.size());
+        model.endBatch();
+
+        assertEquals(2, events.size());
+        assertEquals(ListDataEvent.INTERVAL_ADDED, events.get(0).getType());
+        assertEquals(2, events.get(0).getIndex0());
+        assertEquals(2, events.get(0).getIndex1());
+        assertEquals(ListDataEvent.CONTENTS_CHANGED, events.get(1).getType());
+        assertEquals(3, model.getSize());
+        assertEquals(c, model.getTurnRestriction(0));
+        assertEquals(a, model.getTurnRestriction(1));
+        assertEquals(b, model.getTurnRestriction(2));
+        assertEquals(-1, model.getTurnRestrictionIndex(d));
+        assertEquals(Collections.singletonList(c), model.getSelectedTurnRestrictions());
+
+        // a batch without changes fires no events
+        events.clear();
+        model.beginBatch();
+        model.addTurnRestrictions(Collections.singletonList(a));
+        model.removeTurnRestrictions(Collections.singletonList(d));
+        model.endBatch();
+        assertEquals(0, events.size());
+    }
+}
@@ -0,0 +1,175 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.turnrestrictions.qa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.plugins.turnrestrictions.editor.NavigationControler;
+import org.openstreetmap.josm.plugins.turnrestrictions.editor.TurnRestrictionEditorModel;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Unit test of {@link TurnRestrictionChecker}, which has to find the same issues as {@link IssuesModel}
+ */
+@BasicPreferences
+class TurnRestrictionCheckerTest {
+
+    private final NavigationControler navigationControlerMock = new NavigationControler() {
+        @Override
+        public void gotoBasicEditor(BasicEditorFokusTargets focusTarget) {
+        }
+
+        @Override
+        public void gotoBasicEditor() {
+        }
+
+        @Override
+        public void gotoAdvancedEditor() {
+        }
+    };
+
+    private DataSet ds;
+    private OsmDataLayer layer;
+    private final List<Node> nodes = new ArrayList<>();
+    private final List<Way> ways = new ArrayList<>();
+
+    private Way way(int... nodeIndices) {
+        Way w = new Way();
+        for (int i: nodeIndices) {
+            w.addNode(nodes.get(i));
+        }
+        ds.addPrimitive(w);
+        ways.add(w);
+        return w;
+    }
+
+    @BeforeEach
+    public void setUp() {
+        ds = new DataSet();
+        layer = new OsmDataLayer(ds, "test", null);
+        for (int i = 0; i < 7; i++) {
+            Node n = new Node(new LatLon(i % 3, i / 3));
+            ds.addPrimitive(n);
+            nodes.add(n);
+        }
+        way(0, 1, 2);    // w0
+        way(2, 3);       // w1: connected to the end of w0
+        way(1, 4);       // w2: connected to the middle of w0
+        way(4, 5);       // w3: not connected to w0
+        way(5, 2, 3);    // w4: shares two nodes with w1
+        way(3, 6, 0);    // w5: connected to the ends of w0, at the middle of w5
+    }
+
+    /**
+     * Replies the severity of the most severe issue found by {@link IssuesModel}.
+     */
+    private Severity checkWithIssuesModel(Relation r) {
+        TurnRestrictionEditorModel editorModel = new TurnRestrictionEditorModel(layer, navigationControlerMock);
+        editorModel.populate(r);
+        IssuesModel issuesModel = editorModel.getIssuesModel();
+        issuesModel.populate();
+        Severity ret = null;
+        for (Issue issue: issuesModel.getIssues()) {
+            if (ret == null || issue.getSeverity().compareTo(ret) > 0) {
+                ret = issue.getSeverity();
+            }
+        }
+        return ret;
+    }
+
+    private Relation relation(String restriction, String except, List<RelationMember> members) {
+        Relation r = new Relation();
+        r.put("type", "restriction");
+        if (restriction != null) {
+            r.put("restriction", restriction);
+        }
+        if (except != null) {
+            r.put("except", except);
+        }
+        r.setMembers(members);
+        ds.addPrimitive(r);
+        return r;
+    }
+
+    @Test
+    void testExamples() {
+        Way w0 = ways.get(0);
+        Way w1 = ways.get(1);
+        Way w2 = ways.get(2);
+        Way w3 = ways.get(3);
+        Node via = nodes.get(2);
+
+        Relation r = relation("no_left_turn", null, Arrays.asList(
+                new RelationMember("from", w0), new RelationMember("via", via), new RelationMember("to", w1)));
+        assertEquals(null, TurnRestrictionChecker.check(r));
+
+        r = relation("no_left_turn", "bicycle;foo", Arrays.asList(
+                new RelationMember("from", w0), new RelationMember("via", via), new RelationMember("to", w1)));
+        assertEquals(Severity.WARNING, TurnRestrictionChecker.check(r));
+
+        // the via node is missing
+        r = relation("no_left_turn", null, Arrays.asList(new RelationMember("from", w0), new RelationMember("to", w1)));
+        assertEquals(Severity.ERROR, TurnRestrictionChecker.check(r));
+
+        // the from way has to be split
+        r = relation("no_left_turn", null, Arrays.asList(
+                new RelationMember("from", w0), new RelationMember("via", nodes.get(1)), new RelationMember("to", w2)));
+        assertEquals(Severity.ERROR, TurnRestrictionChecker.check(r));
+
+        // the ways aren't connected and there is no via
+        r = relation("no_left_turn", null, Arrays.asList(new RelationMember("from", w0), new RelationMember("to", w3)));
+        assertEquals(Severity.WARNING, TurnRestrictionChecker.check(r));
+
+        // identical legs are allowed for u-turns only
+        r = relation("no_u_turn", null, Arrays.asList(new RelationMember("from", w3), new RelationMember("to", w3)));
+        assertEquals(null, TurnRestrictionChecker.check(r));
+        r = relation("no_right_turn", null, Arrays.asList(new RelationMember("from", w3), new RelationMember("to", w3)));
+        assertEquals(Severity.ERROR, TurnRestrictionChecker.check(r));
+
+        r = relation("no_swimming", null, Arrays.asList(
+                new RelationMember("from", w0), new RelationMember("via", via), new RelationMember("to", w1)));
+        assertEquals(Severity.ERROR, TurnRestrictionChecker.check(r));
+    }
+
+    /**
+     * Random turn restrictions get the same severity as the most severe issue created by {@link IssuesModel}.
+     */
+    @Test
+    void testSameAsIssuesModel() {
+        Random random = new Random(33);
+        String[] restrictions = {null, "no_left_turn", "only_straight_on", "no_u_turn", "no_swimming"};
+        String[] excepts = {null, "bicycle", "psv;motorcar", "foo"};
+        String[] roles = {"from", "to", "via"};
+        List<OsmPrimitive> candidates = new ArrayList<>(ways);
+        candidates.addAll(nodes);
+        for (int round = 0; round < 500; round++) {
+            List<RelationMember> members = new ArrayList<>();
+            if (random.nextInt(4) > 0) {
+                // mostly one from and one to way, so that the checks of the vias are reached
+                members.add(new RelationMember("from", ways.get(random.nextInt(ways.size()))));
+                members.add(new RelationMember("to", ways.get(random.nextInt(ways.size()))));
+            }
+            for (int i = random.nextInt(3); i > 0; i--) {
+                String role = random.nextInt(3) > 0 ? "via" : roles[random.nextInt(roles.length)];
+                members.add(new RelationMember(role, candidates.get(random.nextInt(candidates.size()))));
+            }
+            Relation r = relation(restrictions[random.nextInt(restrictions.length)],
+                    excepts[random.nextInt(excepts.length)], members);
+            assertEquals(checkWithIssuesModel(r), TurnRestrictionChecker.check(r), r.getMembers() + " " + r.getKeys());
+        }
+    }
+}